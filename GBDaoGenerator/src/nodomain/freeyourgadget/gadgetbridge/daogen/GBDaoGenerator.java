@@ -45,7 +45,7 @@ public class GBDaoGenerator {
 
 
     public static void main(String[] args) throws Exception {
-        final Schema schema = new Schema(74, MAIN_PACKAGE + ".entities");
+        final Schema schema = new Schema(79, MAIN_PACKAGE + ".entities");
 
         Entity userAttributes = addUserAttributes(schema);
         Entity user = addUserInfo(schema, userAttributes);
@@ -123,6 +123,7 @@ public class GBDaoGenerator {
         addFemometerVinca2TemperatureSample(schema, user, device);
 
         addHuaweiActivitySample(schema, user, device);
+        addHuaweiMergedActivitySample(schema, user, device);
 
         Entity huaweiWorkoutSummary = addHuaweiWorkoutSummarySample(schema, user, device);
         addHuaweiWorkoutDataSample(schema, user, device, huaweiWorkoutSummary);
@@ -142,6 +143,9 @@ public class GBDaoGenerator {
 
         addActivitySummary(schema, user, device);
         addBatteryLevel(schema, device);
+        addActivityDayRollup(schema, device);
+        addActivityHourRollup(schema, device);
+        addCachedActivitySessions(schema, device);
         new DaoGenerator().generateAll(schema, "app/src/main/java");
     }
 
@@ -1016,6 +1020,8 @@ public class GBDaoGenerator {
         summary.addToOne(user, userId);
         summary.addStringProperty("summaryData");
         summary.addByteArrayProperty("rawSummaryData");
+        summary.addByteArrayProperty("summaryBinary").javaDocGetterAndSetter(
+                "The parsed summary data, see ActivitySummaryMetrics. Rebuilt whenever it is missing or stale.");
     }
 
     private static Property findProperty(Entity entity, String propertyName) {
@@ -1044,6 +1050,66 @@ public class GBDaoGenerator {
         return batteryLevel;
     }
 
+    private static Entity addActivityDayRollup(Schema schema, Entity device) {
+        Entity rollup = addEntity(schema, "ActivityDayRollup");
+        rollup.setJavaDoc(
+                "Pre-aggregated activity totals for one local day of a device. The timestamp is the\n" +
+                        "local midnight the day starts at. The sleep durations cover the day starting at\n" +
+                        "noon of the previous day, the same window used by the sleep charts.");
+        rollup.addIntProperty("timestamp").notNull().primaryKey();
+        Property deviceId = rollup.addLongProperty("deviceId").primaryKey().notNull().getProperty();
+        rollup.addToOne(device, deviceId);
+        addActivityRollupProperties(rollup);
+        return rollup;
+    }
+
+    private static Entity addActivityHourRollup(Schema schema, Entity device) {
+        Entity rollup = addEntity(schema, "ActivityHourRollup");
+        rollup.setJavaDoc("Pre-aggregated activity totals for one hour of a device.");
+        rollup.addIntProperty("timestamp").notNull().primaryKey();
+        Property deviceId = rollup.addLongProperty("deviceId").primaryKey().notNull().getProperty();
+        rollup.addToOne(device, deviceId);
+        addActivityRollupProperties(rollup);
+        return rollup;
+    }
+
+    private static Entity addCachedActivitySessions(Schema schema, Entity device) {
+        Entity sessions = addEntity(schema, "CachedActivitySessions");
+        sessions.setJavaDoc(
+                "The sleep or step sessions calculated for a time range of a device, encoded by\n" +
+                        "SleepAnalysis or StepAnalysis. The parameters are a hash of the settings the\n" +
+                        "sessions were calculated with.");
+        sessions.addIdProperty();
+        Property deviceId = sessions.addLongProperty("deviceId").notNull().getProperty();
+        Property type = sessions.addIntProperty("type").notNull().getProperty();
+        Property timestampFrom = sessions.addIntProperty("timestampFrom").notNull().getProperty();
+        Property timestampTo = sessions.addIntProperty("timestampTo").notNull().getProperty();
+        Index indexUnique = new Index();
+        indexUnique.addProperty(deviceId);
+        indexUnique.addProperty(type);
+        indexUnique.addProperty(timestampFrom);
+        indexUnique.addProperty(timestampTo);
+        indexUnique.makeUnique();
+        sessions.addIndex(indexUnique);
+        sessions.addToOne(device, deviceId);
+        sessions.addIntProperty("parameters").notNull();
+        sessions.addByteArrayProperty("data").notNull();
+        return sessions;
+    }
+
+    private static void addActivityRollupProperties(Entity rollup) {
+        rollup.addIntProperty(SAMPLE_STEPS).notNull();
+        rollup.addIntProperty("activeSeconds").notNull();
+        rollup.addIntProperty("lightSleepSeconds").notNull();
+        rollup.addIntProperty("deepSleepSeconds").notNull();
+        rollup.addIntProperty("remSleepSeconds").notNull();
+        rollup.addIntProperty("notWornSeconds").notNull();
+        rollup.addIntProperty("heartRateMin").notNull();
+        rollup.addIntProperty("heartRateAverage").notNull();
+        rollup.addIntProperty("heartRateMax").notNull();
+        rollup.addIntProperty("distance").notNull().javaDocGetterAndSetter("The distance covered by the steps, in meters, from the step length of the user.");
+    }
+
     private static Entity addFitProActivitySample(Schema schema, Entity user, Entity device) {
         Entity activitySample = addEntity(schema, "FitProActivitySample");
         activitySample.implementsSerializable();
@@ -1167,6 +1233,28 @@ public class GBDaoGenerator {
         return activitySample;
     }
 
+    private static Entity addHuaweiMergedActivitySample(Schema schema, Entity user, Entity device) {
+        Entity mergedSample = addEntity(schema, "HuaweiMergedActivitySample");
+        mergedSample.setJavaDoc(
+                "The Huawei activity samples merged with the workout heart rate and interpolated, as\n" +
+                        "returned by the HuaweiSampleProvider. Rebuilt from the raw samples when they change.");
+        mergedSample.addIntProperty("timestamp").notNull().primaryKey();
+        Property deviceId = mergedSample.addLongProperty("deviceId").primaryKey().notNull().getProperty();
+        mergedSample.addToOne(device, deviceId);
+        Property userId = mergedSample.addLongProperty("userId").notNull().getProperty();
+        mergedSample.addToOne(user, userId);
+        mergedSample.addIntProperty("otherTimestamp").notNull();
+        mergedSample.addByteProperty("source").notNull();
+        mergedSample.addIntProperty(SAMPLE_RAW_KIND).notNull();
+        mergedSample.addIntProperty(SAMPLE_RAW_INTENSITY).notNull();
+        mergedSample.addIntProperty(SAMPLE_STEPS).notNull();
+        mergedSample.addIntProperty("calories").notNull();
+        mergedSample.addIntProperty("distance").notNull();
+        mergedSample.addIntProperty("spo").notNull();
+        mergedSample.addIntProperty("heartRate").notNull();
+        return mergedSample;
+    }
+
     private static Entity addHuaweiWorkoutSummarySample(Schema schema, Entity user, Entity device) {
         Entity workoutSummary = addEntity(schema, "HuaweiWorkoutSummarySample");
 
@@ -37,6 +37,9 @@
 # Keep coordinators, they're only referenced from DeviceType
 -keep public class * implements nodomain.freeyourgadget.gadgetbridge.devices.DeviceCoordinator
 
+# Keep the names of activity summary parsers, they identify the parser of stored summaries
+-keepnames class * implements nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryParser
+
 # Keep parseIncoming for GFDIMessage classes, as it is called by reflection in GFDIMessage#parseIncoming
 -keep public class * extends nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.GFDIMessage
 -keepclassmembers class * extends nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.GFDIMessage {
@@ -44,6 +44,7 @@ import android.provider.ContactsContract.PhoneLookup;
 import android.util.Log;
 import android.util.TypedValue;
 
+import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
@@ -54,12 +55,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import nodomain.freeyourgadget.gadgetbridge.activities.devicesettings.DeviceSettingsPreferenceConst;
@@ -73,6 +74,7 @@ import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
 import nodomain.freeyourgadget.gadgetbridge.entities.Device;
 import nodomain.freeyourgadget.gadgetbridge.externalevents.BluetoothStateChangeReceiver;
 import nodomain.freeyourgadget.gadgetbridge.externalevents.opentracks.OpenTracksContentObserver;
+import nodomain.freeyourgadget.gadgetbridge.externalevents.notifications.NotificationFilterMatcher;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDeviceService;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityUser;
@@ -84,6 +86,7 @@ import nodomain.freeyourgadget.gadgetbridge.util.AndroidUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.FileUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.GB;
 import nodomain.freeyourgadget.gadgetbridge.util.GBPrefs;
+import nodomain.freeyourgadget.gadgetbridge.util.LatencyHistogram;
 import nodomain.freeyourgadget.gadgetbridge.util.LimitedQueue;
 import nodomain.freeyourgadget.gadgetbridge.util.Prefs;
 import nodomain.freeyourgadget.gadgetbridge.util.preferences.DevicePrefs;
@@ -117,7 +120,18 @@ public class GBApplication extends Application {
     public static final String DATABASE_NAME = "Gadgetbridge";
 
     private static GBApplication context;
-    private static final Lock dbLock = new ReentrantLock();
+    private static final ReentrantLock dbLock = new ReentrantLock();
+    private static final LatencyHistogram dbWriteLockWait = new LatencyHistogram();
+    private static final LatencyHistogram dbWriteLockHeld = new LatencyHistogram();
+    private static final LatencyHistogram dbReadLockWait = new LatencyHistogram();
+    /**
+     * When the current holder of the {@link #dbLock} acquired it, only accessed by that holder.
+     */
+    private static long dbLockAcquiredNanos;
+    /**
+     * Incremented whenever a writer releases the {@link #dbLock}, see {@link #getDbWriteGeneration()}.
+     */
+    private static volatile long dbWriteGeneration;
     private static DeviceService deviceService;
     private static SharedPreferences sharedPrefs;
     private static final String PREFS_VERSION = "shared_preferences_version";
@@ -327,6 +341,8 @@ public class GBApplication extends Application {
             lockHandler = new LockHandler();
         }
         lockHandler.init(daoMaster, helper);
+        // the database may have been replaced by an import
+        NotificationFilterMatcher.invalidate();
     }
 
     public static Context getContext() {
@@ -367,16 +383,80 @@ public class GBApplication extends Application {
      * @see #releaseDB()
      */
     public static DBHandler acquireDB() throws GBException {
+        final long start = System.nanoTime();
         try {
             if (dbLock.tryLock(30, TimeUnit.SECONDS)) {
+                if (dbLock.getHoldCount() == 1) {
+                    dbWriteLockWait.recordSince(start);
+                    dbLockAcquiredNanos = System.nanoTime();
+                }
                 return lockHandler;
             }
         } catch (InterruptedException ex) {
             Log.i(TAG, "Interrupted while waiting for DB lock");
         }
+        dbWriteLockWait.recordSince(start);
+        throw new GBException("Unable to access the database.");
+    }
+
+    /**
+     * Returns the DBHandler instance for reading/writing if the database lock is
+     * available right away, or null otherwise. Meant for optional writes, like caching
+     * derived data, that are better skipped than waited for.
+     *
+     * @return the DBHandler, or null
+     * @see #acquireDB()
+     */
+    @Nullable
+    public static DBHandler tryAcquireDB() {
+        if (!dbLock.tryLock()) {
+            return null;
+        }
+        if (dbLock.getHoldCount() == 1) {
+            dbLockAcquiredNanos = System.nanoTime();
+        }
+        return lockHandler;
+    }
+
+    /**
+     * Returns a DBHandler for reading, or throws GBException when that was not
+     * successful. Unlike #acquireDB, several threads can read at the same time,
+     * and they do not have to wait for a writer.
+     * <p>
+     * The returned handler must be closed by the thread that acquired it, and
+     * callers must not hold a reference to it after that. It must not be used to
+     * close or replace the database. If the current thread already holds the
+     * write lock, the writable handler is returned instead.
+     *
+     * @return the DBHandler
+     * @throws GBException
+     * @see #acquireDB()
+     */
+    public static DBHandler acquireReadOnlyDB() throws GBException {
+        if (dbLock.isHeldByCurrentThread()) {
+            return acquireDB();
+        }
+        final long start = System.nanoTime();
+        try {
+            final DBHandler reader = lockHandler.acquireReader(30, TimeUnit.SECONDS);
+            dbReadLockWait.recordSince(start);
+            if (reader != null) {
+                return reader;
+            }
+        } catch (InterruptedException ex) {
+            Log.i(TAG, "Interrupted while waiting for DB reader");
+        }
         throw new GBException("Unable to access the database.");
     }
 
+    /**
+     * Returns whether the session was obtained through {@link #acquireReadOnlyDB()} by the
+     * current thread. Such sessions must not be used for writing.
+     */
+    public static boolean isReadOnlySession(final DaoSession session) {
+        return lockHandler.isReaderSession(session);
+    }
+
     /**
      * Releases the database lock.
      *
@@ -384,9 +464,33 @@ public class GBApplication extends Application {
      * @see #acquireDB()
      */
     public static void releaseDB() {
+        if (dbLock.getHoldCount() == 1) {
+            dbWriteLockHeld.recordSince(dbLockAcquiredNanos);
+            dbWriteGeneration++;
+        }
         dbLock.unlock();
     }
 
+    /**
+     * Returns a counter that changes whenever a writer released the database. Data derived
+     * from what was read while the counter had a given value must not be stored once it
+     * changed, since the data it was derived from may have changed as well.
+     */
+    public static long getDbWriteGeneration() {
+        return dbWriteGeneration;
+    }
+
+    /**
+     * Returns how long threads waited for and held the database, for the performance counters.
+     */
+    public static Map<String, LatencyHistogram> getDbLockHistograms() {
+        final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        histograms.put("write lock wait", dbWriteLockWait);
+        histograms.put("write lock held", dbWriteLockHeld);
+        histograms.put("read lock wait", dbReadLockWait);
+        return histograms;
+    }
+
     public static boolean isRunningMarshmallowOrLater() {
         return VERSION.SDK_INT >= Build.VERSION_CODES.M;
     }
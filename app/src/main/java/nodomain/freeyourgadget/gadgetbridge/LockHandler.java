@@ -19,7 +19,14 @@ package nodomain.freeyourgadget.gadgetbridge;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
+import nodomain.freeyourgadget.gadgetbridge.database.DBHelper;
 import nodomain.freeyourgadget.gadgetbridge.entities.DaoMaster;
 import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
 
@@ -27,6 +34,17 @@ import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
  * Provides low-level access to the database.
  */
 public class LockHandler implements DBHandler {
+    /**
+     * The number of pooled {@link ReadOnlyLockHandler}s, i.e. how many threads can read at once.
+     */
+    static final int READER_COUNT = 4;
+    /**
+     * How long closing the database waits for the readers in use to be released.
+     */
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
+    private final BlockingQueue<ReadOnlyLockHandler> readers = new ArrayBlockingQueue<>(READER_COUNT);
+    private final ThreadLocal<ReadOnlyLockHandler> currentReader = new ThreadLocal<>();
 
     private DaoMaster daoMaster = null;
     private DaoSession session = null;
@@ -52,6 +70,79 @@ public class LockHandler implements DBHandler {
         if (session == null) {
             throw new RuntimeException("Unable to create database session");
         }
+
+        readers.clear();
+        for (int i = 0; i < READER_COUNT; i++) {
+            readers.add(new ReadOnlyLockHandler(this, daoMaster, helper));
+        }
+    }
+
+    /**
+     * Takes a read-only handler from the pool, waiting up to the given time for one to be returned.
+     * A thread that already holds one gets the same handler again.
+     *
+     * @return the handler, or null if none became available in time
+     */
+    ReadOnlyLockHandler acquireReader(final long timeout, final TimeUnit unit) throws InterruptedException {
+        ReadOnlyLockHandler reader = currentReader.get();
+        if (reader == null) {
+            reader = readers.poll(timeout, unit);
+            if (reader == null) {
+                return null;
+            }
+            currentReader.set(reader);
+        }
+        reader.acquired();
+        return reader;
+    }
+
+    void releaseReader(final ReadOnlyLockHandler reader) {
+        if (currentReader.get() != reader) {
+            throw new IllegalStateException("ReadOnlyLockHandler must be released by the thread that acquired it");
+        }
+        if (reader.released()) {
+            currentReader.remove();
+            if (reader.getDaoMaster() == daoMaster) {
+                readers.add(reader);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the session belongs to the read-only handler held by the current thread.
+     */
+    boolean isReaderSession(final DaoSession session) {
+        final ReadOnlyLockHandler reader = currentReader.get();
+        return reader != null && reader.getDaoSession() == session;
+    }
+
+    /**
+     * Takes all read-only handlers out of the pool, waiting for the ones in use to be released.
+     * New ones are only handed out again after the next {@link #init}.
+     *
+     * @throws IllegalStateException if the readers were not released in time, the pool is left
+     *                               unchanged then
+     */
+    private void drainReaders() {
+        if (currentReader.get() != null) {
+            throw new IllegalStateException("The database can not be closed while holding a ReadOnlyLockHandler");
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+        final List<ReadOnlyLockHandler> drained = new ArrayList<>(READER_COUNT);
+        try {
+            while (drained.size() < READER_COUNT) {
+                final ReadOnlyLockHandler reader = readers.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (reader == null) {
+                    readers.addAll(drained);
+                    throw new IllegalStateException("Timed out waiting for the database readers to be released");
+                }
+                drained.add(reader);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            readers.addAll(drained);
+            throw new IllegalStateException("Interrupted while waiting for the database readers to be released", e);
+        }
     }
 
     @Override
@@ -89,7 +180,9 @@ public class LockHandler implements DBHandler {
         if (session == null) {
             throw new IllegalStateException("session must not be null");
         }
+        drainReaders();
         session.clear();
+        DBHelper.clearDeviceCache(session);
         session.getDatabase().close();
         session = null;
         helper = null;
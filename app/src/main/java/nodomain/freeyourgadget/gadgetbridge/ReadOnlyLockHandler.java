@@ -0,0 +1,92 @@
+package nodomain.freeyourgadget.gadgetbridge;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
+import nodomain.freeyourgadget.gadgetbridge.database.DBHelper;
+import nodomain.freeyourgadget.gadgetbridge.entities.DaoMaster;
+import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
+
+/**
+ * A pooled database handler for readers, see {@link GBApplication#acquireReadOnlyDB()}. Each one
+ * has its own session on the database of the {@link LockHandler}, so that several of them can be
+ * used concurrently. With write-ahead logging, SQLite runs the reads on separate connections,
+ * without waiting for a writer.
+ * <p>
+ * The database can not be closed or reopened through a read-only handler.
+ */
+public class ReadOnlyLockHandler implements DBHandler {
+    private final LockHandler owner;
+    private final DaoMaster daoMaster;
+    private final DaoSession session;
+    private final SQLiteOpenHelper helper;
+
+    /**
+     * Number of nested acquisitions by the thread currently holding this handler.
+     */
+    private int holdCount;
+
+    ReadOnlyLockHandler(final LockHandler owner, final DaoMaster daoMaster, final SQLiteOpenHelper helper) {
+        this.owner = owner;
+        this.daoMaster = daoMaster;
+        this.helper = helper;
+        this.session = daoMaster.newSession();
+    }
+
+    void acquired() {
+        holdCount++;
+    }
+
+    /**
+     * Returns true if this was the outermost acquisition and the handler can go back to the pool.
+     */
+    boolean released() {
+        if (holdCount <= 0) {
+            throw new IllegalStateException("ReadOnlyLockHandler is not acquired");
+        }
+        holdCount--;
+        if (holdCount > 0) {
+            return false;
+        }
+        // don't hand out entities cached by a previous reader, they may have been changed since
+        session.clear();
+        DBHelper.clearDeviceCache(session);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        owner.releaseReader(this);
+    }
+
+    @Override
+    public void openDb() {
+        throw new UnsupportedOperationException("The database can not be opened through a read-only handler");
+    }
+
+    @Override
+    public void closeDb() {
+        throw new UnsupportedOperationException("The database can not be closed through a read-only handler");
+    }
+
+    @Override
+    public SQLiteOpenHelper getHelper() {
+        return helper;
+    }
+
+    @Override
+    public DaoSession getDaoSession() {
+        return session;
+    }
+
+    @Override
+    public SQLiteDatabase getDatabase() {
+        return daoMaster.getDatabase();
+    }
+
+    @Override
+    public DaoMaster getDaoMaster() {
+        return daoMaster;
+    }
+}
@@ -53,6 +53,7 @@ import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -65,10 +66,13 @@ import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
 import nodomain.freeyourgadget.gadgetbridge.database.DBHelper;
 import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
 import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.export.ActivityTracksZipExporter;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummary;
 import nodomain.freeyourgadget.gadgetbridge.model.RecordedDataTypes;
+import nodomain.freeyourgadget.gadgetbridge.util.DateTimeUtils;
+import nodomain.freeyourgadget.gadgetbridge.util.FileUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.GB;
 
 
@@ -255,6 +259,7 @@ public class ActivitySummariesActivity extends AbstractListActivity<BaseActivity
                     processed = true;
                 } else if (itemId == R.id.activity_action_export) {
                     final List<String> paths = new ArrayList<>();
+                    final List<BaseActivitySummary> toExport = new ArrayList<>();
 
                     for (int i = 0; i < checked.size(); i++) {
                         if (checked.valueAt(i)) {
@@ -266,11 +271,16 @@ public class ActivitySummariesActivity extends AbstractListActivity<BaseActivity
                                 String gpxTrack = summary.getGpxTrack();
                                 if (gpxTrack != null) {
                                     paths.add(gpxTrack);
+                                    toExport.add(item);
                                 }
                             }
                         }
                     }
-                    shareMultiple(paths);
+                    if (toExport.size() > 1) {
+                        shareZip(toExport);
+                    } else {
+                        shareMultiple(paths);
+                    }
                     processed = true;
                 } else if (itemId == R.id.activity_action_select_all) {
                     for (int i = 0; i < getItemListView().getCount(); i++) {
@@ -406,6 +416,38 @@ public class ActivitySummariesActivity extends AbstractListActivity<BaseActivity
 
     }
 
+    /**
+     * Exports the track files of the given activities into a single zip file in the background,
+     * and shares it once done.
+     */
+    private void shareZip(final List<BaseActivitySummary> summaries) {
+        new Thread(() -> {
+            final File exportDir = new File(getCacheDir(), "export");
+            // only the last export is kept
+            FileUtils.deleteRecursively(exportDir);
+            //noinspection ResultOfMethodCallIgnored
+            exportDir.mkdirs();
+            final File zipFile = new File(exportDir, FileUtils.makeValidFileName("gadgetbridge-activities-" + DateTimeUtils.formatIso8601(new Date()) + ".zip"));
+            try {
+                final int exported = new ActivityTracksZipExporter().performExport(summaries, zipFile);
+                runOnUiThread(() -> {
+                    if (exported == 0) {
+                        GB.toast(this, "No selected activity contains a GPX track to share", Toast.LENGTH_SHORT, GB.ERROR);
+                        return;
+                    }
+                    final Intent intent = new Intent(Intent.ACTION_SEND);
+                    intent.setType("application/zip");
+                    intent.putExtra(Intent.EXTRA_STREAM, FileProvider.getUriForFile(this, getApplicationContext().getPackageName() + ".screenshot_provider", zipFile));
+                    intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    startActivity(Intent.createChooser(intent, "SHARE"));
+                });
+            } catch (final Exception e) {
+                LOG.error("Failed to export activities", e);
+                runOnUiThread(() -> GB.toast(this, "Failed to export activities", Toast.LENGTH_SHORT, GB.ERROR, e));
+            }
+        }, "Activity export").start();
+    }
+
     private void showActivityDetail(int position) {
         Intent ActivitySummaryDetailIntent = new Intent(this, ActivitySummaryDetail.class);
         Bundle bundle = new Bundle();
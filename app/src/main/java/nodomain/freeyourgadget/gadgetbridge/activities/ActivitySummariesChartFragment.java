@@ -179,7 +179,7 @@ public class ActivitySummariesChartFragment extends AbstractActivityChartFragmen
     public class RefreshTask extends DBAccess {
 
         public RefreshTask(String task, Context context) {
-            super(task, context);
+            super(task, context, true);
         }
 
         @Override
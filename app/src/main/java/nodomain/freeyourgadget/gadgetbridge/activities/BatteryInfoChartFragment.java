@@ -213,7 +213,7 @@ public class BatteryInfoChartFragment extends AbstractGBFragment {
     public class RefreshTask extends DBAccess {
 
         public RefreshTask(String task, Context context) {
-            super(task, context);
+            super(task, context, true);
         }
 
         @Override
@@ -57,13 +57,13 @@ import nodomain.freeyourgadget.gadgetbridge.R;
 import nodomain.freeyourgadget.gadgetbridge.activities.dashboard.AbstractDashboardWidget;
 import nodomain.freeyourgadget.gadgetbridge.activities.dashboard.DashboardActiveTimeWidget;
 import nodomain.freeyourgadget.gadgetbridge.activities.dashboard.DashboardCalendarActivity;
+import nodomain.freeyourgadget.gadgetbridge.activities.dashboard.DashboardDataLoader;
 import nodomain.freeyourgadget.gadgetbridge.activities.dashboard.DashboardDistanceWidget;
 import nodomain.freeyourgadget.gadgetbridge.activities.dashboard.DashboardGoalsWidget;
 import nodomain.freeyourgadget.gadgetbridge.activities.dashboard.DashboardSleepWidget;
 import nodomain.freeyourgadget.gadgetbridge.activities.dashboard.DashboardStepsWidget;
 import nodomain.freeyourgadget.gadgetbridge.activities.dashboard.DashboardTodayWidget;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
-import nodomain.freeyourgadget.gadgetbridge.util.DashboardUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.DateTimeUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.Prefs;
 
@@ -220,14 +220,21 @@ public class DashboardFragment extends Fragment {
         dashboardData.hrIntervalSecs = prefs.getInt("dashboard_widget_today_hr_interval", 1) * 60;
         dashboardData.timeTo = (int) (day.getTimeInMillis() / 1000);
         dashboardData.timeFrom = DateTimeUtils.shiftDays(dashboardData.timeTo, -1);
+        dashboardData.showActivities = getWidgetsOrder().contains("today");
+        dashboardData.load();
         draw();
     }
 
-    private void draw() {
+    private List<String> getWidgetsOrder() {
         Prefs prefs = GBApplication.getPrefs();
         String defaultWidgetsOrder = String.join(",", getResources().getStringArray(R.array.pref_dashboard_widgets_order_values));
         String widgetsOrderPref = prefs.getString("pref_dashboard_widgets_order", defaultWidgetsOrder);
-        List<String> widgetsOrder = Arrays.asList(widgetsOrderPref.split(","));
+        return Arrays.asList(widgetsOrderPref.split(","));
+    }
+
+    private void draw() {
+        Prefs prefs = GBApplication.getPrefs();
+        List<String> widgetsOrder = getWidgetsOrder();
 
         Calendar today = GregorianCalendar.getInstance();
         if (DateTimeUtils.isSameDay(today, day)) {
@@ -330,15 +337,23 @@ public class DashboardFragment extends Fragment {
     /**
      * This class serves as a data collection object for all data points used by the various
      * dashboard widgets. Since retrieving this data can be costly, this class makes sure it will
-     * only be done once. It will be passed to every widget, making sure they have the necessary
-     * data available.
+     * only be done once, by a single {@link DashboardDataLoader} pass for all widgets. It will be
+     * passed to every widget, which subscribe to be notified once the data is available.
      */
     public static class DashboardData implements Serializable {
+        public interface Listener {
+            /**
+             * Called on the main thread once the data was loaded.
+             */
+            void onDashboardDataLoaded();
+        }
+
         public boolean showAllDevices;
         public Set<String> showDeviceList;
         public int hrIntervalSecs;
         public int timeFrom;
         public int timeTo;
+        public boolean showActivities = true;
         public final List<GeneralizedActivity> generalizedActivities = Collections.synchronizedList(new ArrayList<>());
         private int stepsTotal;
         private float stepsGoalFactor;
@@ -348,8 +363,13 @@ public class DashboardFragment extends Fragment {
         private float distanceGoalFactor;
         private long activeMinutesTotal;
         private float activeMinutesGoalFactor;
+        private boolean loaded;
+
+        private transient boolean loading;
+        private transient int generation;
+        private transient List<Listener> listeners;
 
-        public void clear() {
+        public synchronized void clear() {
             stepsTotal = 0;
             stepsGoalFactor = 0;
             sleepTotalMinutes = 0;
@@ -359,6 +379,10 @@ public class DashboardFragment extends Fragment {
             activeMinutesTotal = 0;
             activeMinutesGoalFactor = 0;
             generalizedActivities.clear();
+            loaded = false;
+            loading = false;
+            // results of a load still running are dropped
+            generation++;
         }
 
         public boolean isEmpty() {
@@ -373,51 +397,104 @@ public class DashboardFragment extends Fragment {
                     generalizedActivities.isEmpty());
         }
 
+        public synchronized boolean isLoaded() {
+            return loaded;
+        }
+
+        /**
+         * Starts loading the data of all widgets in the background, unless it is loaded or being
+         * loaded already.
+         */
+        public synchronized void load() {
+            if (loaded || loading) {
+                return;
+            }
+            loading = true;
+            final int loadGeneration = generation;
+            DashboardDataLoader.load(this, showActivities, result -> onLoaded(loadGeneration, result));
+        }
+
+        /**
+         * Registers a listener for the data, which is notified right away if it was loaded already,
+         * and starts loading it otherwise. Must be called on the main thread.
+         */
+        public void subscribe(final Listener listener) {
+            final boolean isLoaded;
+            synchronized (this) {
+                if (listeners == null) {
+                    listeners = new ArrayList<>();
+                }
+                if (!listeners.contains(listener)) {
+                    listeners.add(listener);
+                }
+                isLoaded = loaded;
+                load();
+            }
+            if (isLoaded) {
+                listener.onDashboardDataLoaded();
+            }
+        }
+
+        public synchronized void unsubscribe(final Listener listener) {
+            if (listeners != null) {
+                listeners.remove(listener);
+            }
+        }
+
+        private void onLoaded(final int loadGeneration, final DashboardDataLoader.Result result) {
+            final List<Listener> toNotify;
+            synchronized (this) {
+                if (loadGeneration != generation) {
+                    return;
+                }
+                stepsTotal = result.stepsTotal;
+                stepsGoalFactor = result.stepsGoalFactor;
+                sleepTotalMinutes = result.sleepTotalMinutes;
+                sleepGoalFactor = result.sleepGoalFactor;
+                distanceTotalMeters = result.distanceTotalMeters;
+                distanceGoalFactor = result.distanceGoalFactor;
+                activeMinutesTotal = result.activeMinutesTotal;
+                activeMinutesGoalFactor = result.activeMinutesGoalFactor;
+                generalizedActivities.clear();
+                generalizedActivities.addAll(result.generalizedActivities);
+                loading = false;
+                loaded = true;
+                toNotify = listeners != null ? new ArrayList<>(listeners) : Collections.emptyList();
+            }
+            for (final Listener listener : toNotify) {
+                listener.onDashboardDataLoaded();
+            }
+        }
+
         public synchronized int getStepsTotal() {
-            if (stepsTotal == 0)
-                stepsTotal = DashboardUtils.getStepsTotal(this);
             return stepsTotal;
         }
 
         public synchronized float getStepsGoalFactor() {
-            if (stepsGoalFactor == 0)
-                stepsGoalFactor = DashboardUtils.getStepsGoalFactor(this);
             return stepsGoalFactor;
         }
 
         public synchronized float getDistanceTotal() {
-            if (distanceTotalMeters == 0)
-                distanceTotalMeters = DashboardUtils.getDistanceTotal(this);
             return distanceTotalMeters;
         }
 
         public synchronized float getDistanceGoalFactor() {
-            if (distanceGoalFactor == 0)
-                distanceGoalFactor = DashboardUtils.getDistanceGoalFactor(this);
             return distanceGoalFactor;
         }
 
         public synchronized long getActiveMinutesTotal() {
-            if (activeMinutesTotal == 0)
-                activeMinutesTotal = DashboardUtils.getActiveMinutesTotal(this);
             return activeMinutesTotal;
         }
 
         public synchronized float getActiveMinutesGoalFactor() {
-            if (activeMinutesGoalFactor == 0)
-                activeMinutesGoalFactor = DashboardUtils.getActiveMinutesGoalFactor(this);
             return activeMinutesGoalFactor;
         }
 
         public synchronized long getSleepMinutesTotal() {
-            if (sleepTotalMinutes == 0)
-                sleepTotalMinutes = DashboardUtils.getSleepMinutesTotal(this);
             return sleepTotalMinutes;
         }
 
         public synchronized float getSleepMinutesGoalFactor() {
-            if (sleepGoalFactor == 0)
-                sleepGoalFactor = DashboardUtils.getSleepMinutesGoalFactor(this);
             return sleepGoalFactor;
         }
 
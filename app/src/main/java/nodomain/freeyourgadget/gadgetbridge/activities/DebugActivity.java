@@ -123,8 +123,11 @@ import nodomain.freeyourgadget.gadgetbridge.model.NotificationType;
 import nodomain.freeyourgadget.gadgetbridge.model.RecordedDataTypes;
 import nodomain.freeyourgadget.gadgetbridge.model.Weather;
 import nodomain.freeyourgadget.gadgetbridge.model.WeatherSpec;
+import nodomain.freeyourgadget.gadgetbridge.service.DeviceCommandExecutor;
+import nodomain.freeyourgadget.gadgetbridge.service.btle.BtLEQueue;
 import nodomain.freeyourgadget.gadgetbridge.service.serial.GBDeviceProtocol;
 import nodomain.freeyourgadget.gadgetbridge.util.GB;
+import nodomain.freeyourgadget.gadgetbridge.util.LatencyHistogram;
 import nodomain.freeyourgadget.gadgetbridge.util.PendingIntentUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.Prefs;
 import nodomain.freeyourgadget.gadgetbridge.util.StringUtils;
@@ -562,6 +565,14 @@ public class DebugActivity extends AbstractGBActivity {
             }
         });
 
+        Button showPerformanceCounters = findViewById(R.id.showPerformanceCounters);
+        showPerformanceCounters.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                displayPerformanceCounters();
+            }
+        });
+
         Button addDeviceButtonDebug = findViewById(R.id.addDeviceButtonDebug);
         addDeviceButtonDebug.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -1082,6 +1093,48 @@ public class DebugActivity extends AbstractGBActivity {
         return TextUtils.join(separator, mac).toUpperCase(Locale.ROOT);
     }
 
+    private void displayPerformanceCounters() {
+        final String counters = getPerformanceCounters();
+
+        new MaterialAlertDialogBuilder(DebugActivity.this)
+                .setCancelable(true)
+                .setTitle("Performance Counters")
+                .setMessage(counters)
+                .setPositiveButton(R.string.ok, (dialog, which) -> {
+                })
+                .setNeutralButton(android.R.string.copy, (dialog, which) -> {
+                    final ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+                    ClipData clip = ClipData.newPlainText("Performance Counters", counters);
+                    clipboard.setPrimaryClip(clip);
+                })
+                .show();
+    }
+
+    private String getPerformanceCounters() {
+        final StringBuilder builder = new StringBuilder();
+
+        final long[] deviceCacheStats = DBHelper.getDeviceCacheStats();
+        builder.append("Device lookups: ").append(deviceCacheStats[0]).append(" cached, ")
+                .append(deviceCacheStats[1]).append(" queried\n");
+
+        builder.append("\nDatabase locks:\n");
+        for (final Map.Entry<String, LatencyHistogram> e : GBApplication.getDbLockHistograms().entrySet()) {
+            builder.append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+        }
+
+        builder.append("\nDevice commands:\n");
+        for (final Map.Entry<String, String> e : DeviceCommandExecutor.getMetrics().entrySet()) {
+            builder.append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+        }
+
+        builder.append("\nBluetooth LE latencies:\n");
+        for (final Map.Entry<String, LatencyHistogram> e : BtLEQueue.getLatencyHistograms().entrySet()) {
+            builder.append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+        }
+
+        return builder.toString();
+    }
+
     private void displayWeatherInfo(final WeatherSpec weatherSpec) {
         final String weatherInfo = getWeatherInfo(weatherSpec);
 
@@ -227,7 +227,7 @@ public class DevicesFragment extends Fragment {
 
     public class RefreshTask extends DBAccess {
         public RefreshTask(String task, Context context) {
-            super(task, context);
+            super(task, context, true);
         }
 
         @Override
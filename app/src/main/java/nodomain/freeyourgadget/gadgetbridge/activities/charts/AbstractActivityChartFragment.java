@@ -16,6 +16,7 @@
     along with this program.  If not, see <https://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.activities.charts;
 
+import android.app.Activity;
 import android.util.TypedValue;
 
 import androidx.core.content.ContextCompat;
@@ -157,8 +158,22 @@ public abstract class AbstractActivityChartFragment<D extends ChartsData> extend
      * @param tsTo
      */
     protected List<? extends ActivitySample> getAllSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
+        ActivitySampleCache sampleCache = null;
+        Activity activity = getActivity();
+        if (activity instanceof ActivityChartsActivity) {
+            sampleCache = ((ActivityChartsActivity) activity).mActivitySampleCache;
+            List<ActivitySample> cachedSamples = sampleCache.get(device, tsFrom, tsTo);
+            if (cachedSamples != null) {
+                return cachedSamples;
+            }
+        }
+
         SampleProvider<? extends ActivitySample> provider = getProvider(db, device);
-        return provider.getAllActivitySamples(tsFrom, tsTo);
+        List<? extends ActivitySample> samples = provider.getAllActivitySamples(tsFrom, tsTo);
+        if (sampleCache != null && samples != null) {
+            sampleCache.put(device, tsFrom, tsTo, samples);
+        }
+        return samples;
     }
 
     protected List<? extends AbstractActivitySample> getActivitySamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
@@ -424,6 +439,17 @@ public abstract class AbstractActivityChartFragment<D extends ChartsData> extend
     }
 
     protected List<? extends ActivitySample> getSamplesofSleep(DBHandler db, GBDevice device) {
+        int[] range = getSleepTimestampRange();
+        List<ActivitySample> samples = (List<ActivitySample>) getSamples(db, device, range[0], range[1]);
+        ensureStartAndEndSamples(samples, range[0], range[1]);
+        return samples;
+    }
+
+    /**
+     * Returns the range of {@link #getSamplesofSleep(DBHandler, GBDevice)}, from noon of the start
+     * day to noon of the end day.
+     */
+    protected int[] getSleepTimestampRange() {
         int SLEEP_HOUR_LIMIT = 12;
 
         int tsStart = getTSStart();
@@ -441,9 +467,7 @@ public abstract class AbstractActivityChartFragment<D extends ChartsData> extend
         day.set(Calendar.SECOND, 0);
         tsEnd = toTimestamp(day.getTime());
 
-        List<ActivitySample> samples = (List<ActivitySample>) getSamples(db, device, tsStart, tsEnd);
-        ensureStartAndEndSamples(samples, tsStart, tsEnd);
-        return samples;
+        return new int[]{tsStart, tsEnd};
     }
 
     protected void ensureStartAndEndSamples(List<ActivitySample> samples, int tsStart, int tsEnd) {
@@ -333,7 +333,7 @@ public abstract class AbstractChartFragment<D extends ChartsData> extends Abstra
         private D chartsData;
 
         public RefreshTask(final String task, final Context context) {
-            super(task, context);
+            super(task, context, true);
         }
 
         @Override
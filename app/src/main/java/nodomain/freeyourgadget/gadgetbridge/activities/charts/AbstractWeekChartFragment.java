@@ -56,6 +56,7 @@ import nodomain.freeyourgadget.gadgetbridge.R;
 import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityAmounts;
+import nodomain.freeyourgadget.gadgetbridge.model.DailyTotals;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
 import nodomain.freeyourgadget.gadgetbridge.util.LimitedQueue;
 
@@ -145,8 +146,9 @@ public abstract class AbstractWeekChartFragment extends AbstractActivityChartFra
         long daily_balance = 0;
         TOTAL_DAYS_FOR_AVERAGE=0;
 
+        ActivityAmounts[] amountsOfDays = getActivityAmountsForDays(db, day, TOTAL_DAYS, device);
         for (int counter = 0; counter < TOTAL_DAYS; counter++) {
-            ActivityAmounts amounts = getActivityAmountsForDay(db, day, device);
+            ActivityAmounts amounts = amountsOfDays[counter];
             daily_balance=calculateBalance(amounts);
             if (daily_balance > 0) {
                 TOTAL_DAYS_FOR_AVERAGE++;
@@ -320,22 +322,6 @@ public abstract class AbstractWeekChartFragment extends AbstractActivityChartFra
         yAxisRight.setTextColor(CHART_TEXT_COLOR);
     }
 
-    private List<? extends ActivitySample> getSamplesOfDay(DBHandler db, Calendar day, int offsetHours, GBDevice device) {
-        int startTs;
-        int endTs;
-
-        day = (Calendar) day.clone(); // do not modify the caller's argument
-        day.set(Calendar.HOUR_OF_DAY, 0);
-        day.set(Calendar.MINUTE, 0);
-        day.set(Calendar.SECOND, 0);
-        day.add(Calendar.HOUR, offsetHours);
-
-        startTs = (int) (day.getTimeInMillis() / 1000);
-        endTs = startTs + 24 * 60 * 60 - 1;
-
-        return getSamples(db, device, startTs, endTs);
-    }
-
     @Override
     protected List<? extends ActivitySample> getSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
         return super.getAllSamples(db, device, tsFrom, tsTo);
@@ -370,22 +356,47 @@ public abstract class AbstractWeekChartFragment extends AbstractActivityChartFra
     }
 
     private ActivityAmounts getActivityAmountsForDay(DBHandler db, Calendar day, GBDevice device) {
+        return getActivityAmountsForDays(db, day, 1, device)[0];
+    }
 
+    /**
+     * Returns the activity amounts of the given number of days, starting at the given day. Days
+     * that are not cached yet are loaded together, see
+     * {@link DailyTotals#getActivityAmountsForDays(DBHandler, GBDevice, Calendar, int, int)}.
+     */
+    private ActivityAmounts[] getActivityAmountsForDays(DBHandler db, Calendar firstDay, int days, GBDevice device) {
         LimitedQueue<Integer, ActivityAmounts> activityAmountCache = null;
-        ActivityAmounts amounts = null;
+        ActivityAmounts[] amounts = new ActivityAmounts[days];
+        int[] keys = new int[days];
+
+        Calendar day = (Calendar) firstDay.clone(); // do not modify the caller's argument
+        for (int i = 0; i < days; i++) {
+            keys[i] = (int) (day.getTimeInMillis() / 1000) + (mOffsetHours * 3600);
+            day.add(Calendar.DATE, 1);
+        }
 
         Activity activity = getActivity();
-        int key = (int) (day.getTimeInMillis() / 1000) + (mOffsetHours * 3600);
+        boolean allCached = true;
         if (activity != null) {
             activityAmountCache = ((ActivityChartsActivity) activity).mActivityAmountCache;
-            amounts = activityAmountCache.lookup(key);
+            for (int i = 0; i < days; i++) {
+                amounts[i] = activityAmountCache.lookup(keys[i]);
+                allCached &= amounts[i] != null;
+            }
+        } else {
+            allCached = false;
+        }
+        if (allCached) {
+            return amounts;
         }
 
-        if (amounts == null) {
-            ActivityAnalysis analysis = new ActivityAnalysis();
-            amounts = analysis.calculateActivityAmounts(getSamplesOfDay(db, day, mOffsetHours, device));
-            if (activityAmountCache != null) {
-                activityAmountCache.add(key, amounts);
+        ActivityAmounts[] loaded = new DailyTotals().getActivityAmountsForDays(db, device, firstDay, days, mOffsetHours);
+        for (int i = 0; i < days; i++) {
+            if (amounts[i] == null) {
+                amounts[i] = loaded[i];
+                if (activityAmountCache != null) {
+                    activityAmountCache.add(keys[i], amounts[i]);
+                }
             }
         }
 
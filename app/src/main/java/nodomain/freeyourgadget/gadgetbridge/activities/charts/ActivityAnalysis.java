@@ -20,9 +20,13 @@ package nodomain.freeyourgadget.gadgetbridge.activities.charts;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 
+import nodomain.freeyourgadget.gadgetbridge.database.ActivityRollups;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleVisitor;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityAmount;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityAmounts;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
@@ -37,17 +41,99 @@ public class ActivityAnalysis {
     private int maxSpeed = 0;
 
     public ActivityAmounts calculateActivityAmounts(List<? extends ActivitySample> samples) {
-        ActivityAmount deepSleep = new ActivityAmount(ActivityKind.TYPE_DEEP_SLEEP);
-        ActivityAmount lightSleep = new ActivityAmount(ActivityKind.TYPE_LIGHT_SLEEP);
-        ActivityAmount remSleep = new ActivityAmount(ActivityKind.TYPE_REM_SLEEP);
-        ActivityAmount notWorn = new ActivityAmount(ActivityKind.TYPE_NOT_WORN);
-        ActivityAmount activity = new ActivityAmount(ActivityKind.TYPE_ACTIVITY);
-
-        ActivityAmount previousAmount = null;
-        ActivitySample previousSample = null;
+        final AmountsVisitor visitor = new AmountsVisitor();
         for (ActivitySample sample : samples) {
+            visitor.visit(sample.getTimestamp(), sample.getRawKind(), sample.getKind(),
+                    sample.getIntensity(), sample.getSteps(), sample.getHeartRate());
+        }
+        return visitor.getResult();
+    }
+
+    /**
+     * Same as {@link #calculateActivityAmounts(List)}, but streams the samples from the provider
+     * instead of loading all of them into memory.
+     */
+    public ActivityAmounts calculateActivityAmounts(SampleProvider<?> provider, int timestampFrom, int timestampTo) {
+        final AmountsVisitor visitor = new AmountsVisitor();
+        provider.visitAllActivitySamples(timestampFrom, timestampTo, visitor);
+        return visitor.getResult();
+    }
+
+    /**
+     * Calculates the activity amounts of several consecutive days in a single pass over the
+     * samples. The result for each day is the same as calling
+     * {@link #calculateActivityAmounts(SampleProvider, int, int)} with the local day, as defined by
+     * {@link ActivityRollups#getStartOfDay(Calendar, int)}, shifted by the given offset.
+     *
+     * @param firstDay the first day, the time of day is ignored
+     * @param days the number of days
+     * @param offsetHours the offset of each day from local midnight, e.g. -12 for sleep
+     * @return the activity amounts, one per day
+     */
+    public ActivityAmounts[] calculateDailyActivityAmounts(SampleProvider<?> provider, Calendar firstDay, int days, int offsetHours) {
+        final DailyAmountsVisitor visitor = new DailyAmountsVisitor(firstDay, days, offsetHours);
+        if (days > 0) {
+            provider.visitAllActivitySamples(visitor.dayStarts[0], visitor.dayStarts[days] - 1, visitor);
+        }
+        return visitor.getResult();
+    }
+
+    private class DailyAmountsVisitor implements SampleVisitor {
+        /** The start of each day, followed by the end of the last one */
+        private final int[] dayStarts;
+        private final AmountsVisitor[] visitors;
+        private int currentDay = 0;
+
+        DailyAmountsVisitor(Calendar firstDay, int days, int offsetHours) {
+            dayStarts = new int[days + 1];
+            visitors = new AmountsVisitor[days];
+
+            Calendar day = (Calendar) firstDay.clone(); // do not modify the caller's argument
+            for (int i = 0; i <= days; i++) {
+                // the same local days as the rollups, so they are 23 or 25 hours long on DST changes
+                dayStarts[i] = ActivityRollups.getStartOfDay(day, offsetHours);
+                day.add(Calendar.DATE, 1);
+            }
+            for (int i = 0; i < days; i++) {
+                visitors[i] = new AmountsVisitor();
+            }
+        }
+
+        @Override
+        public void visit(int timestamp, int rawKind, int kind, float intensity, int steps, int heartRate) {
+            while (currentDay < visitors.length && dayStarts[currentDay + 1] <= timestamp) {
+                currentDay++;
+            }
+            if (currentDay < visitors.length && dayStarts[currentDay] <= timestamp) {
+                visitors[currentDay].visit(timestamp, rawKind, kind, intensity, steps, heartRate);
+            }
+        }
+
+        ActivityAmounts[] getResult() {
+            ActivityAmounts[] result = new ActivityAmounts[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                result[i] = visitors[i].getResult();
+            }
+            return result;
+        }
+    }
+
+    private class AmountsVisitor implements SampleVisitor {
+        private final ActivityAmount deepSleep = new ActivityAmount(ActivityKind.TYPE_DEEP_SLEEP);
+        private final ActivityAmount lightSleep = new ActivityAmount(ActivityKind.TYPE_LIGHT_SLEEP);
+        private final ActivityAmount remSleep = new ActivityAmount(ActivityKind.TYPE_REM_SLEEP);
+        private final ActivityAmount notWorn = new ActivityAmount(ActivityKind.TYPE_NOT_WORN);
+        private final ActivityAmount activity = new ActivityAmount(ActivityKind.TYPE_ACTIVITY);
+
+        private ActivityAmount previousAmount = null;
+        private boolean hasPreviousSample = false;
+        private int previousTimestamp;
+        private int previousRawKind;
+
+        @Override
+        public void visit(int timestamp, int rawKind, int kind, float intensity, int steps, int heartRate) {
             ActivityAmount amount;
-            switch (sample.getKind()) {
+            switch (kind) {
                 case ActivityKind.TYPE_DEEP_SLEEP:
                     amount = deepSleep;
                     break;
@@ -66,14 +152,13 @@ public class ActivityAnalysis {
                     break;
             }
 
-            int steps = sample.getSteps();
             if (steps > 0) {
                 amount.addSteps(steps);
             }
 
-            if (previousSample != null) {
-                long timeDifference = sample.getTimestamp() - previousSample.getTimestamp();
-                if (previousSample.getRawKind() == sample.getRawKind()) {
+            if (hasPreviousSample) {
+                long timeDifference = timestamp - previousTimestamp;
+                if (previousRawKind == rawKind) {
                     amount.addSeconds(timeDifference);
                 } else {
                     long sharedTimeDifference = (long) (timeDifference / 2.0f);
@@ -82,7 +167,7 @@ public class ActivityAnalysis {
                 }
 
                 // add time
-                if (steps > 0 && sample.getKind() == ActivityKind.TYPE_ACTIVITY) {
+                if (steps > 0 && kind == ActivityKind.TYPE_ACTIVITY) {
                     if (steps > maxSpeed) {
                         maxSpeed = steps;
                     }
@@ -98,33 +183,37 @@ public class ActivityAnalysis {
                 }
             }
 
-            amount.setStartDate(sample.getTimestamp());
-            amount.setEndDate(sample.getTimestamp());
+            amount.setStartDate(timestamp);
+            amount.setEndDate(timestamp);
 
             previousAmount = amount;
-            previousSample = sample;
+            hasPreviousSample = true;
+            previousTimestamp = timestamp;
+            previousRawKind = rawKind;
         }
 
-        ActivityAmounts result = new ActivityAmounts();
-        if (deepSleep.getTotalSeconds() > 0) {
-            result.addAmount(deepSleep);
-        }
-        if (lightSleep.getTotalSeconds() > 0) {
-            result.addAmount(lightSleep);
-        }
-        if (remSleep.getTotalSeconds() > 0) {
-            result.addAmount(remSleep);
-        }
-        if (activity.getTotalSeconds() > 0) {
-            result.addAmount(activity);
-        }
-        if (notWorn.getTotalSeconds() > 0) {
-            result.addAmount(notWorn);
-        }
+        ActivityAmounts getResult() {
+            ActivityAmounts result = new ActivityAmounts();
+            if (deepSleep.getTotalSeconds() > 0) {
+                result.addAmount(deepSleep);
+            }
+            if (lightSleep.getTotalSeconds() > 0) {
+                result.addAmount(lightSleep);
+            }
+            if (remSleep.getTotalSeconds() > 0) {
+                result.addAmount(remSleep);
+            }
+            if (activity.getTotalSeconds() > 0) {
+                result.addAmount(activity);
+            }
+            if (notWorn.getTotalSeconds() > 0) {
+                result.addAmount(notWorn);
+            }
 
-        result.calculatePercentages();
+            result.calculatePercentages();
 
-        return result;
+            return result;
+        }
     }
 
     int calculateTotalSteps(List<? extends ActivitySample> samples) {
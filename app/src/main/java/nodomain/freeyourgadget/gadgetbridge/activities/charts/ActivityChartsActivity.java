@@ -16,11 +16,16 @@
     along with this program.  If not, see <https://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.activities.charts;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Bundle;
 
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentStatePagerAdapter;
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -39,6 +44,33 @@ import nodomain.freeyourgadget.gadgetbridge.util.Prefs;
 
 public class ActivityChartsActivity extends AbstractChartsActivity {
     LimitedQueue<Integer, ActivityAmounts> mActivityAmountCache = new LimitedQueue<>(60);
+    final ActivitySampleCache mActivitySampleCache = new ActivitySampleCache();
+
+    private final BroadcastReceiver mNewDataReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // new samples were written, nothing cached so far can be trusted anymore
+            mActivitySampleCache.clear();
+            mActivityAmountCache = new LimitedQueue<>(60);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        // register before the fragments, so that the caches are cleared before they refresh
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(GBApplication.ACTION_NEW_DATA);
+        filter.addAction(ChartsHost.REFRESH);
+        LocalBroadcastManager.getInstance(this).registerReceiver(mNewDataReceiver, filter);
+
+        super.onCreate(savedInstanceState);
+    }
+
+    @Override
+    protected void onDestroy() {
+        LocalBroadcastManager.getInstance(this).unregisterReceiver(mNewDataReceiver);
+        super.onDestroy();
+    }
 
     @Override
     protected AbstractFragmentPagerAdapter createFragmentPagerAdapter(final FragmentManager fragmentManager) {
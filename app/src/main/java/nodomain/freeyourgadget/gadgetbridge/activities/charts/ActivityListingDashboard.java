@@ -210,18 +210,11 @@ public class ActivityListingDashboard extends MaterialDialogFragment {
 
     private ActivitySession get_data(GBDevice gbDevice, DBHandler db, int timeFrom, int timeTo) {
 
-        List<ActivitySession> stepSessions;
-        List<? extends ActivitySample> activitySamples = getAllSamples(db, gbDevice, timeFrom, timeTo);
         StepAnalysis stepAnalysis = new StepAnalysis();
-
-        boolean isEmptySummary = false;
-        if (activitySamples != null) {
-            stepSessions = stepAnalysis.calculateStepSessions(activitySamples);
-            if (stepSessions.toArray().length == 0) {
-                isEmptySummary = true;
-            }
-            stepSessionsSummary = stepAnalysis.calculateSummary(stepSessions, isEmptySummary);
-        }
+        // streamed, and reused for past days
+        List<ActivitySession> stepSessions = stepAnalysis.calculateStepSessions(getProvider(db, gbDevice), timeFrom, timeTo);
+        boolean isEmptySummary = stepSessions.isEmpty();
+        stepSessionsSummary = stepAnalysis.calculateSummary(stepSessions, isEmptySummary);
         return stepSessionsSummary;
     }
 
@@ -291,7 +284,7 @@ public class ActivityListingDashboard extends MaterialDialogFragment {
     public class RefreshTask extends DBAccess {
 
         public RefreshTask(String task, Context context) {
-            super(task, context);
+            super(task, context, true);
         }
 
         @Override
@@ -0,0 +1,199 @@
+package nodomain.freeyourgadget.gadgetbridge.activities.charts;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.entities.AbstractActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
+
+/**
+ * A size-bounded LRU cache of the activity samples queried by the chart fragments, so that
+ * switching between the tabs of the same day, or going back and forth between days, does not
+ * query the database again.
+ *
+ * The samples are stored as primitive columns instead of entities. Cached ranges that reach into
+ * the present expire after a short while, since new samples may be recorded for them at any
+ * time. Everything else must be invalidated with {@link #clear()} when new data arrives.
+ */
+public class ActivitySampleCache {
+    private static final int MAX_ENTRIES = 32;
+    private static final long LIVE_ENTRY_TTL_MILLIS = 60 * 1000L;
+
+    private final Map<String, SampleColumns> entries = new LinkedHashMap<String, SampleColumns>(MAX_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, SampleColumns> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Returns a new, modifiable list of the cached samples of the device between the given
+     * timestamps, or null if they are not cached.
+     */
+    @Nullable
+    public synchronized List<ActivitySample> get(final GBDevice device, final int tsFrom, final int tsTo) {
+        final String key = getKey(device, tsFrom, tsTo);
+        final SampleColumns columns = entries.get(key);
+        if (columns == null) {
+            return null;
+        }
+        if (columns.expiresAt != 0 && columns.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+
+        final List<ActivitySample> samples = new ArrayList<>(columns.timestamps.length);
+        for (int i = 0; i < columns.timestamps.length; i++) {
+            samples.add(new CachedActivitySample(columns, i));
+        }
+        return samples;
+    }
+
+    public synchronized void put(final GBDevice device, final int tsFrom, final int tsTo, final List<? extends ActivitySample> samples) {
+        final long now = System.currentTimeMillis();
+        final long expiresAt = tsTo * 1000L >= now ? now + LIVE_ENTRY_TTL_MILLIS : 0;
+        entries.put(getKey(device, tsFrom, tsTo), new SampleColumns(samples, expiresAt));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static String getKey(final GBDevice device, final int tsFrom, final int tsTo) {
+        return device.getAddress() + "/" + tsFrom + "/" + tsTo;
+    }
+
+    private static final class SampleColumns {
+        private final long expiresAt;
+        private final SampleProvider<?> provider;
+        private final long deviceId;
+        private final long userId;
+
+        private final int[] timestamps;
+        // the activity kinds are bit flags, which do not fit in smaller types
+        private final int[] rawKinds;
+        private final int[] kinds;
+        private final int[] rawIntensities;
+        private final float[] intensities;
+        private final int[] steps;
+        private final short[] heartRates;
+
+        private SampleColumns(final List<? extends ActivitySample> samples, final long expiresAt) {
+            this.expiresAt = expiresAt;
+
+            final int size = samples.size();
+            timestamps = new int[size];
+            rawKinds = new int[size];
+            kinds = new int[size];
+            rawIntensities = new int[size];
+            intensities = new float[size];
+            steps = new int[size];
+            heartRates = new short[size];
+
+            SampleProvider<?> firstProvider = null;
+            long firstDeviceId = 0;
+            long firstUserId = 0;
+            for (int i = 0; i < size; i++) {
+                final ActivitySample sample = samples.get(i);
+                timestamps[i] = sample.getTimestamp();
+                rawKinds[i] = sample.getRawKind();
+                kinds[i] = sample.getKind();
+                rawIntensities[i] = sample.getRawIntensity();
+                intensities[i] = sample.getIntensity();
+                steps[i] = sample.getSteps();
+                heartRates[i] = (short) sample.getHeartRate();
+
+                if (i == 0) {
+                    firstProvider = sample.getProvider();
+                    if (sample instanceof AbstractActivitySample) {
+                        firstDeviceId = ((AbstractActivitySample) sample).getDeviceId();
+                        firstUserId = ((AbstractActivitySample) sample).getUserId();
+                    }
+                }
+            }
+            provider = firstProvider;
+            deviceId = firstDeviceId;
+            userId = firstUserId;
+        }
+    }
+
+    /**
+     * A read-only view on one row of the cached columns.
+     */
+    private static final class CachedActivitySample extends AbstractActivitySample {
+        private final SampleColumns columns;
+        private final int index;
+
+        private CachedActivitySample(final SampleColumns columns, final int index) {
+            this.columns = columns;
+            this.index = index;
+            setProvider(columns.provider);
+        }
+
+        @Override
+        public int getTimestamp() {
+            return columns.timestamps[index];
+        }
+
+        @Override
+        public int getRawKind() {
+            return columns.rawKinds[index];
+        }
+
+        @Override
+        public int getKind() {
+            return columns.kinds[index];
+        }
+
+        @Override
+        public int getRawIntensity() {
+            return columns.rawIntensities[index];
+        }
+
+        @Override
+        public float getIntensity() {
+            return columns.intensities[index];
+        }
+
+        @Override
+        public int getSteps() {
+            return columns.steps[index];
+        }
+
+        @Override
+        public int getHeartRate() {
+            return columns.heartRates[index];
+        }
+
+        @Override
+        public long getDeviceId() {
+            return columns.deviceId;
+        }
+
+        @Override
+        public long getUserId() {
+            return columns.userId;
+        }
+
+        @Override
+        public void setTimestamp(final int timestamp) {
+            throw new UnsupportedOperationException("cached samples are read-only");
+        }
+
+        @Override
+        public void setUserId(final long userId) {
+            throw new UnsupportedOperationException("cached samples are read-only");
+        }
+
+        @Override
+        public void setDeviceId(final long deviceId) {
+            throw new UnsupportedOperationException("cached samples are read-only");
+        }
+    }
+}
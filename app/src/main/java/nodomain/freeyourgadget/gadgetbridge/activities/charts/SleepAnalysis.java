@@ -16,10 +16,17 @@
     along with this program.  If not, see <https://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.activities.charts;
 
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import nodomain.freeyourgadget.gadgetbridge.GBApplication;
+import nodomain.freeyourgadget.gadgetbridge.database.ActivitySessionCache;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleVisitor;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
 
@@ -28,73 +35,166 @@ public class SleepAnalysis {
     public static final long MIN_SESSION_LENGTH = 5 * 60;
     public static final long MAX_WAKE_PHASE_LENGTH = 2 * 60 * 60;
 
+    // the sessions only depend on the constants above, bump when changing the analysis
+    private static final int PARAMETERS = 1;
+    private static final int SESSION_BYTES = 5 * 4;
+
     public List<SleepSession> calculateSleepSessions(List<? extends ActivitySample> samples) {
-        List<SleepSession> result = new ArrayList<>();
+        final SleepSessionsVisitor visitor = new SleepSessionsVisitor();
+        for (ActivitySample sample : samples) {
+            visitor.visit(sample.getTimestamp(), sample.getRawKind(), sample.getKind(),
+                    sample.getIntensity(), sample.getSteps(), sample.getHeartRate());
+        }
+        return visitor.getResult();
+    }
 
-        ActivitySample previousSample = null;
-        Date sleepStart = null;
-        Date sleepEnd = null;
-        long lightSleepDuration = 0;
-        long deepSleepDuration = 0;
-        long remSleepDuration = 0;
-        long durationSinceLastSleep = 0;
+    /**
+     * Same as {@link #calculateSleepSessions(List)}, but streams the samples from the provider
+     * instead of loading all of them into memory. The sessions of past ranges are stored in the
+     * {@link ActivitySessionCache} and reused until samples in the range change.
+     */
+    public List<SleepSession> calculateSleepSessions(SampleProvider<?> provider, int timestampFrom, int timestampTo) {
+        final List<SleepSession> cached = getCachedSleepSessions(provider, timestampFrom, timestampTo);
+        if (cached != null) {
+            return cached;
+        }
+        final long dbWriteGeneration = GBApplication.getDbWriteGeneration();
+        final SleepSessionsVisitor visitor = new SleepSessionsVisitor();
+        provider.visitAllActivitySamples(timestampFrom, timestampTo, visitor);
+        final List<SleepSession> result = visitor.getResult();
+        ActivitySessionCache.put(provider, ActivitySessionCache.TYPE_SLEEP, timestampFrom, timestampTo, PARAMETERS, encode(result), dbWriteGeneration);
+        return result;
+    }
 
-        for (ActivitySample sample : samples) {
-            if (isSleep(sample)) {
+    /**
+     * Same as {@link #calculateSleepSessions(List)}, for the samples of the given range loaded from
+     * the given provider, but reuses the sessions stored for that range, if any.
+     *
+     * @param dbWriteGeneration the {@link GBApplication#getDbWriteGeneration()} from before the
+     *                          samples were loaded
+     */
+    public List<SleepSession> calculateSleepSessions(SampleProvider<?> provider, List<? extends ActivitySample> samples,
+                                                     int timestampFrom, int timestampTo, long dbWriteGeneration) {
+        final List<SleepSession> cached = getCachedSleepSessions(provider, timestampFrom, timestampTo);
+        if (cached != null) {
+            return cached;
+        }
+        final List<SleepSession> result = calculateSleepSessions(samples);
+        ActivitySessionCache.put(provider, ActivitySessionCache.TYPE_SLEEP, timestampFrom, timestampTo, PARAMETERS, encode(result), dbWriteGeneration);
+        return result;
+    }
+
+    @Nullable
+    private static List<SleepSession> getCachedSleepSessions(SampleProvider<?> provider, int timestampFrom, int timestampTo) {
+        final byte[] data = ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_SLEEP, timestampFrom, timestampTo, PARAMETERS);
+        if (data == null) {
+            return null;
+        }
+        final List<SleepSession> sessions = new ArrayList<>();
+        final ByteBuffer buf = ByteBuffer.wrap(data);
+        while (buf.remaining() >= SESSION_BYTES) {
+            sessions.add(new SleepSession(
+                    getNullableDate(buf.getInt()),
+                    getNullableDate(buf.getInt()),
+                    buf.getInt(),
+                    buf.getInt(),
+                    buf.getInt()
+            ));
+        }
+        return sessions;
+    }
+
+    private static byte[] encode(List<SleepSession> sessions) {
+        final ByteBuffer buf = ByteBuffer.allocate(sessions.size() * SESSION_BYTES);
+        for (final SleepSession session : sessions) {
+            buf.putInt(session.getSleepStart() != null ? (int) (session.getSleepStart().getTime() / 1000) : 0);
+            buf.putInt(session.getSleepEnd() != null ? (int) (session.getSleepEnd().getTime() / 1000) : 0);
+            buf.putInt((int) session.getLightSleepDuration());
+            buf.putInt((int) session.getDeepSleepDuration());
+            buf.putInt((int) session.getRemSleepDuration());
+        }
+        return buf.array();
+    }
+
+    private static boolean isSleep(int kind) {
+        return kind == ActivityKind.TYPE_DEEP_SLEEP ||
+                kind == ActivityKind.TYPE_LIGHT_SLEEP ||
+                kind == ActivityKind.TYPE_REM_SLEEP;
+    }
+
+    private static Date getDateFromTimestamp(int timestamp) {
+        return new Date(timestamp * 1000L);
+    }
+
+    @Nullable
+    private static Date getNullableDate(int timestamp) {
+        return timestamp != 0 ? getDateFromTimestamp(timestamp) : null;
+    }
+
+    private static class SleepSessionsVisitor implements SampleVisitor {
+        private final List<SleepSession> result = new ArrayList<>();
+
+        private boolean hasPreviousSample = false;
+        private int previousTimestamp;
+        private Date sleepStart = null;
+        private Date sleepEnd = null;
+        private long lightSleepDuration = 0;
+        private long deepSleepDuration = 0;
+        private long remSleepDuration = 0;
+        private long durationSinceLastSleep = 0;
+
+        @Override
+        public void visit(int timestamp, int rawKind, int kind, float intensity, int steps, int heartRate) {
+            if (isSleep(kind)) {
                 if (sleepStart == null)
-                    sleepStart = getDateFromSample(sample);
-                sleepEnd = getDateFromSample(sample);
+                    sleepStart = getDateFromTimestamp(timestamp);
+                sleepEnd = getDateFromTimestamp(timestamp);
 
                 durationSinceLastSleep = 0;
             } else {
                 //exclude "not worn" times from sleep sessions as this makes a discrepancy with the charts
                 if (lightSleepDuration + deepSleepDuration + remSleepDuration > MIN_SESSION_LENGTH)
                     result.add(new SleepSession(sleepStart, sleepEnd, lightSleepDuration, deepSleepDuration, remSleepDuration));
-                sleepStart = null;
-                sleepEnd = null;
-                lightSleepDuration = 0;
-                deepSleepDuration = 0;
-                remSleepDuration = 0;
+                resetSession();
             }
 
-            if (previousSample != null) {
-                long durationSinceLastSample = sample.getTimestamp() - previousSample.getTimestamp();
-                if (sample.getKind() == ActivityKind.TYPE_LIGHT_SLEEP) {
+            if (hasPreviousSample) {
+                long durationSinceLastSample = timestamp - previousTimestamp;
+                if (kind == ActivityKind.TYPE_LIGHT_SLEEP) {
                     lightSleepDuration += durationSinceLastSample;
-                } else if (sample.getKind() == ActivityKind.TYPE_DEEP_SLEEP) {
+                } else if (kind == ActivityKind.TYPE_DEEP_SLEEP) {
                     deepSleepDuration += durationSinceLastSample;
-                } else if (sample.getKind() == ActivityKind.TYPE_REM_SLEEP) {
+                } else if (kind == ActivityKind.TYPE_REM_SLEEP) {
                     remSleepDuration += durationSinceLastSample;
                 } else {
                     durationSinceLastSleep += durationSinceLastSample;
                     if (sleepStart != null && durationSinceLastSleep > MAX_WAKE_PHASE_LENGTH) {
                         if (lightSleepDuration + deepSleepDuration + remSleepDuration > MIN_SESSION_LENGTH)
                             result.add(new SleepSession(sleepStart, sleepEnd, lightSleepDuration, deepSleepDuration, remSleepDuration));
-                        sleepStart = null;
-                        sleepEnd = null;
-                        lightSleepDuration = 0;
-                        deepSleepDuration = 0;
-                        remSleepDuration = 0;
+                        resetSession();
                     }
                 }
             }
 
-            previousSample = sample;
-        }
-        if (lightSleepDuration + deepSleepDuration + remSleepDuration > MIN_SESSION_LENGTH) {
-            result.add(new SleepSession(sleepStart, sleepEnd, lightSleepDuration, deepSleepDuration, remSleepDuration));
+            hasPreviousSample = true;
+            previousTimestamp = timestamp;
         }
-        return result;
-    }
 
-    private boolean isSleep(ActivitySample sample) {
-        return sample.getKind() == ActivityKind.TYPE_DEEP_SLEEP ||
-                sample.getKind() == ActivityKind.TYPE_LIGHT_SLEEP ||
-                sample.getKind() == ActivityKind.TYPE_REM_SLEEP;
-    }
+        private void resetSession() {
+            sleepStart = null;
+            sleepEnd = null;
+            lightSleepDuration = 0;
+            deepSleepDuration = 0;
+            remSleepDuration = 0;
+        }
 
-    private Date getDateFromSample(ActivitySample sample) {
-        return new Date(sample.getTimestamp() * 1000L);
+        List<SleepSession> getResult() {
+            if (lightSleepDuration + deepSleepDuration + remSleepDuration > MIN_SESSION_LENGTH) {
+                result.add(new SleepSession(sleepStart, sleepEnd, lightSleepDuration, deepSleepDuration, remSleepDuration));
+                resetSession();
+            }
+            return result;
+        }
     }
 
 
@@ -60,6 +60,7 @@ import nodomain.freeyourgadget.gadgetbridge.R;
 import nodomain.freeyourgadget.gadgetbridge.activities.HeartRateUtils;
 import nodomain.freeyourgadget.gadgetbridge.activities.charts.SleepAnalysis.SleepSession;
 import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
@@ -95,14 +96,19 @@ public class SleepChartFragment extends AbstractActivityChartFragment<SleepChart
 
     @Override
     protected MyChartsData refreshInBackground(ChartsHost chartsHost, DBHandler db, GBDevice device) {
+        // sleep sessions derived from the samples are only cached if nothing was written meanwhile
+        long dbWriteGeneration = GBApplication.getDbWriteGeneration();
         List<? extends ActivitySample> samples;
+        int[] range;
         if (CHARTS_SLEEP_RANGE_24H) {
             samples = getSamples(db, device);
+            range = new int[]{getTSStart(), getTSEnd()};
         } else {
             samples = getSamplesofSleep(db, device);
+            range = getSleepTimestampRange();
         }
 
-        MySleepChartsData mySleepChartsData = refreshSleepAmounts(device, samples);
+        MySleepChartsData mySleepChartsData = refreshSleepAmounts(device, getProvider(db, device), samples, range, dbWriteGeneration);
 
         if (!CHARTS_SLEEP_RANGE_24H) {
             if (mySleepChartsData.sleepSessions.size() > 0) {
@@ -125,9 +131,9 @@ public class SleepChartFragment extends AbstractActivityChartFragment<SleepChart
 
 
 
-    private MySleepChartsData refreshSleepAmounts(GBDevice mGBDevice, List<? extends ActivitySample> samples) {
+    private MySleepChartsData refreshSleepAmounts(GBDevice mGBDevice, SampleProvider<?> provider, List<? extends ActivitySample> samples, int[] range, long dbWriteGeneration) {
         SleepAnalysis sleepAnalysis = new SleepAnalysis();
-        List<SleepSession> sleepSessions = sleepAnalysis.calculateSleepSessions(samples);
+        List<SleepSession> sleepSessions = sleepAnalysis.calculateSleepSessions(provider, samples, range[0], range[1], dbWriteGeneration);
 
         PieData data = new PieData();
 
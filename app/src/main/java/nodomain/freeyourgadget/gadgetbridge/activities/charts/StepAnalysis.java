@@ -19,12 +19,17 @@ package nodomain.freeyourgadget.gadgetbridge.activities.charts;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.activities.HeartRateUtils;
+import nodomain.freeyourgadget.gadgetbridge.database.ActivitySessionCache;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleVisitor;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySession;
@@ -32,120 +37,207 @@ import nodomain.freeyourgadget.gadgetbridge.model.ActivityUser;
 
 public class StepAnalysis {
     protected static final Logger LOG = LoggerFactory.getLogger(StepAnalysis.class);
+    private static final int SESSION_BYTES = 8 * 4;
+
     private int totalDailySteps = 0;
 
     public List<ActivitySession> calculateStepSessions(List<? extends ActivitySample> samples) {
         LOG.debug("get all samples activitysessions: " + samples.toArray().length);
-        List<ActivitySession> result = new ArrayList<>();
-        ActivityUser activityUser = new ActivityUser();
-        final int MIN_SESSION_LENGTH = 60 * GBApplication.getPrefs().getInt("chart_list_min_session_length", 5);
-        final int MAX_IDLE_PHASE_LENGTH = 60 * GBApplication.getPrefs().getInt("chart_list_max_idle_phase_length", 5);
-        final int MIN_STEPS_PER_MINUTE = GBApplication.getPrefs().getInt("chart_list_min_steps_per_minute", 40);
-        int stepLengthCm = activityUser.getStepLengthCm();
-        final double STEP_LENGTH_M = stepLengthCm * 0.01;
-        final double MIN_SESSION_INTENSITY = Math.max(0, Math.min(1, MIN_STEPS_PER_MINUTE * 0.01));
-        totalDailySteps = 0;
-
-        ActivitySample previousSample = null;
-        Date sessionStart = null;
-        Date sessionEnd;
-        int activeSteps = 0; //steps that we count
-        int stepsBetweenActivePeriods = 0; //steps during time when we maybe take a rest but then restart
-        int durationSinceLastActiveStep = 0;
-        int activityKind;
+        final StepSessionsVisitor visitor = new StepSessionsVisitor();
+        for (ActivitySample sample : samples) {
+            //trailing samples have wrong date and make trailing activity have 0 duration
+            visitor.visit(sample.getTimestamp(), sample.getKind(), sample.getIntensity(),
+                    sample.getSteps(), sample.getHeartRate(), sample instanceof TrailingActivitySample);
+        }
+        return visitor.getResult();
+    }
 
-        List<Integer> heartRateSum = new ArrayList<>();
-        List<Integer> heartRateBetweenActivePeriodsSum = new ArrayList<>();
+    /**
+     * Same as {@link #calculateStepSessions(List)}, but streams the samples from the provider
+     * instead of loading all of them into memory. The sessions of past ranges are stored in the
+     * {@link ActivitySessionCache} and reused until samples in the range or the settings change.
+     */
+    public List<ActivitySession> calculateStepSessions(SampleProvider<?> provider, int timestampFrom, int timestampTo) {
+        final StepSessionsVisitor visitor = new StepSessionsVisitor();
+        final int parameters = visitor.getParameters();
+
+        final byte[] cached = ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_STEPS, timestampFrom, timestampTo, parameters);
+        if (cached != null) {
+            return decode(cached);
+        }
 
-        float activeIntensity = 0;
-        float intensityBetweenActivePeriods = 0;
-        HeartRateUtils heartRateUtilsInstance = HeartRateUtils.getInstance();
+        final long dbWriteGeneration = GBApplication.getDbWriteGeneration();
+        provider.visitAllActivitySamples(timestampFrom, timestampTo, visitor);
+        final List<ActivitySession> result = visitor.getResult();
+        ActivitySessionCache.put(provider, ActivitySessionCache.TYPE_STEPS, timestampFrom, timestampTo, parameters, encode(result), dbWriteGeneration);
+        return result;
+    }
 
-        for (ActivitySample sample : samples) {
-            int steps = sample.getSteps();
+    private byte[] encode(List<ActivitySession> sessions) {
+        final ByteBuffer buf = ByteBuffer.allocate(4 + sessions.size() * SESSION_BYTES);
+        buf.putInt(totalDailySteps);
+        for (final ActivitySession session : sessions) {
+            buf.putInt((int) (session.getStartTime().getTime() / 1000));
+            buf.putInt((int) (session.getEndTime().getTime() / 1000));
+            buf.putInt(session.getActiveSteps());
+            buf.putInt(session.getHeartRateAverage());
+            buf.putFloat(session.getIntensity());
+            buf.putFloat(session.getDistance());
+            buf.putInt(session.getActivityKind());
+            buf.putInt(session.getSessionType());
+        }
+        return buf.array();
+    }
+
+    private List<ActivitySession> decode(byte[] data) {
+        final ByteBuffer buf = ByteBuffer.wrap(data);
+        totalDailySteps = buf.getInt();
+        final List<ActivitySession> sessions = new ArrayList<>();
+        while (buf.remaining() >= SESSION_BYTES) {
+            final ActivitySession session = new ActivitySession(
+                    new Date(buf.getInt() * 1000L),
+                    new Date(buf.getInt() * 1000L),
+                    buf.getInt(),
+                    buf.getInt(),
+                    buf.getFloat(),
+                    buf.getFloat(),
+                    buf.getInt()
+            );
+            session.setSessionType(buf.getInt());
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    private class StepSessionsVisitor implements SampleVisitor {
+        private final List<ActivitySession> result = new ArrayList<>();
+        private final int MIN_SESSION_LENGTH = 60 * GBApplication.getPrefs().getInt("chart_list_min_session_length", 5);
+        private final int MAX_IDLE_PHASE_LENGTH = 60 * GBApplication.getPrefs().getInt("chart_list_max_idle_phase_length", 5);
+        private final int MIN_STEPS_PER_MINUTE = GBApplication.getPrefs().getInt("chart_list_min_steps_per_minute", 40);
+        private final double STEP_LENGTH_M;
+        private final double MIN_SESSION_INTENSITY = Math.max(0, Math.min(1, MIN_STEPS_PER_MINUTE * 0.01));
+        private final HeartRateUtils heartRateUtilsInstance = HeartRateUtils.getInstance();
+
+        private boolean hasPreviousSample = false;
+        private int previousTimestamp;
+        private Date sessionStart = null;
+        private int activeSteps = 0; //steps that we count
+        private int stepsBetweenActivePeriods = 0; //steps during time when we maybe take a rest but then restart
+        private int durationSinceLastActiveStep = 0;
+
+        private List<Integer> heartRateSum = new ArrayList<>();
+        private List<Integer> heartRateBetweenActivePeriodsSum = new ArrayList<>();
+
+        private float activeIntensity = 0;
+        private float intensityBetweenActivePeriods = 0;
+
+        StepSessionsVisitor() {
+            ActivityUser activityUser = new ActivityUser();
+            int stepLengthCm = activityUser.getStepLengthCm();
+            STEP_LENGTH_M = stepLengthCm * 0.01;
+            totalDailySteps = 0;
+        }
+
+        /**
+         * A hash of the settings the sessions depend on.
+         */
+        int getParameters() {
+            final int minStepsPerMinuteForRun = GBApplication.getPrefs().getInt("chart_list_min_steps_per_minute_for_run", 120);
+            return Objects.hash(MIN_SESSION_LENGTH, MAX_IDLE_PHASE_LENGTH, MIN_STEPS_PER_MINUTE, STEP_LENGTH_M, minStepsPerMinuteForRun);
+        }
+
+        @Override
+        public void visit(int timestamp, int rawKind, int kind, float intensity, int steps, int heartRate) {
+            visit(timestamp, kind, intensity, steps, heartRate, false);
+        }
+
+        void visit(int timestamp, int kind, float intensity, int steps, int heartRate, boolean trailing) {
             if (steps > 0) {
                 totalDailySteps += steps;
             }
 
-            if (sample.getKind() != ActivityKind.TYPE_SLEEP //anything but sleep counts
-                    && !(sample instanceof TrailingActivitySample)) { //trailing samples have wrong date and make trailing activity have 0 duration
+            if (kind == ActivityKind.TYPE_SLEEP || trailing) { //anything but sleep counts
+                return;
+            }
 
-                if (sessionStart == null) {
-                    sessionStart = getDateFromSample(sample);
-                    activeSteps = sample.getSteps();
-                    activeIntensity = sample.getIntensity();
-                    heartRateSum = new ArrayList<>();
-                    if (heartRateUtilsInstance.isValidHeartRateValue(sample.getHeartRate())) {
-                        heartRateSum.add(sample.getHeartRate());
+            if (sessionStart == null) {
+                sessionStart = new Date(timestamp * 1000L);
+                activeSteps = steps;
+                activeIntensity = intensity;
+                heartRateSum = new ArrayList<>();
+                if (heartRateUtilsInstance.isValidHeartRateValue(heartRate)) {
+                    heartRateSum.add(heartRate);
+                }
+                durationSinceLastActiveStep = 0;
+                stepsBetweenActivePeriods = 0;
+                heartRateBetweenActivePeriodsSum = new ArrayList<>();
+                hasPreviousSample = false;
+            }
+            if (hasPreviousSample) {
+                int durationSinceLastSample = timestamp - previousTimestamp;
+
+                if (steps > MIN_STEPS_PER_MINUTE || //either some steps
+                        (intensity > MIN_SESSION_INTENSITY && steps > 0)) { //or some intensity plus at least one step
+                    activeSteps += steps + stepsBetweenActivePeriods;
+                    activeIntensity += intensity + intensityBetweenActivePeriods;
+                    if (heartRateUtilsInstance.isValidHeartRateValue(heartRate)) {
+                        heartRateSum.add(heartRate);
                     }
-                    durationSinceLastActiveStep = 0;
-                    stepsBetweenActivePeriods = 0;
+                    heartRateSum.addAll(heartRateBetweenActivePeriodsSum);
                     heartRateBetweenActivePeriodsSum = new ArrayList<>();
-                    previousSample = null;
-                }
-                if (previousSample != null) {
-                    int durationSinceLastSample = sample.getTimestamp() - previousSample.getTimestamp();
-
-                    if (sample.getSteps() > MIN_STEPS_PER_MINUTE || //either some steps
-                            (sample.getIntensity() > MIN_SESSION_INTENSITY && sample.getSteps() > 0)) { //or some intensity plus at least one step
-                        activeSteps += sample.getSteps() + stepsBetweenActivePeriods;
-                        activeIntensity += sample.getIntensity() + intensityBetweenActivePeriods;
-                        if (heartRateUtilsInstance.isValidHeartRateValue(sample.getHeartRate())) {
-                            heartRateSum.add(sample.getHeartRate());
-                        }
-                        heartRateSum.addAll(heartRateBetweenActivePeriodsSum);
-                        heartRateBetweenActivePeriodsSum = new ArrayList<>();
-                        stepsBetweenActivePeriods = 0;
-                        intensityBetweenActivePeriods = 0;
-                        durationSinceLastActiveStep = 0;
-
-                    } else { //short break data to remember, we will add it to the rest later, if break not too long
-                        stepsBetweenActivePeriods += sample.getSteps();
-                        if (heartRateUtilsInstance.isValidHeartRateValue(sample.getHeartRate())) {
-                            heartRateBetweenActivePeriodsSum.add(sample.getHeartRate());
-                        }
-                        durationSinceLastActiveStep += durationSinceLastSample;
-                        intensityBetweenActivePeriods += sample.getIntensity();
+                    stepsBetweenActivePeriods = 0;
+                    intensityBetweenActivePeriods = 0;
+                    durationSinceLastActiveStep = 0;
+
+                } else { //short break data to remember, we will add it to the rest later, if break not too long
+                    stepsBetweenActivePeriods += steps;
+                    if (heartRateUtilsInstance.isValidHeartRateValue(heartRate)) {
+                        heartRateBetweenActivePeriodsSum.add(heartRate);
                     }
-                    if (durationSinceLastActiveStep >= MAX_IDLE_PHASE_LENGTH) { //break too long, we split here
-
-                        int current = sample.getTimestamp();
-                        int starting = (int) (sessionStart.getTime() / 1000);
-                        int session_length = current - starting - durationSinceLastActiveStep;
-
-                        if (session_length >= MIN_SESSION_LENGTH) { //valid activity session
-                            int heartRateAverage = heartRateSum.toArray().length > 0 ? calculateSumOfInts(heartRateSum) / heartRateSum.toArray().length : 0;
-                            float distance = (float) (activeSteps * STEP_LENGTH_M);
-                            sessionEnd = new Date((sample.getTimestamp() - durationSinceLastActiveStep) * 1000L);
-                            activityKind = detect_activity_kind(session_length, activeSteps, heartRateAverage, activeIntensity);
-                            ActivitySession activitySession = new ActivitySession(sessionStart, sessionEnd, activeSteps, heartRateAverage, activeIntensity, distance, activityKind);
-                            //activitySession.setSessionType(ActivitySession.SESSION_ONGOING);
-                            result.add(activitySession);
-                        }
-                        sessionStart = null;
+                    durationSinceLastActiveStep += durationSinceLastSample;
+                    intensityBetweenActivePeriods += intensity;
+                }
+                if (durationSinceLastActiveStep >= MAX_IDLE_PHASE_LENGTH) { //break too long, we split here
+
+                    int starting = (int) (sessionStart.getTime() / 1000);
+                    int session_length = timestamp - starting - durationSinceLastActiveStep;
+
+                    if (session_length >= MIN_SESSION_LENGTH) { //valid activity session
+                        int heartRateAverage = heartRateSum.toArray().length > 0 ? calculateSumOfInts(heartRateSum) / heartRateSum.toArray().length : 0;
+                        float distance = (float) (activeSteps * STEP_LENGTH_M);
+                        Date sessionEnd = new Date((timestamp - durationSinceLastActiveStep) * 1000L);
+                        int activityKind = detect_activity_kind(session_length, activeSteps, heartRateAverage, activeIntensity);
+                        ActivitySession activitySession = new ActivitySession(sessionStart, sessionEnd, activeSteps, heartRateAverage, activeIntensity, distance, activityKind);
+                        //activitySession.setSessionType(ActivitySession.SESSION_ONGOING);
+                        result.add(activitySession);
                     }
+                    sessionStart = null;
                 }
-                previousSample = sample;
             }
+            hasPreviousSample = true;
+            previousTimestamp = timestamp;
         }
-        //trailing activity: make sure we show the last portion of the data as well in case no further activity is recorded yet
-
-        if (sessionStart != null && previousSample != null) {
-            int current = previousSample.getTimestamp();
-            int starting = (int) (sessionStart.getTime() / 1000);
-            int session_length = current - starting - durationSinceLastActiveStep;
-
-            if (session_length >= MIN_SESSION_LENGTH) {
-                int heartRateAverage = heartRateSum.toArray().length > 0 ? calculateSumOfInts(heartRateSum) / heartRateSum.toArray().length : 0;
-                float distance = (float) (activeSteps * STEP_LENGTH_M);
-                sessionEnd = getDateFromSample(previousSample);
-                activityKind = detect_activity_kind(session_length, activeSteps, heartRateAverage, activeIntensity);
-                ActivitySession ongoingActivity = new ActivitySession(sessionStart, sessionEnd, activeSteps, heartRateAverage, activeIntensity, distance, activityKind);
-                ongoingActivity.setSessionType(ActivitySession.SESSION_ONGOING);
-                result.add(ongoingActivity);
+
+        List<ActivitySession> getResult() {
+            //trailing activity: make sure we show the last portion of the data as well in case no further activity is recorded yet
+
+            if (sessionStart != null && hasPreviousSample) {
+                int starting = (int) (sessionStart.getTime() / 1000);
+                int session_length = previousTimestamp - starting - durationSinceLastActiveStep;
+
+                if (session_length >= MIN_SESSION_LENGTH) {
+                    int heartRateAverage = heartRateSum.toArray().length > 0 ? calculateSumOfInts(heartRateSum) / heartRateSum.toArray().length : 0;
+                    float distance = (float) (activeSteps * STEP_LENGTH_M);
+                    Date sessionEnd = new Date(previousTimestamp * 1000L);
+                    int activityKind = detect_activity_kind(session_length, activeSteps, heartRateAverage, activeIntensity);
+                    ActivitySession ongoingActivity = new ActivitySession(sessionStart, sessionEnd, activeSteps, heartRateAverage, activeIntensity, distance, activityKind);
+                    ongoingActivity.setSessionType(ActivitySession.SESSION_ONGOING);
+                    result.add(ongoingActivity);
+                }
+                sessionStart = null;
             }
+            return result;
         }
-        return result;
     }
 
     public ActivitySession calculateSummary(List<ActivitySession> sessions, boolean empty) {
@@ -221,8 +313,4 @@ public class StepAnalysis {
         }
         return ActivityKind.TYPE_ACTIVITY;
     }
-
-    private Date getDateFromSample(ActivitySample sample) {
-        return new Date(sample.getTimestamp() * 1000L);
-    }
 }
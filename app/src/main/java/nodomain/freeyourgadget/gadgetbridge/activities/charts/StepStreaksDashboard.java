@@ -74,6 +74,7 @@ public class StepStreaksDashboard extends MaterialDialogFragment {
     private static final String PERIOD_CURRENT = "current";
     private static final String PERIOD_TOTALS = "totals";
     private static final int MIN_YEAR = 2015; //we go back in time, this is minimal year boundary
+    private static final int DAYS_PER_BATCH = 30; //number of days loaded from the database at once
 
     public StepStreaksDashboard() {
 
@@ -242,7 +243,7 @@ public class StepStreaksDashboard extends MaterialDialogFragment {
         String period;
 
         public TaskCalculateLatestStepsStreak(String taskName, Context context, String period) {
-            super(taskName, context);
+            super(taskName, context, true);
             this.period = period;
         }
 
@@ -300,14 +301,24 @@ public class StepStreaksDashboard extends MaterialDialogFragment {
         firstDate.setTime(DateTimeUtils.shiftByDays(new Date(firstSample.getTimestamp() * 1000L), -1));
         //go one day back, to ensure we are before the first day, to calculate first day data as well
 
+        //the steps are loaded in batches of days, going backwards from today
+        long[] steps_of_days = new long[0];
+        int day_index = 0;
+
         while (true) {
             if (cancelTasks) {
                 GB.toast("Cancelling background jobs", Toast.LENGTH_SHORT, GB.INFO);
                 break;
             }
 
-            long[] daily_data = dailyTotals.getDailyTotalsForDevice(device, day, db);
-            int steps_this_day = (int) daily_data[0];
+            if (day_index == 0) {
+                Calendar batchFirstDay = (Calendar) day.clone();
+                batchFirstDay.add(Calendar.DATE, -(DAYS_PER_BATCH - 1));
+                steps_of_days = dailyTotals.getDailyStepsForDevice(db, device, batchFirstDay, DAYS_PER_BATCH);
+                day_index = DAYS_PER_BATCH;
+            }
+            day_index--;
+            int steps_this_day = (int) steps_of_days[day_index];
 
             if (steps_this_day > 0) {
                 all_step_days++;
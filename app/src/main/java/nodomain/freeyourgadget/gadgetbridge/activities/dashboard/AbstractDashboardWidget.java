@@ -30,7 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import nodomain.freeyourgadget.gadgetbridge.activities.DashboardFragment;
 
-public abstract class AbstractDashboardWidget extends Fragment {
+public abstract class AbstractDashboardWidget extends Fragment implements DashboardFragment.DashboardData.Listener {
     private static final Logger LOG = LoggerFactory.getLogger(AbstractDashboardWidget.class);
 
     protected static String ARG_DASHBOARD_DATA = "dashboard_widget_argument_data";
@@ -56,11 +56,30 @@ public abstract class AbstractDashboardWidget extends Fragment {
         }
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        dashboardData.subscribe(this);
+    }
+
+    @Override
+    public void onStop() {
+        dashboardData.unsubscribe(this);
+        super.onStop();
+    }
+
+    @Override
+    public void onDashboardDataLoaded() {
+        if (getView() != null) fillData();
+    }
 
     public void update() {
-        fillData();
+        if (dashboardData.isLoaded() && getView() != null) fillData();
     }
 
+    /**
+     * Shows the dashboard data, called on the main thread once it was loaded.
+     */
     protected abstract void fillData();
 
     /**
@@ -16,7 +16,6 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.activities.dashboard;
 
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -64,50 +63,18 @@ public class DashboardActiveTimeWidget extends AbstractDashboardWidget {
         View fragmentView = inflater.inflate(R.layout.dashboard_widget_active_time, container, false);
         activeTime = fragmentView.findViewById(R.id.activetime_text);
         activeTimeGauge = fragmentView.findViewById(R.id.activetime_gauge);
-
-        fillData();
-
         return fragmentView;
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
-        if (activeTime != null && activeTimeGauge != null) fillData();
-    }
-
     @Override
     protected void fillData() {
-        if (activeTimeGauge == null) return;
-        activeTimeGauge.post(new Runnable() {
-            @Override
-            public void run() {
-                FillDataAsyncTask myAsyncTask = new FillDataAsyncTask();
-                myAsyncTask.execute();
-            }
-        });
-    }
-
-    private class FillDataAsyncTask extends AsyncTask<Void, Void, Void> {
-        @Override
-        protected Void doInBackground(Void... params) {
-            dashboardData.getActiveMinutesTotal();
-            dashboardData.getActiveMinutesGoalFactor();
-            return null;
-        }
-
-        @Override
-        protected void onPostExecute(Void unused) {
-            super.onPostExecute(unused);
-
-            // Update text representation
-            long totalActiveMinutes = dashboardData.getActiveMinutesTotal();
-            String activeHours = String.format("%d", (int) Math.floor(totalActiveMinutes / 60f));
-            String activeMinutes = String.format("%02d", (int) (totalActiveMinutes % 60f));
-            activeTime.setText(activeHours + ":" + activeMinutes);
-
-            // Draw gauge
-            activeTimeGauge.setImageBitmap(drawGauge(200, 15, color_active_time, dashboardData.getActiveMinutesGoalFactor()));
-        }
+        // Update text representation
+        long totalActiveMinutes = dashboardData.getActiveMinutesTotal();
+        String activeHours = String.format("%d", (int) Math.floor(totalActiveMinutes / 60f));
+        String activeMinutes = String.format("%02d", (int) (totalActiveMinutes % 60f));
+        activeTime.setText(activeHours + ":" + activeMinutes);
+
+        // Draw gauge
+        activeTimeGauge.setImageBitmap(drawGauge(200, 15, color_active_time, dashboardData.getActiveMinutesGoalFactor()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,336 @@
+package nodomain.freeyourgadget.gadgetbridge.activities.dashboard;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nodomain.freeyourgadget.gadgetbridge.GBApplication;
+import nodomain.freeyourgadget.gadgetbridge.activities.DashboardFragment;
+import nodomain.freeyourgadget.gadgetbridge.activities.charts.StepAnalysis;
+import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
+import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
+import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySession;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityUser;
+import nodomain.freeyourgadget.gadgetbridge.model.DailyTotals;
+import nodomain.freeyourgadget.gadgetbridge.util.DashboardUtils;
+
+/**
+ * Loads the data of all dashboard widgets in one pass, off the main thread. Every selected device
+ * is loaded once, in parallel on a small shared pool, and the results are combined when the last
+ * device is done. The widgets are notified through {@link DashboardFragment.DashboardData}.
+ */
+public class DashboardDataLoader {
+    private static final Logger LOG = LoggerFactory.getLogger(DashboardDataLoader.class);
+
+    private static final int MAX_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            MAX_THREADS,
+            MAX_THREADS,
+            30,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> new Thread(runnable, "Dashboard loader")
+    );
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    public interface Callback {
+        /**
+         * Called on the main thread once all devices were loaded.
+         */
+        void onLoaded(Result result);
+    }
+
+    /**
+     * The combined data of all selected devices.
+     */
+    public static class Result {
+        public int stepsTotal;
+        public float stepsGoalFactor;
+        public long sleepTotalMinutes;
+        public float sleepGoalFactor;
+        public float distanceTotalMeters;
+        public float distanceGoalFactor;
+        public long activeMinutesTotal;
+        public float activeMinutesGoalFactor;
+        public final List<DashboardFragment.DashboardData.GeneralizedActivity> generalizedActivities = new ArrayList<>();
+    }
+
+    private static class DeviceResult {
+        private long steps;
+        private long sleepMinutes;
+        private long activeMinutes;
+        private List<? extends ActivitySample> samples = Collections.emptyList();
+        private List<ActivitySession> stepSessions = Collections.emptyList();
+    }
+
+    /**
+     * Starts loading the data for the devices and time range selected in the dashboard data.
+     *
+     * @param withActivities whether the samples and sessions of the day should be generalized
+     *                       into activities for the today widget
+     */
+    public static void load(final DashboardFragment.DashboardData dashboardData, final boolean withActivities, final Callback callback) {
+        final List<GBDevice> devices = new ArrayList<>();
+        for (GBDevice dev : GBApplication.app().getDeviceManager().getDevices()) {
+            if ((dashboardData.showAllDevices || dashboardData.showDeviceList.contains(dev.getAddress())) && dev.getDeviceCoordinator().supportsActivityTracking()) {
+                devices.add(dev);
+            }
+        }
+
+        final DeviceResult[] deviceResults = new DeviceResult[devices.size()];
+        if (devices.isEmpty()) {
+            EXECUTOR.execute(() -> combine(dashboardData, withActivities, deviceResults, callback));
+            return;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(devices.size());
+        for (int i = 0; i < devices.size(); i++) {
+            final int index = i;
+            final GBDevice device = devices.get(i);
+            EXECUTOR.execute(() -> {
+                try {
+                    deviceResults[index] = loadDevice(device, dashboardData, withActivities);
+                } catch (final Exception e) {
+                    LOG.warn("Could not load dashboard data for {}", device, e);
+                }
+                // the last device to finish combines the results
+                if (remaining.decrementAndGet() == 0) {
+                    combine(dashboardData, withActivities, deviceResults, callback);
+                }
+            });
+        }
+    }
+
+    private static DeviceResult loadDevice(final GBDevice device,
+                                           final DashboardFragment.DashboardData dashboardData,
+                                           final boolean withActivities) throws Exception {
+        final DeviceResult result = new DeviceResult();
+        final Calendar day = GregorianCalendar.getInstance();
+        day.setTimeInMillis(dashboardData.timeTo * 1000L);
+
+        try (DBHandler db = GBApplication.acquireReadOnlyDB()) {
+            final long[] totals = new DailyTotals().getDailyTotalsForDevice(device, day, db);
+            result.steps = totals[0];
+            result.sleepMinutes = totals[1];
+            if (withActivities) {
+                result.samples = DashboardUtils.getAllSamples(db, device, dashboardData);
+            } else {
+                result.activeMinutes = DashboardUtils.getActiveMinutes(device, db, dashboardData);
+            }
+        }
+
+        if (withActivities) {
+            // the samples are loaded already, analyze them outside of the database lock
+            result.stepSessions = new StepAnalysis().calculateStepSessions(result.samples);
+            result.activeMinutes = DashboardUtils.getActiveMinutes(result.stepSessions);
+        }
+        return result;
+    }
+
+    private static void combine(final DashboardFragment.DashboardData dashboardData,
+                                final boolean withActivities,
+                                final DeviceResult[] deviceResults,
+                                final Callback callback) {
+        final Result result = new Result();
+        long steps = 0;
+        final List<ActivitySample> allActivitySamples = new ArrayList<>();
+        final List<ActivitySession> stepSessions = new ArrayList<>();
+        for (final DeviceResult deviceResult : deviceResults) {
+            if (deviceResult == null) {
+                continue;
+            }
+            steps += deviceResult.steps;
+            result.sleepTotalMinutes += deviceResult.sleepMinutes;
+            result.activeMinutesTotal += deviceResult.activeMinutes;
+            allActivitySamples.addAll(deviceResult.samples);
+            stepSessions.addAll(deviceResult.stepSessions);
+        }
+
+        final ActivityUser activityUser = new ActivityUser();
+        result.stepsTotal = (int) steps;
+        result.stepsGoalFactor = getGoalFactor(steps, activityUser.getStepsGoal());
+        result.distanceTotalMeters = steps * activityUser.getStepLengthCm() * 0.01f;
+        result.distanceGoalFactor = getGoalFactor(result.distanceTotalMeters, activityUser.getDistanceGoalMeters());
+        result.activeMinutesGoalFactor = getGoalFactor(result.activeMinutesTotal, activityUser.getActiveTimeGoalMinutes());
+        result.sleepGoalFactor = getGoalFactor(result.sleepTotalMinutes, activityUser.getSleepDurationGoal() * 60);
+
+        if (withActivities) {
+            List<BaseActivitySummary> activitySummaries = null;
+            try (DBHandler dbHandler = GBApplication.acquireReadOnlyDB()) {
+                activitySummaries = DashboardUtils.getWorkoutSamples(dbHandler, dashboardData);
+            } catch (final Exception e) {
+                LOG.warn("Could not retrieve workouts: ", e);
+            }
+            final boolean mode24h = GBApplication.getPrefs().getBoolean("dashboard_widget_today_24h", false);
+            new ActivityGeneralizer(dashboardData, mode24h)
+                    .generalize(allActivitySamples, stepSessions, activitySummaries, result.generalizedActivities);
+        }
+
+        MAIN_HANDLER.post(() -> callback.onLoaded(result));
+    }
+
+    private static float getGoalFactor(final float value, final float goal) {
+        if (goal <= 0) {
+            return 0;
+        }
+        return Math.min(1, value / goal);
+    }
+
+    /**
+     * Merges the samples, step sessions and workouts of all devices into the activities shown by
+     * the {@link DashboardTodayWidget}.
+     */
+    private static class ActivityGeneralizer {
+        private final DashboardFragment.DashboardData dashboardData;
+        private final boolean mode_24h;
+        private final TreeMap<Long, Integer> activityTimestamps = new TreeMap<>();
+
+        private ActivityGeneralizer(final DashboardFragment.DashboardData dashboardData, final boolean mode24h) {
+            this.dashboardData = dashboardData;
+            this.mode_24h = mode24h;
+        }
+
+        private void generalize(final List<ActivitySample> allActivitySamples,
+                                final List<ActivitySession> stepSessions,
+                                final List<BaseActivitySummary> activitySummaries,
+                                final List<DashboardFragment.DashboardData.GeneralizedActivity> generalizedActivities) {
+            Collections.sort(allActivitySamples, (lhs, rhs) -> Integer.valueOf(lhs.getTimestamp()).compareTo(rhs.getTimestamp()));
+
+            // Determine worn sessions from heart rate samples
+            calculateWornSessions(allActivitySamples);
+
+            // Integrate various data from multiple devices
+            for (ActivitySample sample : allActivitySamples) {
+                // Handle only TYPE_NOT_WORN and TYPE_SLEEP (including variants) here
+                if (sample.getKind() != ActivityKind.TYPE_NOT_WORN && (sample.getKind() == ActivityKind.TYPE_NOT_MEASURED || (sample.getKind() & ActivityKind.TYPE_SLEEP) == 0))
+                    continue;
+                // Add to day results
+                addActivity(sample.getTimestamp(), sample.getTimestamp() + 60, sample.getKind());
+            }
+            if (activitySummaries != null) {
+                for (BaseActivitySummary baseActivitySummary : activitySummaries) {
+                    addActivity(baseActivitySummary.getStartTime().getTime() / 1000, baseActivitySummary.getEndTime().getTime() / 1000, ActivityKind.TYPE_EXERCISE);
+                }
+            }
+            for (ActivitySession session : stepSessions) {
+                addActivity(session.getStartTime().getTime() / 1000, session.getEndTime().getTime() / 1000, ActivityKind.TYPE_ACTIVITY);
+            }
+            createGeneralizedActivities(generalizedActivities);
+        }
+
+        private void addActivity(long timeFrom, long timeTo, int activityKind) {
+            for (long i = timeFrom; i<=timeTo; i++) {
+                // If the current timestamp isn't saved yet, do so immediately
+                if (activityTimestamps.get(i) == null) {
+                    activityTimestamps.put(i, activityKind);
+                    continue;
+                }
+                // If the current timestamp is already saved, compare the activity kinds and
+                // keep the most 'important' one
+                switch (activityTimestamps.get(i)) {
+                    case ActivityKind.TYPE_EXERCISE:
+                        break;
+                    case ActivityKind.TYPE_ACTIVITY:
+                        if (activityKind == ActivityKind.TYPE_EXERCISE)
+                            activityTimestamps.put(i, activityKind);
+                        break;
+                    case ActivityKind.TYPE_DEEP_SLEEP:
+                        if (activityKind == ActivityKind.TYPE_EXERCISE ||
+                                activityKind == ActivityKind.TYPE_ACTIVITY)
+                            activityTimestamps.put(i, activityKind);
+                        break;
+                    case ActivityKind.TYPE_LIGHT_SLEEP:
+                        if (activityKind == ActivityKind.TYPE_EXERCISE ||
+                                activityKind == ActivityKind.TYPE_ACTIVITY ||
+                                activityKind == ActivityKind.TYPE_DEEP_SLEEP)
+                            activityTimestamps.put(i, activityKind);
+                        break;
+                    case ActivityKind.TYPE_REM_SLEEP:
+                        if (activityKind == ActivityKind.TYPE_EXERCISE ||
+                                activityKind == ActivityKind.TYPE_ACTIVITY ||
+                                activityKind == ActivityKind.TYPE_DEEP_SLEEP ||
+                                activityKind == ActivityKind.TYPE_LIGHT_SLEEP)
+                            activityTimestamps.put(i, activityKind);
+                        break;
+                    case ActivityKind.TYPE_SLEEP:
+                        if (activityKind == ActivityKind.TYPE_EXERCISE ||
+                                activityKind == ActivityKind.TYPE_ACTIVITY ||
+                                activityKind == ActivityKind.TYPE_DEEP_SLEEP ||
+                                activityKind == ActivityKind.TYPE_LIGHT_SLEEP ||
+                                activityKind == ActivityKind.TYPE_REM_SLEEP)
+                            activityTimestamps.put(i, activityKind);
+                        break;
+                    default:
+                        activityTimestamps.put(i, activityKind);
+                        break;
+                }
+            }
+        }
+
+        private void calculateWornSessions(List<ActivitySample> samples) {
+            int firstTimestamp = 0;
+            int lastTimestamp = 0;
+
+            for (ActivitySample sample : samples) {
+                if (sample.getHeartRate() < 10 && firstTimestamp == 0) continue;
+                if (firstTimestamp == 0) firstTimestamp = sample.getTimestamp();
+                if (lastTimestamp == 0) lastTimestamp = sample.getTimestamp();
+                if ((sample.getHeartRate() < 10 || sample.getTimestamp() > lastTimestamp + dashboardData.hrIntervalSecs) && firstTimestamp != lastTimestamp) {
+                    LOG.debug("Registered worn session from {} to {}", firstTimestamp, lastTimestamp);
+                    addActivity(firstTimestamp, lastTimestamp, ActivityKind.TYPE_NOT_MEASURED);
+                    if (sample.getHeartRate() < 10) {
+                        firstTimestamp = 0;
+                        lastTimestamp = 0;
+                    } else {
+                        firstTimestamp = sample.getTimestamp();
+                        lastTimestamp = sample.getTimestamp();
+                    }
+                    continue;
+                }
+                lastTimestamp = sample.getTimestamp();
+            }
+            if (firstTimestamp != lastTimestamp) {
+                LOG.debug("Registered worn session from {} to {}", firstTimestamp, lastTimestamp);
+                addActivity(firstTimestamp, lastTimestamp, ActivityKind.TYPE_NOT_MEASURED);
+            }
+        }
+
+        private void createGeneralizedActivities(final List<DashboardFragment.DashboardData.GeneralizedActivity> generalizedActivities) {
+            DashboardFragment.DashboardData.GeneralizedActivity previous = null;
+            long midDaySecond = dashboardData.timeFrom + (12 * 60 * 60);
+            for (Map.Entry<Long, Integer> activity : activityTimestamps.entrySet()) {
+                long timestamp = activity.getKey();
+                int activityKind = activity.getValue();
+                if (previous == null || previous.activityKind != activityKind || (!mode_24h && timestamp == midDaySecond) || previous.timeTo < timestamp - 60) {
+                    previous = new DashboardFragment.DashboardData.GeneralizedActivity(activityKind, timestamp, timestamp);
+                    generalizedActivities.add(previous);
+                } else {
+                    previous.timeTo = timestamp;
+                }
+            }
+        }
+    }
+}
@@ -16,7 +16,6 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.activities.dashboard;
 
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -65,49 +64,17 @@ public class DashboardDistanceWidget extends AbstractDashboardWidget {
         View fragmentView = inflater.inflate(R.layout.dashboard_widget_distance, container, false);
         distanceText = fragmentView.findViewById(R.id.distance_text);
         distanceGauge = fragmentView.findViewById(R.id.distance_gauge);
-
-        fillData();
-
         return fragmentView;
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
-        if (distanceText != null && distanceGauge != null) fillData();
-    }
-
     @Override
     protected void fillData() {
-        if (distanceGauge == null) return;
-        distanceGauge.post(new Runnable() {
-            @Override
-            public void run() {
-                FillDataAsyncTask myAsyncTask = new FillDataAsyncTask();
-                myAsyncTask.execute();
-            }
-        });
-    }
-
-    private class FillDataAsyncTask extends AsyncTask<Void, Void, Void> {
-        @Override
-        protected Void doInBackground(Void... params) {
-            dashboardData.getDistanceTotal();
-            dashboardData.getDistanceGoalFactor();
-            return null;
-        }
-
-        @Override
-        protected void onPostExecute(Void unused) {
-            super.onPostExecute(unused);
-
-            // Update text representation
-            String distanceFormatted = FormatUtils.getFormattedDistanceLabel(dashboardData.getDistanceTotal());
-            distanceText.setText(distanceFormatted);
+        // Update text representation
+        String distanceFormatted = FormatUtils.getFormattedDistanceLabel(dashboardData.getDistanceTotal());
+        distanceText.setText(distanceFormatted);
 
-            // Draw gauge
-            distanceGauge.setImageBitmap(drawGauge(200, 15, color_distance, dashboardData.getDistanceGoalFactor()));
+        // Draw gauge
+        distanceGauge.setImageBitmap(drawGauge(200, 15, color_distance, dashboardData.getDistanceGoalFactor()));
 
-        }
     }
 }
\ No newline at end of file
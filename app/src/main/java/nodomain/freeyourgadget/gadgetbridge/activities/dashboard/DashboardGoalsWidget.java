@@ -89,27 +89,14 @@ public class DashboardGoalsWidget extends AbstractDashboardWidget {
         Prefs prefs = GBApplication.getPrefs();
         legend.setVisibility(prefs.getBoolean("dashboard_widget_goals_legend", true) ? View.VISIBLE : View.GONE);
 
-        fillData();
-
         return goalsView;
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
-        if (goalsChart != null) fillData();
-    }
-
     @Override
     protected void fillData() {
-        if (goalsView == null) return;
-        goalsView.post(new Runnable() {
-            @Override
-            public void run() {
-                FillDataAsyncTask myAsyncTask = new FillDataAsyncTask();
-                myAsyncTask.execute();
-            }
-        });
+        // only the chart is drawn in the background, the data was loaded already
+        FillDataAsyncTask myAsyncTask = new FillDataAsyncTask();
+        myAsyncTask.execute();
     }
 
     private class FillDataAsyncTask extends AsyncTask<Void, Void, Void> {
@@ -16,7 +16,6 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.activities.dashboard;
 
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -64,50 +63,18 @@ public class DashboardSleepWidget extends AbstractDashboardWidget {
         View fragmentView = inflater.inflate(R.layout.dashboard_widget_sleep, container, false);
         sleepAmount = fragmentView.findViewById(R.id.sleep_text);
         sleepGauge = fragmentView.findViewById(R.id.sleep_gauge);
-
-        fillData();
-
         return fragmentView;
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
-        if (sleepAmount != null && sleepGauge != null) fillData();
-    }
-
     @Override
     protected void fillData() {
-        if (sleepGauge == null) return;
-        sleepGauge.post(new Runnable() {
-            @Override
-            public void run() {
-                FillDataAsyncTask myAsyncTask = new FillDataAsyncTask();
-                myAsyncTask.execute();
-            }
-        });
-    }
-
-    private class FillDataAsyncTask extends AsyncTask<Void, Void, Void> {
-        @Override
-        protected Void doInBackground(Void... params) {
-            dashboardData.getSleepMinutesTotal();
-            dashboardData.getSleepMinutesGoalFactor();
-            return null;
-        }
-
-        @Override
-        protected void onPostExecute(Void unused) {
-            super.onPostExecute(unused);
-
-            // Update text representation
-            long totalSleepMinutes = dashboardData.getSleepMinutesTotal();
-            String sleepHours = String.format("%d", (int) Math.floor(totalSleepMinutes / 60f));
-            String sleepMinutes = String.format("%02d", (int) (totalSleepMinutes % 60f));
-            sleepAmount.setText(sleepHours + ":" + sleepMinutes);
-
-            // Draw gauge
-            sleepGauge.setImageBitmap(drawGauge(200, 15, color_light_sleep, dashboardData.getSleepMinutesGoalFactor()));
-        }
+        // Update text representation
+        long totalSleepMinutes = dashboardData.getSleepMinutesTotal();
+        String sleepHours = String.format("%d", (int) Math.floor(totalSleepMinutes / 60f));
+        String sleepMinutes = String.format("%02d", (int) (totalSleepMinutes % 60f));
+        sleepAmount.setText(sleepHours + ":" + sleepMinutes);
+
+        // Draw gauge
+        sleepGauge.setImageBitmap(drawGauge(200, 15, color_light_sleep, dashboardData.getSleepMinutesGoalFactor()));
     }
 }
\ No newline at end of file
@@ -16,7 +16,6 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.activities.dashboard;
 
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -64,46 +63,15 @@ public class DashboardStepsWidget extends AbstractDashboardWidget {
         View fragmentView = inflater.inflate(R.layout.dashboard_widget_steps, container, false);
         stepsCount = fragmentView.findViewById(R.id.steps_count);
         stepsGauge = fragmentView.findViewById(R.id.steps_gauge);
-        fillData();
         return fragmentView;
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
-        if (stepsCount != null && stepsGauge != null) fillData();
-    }
-
     @Override
     protected void fillData() {
-        if (stepsGauge == null) return;
-        stepsGauge.post(new Runnable() {
-            @Override
-            public void run() {
-                FillDataAsyncTask myAsyncTask = new FillDataAsyncTask();
-                myAsyncTask.execute();
-            }
-        });
-    }
-
-    private class FillDataAsyncTask extends AsyncTask<Void, Void, Void> {
-        @Override
-        protected Void doInBackground(Void... params) {
-            dashboardData.getStepsTotal();
-            dashboardData.getStepsGoalFactor();
-            return null;
-        }
-
-        @Override
-        protected void onPostExecute(Void unused) {
-            super.onPostExecute(unused);
-
-            // Update text representation
-            stepsCount.setText(String.valueOf(dashboardData.getStepsTotal()));
-
-            // Draw gauge
-            stepsGauge.setImageBitmap(drawGauge(200, 15, color_activity, dashboardData.getStepsGoalFactor()));
+        // Update text representation
+        stepsCount.setText(String.valueOf(dashboardData.getStepsTotal()));
 
-        }
+        // Draw gauge
+        stepsGauge.setImageBitmap(drawGauge(200, 15, color_activity, dashboardData.getStepsGoalFactor()));
     }
 }
\ No newline at end of file
@@ -20,7 +20,6 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.text.Spannable;
 import android.text.SpannableString;
@@ -37,25 +36,14 @@ import android.widget.TextView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.R;
 import nodomain.freeyourgadget.gadgetbridge.activities.DashboardFragment;
-import nodomain.freeyourgadget.gadgetbridge.activities.charts.StepAnalysis;
-import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
-import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
-import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
-import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
-import nodomain.freeyourgadget.gadgetbridge.model.ActivitySession;
-import nodomain.freeyourgadget.gadgetbridge.util.DashboardUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.Prefs;
 
 /**
@@ -121,21 +109,9 @@ public class DashboardTodayWidget extends AbstractDashboardWidget {
 
         legend.setVisibility(prefs.getBoolean("dashboard_widget_today_legend", true) ? View.VISIBLE : View.GONE);
 
-        if (dashboardData.generalizedActivities.isEmpty()) {
-            fillData();
-        } else {
-            draw();
-        }
-
         return todayView;
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
-        if (todayChart != null) fillData();
-    }
-
     private void draw() {
         Prefs prefs = GBApplication.getPrefs();
         boolean upsideDown24h = prefs.getBoolean("dashboard_widget_today_24h_upside_down", false);
@@ -322,166 +298,12 @@ public class DashboardTodayWidget extends AbstractDashboardWidget {
         todayChart.setImageBitmap(todayBitmap);
     }
 
+    @Override
     protected void fillData() {
-        if (todayView == null) return;
-        todayView.post(new Runnable() {
-            @Override
-            public void run() {
-                FillDataAsyncTask myAsyncTask = new FillDataAsyncTask();
-                myAsyncTask.execute();
-            }
-        });
-    }
-
-    private class FillDataAsyncTask extends AsyncTask<Void, Void, Void> {
-        private final TreeMap<Long, Integer> activityTimestamps = new TreeMap<>();
-
-        private void addActivity(long timeFrom, long timeTo, int activityKind) {
-            for (long i = timeFrom; i<=timeTo; i++) {
-                // If the current timestamp isn't saved yet, do so immediately
-                if (activityTimestamps.get(i) == null) {
-                    activityTimestamps.put(i, activityKind);
-                    continue;
-                }
-                // If the current timestamp is already saved, compare the activity kinds and
-                // keep the most 'important' one
-                switch (activityTimestamps.get(i)) {
-                    case ActivityKind.TYPE_EXERCISE:
-                        break;
-                    case ActivityKind.TYPE_ACTIVITY:
-                        if (activityKind == ActivityKind.TYPE_EXERCISE)
-                            activityTimestamps.put(i, activityKind);
-                        break;
-                    case ActivityKind.TYPE_DEEP_SLEEP:
-                        if (activityKind == ActivityKind.TYPE_EXERCISE ||
-                                activityKind == ActivityKind.TYPE_ACTIVITY)
-                            activityTimestamps.put(i, activityKind);
-                        break;
-                    case ActivityKind.TYPE_LIGHT_SLEEP:
-                        if (activityKind == ActivityKind.TYPE_EXERCISE ||
-                                activityKind == ActivityKind.TYPE_ACTIVITY ||
-                                activityKind == ActivityKind.TYPE_DEEP_SLEEP)
-                            activityTimestamps.put(i, activityKind);
-                        break;
-                    case ActivityKind.TYPE_REM_SLEEP:
-                        if (activityKind == ActivityKind.TYPE_EXERCISE ||
-                                activityKind == ActivityKind.TYPE_ACTIVITY ||
-                                activityKind == ActivityKind.TYPE_DEEP_SLEEP ||
-                                activityKind == ActivityKind.TYPE_LIGHT_SLEEP)
-                            activityTimestamps.put(i, activityKind);
-                        break;
-                    case ActivityKind.TYPE_SLEEP:
-                        if (activityKind == ActivityKind.TYPE_EXERCISE ||
-                                activityKind == ActivityKind.TYPE_ACTIVITY ||
-                                activityKind == ActivityKind.TYPE_DEEP_SLEEP ||
-                                activityKind == ActivityKind.TYPE_LIGHT_SLEEP ||
-                                activityKind == ActivityKind.TYPE_REM_SLEEP)
-                            activityTimestamps.put(i, activityKind);
-                        break;
-                    default:
-                        activityTimestamps.put(i, activityKind);
-                        break;
-                }
-            }
-        }
-
-        private void calculateWornSessions(List<ActivitySample> samples) {
-            int firstTimestamp = 0;
-            int lastTimestamp = 0;
-
-            for (ActivitySample sample : samples) {
-                if (sample.getHeartRate() < 10 && firstTimestamp == 0) continue;
-                if (firstTimestamp == 0) firstTimestamp = sample.getTimestamp();
-                if (lastTimestamp == 0) lastTimestamp = sample.getTimestamp();
-                if ((sample.getHeartRate() < 10 || sample.getTimestamp() > lastTimestamp + dashboardData.hrIntervalSecs) && firstTimestamp != lastTimestamp) {
-                    LOG.debug("Registered worn session from {} to {}", firstTimestamp, lastTimestamp);
-                    addActivity(firstTimestamp, lastTimestamp, ActivityKind.TYPE_NOT_MEASURED);
-                    if (sample.getHeartRate() < 10) {
-                        firstTimestamp = 0;
-                        lastTimestamp = 0;
-                    } else {
-                        firstTimestamp = sample.getTimestamp();
-                        lastTimestamp = sample.getTimestamp();
-                    }
-                    continue;
-                }
-                lastTimestamp = sample.getTimestamp();
-            }
-            if (firstTimestamp != lastTimestamp) {
-                LOG.debug("Registered worn session from {} to {}", firstTimestamp, lastTimestamp);
-                addActivity(firstTimestamp, lastTimestamp, ActivityKind.TYPE_NOT_MEASURED);
-            }
-        }
-
-        private void createGeneralizedActivities() {
-            DashboardFragment.DashboardData.GeneralizedActivity previous = null;
-            long midDaySecond = dashboardData.timeFrom + (12 * 60 * 60);
-            for (Map.Entry<Long, Integer> activity : activityTimestamps.entrySet()) {
-                long timestamp = activity.getKey();
-                int activityKind = activity.getValue();
-                if (previous == null || previous.activityKind != activityKind || (!mode_24h && timestamp == midDaySecond) || previous.timeTo < timestamp - 60) {
-                    previous = new DashboardFragment.DashboardData.GeneralizedActivity(activityKind, timestamp, timestamp);
-                    dashboardData.generalizedActivities.add(previous);
-                } else {
-                    previous.timeTo = timestamp;
-                }
-            }
-        }
-
-        @Override
-        protected Void doInBackground(Void... params) {
-            // Retrieve activity data
-            dashboardData.generalizedActivities.clear();
-            List<GBDevice> devices = GBApplication.app().getDeviceManager().getDevices();
-            List<ActivitySample> allActivitySamples = new ArrayList<>();
-            List<ActivitySession> stepSessions = new ArrayList<>();
-            List<BaseActivitySummary> activitySummaries = null;
-            try (DBHandler dbHandler = GBApplication.acquireDB()) {
-                for (GBDevice dev : devices) {
-                    if ((dashboardData.showAllDevices || dashboardData.showDeviceList.contains(dev.getAddress())) && dev.getDeviceCoordinator().supportsActivityTracking()) {
-                        List<? extends ActivitySample> activitySamples = DashboardUtils.getAllSamples(dbHandler, dev, dashboardData);
-                        allActivitySamples.addAll(activitySamples);
-                        StepAnalysis stepAnalysis = new StepAnalysis();
-                        stepSessions.addAll(stepAnalysis.calculateStepSessions(activitySamples));
-                    }
-                }
-                activitySummaries = DashboardUtils.getWorkoutSamples(dbHandler, dashboardData);
-            } catch (Exception e) {
-                LOG.warn("Could not retrieve activity amounts: ", e);
-            }
-            Collections.sort(allActivitySamples, (lhs, rhs) -> Integer.valueOf(lhs.getTimestamp()).compareTo(rhs.getTimestamp()));
-
-            // Determine worn sessions from heart rate samples
-            calculateWornSessions(allActivitySamples);
-
-            // Integrate various data from multiple devices
-            for (ActivitySample sample : allActivitySamples) {
-                // Handle only TYPE_NOT_WORN and TYPE_SLEEP (including variants) here
-                if (sample.getKind() != ActivityKind.TYPE_NOT_WORN && (sample.getKind() == ActivityKind.TYPE_NOT_MEASURED || (sample.getKind() & ActivityKind.TYPE_SLEEP) == 0))
-                    continue;
-                // Add to day results
-                addActivity(sample.getTimestamp(), sample.getTimestamp() + 60, sample.getKind());
-            }
-            if (activitySummaries != null) {
-                for (BaseActivitySummary baseActivitySummary : activitySummaries) {
-                    addActivity(baseActivitySummary.getStartTime().getTime() / 1000, baseActivitySummary.getEndTime().getTime() / 1000, ActivityKind.TYPE_EXERCISE);
-                }
-            }
-            for (ActivitySession session : stepSessions) {
-                addActivity(session.getStartTime().getTime() / 1000, session.getEndTime().getTime() / 1000, ActivityKind.TYPE_ACTIVITY);
-            }
-            createGeneralizedActivities();
-            return null;
-        }
-
-        @Override
-        protected void onPostExecute(Void unused) {
-            super.onPostExecute(unused);
-            try {
-                draw();
-            } catch (IllegalStateException e) {
-                LOG.warn("calling draw() failed: " + e.getMessage());
-            }
+        try {
+            draw();
+        } catch (IllegalStateException e) {
+            LOG.warn("calling draw() failed: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
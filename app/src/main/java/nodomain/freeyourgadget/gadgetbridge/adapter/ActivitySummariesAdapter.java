@@ -26,8 +26,6 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +48,7 @@ import nodomain.freeyourgadget.gadgetbridge.entities.Device;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryJsonSummary;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryMetrics;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryParser;
 import nodomain.freeyourgadget.gadgetbridge.util.DateTimeUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.DeviceHelper;
@@ -124,9 +123,11 @@ public class ActivitySummariesAdapter extends AbstractActivityListingAdapter<Bas
             }
 
 
+            final List<BaseActivitySummary> summaries = qb.build().list();
+
             List<BaseActivitySummary> allSummaries = new ArrayList<>();
             allSummaries.add(new BaseActivitySummary());
-            allSummaries.addAll(qb.build().list());
+            allSummaries.addAll(summaries);
             setItems(allSummaries, true);
         } catch (Exception e) {
             GB.toast("Error loading activity summaries.", Toast.LENGTH_SHORT, GB.ERROR, e);
@@ -207,22 +208,12 @@ public class ActivitySummariesAdapter extends AbstractActivityListingAdapter<Bas
 
             final ActivitySummaryParser summaryParser = coordinator.getActivitySummaryParser(device);
             final ActivitySummaryJsonSummary activitySummaryJsonSummary = new ActivitySummaryJsonSummary(summaryParser, sportitem);
-            JSONObject summarySubdata = activitySummaryJsonSummary.getSummaryData();
-
-            if (summarySubdata != null) {
-                try {
-                    if (summarySubdata.has("caloriesBurnt")) {
-                        caloriesBurntSum += summarySubdata.getJSONObject("caloriesBurnt").getDouble("value");
-                    }
-                    if (summarySubdata.has("distanceMeters")) {
-                        distanceSum += summarySubdata.getJSONObject("distanceMeters").getDouble("value");
-                    }
-                    if (summarySubdata.has("activeSeconds")) {
-                        activeSecondsSum += summarySubdata.getJSONObject("activeSeconds").getDouble("value");
-                    }
-                } catch (JSONException e) {
-                    LOG.error("SportsActivity", e);
-                }
+            final ActivitySummaryMetrics metrics = activitySummaryJsonSummary.getMetrics();
+
+            if (metrics != null) {
+                caloriesBurntSum += metrics.getNumber("caloriesBurnt", 0);
+                distanceSum += metrics.getNumber("distanceMeters", 0);
+                activeSecondsSum += metrics.getNumber("activeSeconds", 0);
             }
         }
         DecimalFormat df = new DecimalFormat("#.##");
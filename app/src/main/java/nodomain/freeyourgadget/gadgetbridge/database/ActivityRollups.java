@@ -0,0 +1,584 @@
+package nodomain.freeyourgadget.gadgetbridge.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import de.greenrobot.dao.AbstractDao;
+import de.greenrobot.dao.Property;
+import nodomain.freeyourgadget.gadgetbridge.GBApplication;
+import nodomain.freeyourgadget.gadgetbridge.activities.HeartRateUtils;
+import nodomain.freeyourgadget.gadgetbridge.activities.charts.ActivityAnalysis;
+import nodomain.freeyourgadget.gadgetbridge.devices.AbstractSampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleVisitor;
+import nodomain.freeyourgadget.gadgetbridge.entities.ActivityDayRollup;
+import nodomain.freeyourgadget.gadgetbridge.entities.ActivityDayRollupDao;
+import nodomain.freeyourgadget.gadgetbridge.entities.ActivityHourRollup;
+import nodomain.freeyourgadget.gadgetbridge.entities.ActivityHourRollupDao;
+import nodomain.freeyourgadget.gadgetbridge.entities.CachedActivitySessionsDao;
+import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityAmount;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityAmounts;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityUser;
+
+/**
+ * Maintains the pre-aggregated per-day and per-hour activity totals, so that the dashboard and the
+ * week / month charts do not need to re-read and re-analyze every sample of every day.
+ *
+ * Rollups are computed on the first request for a day. Days that are over are then stored in the
+ * database, unless the database was written in the meantime. Along with the first stored rollup,
+ * triggers are created on the tables the samples are read from that drop the rollups of the
+ * affected days whenever rows are inserted, updated or deleted, no matter through which code path,
+ * so they will be recomputed on the next request.
+ *
+ * The rollups are calculated from the samples as returned by the sample provider, including any
+ * post-processing. A day is always a local calendar day, from one midnight to the next, so it is
+ * 23 or 25 hours long when the clocks change, see {@link #getStartOfDay(Calendar, int)}.
+ */
+public class ActivityRollups {
+    private static final Logger LOG = LoggerFactory.getLogger(ActivityRollups.class);
+
+    /**
+     * The sleep totals of a day are calculated from noon of the previous day, the same as in the
+     * sleep charts and {@link nodomain.freeyourgadget.gadgetbridge.model.DailyTotals}.
+     */
+    public static final int SLEEP_OFFSET_HOURS = -12;
+
+    private static final int SECONDS_PER_HOUR = 60 * 60;
+
+    /**
+     * How long before the start of a day the samples its rollup is calculated from start, due to
+     * the {@link #SLEEP_OFFSET_HOURS}.
+     */
+    private static final int SAMPLES_BEFORE_DAY = -SLEEP_OFFSET_HOURS * SECONDS_PER_HOUR;
+    /**
+     * How long after the start of a day the samples its rollup is calculated from end at most,
+     * i.e. the length of a day with a DST change.
+     */
+    private static final int SAMPLES_AFTER_DAY = 25 * SECONDS_PER_HOUR;
+    /**
+     * How far before a changed row the samples of a provider with post-processing may be affected
+     * by it, e.g. by a sleep stage that is applied to the samples before its timestamp.
+     */
+    private static final int POST_PROCESSING_MARGIN = 24 * SECONDS_PER_HOUR;
+
+    /**
+     * Returns the rollup of the given local day, computing it if necessary.
+     *
+     * @return the rollup, or null if the provider does not support rollups
+     */
+    @Nullable
+    public static ActivityDayRollup getDayRollup(final SampleProvider<?> provider, final Calendar day) {
+        final AbstractSampleProvider<?> sampleProvider = getSupportedProvider(provider);
+        if (sampleProvider == null) {
+            return null;
+        }
+        final DaoSession session = sampleProvider.getSession();
+        final Device dbDevice = DBHelper.findDevice(sampleProvider.getDevice(), session);
+        if (dbDevice == null) {
+            return null;
+        }
+
+        final int dayStart = getStartOfDay(day, 0);
+        final ActivityDayRollup rollup = session.getActivityDayRollupDao().queryBuilder()
+                .where(
+                        ActivityDayRollupDao.Properties.DeviceId.eq(dbDevice.getId()),
+                        ActivityDayRollupDao.Properties.Timestamp.eq(dayStart)
+                ).unique();
+        if (rollup != null && hasCurrentDistance(rollup, new ActivityUser())) {
+            return rollup;
+        }
+
+        return computeRollups(sampleProvider, dbDevice.getId(), day).dayRollup;
+    }
+
+    /**
+     * Returns the stored rollups of the given consecutive local days, using a single query. Unlike
+     * {@link #getDayRollup(SampleProvider, Calendar)}, missing rollups are not computed.
+     *
+     * @return the rollups, one per day, null for the days without a stored rollup, or null if the
+     * provider does not support rollups
+     */
+    @Nullable
+    public static ActivityDayRollup[] getStoredDayRollups(final SampleProvider<?> provider, final Calendar firstDay, final int days) {
+        final AbstractSampleProvider<?> sampleProvider = getSupportedProvider(provider);
+        if (sampleProvider == null) {
+            return null;
+        }
+        final DaoSession session = sampleProvider.getSession();
+        final Device dbDevice = DBHelper.findDevice(sampleProvider.getDevice(), session);
+        if (dbDevice == null) {
+            return null;
+        }
+
+        final int[] dayStarts = new int[days];
+        final Calendar day = (Calendar) firstDay.clone();
+        for (int i = 0; i < days; i++) {
+            dayStarts[i] = getStartOfDay(day, 0);
+            day.add(Calendar.DATE, 1);
+        }
+
+        final ActivityDayRollup[] result = new ActivityDayRollup[days];
+        if (days == 0) {
+            return result;
+        }
+        final List<ActivityDayRollup> rollups = session.getActivityDayRollupDao().queryBuilder()
+                .where(
+                        ActivityDayRollupDao.Properties.DeviceId.eq(dbDevice.getId()),
+                        ActivityDayRollupDao.Properties.Timestamp.between(dayStarts[0], dayStarts[days - 1])
+                ).list();
+        final ActivityUser activityUser = new ActivityUser();
+        for (final ActivityDayRollup rollup : rollups) {
+            final int index = Arrays.binarySearch(dayStarts, rollup.getTimestamp());
+            if (index >= 0 && hasCurrentDistance(rollup, activityUser)) {
+                result[index] = rollup;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the hourly rollups of the given local day, ordered by timestamp, computing them if
+     * necessary. Hours without any samples are still returned, with all values zero. The hours are
+     * consecutive, so there are 23 or 25 of them on days with a DST change.
+     *
+     * @return the rollups, or an empty list if the provider does not support rollups
+     */
+    @NonNull
+    public static List<ActivityHourRollup> getHourRollups(final SampleProvider<?> provider, final Calendar day) {
+        final AbstractSampleProvider<?> sampleProvider = getSupportedProvider(provider);
+        if (sampleProvider == null) {
+            return new ArrayList<>();
+        }
+        final DaoSession session = sampleProvider.getSession();
+        final Device dbDevice = DBHelper.findDevice(sampleProvider.getDevice(), session);
+        if (dbDevice == null) {
+            return new ArrayList<>();
+        }
+
+        final int dayStart = getStartOfDay(day, 0);
+        final int nextDayStart = getStartOfNextDay(day, 0);
+        // the hours are stored and dropped together with their day
+        final ActivityDayRollup rollup = session.getActivityDayRollupDao().queryBuilder()
+                .where(
+                        ActivityDayRollupDao.Properties.DeviceId.eq(dbDevice.getId()),
+                        ActivityDayRollupDao.Properties.Timestamp.eq(dayStart)
+                ).unique();
+        if (rollup == null || !hasCurrentDistance(rollup, new ActivityUser())) {
+            return computeRollups(sampleProvider, dbDevice.getId(), day).hourRollups;
+        }
+
+        return session.getActivityHourRollupDao().queryBuilder()
+                .where(
+                        ActivityHourRollupDao.Properties.DeviceId.eq(dbDevice.getId()),
+                        ActivityHourRollupDao.Properties.Timestamp.between(dayStart, nextDayStart - 1)
+                ).orderAsc(ActivityHourRollupDao.Properties.Timestamp)
+                .list();
+    }
+
+    /**
+     * Drops all rollups and cached sessions of the given device, e.g. when the device is deleted.
+     */
+    public static void deleteAll(final DaoSession session, final long deviceId) {
+        session.getActivityDayRollupDao().queryBuilder()
+                .where(ActivityDayRollupDao.Properties.DeviceId.eq(deviceId))
+                .buildDelete().executeDeleteWithoutDetachingEntities();
+        session.getActivityHourRollupDao().queryBuilder()
+                .where(ActivityHourRollupDao.Properties.DeviceId.eq(deviceId))
+                .buildDelete().executeDeleteWithoutDetachingEntities();
+        ActivitySessionCache.deleteAll(session, deviceId);
+    }
+
+    /**
+     * Converts the rollup to the activity amounts of its day, as they would have been calculated
+     * by {@link ActivityAnalysis} over the samples of that day.
+     *
+     * @param sleep if true, the amounts contain the sleep of the day, otherwise the activity
+     */
+    public static ActivityAmounts toActivityAmounts(final ActivityDayRollup rollup, final boolean sleep) {
+        final ActivityAmounts amounts = new ActivityAmounts();
+        if (sleep) {
+            addAmount(amounts, ActivityKind.TYPE_DEEP_SLEEP, rollup.getDeepSleepSeconds(), 0);
+            addAmount(amounts, ActivityKind.TYPE_LIGHT_SLEEP, rollup.getLightSleepSeconds(), 0);
+            addAmount(amounts, ActivityKind.TYPE_REM_SLEEP, rollup.getRemSleepSeconds(), 0);
+        } else {
+            addAmount(amounts, ActivityKind.TYPE_ACTIVITY, rollup.getActiveSeconds(), rollup.getSteps());
+            addAmount(amounts, ActivityKind.TYPE_NOT_WORN, rollup.getNotWornSeconds(), 0);
+        }
+        amounts.calculatePercentages();
+        return amounts;
+    }
+
+    private static void addAmount(final ActivityAmounts amounts, final int kind, final long seconds, final long steps) {
+        if (seconds <= 0 && steps <= 0) {
+            return;
+        }
+        final ActivityAmount amount = new ActivityAmount(kind);
+        amount.addSeconds(seconds);
+        amount.addSteps(steps);
+        amounts.addAmount(amount);
+    }
+
+    /**
+     * Returns the distance covered by the given steps, in meters, the same as on the dashboard.
+     */
+    public static int getDistanceMeters(final long steps, final ActivityUser activityUser) {
+        return (int) (steps * activityUser.getStepLengthCm() / 100);
+    }
+
+    /**
+     * Whether the distance of the rollup was calculated with the current step length of the user.
+     * Otherwise, the rollups of the day are recomputed.
+     */
+    private static boolean hasCurrentDistance(final ActivityDayRollup rollup, final ActivityUser activityUser) {
+        return rollup.getDistance() == getDistanceMeters(rollup.getSteps(), activityUser);
+    }
+
+    @Nullable
+    private static AbstractSampleProvider<?> getSupportedProvider(final SampleProvider<?> provider) {
+        if (!(provider instanceof AbstractSampleProvider)) {
+            return null;
+        }
+        final AbstractSampleProvider<?> sampleProvider = (AbstractSampleProvider<?>) provider;
+        if (sampleProvider.getSampleDao() == null) {
+            // generated samples, there is nothing to invalidate the rollups
+            return null;
+        }
+        return sampleProvider;
+    }
+
+    private static Rollups computeRollups(final AbstractSampleProvider<?> provider, final long deviceId, final Calendar day) {
+        final int dayStart = getStartOfDay(day, 0);
+        final int dayEnd = getStartOfNextDay(day, 0) - 1;
+        final int sleepStart = getStartOfDay(day, SLEEP_OFFSET_HOURS);
+        final int sleepEnd = getStartOfNextDay(day, SLEEP_OFFSET_HOURS) - 1;
+
+        // remember what the database looked like before reading the samples
+        final long generation = GBApplication.getDbWriteGeneration();
+
+        final ActivityAnalysis analysis = new ActivityAnalysis();
+        final ActivityAmounts dayAmounts = analysis.calculateActivityAmounts(provider, dayStart, dayEnd);
+        final ActivityAmounts sleepAmounts = analysis.calculateActivityAmounts(provider, sleepStart, sleepEnd);
+
+        final HourRollupVisitor hourVisitor = new HourRollupVisitor(deviceId, dayStart, dayEnd);
+        provider.visitAllActivitySamples(dayStart, dayEnd, hourVisitor);
+
+        final ActivityDayRollup rollup = new ActivityDayRollup();
+        rollup.setDeviceId(deviceId);
+        rollup.setTimestamp(dayStart);
+        for (final ActivityAmount amount : dayAmounts.getAmounts()) {
+            rollup.setSteps(rollup.getSteps() + (int) amount.getTotalSteps());
+            switch (amount.getActivityKind()) {
+                case ActivityKind.TYPE_ACTIVITY:
+                    rollup.setActiveSeconds((int) amount.getTotalSeconds());
+                    break;
+                case ActivityKind.TYPE_NOT_WORN:
+                    rollup.setNotWornSeconds((int) amount.getTotalSeconds());
+                    break;
+            }
+        }
+        for (final ActivityAmount amount : sleepAmounts.getAmounts()) {
+            switch (amount.getActivityKind()) {
+                case ActivityKind.TYPE_LIGHT_SLEEP:
+                    rollup.setLightSleepSeconds((int) amount.getTotalSeconds());
+                    break;
+                case ActivityKind.TYPE_DEEP_SLEEP:
+                    rollup.setDeepSleepSeconds((int) amount.getTotalSeconds());
+                    break;
+                case ActivityKind.TYPE_REM_SLEEP:
+                    rollup.setRemSleepSeconds((int) amount.getTotalSeconds());
+                    break;
+            }
+        }
+        rollup.setHeartRateMin(hourVisitor.dayHeartRateMin);
+        rollup.setHeartRateMax(hourVisitor.dayHeartRateMax);
+        rollup.setHeartRateAverage(hourVisitor.dayHeartRateCount > 0 ? (int) (hourVisitor.dayHeartRateSum / hourVisitor.dayHeartRateCount) : 0);
+
+        final ActivityUser activityUser = new ActivityUser();
+        rollup.setDistance(getDistanceMeters(rollup.getSteps(), activityUser));
+        final List<ActivityHourRollup> hourRollups = Arrays.asList(hourVisitor.getRollups());
+        for (final ActivityHourRollup hourRollup : hourRollups) {
+            hourRollup.setDistance(getDistanceMeters(hourRollup.getSteps(), activityUser));
+        }
+
+        LOG.debug("Computed activity rollups for device {} at {}", deviceId, dayStart);
+
+        // the samples of a day that is not over yet are still changing
+        if (dayEnd < System.currentTimeMillis() / 1000) {
+            storeDerivedData(provider, generation, session -> {
+                session.getActivityDayRollupDao().insertOrReplace(rollup);
+                session.getActivityHourRollupDao().insertOrReplaceInTx(hourRollups);
+            });
+        }
+
+        return new Rollups(rollup, hourRollups);
+    }
+
+    /**
+     * Writes data derived from the samples of a provider to the database.
+     */
+    interface DerivedDataWriter {
+        void write(DaoSession session);
+    }
+
+    /**
+     * Stores data derived from the samples of the given provider, unless the database was written
+     * since the given {@link GBApplication#getDbWriteGeneration() generation}, i.e. since the samples
+     * were read, which may have made the data outdated already. Since this is only a cache, nothing
+     * is stored either if another thread is writing at the moment, instead of waiting for it.
+     * <p>
+     * This also makes sure that the derived data of the provider is dropped whenever the tables its
+     * samples are read from change, see {@link #createInvalidationTriggers(SQLiteDatabase, AbstractSampleProvider)}.
+     */
+    static void storeDerivedData(final AbstractSampleProvider<?> provider, final long generation, final DerivedDataWriter writer) {
+        try (DBHandler handler = GBApplication.tryAcquireDB()) {
+            if (handler == null || GBApplication.getDbWriteGeneration() != generation) {
+                return;
+            }
+            final SQLiteDatabase db = handler.getDatabase();
+            db.beginTransaction();
+            try {
+                createInvalidationTriggers(db, provider);
+                writer.write(handler.getDaoSession());
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (final Exception e) {
+            LOG.warn("Failed to store data derived from {}", provider.getSampleDao().getTablename(), e);
+        }
+    }
+
+    /**
+     * Creates the triggers that drop the rollups and {@link ActivitySessionCache cached sessions}
+     * affected by a row whenever one is inserted, updated or deleted in the tables the samples of
+     * the given provider are read from. Doing this in the database, rather than in the sample
+     * providers, also covers device support classes writing samples through their DAO and deleting
+     * samples or devices.
+     */
+    private static void createInvalidationTriggers(final SQLiteDatabase db, final AbstractSampleProvider<?> provider) {
+        if (provider.canVisitRawColumns()) {
+            createInvalidationTriggers(db, provider.getSampleDao(), true);
+            return;
+        }
+        // the post-processing may carry state over from earlier rows, e.g. cumulative steps, or
+        // apply later rows to earlier samples, e.g. sleep stages, so a change may affect more than
+        // the samples at its own timestamp
+        createInvalidationTriggers(db, provider.getSampleDao(), false);
+        for (final AbstractDao<?, ?> dao : provider.getSampleSourceDaos()) {
+            createInvalidationTriggers(db, dao, false);
+        }
+    }
+
+    /**
+     * @param exact if true, only the data derived from samples at the timestamp of a changed row is
+     *              dropped, otherwise all data from {@link #POST_PROCESSING_MARGIN} before it on
+     */
+    private static void createInvalidationTriggers(final SQLiteDatabase db, final AbstractDao<?, ?> dao, final boolean exact) {
+        final String table = dao.getTablename();
+        Property timestampProperty = null;
+        String deviceIdColumn = null;
+        for (final Property property : dao.getProperties()) {
+            if (property.name.equals("timestamp") || (property.name.equals("timestampFrom") && timestampProperty == null)) {
+                timestampProperty = property;
+            } else if (property.name.equals("deviceId")) {
+                deviceIdColumn = property.columnName;
+            }
+        }
+        if (timestampProperty == null || deviceIdColumn == null) {
+            throw new IllegalStateException("No timestamp or device id column in " + table);
+        }
+        // time samples are stored in milliseconds, activity samples and overlays in seconds
+        final boolean millis = timestampProperty.type == long.class || timestampProperty.type == Long.class;
+
+        final String[][] triggers = {
+                {"INSERT", "NEW"},
+                {"UPDATE", "OLD"},
+                {"UPDATE", "NEW"},
+                {"DELETE", "OLD"},
+        };
+        for (final String[] trigger : triggers) {
+            final String event = trigger[0];
+            final String row = trigger[1];
+            final String timestamp = "(" + row + "." + timestampProperty.columnName + (millis ? " / 1000" : "") + ")";
+            final String deviceId = row + "." + deviceIdColumn;
+            final String dropRollups;
+            final String dropSessions;
+            if (exact) {
+                dropRollups = ActivityDayRollupDao.Properties.Timestamp.columnName
+                        + " BETWEEN " + timestamp + " - " + SAMPLES_AFTER_DAY + " AND " + timestamp + " + " + SAMPLES_BEFORE_DAY;
+                dropSessions = CachedActivitySessionsDao.Properties.TimestampFrom.columnName + " <= " + timestamp
+                        + " AND " + CachedActivitySessionsDao.Properties.TimestampTo.columnName + " >= " + timestamp;
+            } else {
+                dropRollups = ActivityDayRollupDao.Properties.Timestamp.columnName
+                        + " >= " + timestamp + " - " + (SAMPLES_AFTER_DAY + POST_PROCESSING_MARGIN);
+                dropSessions = CachedActivitySessionsDao.Properties.TimestampTo.columnName
+                        + " >= " + timestamp + " - " + POST_PROCESSING_MARGIN;
+            }
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + (exact ? "_INVALIDATE_ROLLUPS_" : "_INVALIDATE_ROLLUPS_AFTER_") + event + "_" + row
+                    + " AFTER " + event + " ON " + table + " BEGIN"
+                    + " DELETE FROM " + ActivityDayRollupDao.TABLENAME
+                    + " WHERE " + ActivityDayRollupDao.Properties.DeviceId.columnName + " = " + deviceId
+                    + " AND " + dropRollups + ";"
+                    + " DELETE FROM " + CachedActivitySessionsDao.TABLENAME
+                    + " WHERE " + CachedActivitySessionsDao.Properties.DeviceId.columnName + " = " + deviceId
+                    + " AND " + dropSessions + ";"
+                    + " END");
+        }
+    }
+
+    /**
+     * Returns the start of the local day after the given one, see {@link #getStartOfDay(Calendar, int)}.
+     */
+    public static int getStartOfNextDay(Calendar day, final int offsetHours) {
+        day = (Calendar) day.clone(); // do not modify the caller's argument
+        day.add(Calendar.DATE, 1);
+        return getStartOfDay(day, offsetHours);
+    }
+
+    /**
+     * Returns the start of the given local day, as a timestamp in seconds. This is the one
+     * definition of a day used for the rollups and for all daily totals calculated without them:
+     * a day ends where the next one starts, so it is 23 or 25 hours long when the clocks change.
+     *
+     * @param offsetHours the offset from local midnight, e.g. {@link #SLEEP_OFFSET_HOURS}
+     */
+    public static int getStartOfDay(Calendar day, final int offsetHours) {
+        day = (Calendar) day.clone(); // do not modify the caller's argument
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.add(Calendar.HOUR, offsetHours);
+        return (int) (day.getTimeInMillis() / 1000);
+    }
+
+    /**
+     * Aggregates the samples of one day into hourly buckets. The time between two samples is
+     * attributed to the hour of the later one, split in half if the activity kind changed, the same
+     * way as in {@link ActivityAnalysis}.
+     */
+    private static class HourRollupVisitor implements SampleVisitor {
+        private final HeartRateUtils heartRateUtils = HeartRateUtils.getInstance();
+        private final int dayStart;
+        private final ActivityHourRollup[] rollups;
+        private final long[] heartRateSums;
+        private final int[] heartRateCounts;
+
+        private boolean hasPreviousSample = false;
+        private int previousTimestamp;
+        private int previousRawKind;
+        private int previousKind;
+
+        int dayHeartRateMin = 0;
+        int dayHeartRateMax = 0;
+        long dayHeartRateSum = 0;
+        int dayHeartRateCount = 0;
+
+        HourRollupVisitor(final long deviceId, final int dayStart, final int dayEnd) {
+            this.dayStart = dayStart;
+            // count the hours that actually passed, rather than the hours on the clock
+            final int hours = (dayEnd - dayStart) / SECONDS_PER_HOUR + 1;
+            rollups = new ActivityHourRollup[hours];
+            heartRateSums = new long[hours];
+            heartRateCounts = new int[hours];
+            for (int i = 0; i < rollups.length; i++) {
+                rollups[i] = new ActivityHourRollup();
+                rollups[i].setDeviceId(deviceId);
+                rollups[i].setTimestamp(dayStart + i * SECONDS_PER_HOUR);
+            }
+        }
+
+        @Override
+        public void visit(int timestamp, int rawKind, int kind, float intensity, int steps, int heartRate) {
+            final int hour = (timestamp - dayStart) / SECONDS_PER_HOUR;
+            final ActivityHourRollup rollup = rollups[hour];
+
+            if (steps > 0) {
+                rollup.setSteps(rollup.getSteps() + steps);
+            }
+
+            if (heartRateUtils.isValidHeartRateValue(heartRate)) {
+                if (heartRateCounts[hour] == 0 || heartRate < rollup.getHeartRateMin()) {
+                    rollup.setHeartRateMin(heartRate);
+                }
+                if (heartRate > rollup.getHeartRateMax()) {
+                    rollup.setHeartRateMax(heartRate);
+                }
+                heartRateSums[hour] += heartRate;
+                heartRateCounts[hour]++;
+                rollup.setHeartRateAverage((int) (heartRateSums[hour] / heartRateCounts[hour]));
+
+                if (dayHeartRateCount == 0 || heartRate < dayHeartRateMin) {
+                    dayHeartRateMin = heartRate;
+                }
+                if (heartRate > dayHeartRateMax) {
+                    dayHeartRateMax = heartRate;
+                }
+                dayHeartRateSum += heartRate;
+                dayHeartRateCount++;
+            }
+
+            if (hasPreviousSample) {
+                final int timeDifference = timestamp - previousTimestamp;
+                if (previousRawKind == rawKind) {
+                    addSeconds(rollup, kind, timeDifference);
+                } else {
+                    final int sharedTimeDifference = (int) (timeDifference / 2.0f);
+                    addSeconds(rollup, previousKind, sharedTimeDifference);
+                    addSeconds(rollup, kind, sharedTimeDifference);
+                }
+            }
+
+            hasPreviousSample = true;
+            previousTimestamp = timestamp;
+            previousRawKind = rawKind;
+            previousKind = kind;
+        }
+
+        private static void addSeconds(final ActivityHourRollup rollup, final int kind, final int seconds) {
+            switch (kind) {
+                case ActivityKind.TYPE_DEEP_SLEEP:
+                    rollup.setDeepSleepSeconds(rollup.getDeepSleepSeconds() + seconds);
+                    break;
+                case ActivityKind.TYPE_LIGHT_SLEEP:
+                    rollup.setLightSleepSeconds(rollup.getLightSleepSeconds() + seconds);
+                    break;
+                case ActivityKind.TYPE_REM_SLEEP:
+                    rollup.setRemSleepSeconds(rollup.getRemSleepSeconds() + seconds);
+                    break;
+                case ActivityKind.TYPE_NOT_WORN:
+                    rollup.setNotWornSeconds(rollup.getNotWornSeconds() + seconds);
+                    break;
+                default:
+                    rollup.setActiveSeconds(rollup.getActiveSeconds() + seconds);
+                    break;
+            }
+        }
+
+        ActivityHourRollup[] getRollups() {
+            return rollups;
+        }
+    }
+
+    private static class Rollups {
+        final ActivityDayRollup dayRollup;
+        final List<ActivityHourRollup> hourRollups;
+
+        Rollups(final ActivityDayRollup dayRollup, final List<ActivityHourRollup> hourRollups) {
+            this.dayRollup = dayRollup;
+            this.hourRollups = hourRollups;
+        }
+    }
+}
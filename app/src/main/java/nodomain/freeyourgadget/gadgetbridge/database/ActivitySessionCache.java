@@ -0,0 +1,137 @@
+package nodomain.freeyourgadget.gadgetbridge.database;
+
+import androidx.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+
+import de.greenrobot.dao.query.QueryBuilder;
+import nodomain.freeyourgadget.gadgetbridge.GBApplication;
+import nodomain.freeyourgadget.gadgetbridge.devices.AbstractSampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.entities.CachedActivitySessions;
+import nodomain.freeyourgadget.gadgetbridge.entities.CachedActivitySessionsDao;
+import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.util.DateTimeUtils;
+
+/**
+ * Stores the sleep and step sessions calculated for a time range of a device, so that the charts
+ * and dashboard widgets of past days do not analyze the same samples again on every refresh.
+ *
+ * Only ranges that ended before the current day are stored, keyed by the range that was requested,
+ * so that there is one row per requested range and device, rather than one for every refresh of a
+ * day that is not over yet. The sessions are calculated from the samples as returned by the
+ * sample provider, including any post-processing. Whenever the tables these are read from are
+ * written, the triggers created by {@link ActivityRollups} drop the sessions of the ranges that
+ * may be affected, so only those are recomputed.
+ */
+public class ActivitySessionCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ActivitySessionCache.class);
+
+    public static final int TYPE_SLEEP = 1;
+    public static final int TYPE_STEPS = 2;
+
+    /**
+     * Returns the stored sessions of the given range.
+     *
+     * @param parameters a hash of the settings the sessions depend on
+     * @return the encoded sessions, or null if there are none for these parameters
+     */
+    @Nullable
+    public static byte[] get(final SampleProvider<?> provider, final int type, final int timestampFrom, final int timestampTo, final int parameters) {
+        final AbstractSampleProvider<?> sampleProvider = getSupportedProvider(provider, timestampTo);
+        if (sampleProvider == null) {
+            return null;
+        }
+        final DaoSession session = sampleProvider.getSession();
+        final Device dbDevice = DBHelper.findDevice(sampleProvider.getDevice(), session);
+        if (dbDevice == null) {
+            return null;
+        }
+
+        final CachedActivitySessions cached = session.getCachedActivitySessionsDao().queryBuilder()
+                .where(
+                        CachedActivitySessionsDao.Properties.DeviceId.eq(dbDevice.getId()),
+                        CachedActivitySessionsDao.Properties.Type.eq(type),
+                        CachedActivitySessionsDao.Properties.TimestampFrom.eq(timestampFrom),
+                        CachedActivitySessionsDao.Properties.TimestampTo.eq(timestampTo)
+                ).unique();
+        if (cached == null || cached.getParameters() != parameters) {
+            return null;
+        }
+        return cached.getData();
+    }
+
+    /**
+     * Stores the sessions of the given range, if it ended before the current day and the provider
+     * is supported.
+     *
+     * @param dbWriteGeneration the {@link GBApplication#getDbWriteGeneration()} from before the
+     *                          samples the sessions were calculated from were read
+     */
+    public static void put(final SampleProvider<?> provider, final int type, final int timestampFrom, final int timestampTo, final int parameters, final byte[] data, final long dbWriteGeneration) {
+        final AbstractSampleProvider<?> sampleProvider = getSupportedProvider(provider, timestampTo);
+        if (sampleProvider == null) {
+            return;
+        }
+        ActivityRollups.storeDerivedData(sampleProvider, dbWriteGeneration,
+                session -> store(sampleProvider, session, type, timestampFrom, timestampTo, parameters, data));
+    }
+
+    private static void store(final AbstractSampleProvider<?> provider, final DaoSession session, final int type, final int timestampFrom, final int timestampTo, final int parameters, final byte[] data) {
+        final Device dbDevice = DBHelper.findDevice(provider.getDevice(), session);
+        if (dbDevice == null) {
+            return;
+        }
+
+        final CachedActivitySessionsDao dao = session.getCachedActivitySessionsDao();
+        // replaces the sessions of this range, and drops those of ranges starting or ending at the
+        // same time, which are superseded by this one, e.g. after the sleep range setting changed
+        final QueryBuilder<CachedActivitySessions> qb = dao.queryBuilder();
+        qb.where(
+                CachedActivitySessionsDao.Properties.DeviceId.eq(dbDevice.getId()),
+                CachedActivitySessionsDao.Properties.Type.eq(type),
+                qb.or(
+                        CachedActivitySessionsDao.Properties.TimestampFrom.eq(timestampFrom),
+                        CachedActivitySessionsDao.Properties.TimestampTo.eq(timestampTo)
+                )
+        ).buildDelete().executeDeleteWithoutDetachingEntities();
+
+        final CachedActivitySessions cached = new CachedActivitySessions();
+        cached.setDeviceId(dbDevice.getId());
+        cached.setType(type);
+        cached.setTimestampFrom(timestampFrom);
+        cached.setTimestampTo(timestampTo);
+        cached.setParameters(parameters);
+        cached.setData(data);
+        dao.insert(cached);
+
+        LOG.debug("Stored sessions of type {} for device {} from {} to {}", type, dbDevice.getId(), timestampFrom, timestampTo);
+    }
+
+    public static void deleteAll(final DaoSession session, final long deviceId) {
+        session.getCachedActivitySessionsDao().queryBuilder()
+                .where(CachedActivitySessionsDao.Properties.DeviceId.eq(deviceId))
+                .buildDelete().executeDeleteWithoutDetachingEntities();
+    }
+
+    @Nullable
+    private static AbstractSampleProvider<?> getSupportedProvider(final SampleProvider<?> provider, final int timestampTo) {
+        if (!(provider instanceof AbstractSampleProvider)) {
+            return null;
+        }
+        final AbstractSampleProvider<?> sampleProvider = (AbstractSampleProvider<?>) provider;
+        if (sampleProvider.getSampleDao() == null) {
+            // generated samples, there is nothing to invalidate the sessions
+            return null;
+        }
+        // the samples of the current day are still changing
+        if (timestampTo >= DateTimeUtils.dayStart(new Date()).getTime() / 1000) {
+            return null;
+        }
+        return sampleProvider;
+    }
+}
@@ -27,11 +27,22 @@ import nodomain.freeyourgadget.gadgetbridge.util.GB;
 public abstract class DBAccess extends AsyncTask {
     private final String mTask;
     private final Context mContext;
+    private final boolean mReadOnly;
     private Exception mError;
 
     public DBAccess(String task, Context context) {
+        this(task, context, false);
+    }
+
+    /**
+     * @param readOnly whether the task only reads, so that it does not have to wait for
+     *                 other tasks and device syncs writing to the database
+     * @see GBApplication#acquireReadOnlyDB()
+     */
+    public DBAccess(String task, Context context, boolean readOnly) {
         mTask = task;
         mContext = context;
+        mReadOnly = readOnly;
     }
 
     public Context getContext() {
@@ -42,7 +53,7 @@ public abstract class DBAccess extends AsyncTask {
 
     @Override
     protected Object doInBackground(Object[] params) {
-        try (DBHandler db = GBApplication.acquireDB()) {
+        try (DBHandler db = mReadOnly ? GBApplication.acquireReadOnlyDB() : GBApplication.acquireDB()) {
             doInBackground(db);
         } catch (Exception e) {
             mError = e;
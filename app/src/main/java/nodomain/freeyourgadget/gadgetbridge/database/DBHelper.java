@@ -36,9 +36,13 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import de.greenrobot.dao.Property;
 import de.greenrobot.dao.query.Query;
@@ -86,6 +90,11 @@ import nodomain.freeyourgadget.gadgetbridge.util.Prefs;
 public class DBHelper {
     private static final Logger LOG = LoggerFactory.getLogger(DBHelper.class);
 
+    // devices by address, per session, see #findDevice()
+    private static final Map<DaoSession, Map<String, Device>> deviceCache = new WeakHashMap<>();
+    private static final AtomicLong deviceCacheHits = new AtomicLong();
+    private static final AtomicLong deviceCacheMisses = new AtomicLong();
+
     private final Context context;
 
     public DBHelper(Context context) {
@@ -150,6 +159,10 @@ public class DBHelper {
         String dbPath = getClosedDBPath(dbHandler);
         try {
             File toFile = new File(dbPath);
+            // closing the database checkpoints the write-ahead log, but make sure that no
+            // leftovers of it get applied to the imported database
+            new File(dbPath + "-wal").delete();
+            new File(dbPath + "-shm").delete();
             FileUtils.copyFile(fromFile, toFile);
         } finally {
             dbHandler.openDb();
@@ -196,11 +209,28 @@ public class DBHelper {
      * be created in the database.
      *
      * Note: so far there is only ever a single user; there is no multi-user support yet
+     * <p>
+     * With a session from {@link GBApplication#acquireReadOnlyDB()}, an existing user is returned
+     * as is, and a missing one is created through {@link GBApplication#acquireDB()}.
      * @param session
      * @return the User entity
      */
     @NonNull
     public static User getUser(DaoSession session) {
+        if (GBApplication.isReadOnlySession(session)) {
+            List<User> users = session.getUserDao().loadAll();
+            if (!users.isEmpty() && !users.get(0).getUserAttributesList().isEmpty()) {
+                return users.get(0);
+            }
+            try (DBHandler db = GBApplication.acquireDB()) {
+                getUser(db.getDaoSession());
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to store the user", e);
+            }
+            session.getUserDao().detachAll();
+            return session.getUserDao().loadAll().get(0);
+        }
+
         ActivityUser prefsUser = new ActivityUser();
         UserDao userDao = session.getUserDao();
         User user;
@@ -362,22 +392,84 @@ public class DBHelper {
 
     /**
      * Finds the corresponding Device entity for the given GBDevice.
+     * The entity is cached per session, so that repeated lookups do not query the database.
+     * The cache must be invalidated explicitly, see {@link #invalidateDeviceCache} and
+     * {@link #clearDeviceCache}.
      * @param gbDevice
      * @param session
      * @return the corresponding Device entity, or null if none
      */
     @Nullable
     public static Device findDevice(GBDevice gbDevice, DaoSession session) {
+        final String address = gbDevice.getAddress();
+        final Device cachedDevice = getCachedDevice(session, address);
+        if (cachedDevice != null) {
+            deviceCacheHits.incrementAndGet();
+            return cachedDevice;
+        }
+
+        deviceCacheMisses.incrementAndGet();
         DeviceDao deviceDao = session.getDeviceDao();
-        Query<Device> query = deviceDao.queryBuilder().where(DeviceDao.Properties.Identifier.eq(gbDevice.getAddress())).build();
+        Query<Device> query = deviceDao.queryBuilder().where(DeviceDao.Properties.Identifier.eq(address)).build();
         List<Device> devices = query.list();
         if (devices.size() > 0) {
-            return devices.get(0);
+            final Device device = devices.get(0);
+            synchronized (deviceCache) {
+                Map<String, Device> sessionCache = deviceCache.get(session);
+                if (sessionCache == null) {
+                    sessionCache = new HashMap<>();
+                    deviceCache.put(session, sessionCache);
+                }
+                sessionCache.put(address, device);
+            }
+            return device;
         }
         return null;
     }
 
+    @Nullable
+    private static Device getCachedDevice(final DaoSession session, final String address) {
+        synchronized (deviceCache) {
+            final Map<String, Device> sessionCache = deviceCache.get(session);
+            return sessionCache != null ? sessionCache.get(address) : null;
+        }
+    }
+
+    /**
+     * Removes the given address from the device lookup cache of the session. Must be called
+     * whenever the identifier of a device changes or a device is deleted.
+     */
+    public static void invalidateDeviceCache(final DaoSession session, final String address) {
+        synchronized (deviceCache) {
+            final Map<String, Device> sessionCache = deviceCache.get(session);
+            if (sessionCache != null) {
+                sessionCache.remove(address);
+            }
+        }
+    }
+
+    /**
+     * Removes all devices from the lookup cache of the session. Must be called whenever the
+     * session is cleared.
+     */
+    public static void clearDeviceCache(final DaoSession session) {
+        synchronized (deviceCache) {
+            deviceCache.remove(session);
+        }
+    }
+
+    /**
+     * Returns the number of device lookups served from the cache, and the number of lookups
+     * that had to query the database, since the start of the app.
+     */
+    public static long[] getDeviceCacheStats() {
+        return new long[]{deviceCacheHits.get(), deviceCacheMisses.get()};
+    }
+
     public static void updateDeviceMacAddress(final DaoSession session, final String oldAddress, final String newAddress) {
+        invalidateDeviceCache(session, oldAddress);
+        invalidateDeviceCache(session, newAddress);
+
         final DeviceDao deviceDao = session.getDeviceDao();
         final Query<Device> query = deviceDao.queryBuilder().where(DeviceDao.Properties.Identifier.eq(oldAddress)).build();
         final List<Device> devices = query.list();
@@ -404,11 +496,27 @@ public class DBHelper {
      * Looks up in the database the Device entity corresponding to the GBDevice. If a device
      * exists already, it will be updated with the current preferences values. If no device exists
      * yet, it will be created in the database.
+     * <p>
+     * With a session from {@link GBApplication#acquireReadOnlyDB()}, an existing device is returned
+     * as is, and a missing one is created through {@link GBApplication#acquireDB()}.
      *
      * @param session
      * @return the device entity corresponding to the given GBDevice
      */
     public static Device getDevice(GBDevice gbDevice, DaoSession session) {
+        if (GBApplication.isReadOnlySession(session)) {
+            Device device = findDevice(gbDevice, session);
+            if (device != null) {
+                return device;
+            }
+            try (DBHandler db = GBApplication.acquireDB()) {
+                getDevice(gbDevice, db.getDaoSession());
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to store device " + gbDevice.getAddress(), e);
+            }
+            return findDevice(gbDevice, session);
+        }
+
         Device device = findDevice(gbDevice, session);
         if (device == null) {
             device = createDevice(gbDevice, session);
@@ -765,6 +873,7 @@ public class DBHelper {
         try (DBHandler dbHandler = GBApplication.acquireDB()) {
             DaoSession session = dbHandler.getDaoSession();
             session.clear();
+            clearDeviceCache(session);
         } catch (Exception e) {
             LOG.warn("Unable to acquire database to clear the session", e);
         }
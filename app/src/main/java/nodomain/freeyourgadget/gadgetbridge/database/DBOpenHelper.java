@@ -30,6 +30,8 @@ public class DBOpenHelper extends DaoMaster.OpenHelper {
         super(context, dbName, factory);
         updaterClassNamePrefix = dbName + "Update_";
         this.context = context;
+        // lets readers run concurrently with a writer, see GBApplication#acquireReadOnlyDB()
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
@@ -0,0 +1,28 @@
+package nodomain.freeyourgadget.gadgetbridge.database.schema;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import nodomain.freeyourgadget.gadgetbridge.database.DBHelper;
+import nodomain.freeyourgadget.gadgetbridge.database.DBUpdateScript;
+import nodomain.freeyourgadget.gadgetbridge.entities.ActivityDayRollupDao;
+import nodomain.freeyourgadget.gadgetbridge.entities.ActivityHourRollupDao;
+
+public class GadgetbridgeUpdate_79 implements DBUpdateScript {
+    @Override
+    public void upgradeSchema(final SQLiteDatabase db) {
+        // the rollups stored without a distance are recomputed when they are read
+        addDistanceColumn(db, ActivityDayRollupDao.TABLENAME, ActivityDayRollupDao.Properties.Distance.columnName);
+        addDistanceColumn(db, ActivityHourRollupDao.TABLENAME, ActivityHourRollupDao.Properties.Distance.columnName);
+    }
+
+    private static void addDistanceColumn(final SQLiteDatabase db, final String table, final String column) {
+        if (!DBHelper.existsColumn(table, column, db)) {
+            final String statement = "ALTER TABLE " + table + " ADD COLUMN \"" + column + "\" INTEGER NOT NULL DEFAULT 0";
+            db.execSQL(statement);
+        }
+    }
+
+    @Override
+    public void downgradeSchema(final SQLiteDatabase db) {
+    }
+}
@@ -17,14 +17,21 @@
     along with this program.  If not, see <https://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.devices;
 
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import de.greenrobot.dao.AbstractDao;
 import de.greenrobot.dao.Property;
@@ -36,6 +43,7 @@ import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
 import nodomain.freeyourgadget.gadgetbridge.entities.Device;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
 
 /**
  * Base class for all sample providers. A Sample provider is device specific and provides
@@ -44,8 +52,12 @@ import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
  */
 public abstract class AbstractSampleProvider<T extends AbstractActivitySample> implements SampleProvider<T> {
     private static final WhereCondition[] NO_CONDITIONS = new WhereCondition[0];
+    /// Samples that can't be read from the raw columns are visited in windows of this length, so
+    /// that only the samples of one window are in memory at a time
+    private static final int VISIT_WINDOW_SECONDS = 24 * 60 * 60;
     private final DaoSession mSession;
     private final GBDevice mDevice;
+    private Boolean mPlainSampleEntity;
 
     protected AbstractSampleProvider(GBDevice device, DaoSession session) {
         mDevice = device;
@@ -65,6 +77,149 @@ public abstract class AbstractSampleProvider<T extends AbstractActivitySample> i
         return getGBActivitySamples(timestamp_from, timestamp_to, ActivityKind.TYPE_ALL);
     }
 
+    @Override
+    public void visitAllActivitySamples(int timestamp_from, int timestamp_to, SampleVisitor visitor) {
+        if (!canVisitRawColumns()) {
+            visitPostProcessedSamples(timestamp_from, timestamp_to, visitor);
+            return;
+        }
+
+        Device dbDevice = DBHelper.findDevice(getDevice(), getSession());
+        if (dbDevice == null) {
+            // no device, no samples
+            return;
+        }
+
+        final Property timestampProperty = getTimestampSampleProperty();
+        final Property rawKindProperty = findSampleProperty("rawKind");
+        final Property rawIntensityProperty = findSampleProperty("rawIntensity");
+        final Property stepsProperty = findSampleProperty("steps");
+        final Property heartRateProperty = findSampleProperty("heartRate");
+
+        final String sql = "SELECT " + timestampProperty.columnName
+                + ", " + columnOrNotMeasured(rawKindProperty)
+                + ", " + columnOrNotMeasured(rawIntensityProperty)
+                + ", " + columnOrNotMeasured(stepsProperty)
+                + ", " + columnOrNotMeasured(heartRateProperty)
+                + " FROM " + getSampleDao().getTablename()
+                + " WHERE " + getDeviceIdentifierSampleProperty().columnName + " = ?"
+                + " AND " + timestampProperty.columnName + " >= ?"
+                + " AND " + timestampProperty.columnName + " <= ?"
+                + " ORDER BY " + timestampProperty.columnName;
+        final String[] args = new String[]{
+                String.valueOf(dbDevice.getId()),
+                String.valueOf(timestamp_from),
+                String.valueOf(timestamp_to)
+        };
+
+        try (Cursor cursor = getSampleDao().getDatabase().rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                final int rawKind = cursor.getInt(1);
+                final int rawIntensity = cursor.getInt(2);
+                visitor.visit(
+                        cursor.getInt(0),
+                        rawKind,
+                        normalizeType(rawKind),
+                        normalizeIntensity(rawIntensity),
+                        cursor.getInt(3),
+                        cursor.getInt(4)
+                );
+            }
+        }
+    }
+
+    /**
+     * Visits the samples as returned by {@link #getAllActivitySamples(int, int)}, including any
+     * post-processing, one window at a time if {@link #canVisitInWindows()}.
+     */
+    private void visitPostProcessedSamples(int timestamp_from, int timestamp_to, SampleVisitor visitor) {
+        final int windowSeconds = canVisitInWindows() ? VISIT_WINDOW_SECONDS : Integer.MAX_VALUE;
+        // long, so that the last window does not overflow
+        for (long windowFrom = timestamp_from; windowFrom <= timestamp_to; windowFrom += windowSeconds) {
+            final int windowTo = (int) Math.min(timestamp_to, windowFrom + windowSeconds - 1);
+            for (T sample : getAllActivitySamples((int) windowFrom, windowTo)) {
+                visitor.visit(sample.getTimestamp(), sample.getRawKind(), sample.getKind(),
+                        sample.getIntensity(), sample.getSteps(), sample.getHeartRate());
+            }
+        }
+    }
+
+    /**
+     * Whether {@link #visitAllActivitySamples(int, int, SampleVisitor)} may read the sample values
+     * straight from the database columns, without creating sample entities. Providers opt in by
+     * returning true, if their samples are plain generated entities that are neither computed nor
+     * post-processed. All other providers are visited window by window, see
+     * {@link #visitPostProcessedSamples(int, int, SampleVisitor)}.
+     */
+    public boolean canVisitRawColumns() {
+        return false;
+    }
+
+    /**
+     * Whether the post-processed samples may be loaded in windows by
+     * {@link #visitAllActivitySamples(int, int, SampleVisitor)}. This holds as long as the
+     * post-processing looks up what it needs before and after the requested range itself, so that
+     * splitting the range does not change the samples.
+     *
+     * Subclasses whose post-processing depends on the bounds of the requested range must override
+     * this and return false.
+     */
+    protected boolean canVisitInWindows() {
+        return true;
+    }
+
+    /**
+     * Returns the DAOs of the tables, besides the sample table, that the samples returned by
+     * {@link #getAllActivitySamples(int, int)} are computed from, e.g. sleep stage overlays. Data
+     * derived from the samples, such as the activity rollups, is dropped whenever any of these
+     * tables changes.
+     */
+    public List<AbstractDao<?, ?>> getSampleSourceDaos() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Whether {@link #addGBActivitySamples(long, long, int[], int[], int[], int[], int[], Map)} may
+     * write the sample values straight into the database columns, without creating sample entities.
+     * This is only the case if the sample entity is a plain generated entity.
+     *
+     * Subclasses that pre-process the samples in {@link #addGBActivitySamples(AbstractActivitySample[])}
+     * must override this and return false.
+     */
+    public boolean canBulkInsert() {
+        return isPlainSampleEntity();
+    }
+
+    private boolean isPlainSampleEntity() {
+        if (mPlainSampleEntity == null) {
+            boolean plainEntity = true;
+            Class<?> sampleClass = createActivitySample().getClass().getSuperclass();
+            while (sampleClass != null && sampleClass != AbstractActivitySample.class) {
+                if (Modifier.isAbstract(sampleClass.getModifiers())) {
+                    plainEntity = false;
+                    break;
+                }
+                sampleClass = sampleClass.getSuperclass();
+            }
+            mPlainSampleEntity = plainEntity;
+        }
+        return mPlainSampleEntity;
+    }
+
+    @Nullable
+    private Property findSampleProperty(final String name) {
+        for (Property property : getSampleDao().getProperties()) {
+            if (property.name.equals(name)) {
+                return property;
+            }
+        }
+        return null;
+    }
+
+    private static String columnOrNotMeasured(@Nullable final Property property) {
+        return property != null ? property.columnName : String.valueOf(ActivitySample.NOT_MEASURED);
+    }
+
     @Override
     public List<T> getActivitySamples(int timestamp_from, int timestamp_to) {
         if (getRawKindSampleProperty() != null) {
@@ -101,6 +256,113 @@ public abstract class AbstractSampleProvider<T extends AbstractActivitySample> i
         getSampleDao().insertOrReplaceInTx(activitySamples);
     }
 
+    @Override
+    public void addGBActivitySamples(long userId, long deviceId, int[] timestamps, int[] rawKinds, int[] rawIntensities,
+                                     int[] steps, @Nullable int[] heartRates, @Nullable Map<String, int[]> extraColumns) {
+        if (timestamps.length == 0) {
+            return;
+        }
+        if (!canBulkInsert()) {
+            if (extraColumns != null && !extraColumns.isEmpty()) {
+                throw new UnsupportedOperationException("Extra columns are not supported by " + getClass().getSimpleName());
+            }
+            addGBActivitySamples(createActivitySamples(userId, deviceId, timestamps, rawKinds, rawIntensities, steps, heartRates));
+            return;
+        }
+
+        final Property[] properties = getSampleDao().getProperties();
+        final int[][] columnValues = new int[properties.length][];
+        final StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ").append(getSampleDao().getTablename()).append(" (");
+        for (int i = 0; i < properties.length; i++) {
+            final Property property = properties[i];
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(property.columnName);
+
+            if (property.name.equals(getTimestampSampleProperty().name)) {
+                columnValues[i] = timestamps;
+            } else if (extraColumns != null && extraColumns.containsKey(property.name)) {
+                columnValues[i] = extraColumns.get(property.name);
+            } else {
+                switch (property.name) {
+                    case "rawKind":
+                        columnValues[i] = rawKinds;
+                        break;
+                    case "rawIntensity":
+                        columnValues[i] = rawIntensities;
+                        break;
+                    case "steps":
+                        columnValues[i] = steps;
+                        break;
+                    case "heartRate":
+                        columnValues[i] = heartRates;
+                        break;
+                }
+            }
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < properties.length; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        sql.append(")");
+
+        // the sample tables have composite primary keys and thus no identity scope to keep in sync
+        final SQLiteDatabase db = getSampleDao().getDatabase();
+        final SQLiteStatement statement = db.compileStatement(sql.toString());
+        db.beginTransaction();
+        try {
+            for (int row = 0; row < timestamps.length; row++) {
+                statement.clearBindings();
+                for (int i = 0; i < properties.length; i++) {
+                    final Property property = properties[i];
+                    final int index = i + 1;
+                    if (columnValues[i] != null) {
+                        statement.bindLong(index, columnValues[i][row]);
+                    } else if (property.name.equals("deviceId")) {
+                        statement.bindLong(index, deviceId);
+                    } else if (property.name.equals("userId")) {
+                        statement.bindLong(index, userId);
+                    } else if (property.type.isPrimitive()) {
+                        // same as an entity on which the property was never set
+                        statement.bindLong(index, 0);
+                    } else {
+                        statement.bindNull(index);
+                    }
+                }
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] createActivitySamples(long userId, long deviceId, int[] timestamps, int[] rawKinds, int[] rawIntensities,
+                                      int[] steps, @Nullable int[] heartRates) {
+        T[] samples = null;
+        for (int i = 0; i < timestamps.length; i++) {
+            final T sample = createActivitySample();
+            sample.setProvider(this);
+            sample.setUserId(userId);
+            sample.setDeviceId(deviceId);
+            sample.setTimestamp(timestamps[i]);
+            sample.setRawKind(rawKinds[i]);
+            sample.setRawIntensity(rawIntensities[i]);
+            sample.setSteps(steps[i]);
+            if (heartRates != null) {
+                sample.setHeartRate(heartRates[i]);
+            }
+            if (samples == null) {
+                samples = (T[]) Array.newInstance(sample.getClass(), timestamps.length);
+            }
+            samples[i] = sample;
+        }
+        return samples;
+    }
+
     @Nullable
     @Override
     public T getLatestActivitySample() {
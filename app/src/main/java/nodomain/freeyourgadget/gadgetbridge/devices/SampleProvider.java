@@ -18,6 +18,7 @@
 package nodomain.freeyourgadget.gadgetbridge.devices;
 
 import java.util.List;
+import java.util.Map;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -53,6 +54,17 @@ public interface SampleProvider<T extends AbstractActivitySample> {
     @NonNull
     List<T> getAllActivitySamples(int timestamp_from, int timestamp_to);
 
+    /**
+     * Passes all samples, of any type, within the given time span to the given visitor,
+     * in ascending timestamp order. Unlike {@link #getAllActivitySamples(int, int)}, the
+     * implementation is not required to create a sample object per row, so this should be
+     * preferred when the samples are only aggregated.
+     * @param timestamp_from the start timestamp
+     * @param timestamp_to the end timestamp
+     * @param visitor the visitor receiving each sample
+     */
+    void visitAllActivitySamples(int timestamp_from, int timestamp_to, SampleVisitor visitor);
+
     /**
      * Returns the list of all samples that represent user "activity", within
      * the given time span. This excludes samples of type sleep, for example.
@@ -87,6 +99,23 @@ public interface SampleProvider<T extends AbstractActivitySample> {
      */
     void addGBActivitySamples(T[] activitySamples);
 
+    /**
+     * Adds the given samples to the database, without creating a sample object per row where
+     * possible. Existing samples with the same timestamp will be overwritten. All arrays hold one
+     * value per sample and must have the same length.
+     * @param userId the id of the user of all samples
+     * @param deviceId the id of the device of all samples
+     * @param timestamps the timestamps of the samples
+     * @param rawKinds the raw activity kinds
+     * @param rawIntensities the raw intensities
+     * @param steps the steps
+     * @param heartRates the heart rates, or null if not measured
+     * @param extraColumns values of further device specific int properties of the sample,
+     *                     by property name, or null if none
+     */
+    void addGBActivitySamples(long userId, long deviceId, int[] timestamps, int[] rawKinds, int[] rawIntensities,
+                              int[] steps, @Nullable int[] heartRates, @Nullable Map<String, int[]> extraColumns);
+
     /**
      * Factory method to creates an empty sample of the correct type for this sample provider
      * @return the newly created "empty" sample
@@ -0,0 +1,14 @@
+package nodomain.freeyourgadget.gadgetbridge.devices;
+
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
+
+/**
+ * Receives activity samples one by one, as primitive values, in ascending timestamp order.
+ *
+ * This is the streaming counterpart of {@link SampleProvider#getAllActivitySamples(int, int)}:
+ * no sample entities are materialized, so it should be preferred for long time ranges.
+ * The values have the same meaning as the respective getters in {@link ActivitySample}.
+ */
+public interface SampleVisitor {
+    void visit(int timestamp, int rawKind, int kind, float intensity, int steps, int heartRate);
+}
@@ -22,6 +22,7 @@ import android.content.Context;
 import android.net.Uri;
 
 import java.util.List;
+import java.util.Map;
 
 import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
@@ -64,6 +65,10 @@ public class UnknownDeviceCoordinator extends AbstractDeviceCoordinator {
             return null;
         }
 
+        @Override
+        public void visitAllActivitySamples(int timestamp_from, int timestamp_to, SampleVisitor visitor) {
+        }
+
         @Override
         public List getActivitySamples(int timestamp_from, int timestamp_to) {
             return null;
@@ -82,6 +87,11 @@ public class UnknownDeviceCoordinator extends AbstractDeviceCoordinator {
         public void addGBActivitySamples(AbstractActivitySample[] activitySamples) {
         }
 
+        @Override
+        public void addGBActivitySamples(long userId, long deviceId, int[] timestamps, int[] rawKinds, int[] rawIntensities,
+                                         int[] steps, @Nullable int[] heartRates, @Nullable Map<String, int[]> extraColumns) {
+        }
+
         @Override
         public AbstractActivitySample createActivitySample() {
             return null;
@@ -40,6 +40,11 @@ public class BangleJSSampleProvider extends AbstractSampleProvider<BangleJSActiv
         super(device, session);
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     public static final int TYPE_ACTIVITY = 0;
 
     @Override
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
@@ -53,6 +54,14 @@ public class CmfActivitySampleProvider extends AbstractSampleProvider<CmfActivit
         return getSession().getCmfActivitySampleDao();
     }
 
+    @Override
+    public List<AbstractDao<?, ?>> getSampleSourceDaos() {
+        return Arrays.asList(
+                getSession().getCmfHeartRateSampleDao(),
+                getSession().getCmfSleepStageSampleDao()
+        );
+    }
+
     @Nullable
     @Override
     protected Property getRawKindSampleProperty() {
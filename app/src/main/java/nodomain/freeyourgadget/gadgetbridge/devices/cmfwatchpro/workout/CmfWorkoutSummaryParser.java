@@ -39,6 +39,11 @@ public class CmfWorkoutSummaryParser implements ActivitySummaryParser {
         this.gbDevice = device;
     }
 
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
     @Override
     public BaseActivitySummary parseBinaryData(final BaseActivitySummary summary) {
         final JSONObject summaryData = new JSONObject();
@@ -22,6 +22,7 @@ import androidx.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.List;
 
 import de.greenrobot.dao.AbstractDao;
@@ -49,6 +50,14 @@ public class GarminActivitySampleProvider extends AbstractSampleProvider<GarminA
         return getSession().getGarminActivitySampleDao();
     }
 
+    @Override
+    public List<AbstractDao<?, ?>> getSampleSourceDaos() {
+        return Arrays.asList(
+                getSession().getGarminEventSampleDao(),
+                getSession().getGarminSleepStageSampleDao()
+        );
+    }
+
     @Nullable
     @Override
     protected Property getRawKindSampleProperty() {
@@ -113,6 +113,11 @@ public class HPlusHealthSampleProvider extends AbstractSampleProvider<HPlusHealt
         return getSession().getHPlusHealthActivitySampleDao();
     }
 
+    @Override
+    public List<AbstractDao<?, ?>> getSampleSourceDaos() {
+        return Collections.singletonList(getSession().getHPlusHealthActivityOverlayDao());
+    }
+
 
     public List<HPlusHealthActivitySample> getActivityamples(int timestamp_from, int timestamp_to) {
         return getAllActivitySamples(timestamp_from, timestamp_to);
@@ -122,6 +127,12 @@ public class HPlusHealthSampleProvider extends AbstractSampleProvider<HPlusHealt
         return getAllActivitySamples(timestamp_from, timestamp_to);
     }
 
+    @Override
+    protected boolean canVisitInWindows() {
+        // overlays are only applied within the requested range
+        return false;
+    }
+
     @NonNull
     @Override
     public List<HPlusHealthActivitySample> getAllActivitySamples(int timestamp_from, int timestamp_to) {
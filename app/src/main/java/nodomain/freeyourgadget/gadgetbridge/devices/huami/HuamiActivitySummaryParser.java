@@ -41,6 +41,10 @@ public class HuamiActivitySummaryParser implements ActivitySummaryParser {
     private static final Logger LOG = LoggerFactory.getLogger(HuamiActivityDetailsParser.class);
     private JSONObject summaryData = new JSONObject();
 
+    @Override
+    public int getVersion() {
+        return 1;
+    }
 
     public BaseActivitySummary parseBinaryData(BaseActivitySummary summary) {
         Date startTime = summary.getStartTime();
@@ -37,6 +37,11 @@ import nodomain.freeyourgadget.gadgetbridge.service.devices.huami.zeppos.ZeppOsA
 public class ZeppOsActivitySummaryParser extends HuamiActivitySummaryParser {
     private static final Logger LOG = LoggerFactory.getLogger(ZeppOsActivitySummaryParser.class);
 
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
     @Override
     public AbstractHuamiActivityDetailsParser getDetailsParser(final BaseActivitySummary summary) {
         return new ZeppOsActivityDetailsParser(summary);
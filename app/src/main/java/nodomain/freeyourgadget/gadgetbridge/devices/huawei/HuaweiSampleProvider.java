@@ -17,26 +17,35 @@
 package nodomain.freeyourgadget.gadgetbridge.devices.huawei;
 
 import android.content.SharedPreferences;
+import android.database.Cursor;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import de.greenrobot.dao.AbstractDao;
 import de.greenrobot.dao.Property;
 import de.greenrobot.dao.query.QueryBuilder;
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.activities.devicesettings.DeviceSettingsPreferenceConst;
+import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
 import nodomain.freeyourgadget.gadgetbridge.database.DBHelper;
 import nodomain.freeyourgadget.gadgetbridge.devices.AbstractSampleProvider;
 import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
 import nodomain.freeyourgadget.gadgetbridge.entities.Device;
 import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiActivitySample;
 import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiActivitySampleDao;
+import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiMergedActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiMergedActivitySampleDao;
 import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiWorkoutDataSample;
 import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiWorkoutDataSampleDao;
 import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiWorkoutSummarySample;
@@ -47,6 +56,7 @@ import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
 import nodomain.freeyourgadget.gadgetbridge.devices.huawei.packets.FitnessData;
 
 public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivitySample> {
+    private static final Logger LOG = LoggerFactory.getLogger(HuaweiSampleProvider.class);
 
     /*
      * We save all data by saving a marker at the begin and end.
@@ -57,6 +67,26 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
      *    The source of the data, which Huawei Band message the data came from
      */
 
+    /**
+     * Device specific preference with the timestamp from which the merged samples are outdated,
+     * {@link Integer#MAX_VALUE} if they are up to date and missing if they were never built.
+     */
+    private static final String PREF_MERGED_SAMPLES_DIRTY_FROM = "huawei_merged_samples_dirty_from";
+    /**
+     * Device specific preference with the wakeup status preferences the merged samples were built with.
+     */
+    private static final String PREF_MERGED_SAMPLES_FLAGS = "huawei_merged_samples_flags";
+    /**
+     * Device specific preference counting the calls of {@link #invalidateMergedSamples}, so that a
+     * rebuild can tell whether samples were inserted while it was running.
+     */
+    private static final String PREF_MERGED_SAMPLES_GENERATION = "huawei_merged_samples_generation";
+
+    private static final Object mergedSamplesLock = new Object();
+
+    private static final int MERGE_MARGIN = 24 * 60 * 60;
+    private static final int MERGE_WINDOW = 7 * 24 * 60 * 60;
+
     private static class RawTypes {
         public static final int NOT_MEASURED = -1;
 
@@ -104,6 +134,11 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
         return getSession().getHuaweiActivitySampleDao();
     }
 
+    @Override
+    public List<AbstractDao<?, ?>> getSampleSourceDaos() {
+        return Collections.singletonList(getSession().getHuaweiMergedActivitySampleDao());
+    }
+
     @Nullable
     @Override
     protected Property getRawKindSampleProperty() {
@@ -211,12 +246,19 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
 
         getSampleDao().insertOrReplace(start);
         getSampleDao().insertOrReplace(end);
+
+        invalidateMergedSamples(getDevice().getAddress(), start.getTimestamp());
     }
 
     @Override
     public void addGBActivitySamples(HuaweiActivitySample[] activitySamples) {
+        if (activitySamples.length == 0)
+            return;
+
         List<HuaweiActivitySample> newSamples = new ArrayList<>();
+        int timestampFrom = Integer.MAX_VALUE;
         for (HuaweiActivitySample sample : activitySamples) {
+            timestampFrom = Math.min(timestampFrom, sample.getTimestamp());
             HuaweiActivitySample start = copySample(sample);
             HuaweiActivitySample end = copySample(sample);
             end.setTimestamp(start.getOtherTimestamp());
@@ -231,6 +273,14 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
             newSamples.add(end);
         }
         getSampleDao().insertOrReplaceInTx(newSamples);
+
+        invalidateMergedSamples(getDevice().getAddress(), timestampFrom);
+    }
+
+    @Override
+    public boolean canBulkInsert() {
+        // every sample is stored as a start and an end row, see addGBActivitySamples
+        return false;
     }
 
     /**
@@ -239,7 +289,7 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
      * @param timestampTo End timestamp
      * @return List of activities between the timestamps, ordered by timestamp
      */
-    private List<HuaweiActivitySample> getRawOrderedActivitySamples(int timestampFrom, int timestampTo) {
+    List<HuaweiActivitySample> getRawOrderedActivitySamples(int timestampFrom, int timestampTo) {
         QueryBuilder<HuaweiActivitySample> qb = getSampleDao().queryBuilder();
         Property timestampProperty = getTimestampSampleProperty();
         Device dbDevice = DBHelper.findDevice(getDevice(), getSession());
@@ -280,13 +330,220 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
         return samples;
     }
 
+    /**
+     * Marks the merged samples of a device as outdated from the timestamp on, so they are rebuilt
+     * from the raw samples by the next {@link #updateMergedSamples()}. This only touches the
+     * preferences when the timestamp is before the one already marked, so it is cheap to call for
+     * every inserted sample.
+     */
+    public static void invalidateMergedSamples(String deviceAddress, int timestampFrom) {
+        SharedPreferences prefs = GBApplication.getDeviceSpecificSharedPrefs(deviceAddress);
+        synchronized (mergedSamplesLock) {
+            SharedPreferences.Editor editor = prefs.edit();
+            editor.putInt(PREF_MERGED_SAMPLES_GENERATION, prefs.getInt(PREF_MERGED_SAMPLES_GENERATION, 0) + 1);
+            // Without a value they were never built, so they will be built completely anyway
+            if (prefs.contains(PREF_MERGED_SAMPLES_DIRTY_FROM) && prefs.getInt(PREF_MERGED_SAMPLES_DIRTY_FROM, 0) > timestampFrom)
+                editor.putInt(PREF_MERGED_SAMPLES_DIRTY_FROM, timestampFrom);
+            editor.apply();
+        }
+    }
+
+    private int getMergedSamplesFlags(SharedPreferences prefs) {
+        boolean ignoreWakeupStart = prefs.getBoolean(DeviceSettingsPreferenceConst.PREF_IGNORE_WAKEUP_STATUS_START, false);
+        boolean ignoreWakeupEnd = prefs.getBoolean(DeviceSettingsPreferenceConst.PREF_IGNORE_WAKEUP_STATUS_END, false);
+        return (ignoreWakeupStart ? 1 : 0) | (ignoreWakeupEnd ? 2 : 0);
+    }
+
+    /**
+     * @return whether the merged samples need to be rebuilt by {@link #updateMergedSamples()}
+     */
+    public boolean isMergedSamplesOutdated() {
+        SharedPreferences prefs = GBApplication.getDeviceSpecificSharedPrefs(getDevice().getAddress());
+        return prefs.getInt(PREF_MERGED_SAMPLES_DIRTY_FROM, 0) != Integer.MAX_VALUE
+                || prefs.getInt(PREF_MERGED_SAMPLES_FLAGS, -1) != getMergedSamplesFlags(prefs);
+    }
+
+    /**
+     * Rebuilds the outdated part of the merged samples, see {@link #invalidateMergedSamples}, or
+     * all of them if they were never built or the wakeup status preferences changed.
+     * <p>
+     * This writes to the database, so the provider must use a session from
+     * {@link GBApplication#acquireDB()}.
+     * <p>
+     * The raw samples are merged in windows of a week, carrying over the state between windows,
+     * so a full rebuild does not need all samples in memory. An incremental rebuild starts a day
+     * before the outdated timestamp, so sleep blocks that started before it are merged correctly.
+     */
+    public void updateMergedSamples() {
+        SharedPreferences prefs = GBApplication.getDeviceSpecificSharedPrefs(getDevice().getAddress());
+        boolean ignoreWakeupStart = prefs.getBoolean(DeviceSettingsPreferenceConst.PREF_IGNORE_WAKEUP_STATUS_START, false);
+        boolean ignoreWakeupEnd = prefs.getBoolean(DeviceSettingsPreferenceConst.PREF_IGNORE_WAKEUP_STATUS_END, false);
+        int flags = getMergedSamplesFlags(prefs);
+
+        int generation;
+        int dirtyFrom;
+        synchronized (mergedSamplesLock) {
+            generation = prefs.getInt(PREF_MERGED_SAMPLES_GENERATION, 0);
+            dirtyFrom = prefs.getInt(PREF_MERGED_SAMPLES_DIRTY_FROM, 0);
+        }
+        if (prefs.getInt(PREF_MERGED_SAMPLES_FLAGS, -1) != flags)
+            dirtyFrom = 0;
+        if (dirtyFrom == Integer.MAX_VALUE)
+            return;
+
+        Device dbDevice = DBHelper.findDevice(getDevice(), getSession());
+        if (dbDevice == null)
+            return;
+
+        int rebuildFrom = Math.max(0, dirtyFrom - MERGE_MARGIN);
+        HuaweiMergedActivitySampleDao mergedDao = getSession().getHuaweiMergedActivitySampleDao();
+        mergedDao.queryBuilder().where(
+                HuaweiMergedActivitySampleDao.Properties.DeviceId.eq(dbDevice.getId()),
+                HuaweiMergedActivitySampleDao.Properties.Timestamp.ge(rebuildFrom)
+        ).buildDelete().executeDeleteWithoutDetachingEntities();
+
+        SampleLoopState state = new SampleLoopState();
+        state.deviceId = dbDevice.getId();
+        state.userId = DBHelper.getUser(getSession()).getId();
+        state.ignoreWakeupStart = ignoreWakeupStart;
+        state.ignoreWakeupEnd = ignoreWakeupEnd;
+
+        int firstTimestamp = Math.min(getRawTimestampBound(dbDevice, rebuildFrom, true), getWorkoutTimestampBound(dbDevice, rebuildFrom, true));
+        int lastTimestamp = Math.max(getRawTimestampBound(dbDevice, rebuildFrom, false), getWorkoutTimestampBound(dbDevice, rebuildFrom, false));
+        for (long windowFrom = firstTimestamp; windowFrom <= lastTimestamp; windowFrom += MERGE_WINDOW) {
+            int windowTo = (int) Math.min(windowFrom + MERGE_WINDOW - 1, lastTimestamp);
+            mergeSamples(state,
+                    getRawOrderedActivitySamples((int) windowFrom, windowTo),
+                    getRawOrderedWorkoutSamplesWithHeartRate((int) windowFrom, windowTo)
+            );
+            storeMergedSamples(mergedDao, state);
+        }
+        finishMerge(state);
+        storeMergedSamples(mergedDao, state);
+        mergedDao.detachAll();
+
+        // Only mark them as up to date if no samples were inserted in the meantime, no matter at
+        // which timestamp, as the rebuild may have missed them
+        synchronized (mergedSamplesLock) {
+            if (prefs.getInt(PREF_MERGED_SAMPLES_GENERATION, 0) == generation) {
+                prefs.edit()
+                        .putInt(PREF_MERGED_SAMPLES_DIRTY_FROM, Integer.MAX_VALUE)
+                        .putInt(PREF_MERGED_SAMPLES_FLAGS, flags)
+                        .apply();
+            }
+        }
+    }
+
+    /**
+     * Stores the merged samples of the state and clears them. The gap samples only mark the
+     * borders of the blocks, so they are stored last and only where there is no other sample with
+     * the same timestamp, which they would replace otherwise. The existing timestamps are looked
+     * up in a single query for all gap samples.
+     */
+    private static void storeMergedSamples(HuaweiMergedActivitySampleDao mergedDao, SampleLoopState state) {
+        mergedDao.insertOrReplaceInTx(state.mergedSamples);
+        state.mergedSamples.clear();
+
+        if (state.mergedGapSamples.isEmpty())
+            return;
+
+        int gapFrom = Integer.MAX_VALUE;
+        int gapTo = Integer.MIN_VALUE;
+        for (HuaweiMergedActivitySample gapSample : state.mergedGapSamples) {
+            gapFrom = Math.min(gapFrom, gapSample.getTimestamp());
+            gapTo = Math.max(gapTo, gapSample.getTimestamp());
+        }
+        Set<Integer> existingTimestamps = new HashSet<>();
+        String sql = "SELECT " + HuaweiMergedActivitySampleDao.Properties.Timestamp.columnName
+                + " FROM " + mergedDao.getTablename()
+                + " WHERE " + HuaweiMergedActivitySampleDao.Properties.DeviceId.columnName + " = ?"
+                + " AND " + HuaweiMergedActivitySampleDao.Properties.Timestamp.columnName + " >= ?"
+                + " AND " + HuaweiMergedActivitySampleDao.Properties.Timestamp.columnName + " <= ?";
+        String[] args = new String[]{
+                String.valueOf(state.deviceId),
+                String.valueOf(gapFrom),
+                String.valueOf(gapTo)
+        };
+        try (Cursor cursor = mergedDao.getDatabase().rawQuery(sql, args)) {
+            while (cursor.moveToNext())
+                existingTimestamps.add(cursor.getInt(0));
+        }
+
+        List<HuaweiMergedActivitySample> gapSamples = new ArrayList<>(state.mergedGapSamples.size());
+        for (HuaweiMergedActivitySample gapSample : state.mergedGapSamples) {
+            if (existingTimestamps.add(gapSample.getTimestamp()))
+                gapSamples.add(gapSample);
+        }
+        mergedDao.insertInTx(gapSamples);
+        state.mergedGapSamples.clear();
+    }
+
+    /**
+     * Deletes the merged samples of a device, for when the device is removed.
+     */
+    public static void deleteMergedSamples(DaoSession session, long deviceId) {
+        session.getHuaweiMergedActivitySampleDao().queryBuilder()
+                .where(HuaweiMergedActivitySampleDao.Properties.DeviceId.eq(deviceId))
+                .buildDelete().executeDeleteWithoutDetachingEntities();
+    }
+
+    /**
+     * @return the first or last timestamp of the raw samples from the timestamp on, or
+     * {@link Integer#MAX_VALUE} respectively 0 if there are none
+     */
+    private int getRawTimestampBound(Device dbDevice, int timestampFrom, boolean first) {
+        QueryBuilder<HuaweiActivitySample> qb = getSampleDao().queryBuilder();
+        Property timestampProperty = HuaweiActivitySampleDao.Properties.Timestamp;
+        qb.where(HuaweiActivitySampleDao.Properties.DeviceId.eq(dbDevice.getId()), timestampProperty.ge(timestampFrom));
+        if (first)
+            qb.orderAsc(timestampProperty);
+        else
+            qb.orderDesc(timestampProperty);
+        List<HuaweiActivitySample> samples = qb.limit(1).build().list();
+        detachFromSession();
+        if (samples.isEmpty())
+            return first ? Integer.MAX_VALUE : 0;
+        return samples.get(0).getTimestamp();
+    }
+
+    /**
+     * @return the first or last timestamp of the workout samples from the timestamp on, or
+     * {@link Integer#MAX_VALUE} respectively 0 if there are none
+     */
+    private int getWorkoutTimestampBound(Device dbDevice, int timestampFrom, boolean first) {
+        QueryBuilder<HuaweiWorkoutDataSample> qb = getSession().getHuaweiWorkoutDataSampleDao().queryBuilder();
+        Property timestampProperty = HuaweiWorkoutDataSampleDao.Properties.Timestamp;
+        qb.join(HuaweiWorkoutDataSampleDao.Properties.WorkoutId, HuaweiWorkoutSummarySample.class, HuaweiWorkoutSummarySampleDao.Properties.WorkoutId)
+                .where(HuaweiWorkoutSummarySampleDao.Properties.DeviceId.eq(dbDevice.getId()));
+        qb.where(timestampProperty.ge(timestampFrom));
+        if (first)
+            qb.orderAsc(timestampProperty);
+        else
+            qb.orderDesc(timestampProperty);
+        List<HuaweiWorkoutDataSample> samples = qb.limit(1).build().list();
+        getSession().getHuaweiWorkoutSummarySampleDao().detachAll();
+        if (samples.isEmpty())
+            return first ? Integer.MAX_VALUE : 0;
+        return samples.get(0).getTimestamp();
+    }
+
     private static class SampleLoopState {
         public long deviceId = 0;
         public long userId = 0;
 
-        int[] activityTypes = {};
+        public boolean ignoreWakeupStart = false;
+        public boolean ignoreWakeupEnd = false;
 
         public int sleepModifier = 0;
+
+        /** The last processed sample, samples with the same timestamp are merged into it */
+        public HuaweiActivitySample pendingSample = null;
+        /** The last sample that was interpolated */
+        public HuaweiActivitySample lastSample = null;
+
+        public final List<HuaweiMergedActivitySample> mergedSamples = new ArrayList<>();
+        /** The samples with intensity zero at the start and end of the blocks */
+        public final List<HuaweiMergedActivitySample> mergedGapSamples = new ArrayList<>();
     }
 
     /*
@@ -301,17 +558,64 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
      * The second and fourth are necessary for proper stats calculation, the third is mostly for
      * nicer graphs.
      *
-     * Note that the data in the database isn't changed, as the samples are detached.
+     * All of this is done once when the raw samples change, see updateMergedSamples, so this only
+     * needs to read the result. The merged samples are normally rebuilt after a sync, only samples
+     * that were inserted otherwise are merged here first, through the write lock.
      */
     @Override
     protected List<HuaweiActivitySample> getGBActivitySamples(int timestamp_from, int timestamp_to, int activityType) {
         // Note that the result of this function has to be sorted by timestamp!
 
-        List<HuaweiActivitySample> rawSamples = getRawOrderedActivitySamples(timestamp_from, timestamp_to);
-        List<HuaweiWorkoutDataSample> workoutSamples = getRawOrderedWorkoutSamplesWithHeartRate(timestamp_from, timestamp_to);
+        if (isMergedSamplesOutdated()) {
+            try (DBHandler db = GBApplication.acquireDB()) {
+                new HuaweiSampleProvider(getDevice(), db.getDaoSession()).updateMergedSamples();
+            } catch (Exception e) {
+                LOG.error("Failed to update merged activity samples", e);
+            }
+        }
 
-        List<HuaweiActivitySample> processedSamples = new ArrayList<>();
+        Device dbDevice = DBHelper.findDevice(getDevice(), getSession());
+        if (dbDevice == null) {
+            // no device, no samples
+            return Collections.emptyList();
+        }
 
+        HuaweiMergedActivitySampleDao mergedDao = getSession().getHuaweiMergedActivitySampleDao();
+        Property timestampProperty = HuaweiMergedActivitySampleDao.Properties.Timestamp;
+        List<HuaweiMergedActivitySample> mergedSamples = mergedDao.queryBuilder().where(
+                HuaweiMergedActivitySampleDao.Properties.DeviceId.eq(dbDevice.getId()),
+                timestampProperty.ge(timestamp_from),
+                timestampProperty.le(timestamp_to)
+        ).orderAsc(timestampProperty).build().list();
+        mergedDao.detachAll();
+
+        List<HuaweiActivitySample> samples = new ArrayList<>(mergedSamples.size());
+        for (HuaweiMergedActivitySample mergedSample : mergedSamples) {
+            HuaweiActivitySample sample = new HuaweiActivitySample(
+                    mergedSample.getTimestamp(),
+                    mergedSample.getDeviceId(),
+                    mergedSample.getUserId(),
+                    mergedSample.getOtherTimestamp(),
+                    mergedSample.getSource(),
+                    mergedSample.getRawKind(),
+                    mergedSample.getRawIntensity(),
+                    mergedSample.getSteps(),
+                    mergedSample.getCalories(),
+                    mergedSample.getDistance(),
+                    mergedSample.getSpo(),
+                    mergedSample.getHeartRate()
+            );
+            sample.setProvider(this);
+            samples.add(sample);
+        }
+        return samples;
+    }
+
+    /**
+     * Merges the ordered raw and workout samples of one window into the state. The last processed
+     * sample stays pending, as samples of the next window may still be merged into it.
+     */
+    private void mergeSamples(SampleLoopState state, List<HuaweiActivitySample> rawSamples, List<HuaweiWorkoutDataSample> workoutSamples) {
         Iterator<HuaweiActivitySample> itRawSamples = rawSamples.iterator();
         Iterator<HuaweiWorkoutDataSample> itWorkoutSamples = workoutSamples.iterator();
 
@@ -322,140 +626,116 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
         if (itWorkoutSamples.hasNext())
             nextWorkoutSample = itWorkoutSamples.next();
 
-        SampleLoopState state = new SampleLoopState();
-        if (nextRawSample != null) {
-            state.deviceId = nextRawSample.getDeviceId();
-            state.userId = nextRawSample.getUserId();
-        }
-        state.activityTypes = ActivityKind.mapToDBActivityTypes(activityType, this);
-
         while (nextRawSample != null || nextWorkoutSample != null) {
             if (nextRawSample == null) {
-                processWorkoutSample(processedSamples, state, nextWorkoutSample);
+                processWorkoutSample(state, nextWorkoutSample);
 
                 nextWorkoutSample = null;
                 if (itWorkoutSamples.hasNext())
                     nextWorkoutSample = itWorkoutSamples.next();
             } else if (nextWorkoutSample == null) {
-                processRawSample(processedSamples, state, nextRawSample);
+                processRawSample(state, nextRawSample);
 
                 nextRawSample = null;
                 if (itRawSamples.hasNext())
                     nextRawSample = itRawSamples.next();
             } else if (nextRawSample.getTimestamp() > nextWorkoutSample.getTimestamp()) {
-                processWorkoutSample(processedSamples, state, nextWorkoutSample);
+                processWorkoutSample(state, nextWorkoutSample);
 
                 nextWorkoutSample = null;
                 if (itWorkoutSamples.hasNext())
                     nextWorkoutSample = itWorkoutSamples.next();
             } else {
-                processRawSample(processedSamples, state, nextRawSample);
+                processRawSample(state, nextRawSample);
 
                 nextRawSample = null;
                 if (itRawSamples.hasNext())
                     nextRawSample = itRawSamples.next();
             }
         }
-
-        processedSamples = interpolate(processedSamples);
-
-        return processedSamples;
     }
 
-    private List<HuaweiActivitySample> interpolate(List<HuaweiActivitySample> processedSamples) {
-        List<HuaweiActivitySample> retv = new ArrayList<>();
-
-        if (processedSamples.size() == 0)
-            return retv;
+    private void finishMerge(SampleLoopState state) {
+        if (state.pendingSample != null) {
+            interpolate(state, state.pendingSample);
+            state.pendingSample = null;
+        }
 
-        HuaweiActivitySample lastSample = processedSamples.get(0);
-        retv.add(lastSample);
-        for (int i = 1; i < processedSamples.size() - 1; i++) {
-            HuaweiActivitySample sample = processedSamples.get(i);
+        HuaweiActivitySample lastSample = state.lastSample;
+        if (lastSample != null && lastSample.getRawKind() != -1)
+            state.mergedGapSamples.add(toMergedSample(state, createGapSample(lastSample.getTimestamp() + 1, lastSample)));
+    }
 
+    /**
+     * Adds the sample to the merged samples, preceded by samples with intensity zero at the end of
+     * the previous block and the start of this block, if there is a gap between them.
+     */
+    private void interpolate(SampleLoopState state, HuaweiActivitySample sample) {
+        HuaweiActivitySample lastSample = state.lastSample;
+        if (lastSample != null) {
             int timediff = sample.getTimestamp() - lastSample.getTimestamp();
             if (timediff > 60) {
-                if (lastSample.getRawKind() != -1 && sample.getRawKind() != lastSample.getRawKind()) {
-                    HuaweiActivitySample postSample = new HuaweiActivitySample(
-                            lastSample.getTimestamp() + 1,
-                            lastSample.getDeviceId(),
-                            lastSample.getUserId(),
-                            0,
-                            (byte) 0x00,
-                            ActivitySample.NOT_MEASURED,
-                            0,
-                            ActivitySample.NOT_MEASURED,
-                            ActivitySample.NOT_MEASURED,
-                            ActivitySample.NOT_MEASURED,
-                            ActivitySample.NOT_MEASURED,
-                            ActivitySample.NOT_MEASURED
-                    );
-                    postSample.setProvider(this);
-                    retv.add(postSample);
-                }
-
-                if (sample.getRawKind() != -1 && sample.getRawKind() != lastSample.getRawKind()) {
-                    HuaweiActivitySample preSample = new HuaweiActivitySample(
-                            sample.getTimestamp() - 1,
-                            sample.getDeviceId(),
-                            sample.getUserId(),
-                            0,
-                            (byte) 0x00,
-                            ActivitySample.NOT_MEASURED,
-                            0,
-                            ActivitySample.NOT_MEASURED,
-                            ActivitySample.NOT_MEASURED,
-                            ActivitySample.NOT_MEASURED,
-                            ActivitySample.NOT_MEASURED,
-                            ActivitySample.NOT_MEASURED
-                    );
-                    preSample.setProvider(this);
-                    retv.add(preSample);
-                }
-            }
+                if (lastSample.getRawKind() != -1 && sample.getRawKind() != lastSample.getRawKind())
+                    state.mergedGapSamples.add(toMergedSample(state, createGapSample(lastSample.getTimestamp() + 1, lastSample)));
 
-            retv.add(sample);
-            lastSample = sample;
+                if (sample.getRawKind() != -1 && sample.getRawKind() != lastSample.getRawKind())
+                    state.mergedGapSamples.add(toMergedSample(state, createGapSample(sample.getTimestamp() - 1, sample)));
+            }
         }
 
-        if (lastSample.getRawKind() != -1) {
-            HuaweiActivitySample postSample = new HuaweiActivitySample(
-                    lastSample.getTimestamp() + 1,
-                    lastSample.getDeviceId(),
-                    lastSample.getUserId(),
-                    0,
-                    (byte) 0x00,
-                    ActivitySample.NOT_MEASURED,
-                    0,
-                    ActivitySample.NOT_MEASURED,
-                    ActivitySample.NOT_MEASURED,
-                    ActivitySample.NOT_MEASURED,
-                    ActivitySample.NOT_MEASURED,
-                    ActivitySample.NOT_MEASURED
-            );
-            postSample.setProvider(this);
-            retv.add(postSample);
-        }
+        state.mergedSamples.add(toMergedSample(state, sample));
+        state.lastSample = sample;
+    }
 
-        return retv;
+    private HuaweiActivitySample createGapSample(int timestamp, HuaweiActivitySample sample) {
+        HuaweiActivitySample gapSample = new HuaweiActivitySample(
+                timestamp,
+                sample.getDeviceId(),
+                sample.getUserId(),
+                0,
+                (byte) 0x00,
+                ActivitySample.NOT_MEASURED,
+                0,
+                ActivitySample.NOT_MEASURED,
+                ActivitySample.NOT_MEASURED,
+                ActivitySample.NOT_MEASURED,
+                ActivitySample.NOT_MEASURED,
+                ActivitySample.NOT_MEASURED
+        );
+        gapSample.setProvider(this);
+        return gapSample;
     }
 
-    private void processRawSample(List<HuaweiActivitySample> processedSamples, SampleLoopState state, HuaweiActivitySample sample) {
+    private static HuaweiMergedActivitySample toMergedSample(SampleLoopState state, HuaweiActivitySample sample) {
+        return new HuaweiMergedActivitySample(
+                sample.getTimestamp(),
+                state.deviceId,
+                state.userId,
+                sample.getOtherTimestamp(),
+                sample.getSource(),
+                sample.getRawKind(),
+                sample.getRawIntensity(),
+                sample.getSteps(),
+                sample.getCalories(),
+                sample.getDistance(),
+                sample.getSpo(),
+                sample.getHeartRate()
+        );
+    }
+
+    private void processRawSample(SampleLoopState state, HuaweiActivitySample sample) {
         // Filter on Source 0x0d, Type 0x01, until we know what it is and how we should handle them.
         // Just showing them currently has some issues.
         if (sample.getSource() == FitnessData.MessageData.sleepId && sample.getRawKind() == RawTypes.UNKNOWN)
             return;
 
-        HuaweiActivitySample lastSample = null;
-
         boolean isStartMarker = sample.getTimestamp() < sample.getOtherTimestamp();
 
         // Handle preferences for wakeup status ignore - can fix some quirks on some devices
         if (sample.getRawKind() == 0x08) {
-            SharedPreferences prefs = GBApplication.getDeviceSpecificSharedPrefs(getDevice().getAddress());
-            if (isStartMarker && prefs.getBoolean(DeviceSettingsPreferenceConst.PREF_IGNORE_WAKEUP_STATUS_START, false))
+            if (isStartMarker && state.ignoreWakeupStart)
                 return;
-            if (!isStartMarker && prefs.getBoolean(DeviceSettingsPreferenceConst.PREF_IGNORE_WAKEUP_STATUS_END, false))
+            if (!isStartMarker && state.ignoreWakeupEnd)
                 return;
         }
 
@@ -463,8 +743,7 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
         if (sample.getTimestamp() > sample.getOtherTimestamp())
             sample.setTimestamp(sample.getTimestamp() - 1);
 
-        if (processedSamples.size() > 0)
-            lastSample = processedSamples.get(processedSamples.size() - 1);
+        HuaweiActivitySample lastSample = state.pendingSample;
         if (lastSample != null && lastSample.getTimestamp() == sample.getTimestamp()) {
             // Merge the samples - only if there isn't any data yet, except the kind
 
@@ -493,7 +772,9 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
         } else {
             if (state.sleepModifier != 0)
                 sample.setRawKind(state.sleepModifier);
-            processedSamples.add(sample);
+            if (lastSample != null)
+                interpolate(state, lastSample);
+            state.pendingSample = sample;
         }
 
         if (sample.getSource() == FitnessData.MessageData.sleepId && (sample.getRawKind() == RawTypes.LIGHT_SLEEP || sample.getRawKind() == RawTypes.DEEP_SLEEP)) {
@@ -504,10 +785,9 @@ public class HuaweiSampleProvider extends AbstractSampleProvider<HuaweiActivityS
         }
     }
 
-    private void processWorkoutSample(List<HuaweiActivitySample> processedSamples, SampleLoopState state, HuaweiWorkoutDataSample workoutSample) {
-        processRawSample(processedSamples, state, convertWorkoutSampleToActivitySample(workoutSample, state));
+    private void processWorkoutSample(SampleLoopState state, HuaweiWorkoutDataSample workoutSample) {
+        processRawSample(state, convertWorkoutSampleToActivitySample(workoutSample, state));
     }
-
     private HuaweiActivitySample convertWorkoutSampleToActivitySample(HuaweiWorkoutDataSample workoutSample, SampleLoopState state) {
         int hr = workoutSample.getHeartRate() & 0xFF;
         HuaweiActivitySample newSample = new HuaweiActivitySample(
@@ -31,6 +31,11 @@ public class ID115SampleProvider extends AbstractSampleProvider<ID115ActivitySam
         super(device, session);
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public AbstractDao<ID115ActivitySample, ?> getSampleDao() {
         return getSession().getID115ActivitySampleDao();
@@ -41,6 +41,11 @@ public class JYouSampleProvider extends AbstractSampleProvider<JYouActivitySampl
         mDevice = device;
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public int normalizeType(int rawType) {
         return rawType;
@@ -36,6 +36,11 @@ public class LefunSampleProvider extends AbstractSampleProvider<LefunActivitySam
         super(device, session);
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public AbstractDao<LefunActivitySample, ?> getSampleDao() {
         return getSession().getLefunActivitySampleDao();
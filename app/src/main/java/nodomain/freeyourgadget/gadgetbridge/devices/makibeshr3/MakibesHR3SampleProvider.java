@@ -39,6 +39,11 @@ public class MakibesHR3SampleProvider extends AbstractSampleProvider<MakibesHR3A
         mDevice = device;
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public int normalizeType(int rawType) {
         return rawType;
@@ -41,6 +41,11 @@ public class MiBandSampleProvider extends AbstractMiBandSampleProvider {
         super(device, session);
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public int normalizeType(int rawType) {
         switch (rawType) {
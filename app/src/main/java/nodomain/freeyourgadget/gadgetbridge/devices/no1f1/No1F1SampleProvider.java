@@ -38,6 +38,11 @@ public class No1F1SampleProvider extends AbstractSampleProvider<No1F1ActivitySam
         mDevice = device;
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public int normalizeType(int rawType) {
         return rawType;
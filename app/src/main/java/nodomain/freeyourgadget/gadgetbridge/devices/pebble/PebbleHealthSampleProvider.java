@@ -84,6 +84,11 @@ public class PebbleHealthSampleProvider extends AbstractSampleProvider<PebbleHea
         return getSession().getPebbleHealthActivitySampleDao();
     }
 
+    @Override
+    public List<AbstractDao<?, ?>> getSampleSourceDaos() {
+        return Collections.singletonList(getSession().getPebbleHealthActivityOverlayDao());
+    }
+
     @Override
     protected Property getTimestampSampleProperty() {
         return PebbleHealthActivitySampleDao.Properties.Timestamp;
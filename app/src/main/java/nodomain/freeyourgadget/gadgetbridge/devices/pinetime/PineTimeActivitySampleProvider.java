@@ -42,6 +42,11 @@ public class PineTimeActivitySampleProvider extends AbstractSampleProvider<PineT
         mDevice = device;
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public AbstractDao<PineTimeActivitySample, ?> getSampleDao() {
         return getSession().getPineTimeActivitySampleDao();
@@ -34,6 +34,11 @@ public class SonyWena3ActivitySampleProvider extends AbstractSampleProvider<Wena
         super(device, session);
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public AbstractDao<Wena3ActivitySample, ?> getSampleDao() {
         return getSession().getWena3ActivitySampleDao();
@@ -34,6 +34,11 @@ public class SonySWR12SampleProvider extends AbstractSampleProvider<SonySWR12Sam
         super(device, session);
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public AbstractDao<SonySWR12Sample, ?> getSampleDao() {
         return getSession().getSonySWR12SampleDao();
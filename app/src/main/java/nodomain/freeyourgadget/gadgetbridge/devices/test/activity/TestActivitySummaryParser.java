@@ -20,6 +20,11 @@ import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryParser;
 
 public class TestActivitySummaryParser implements ActivitySummaryParser {
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
     @Override
     public BaseActivitySummary parseBinaryData(final BaseActivitySummary summary) {
         return summary;
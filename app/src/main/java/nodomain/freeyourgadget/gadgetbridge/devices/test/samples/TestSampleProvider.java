@@ -88,6 +88,12 @@ public class TestSampleProvider extends AbstractSampleProvider<TestSampleProvide
         throw new UnsupportedOperationException("read-only sample provider");
     }
 
+    @Override
+    protected boolean canVisitInWindows() {
+        // the samples are generated from the start of the requested range
+        return false;
+    }
+
     @Override
     protected List<TestActivitySample> getGBActivitySamples(final int timestamp_from, final int timestamp_to, final int activityType) {
         final List<TestActivitySample> samples = new ArrayList<>();
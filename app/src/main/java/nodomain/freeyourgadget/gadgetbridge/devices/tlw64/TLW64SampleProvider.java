@@ -39,6 +39,11 @@ public class TLW64SampleProvider extends AbstractSampleProvider<TLW64ActivitySam
         mDevice = device;
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public AbstractDao<TLW64ActivitySample, ?> getSampleDao() {
         return getSession().getTLW64ActivitySampleDao();
@@ -38,6 +38,11 @@ public class VivomoveHrSampleProvider extends AbstractSampleProvider<VivomoveHrA
         super(device, session);
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public int normalizeType(int rawType) {
         if (rawType == RAW_NOT_WORN) {
@@ -47,6 +47,11 @@ public class WithingsSteelHRSampleProvider extends AbstractSampleProvider<Within
         super(device, session);
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public AbstractDao<WithingsSteelHRActivitySample, ?> getSampleDao() {
         return getSession().getWithingsSteelHRActivitySampleDao();
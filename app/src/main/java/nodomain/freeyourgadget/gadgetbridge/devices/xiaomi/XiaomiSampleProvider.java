@@ -22,6 +22,7 @@ import androidx.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.List;
 
 import de.greenrobot.dao.AbstractDao;
@@ -48,6 +49,14 @@ public class XiaomiSampleProvider extends AbstractSampleProvider<XiaomiActivityS
         return getSession().getXiaomiActivitySampleDao();
     }
 
+    @Override
+    public List<AbstractDao<?, ?>> getSampleSourceDaos() {
+        return Arrays.asList(
+                getSession().getXiaomiSleepStageSampleDao(),
+                getSession().getXiaomiSleepTimeSampleDao()
+        );
+    }
+
     @Nullable
     @Override
     protected Property getRawKindSampleProperty() {
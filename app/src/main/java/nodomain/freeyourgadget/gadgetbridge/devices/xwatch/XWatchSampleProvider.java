@@ -35,6 +35,11 @@ public class XWatchSampleProvider extends AbstractSampleProvider<XWatchActivityS
         super(device, session);
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public int normalizeType(int rawType) {
         return ActivityKind.TYPE_ACTIVITY;
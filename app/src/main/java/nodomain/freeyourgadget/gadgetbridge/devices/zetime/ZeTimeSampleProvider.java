@@ -39,6 +39,11 @@ public class ZeTimeSampleProvider extends AbstractSampleProvider<ZeTimeActivityS
         mDevice = device;
     }
 
+    @Override
+    public boolean canVisitRawColumns() {
+        return true;
+    }
+
     @Override
     public int normalizeType(int rawType) {
         return rawType;
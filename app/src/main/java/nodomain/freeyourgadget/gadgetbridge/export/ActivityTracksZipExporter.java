@@ -0,0 +1,74 @@
+package nodomain.freeyourgadget.gadgetbridge.export;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
+
+/**
+ * Exports the track files of several activities into a single zip file. The files are copied as
+ * they are, gpx or fit, so that an activity is exported the same way as when it is shared alone.
+ */
+public class ActivityTracksZipExporter {
+    private static final Logger LOG = LoggerFactory.getLogger(ActivityTracksZipExporter.class);
+
+    /**
+     * @return the number of exported tracks
+     */
+    public int performExport(final List<BaseActivitySummary> summaries, final File targetFile) throws IOException {
+        final Set<String> entryNames = new HashSet<>();
+        int exported = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(targetFile)))) {
+            for (final BaseActivitySummary summary : summaries) {
+                if (summary.getGpxTrack() == null) {
+                    continue;
+                }
+                final File trackFile = new File(summary.getGpxTrack());
+                if (!trackFile.isFile()) {
+                    LOG.warn("Track file {} of activity {} does not exist", trackFile, summary.getId());
+                    continue;
+                }
+
+                zip.putNextEntry(new ZipEntry(getEntryName(trackFile, entryNames)));
+                copy(trackFile, zip);
+                zip.closeEntry();
+                exported++;
+            }
+        }
+        return exported;
+    }
+
+    private static String getEntryName(final File trackFile, final Set<String> entryNames) {
+        final String fileName = trackFile.getName();
+        final int extensionStart = fileName.lastIndexOf('.');
+        final String baseName = extensionStart > 0 ? fileName.substring(0, extensionStart) : fileName;
+        final String extension = extensionStart > 0 ? fileName.substring(extensionStart) : "";
+        String name = fileName;
+        for (int i = 2; !entryNames.add(name); i++) {
+            name = baseName + "_" + i + extension;
+        }
+        return name;
+    }
+
+    private static void copy(final File file, final ZipOutputStream zip) throws IOException {
+        final byte[] buffer = new byte[16384];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                zip.write(buffer, 0, read);
+            }
+        }
+    }
+}
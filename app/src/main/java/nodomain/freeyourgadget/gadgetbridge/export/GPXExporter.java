@@ -23,18 +23,20 @@ import androidx.annotation.Nullable;
 
 import org.xmlpull.v1.XmlSerializer;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
-import java.util.List;
 import java.util.UUID;
 
 import nodomain.freeyourgadget.gadgetbridge.activities.HeartRateUtils;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityPoint;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityPointIterator;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrack;
 import nodomain.freeyourgadget.gadgetbridge.model.GPSCoordinate;
 import nodomain.freeyourgadget.gadgetbridge.util.DateTimeUtils;
@@ -56,32 +58,41 @@ public class GPXExporter implements ActivityTrackExporter {
 
     @Override
     public void performExport(ActivityTrack track, File targetFile) throws IOException, GPXTrackEmptyException {
-        String encoding = StandardCharsets.UTF_8.name();
-        XmlSerializer ser = Xml.newSerializer();
         try (FileOutputStream outputStream = new FileOutputStream(targetFile)) {
-            ser.setOutput(outputStream, encoding);
-            ser.startDocument(encoding, Boolean.TRUE);
-            ser.setPrefix("xsi", NS_XSI_URI);
-            ser.setPrefix(NS_TRACKPOINT_EXTENSION, NS_TRACKPOINT_EXTENSION_URI);
-            ser.setPrefix(NS_GPX_PREFIX, NS_GPX_URI);
-            ser.setPrefix(OPENTRACKS_PREFIX, OPENTRACKS_NAMESPACE_URI);
-
-            ser.startTag(NS_GPX_URI, "gpx");
-            ser.attribute(null, "version", "1.1");
-            ser.attribute(null, "creator", getCreator());
-            ser.attribute(NS_XSI_URI, "schemaLocation", NS_GPX_URI + " "
-                    + TOPOGRAFIX_NAMESPACE_XSD + " "
-                    + OPENTRACKS_NAMESPACE_URI + " " + OPENTRACKS_NAMESPACE_XSD);
-
-            exportMetadata(ser, track);
-            exportTrack(ser, track);
-
-            ser.endTag(NS_GPX_URI, "gpx");
-            ser.endDocument();
-            ser.flush();
+            performExport(track, track.iteratePoints(), outputStream);
         }
     }
 
+    /**
+     * Writes the points as they are returned by the iterator, so that the track does not need to
+     * be in memory as a whole. The given track only provides the name, user and device. The output
+     * stream is flushed, but not closed.
+     */
+    public void performExport(ActivityTrack track, ActivityPointIterator points, OutputStream outputStream) throws IOException, GPXTrackEmptyException {
+        String encoding = StandardCharsets.UTF_8.name();
+        XmlSerializer ser = Xml.newSerializer();
+        ser.setOutput(new BufferedOutputStream(outputStream, 16384), encoding);
+        ser.startDocument(encoding, Boolean.TRUE);
+        ser.setPrefix("xsi", NS_XSI_URI);
+        ser.setPrefix(NS_TRACKPOINT_EXTENSION, NS_TRACKPOINT_EXTENSION_URI);
+        ser.setPrefix(NS_GPX_PREFIX, NS_GPX_URI);
+        ser.setPrefix(OPENTRACKS_PREFIX, OPENTRACKS_NAMESPACE_URI);
+
+        ser.startTag(NS_GPX_URI, "gpx");
+        ser.attribute(null, "version", "1.1");
+        ser.attribute(null, "creator", getCreator());
+        ser.attribute(NS_XSI_URI, "schemaLocation", NS_GPX_URI + " "
+                + TOPOGRAFIX_NAMESPACE_XSD + " "
+                + OPENTRACKS_NAMESPACE_URI + " " + OPENTRACKS_NAMESPACE_XSD);
+
+        exportMetadata(ser, track);
+        exportTrack(ser, points);
+
+        ser.endTag(NS_GPX_URI, "gpx");
+        ser.endDocument();
+        ser.flush();
+    }
+
     private void exportMetadata(XmlSerializer ser, ActivityTrack track) throws IOException {
         ser.startTag(NS_GPX_URI, "metadata");
         ser.startTag(NS_GPX_URI, "name").text(track.getName()).endTag(NS_GPX_URI, "name");
@@ -99,26 +110,33 @@ public class GPXExporter implements ActivityTrackExporter {
         return DateTimeUtils.formatIso8601(date);
     }
 
-    private void exportTrack(XmlSerializer ser, ActivityTrack track) throws IOException, GPXTrackEmptyException {
+    private void exportTrack(XmlSerializer ser, ActivityPointIterator points) throws IOException, GPXTrackEmptyException {
         String uuid = UUID.randomUUID().toString();
         ser.startTag(NS_GPX_URI, "trk");
         ser.startTag(NS_GPX_URI, "extensions");
         ser.startTag(NS_GPX_URI, OPENTRACKS_PREFIX + ":trackid").text(uuid).endTag(NS_GPX_URI, OPENTRACKS_PREFIX + ":trackid");
         ser.endTag(NS_GPX_URI, "extensions");
 
-        List<List<ActivityPoint>> segments = track.getSegments();
-        String source = getSource(track);
         boolean atLeastOnePointExported = false;
-        for (List<ActivityPoint> segment : segments) {
-            if (segment.isEmpty()) {
-                // Skip empty segments
-                continue;
+        boolean inSegment = false;
+        // the last point of the current segment with a valid heart rate
+        ActivityPoint lastHeartRatePoint = null;
+        ActivityPoint point;
+        while ((point = points.next()) != null) {
+            if (points.isNewSegment()) {
+                if (inSegment) {
+                    ser.endTag(NS_GPX_URI, "trkseg");
+                }
+                ser.startTag(NS_GPX_URI, "trkseg");
+                inSegment = true;
+                lastHeartRatePoint = null;
             }
-
-            ser.startTag(NS_GPX_URI, "trkseg");
-            for (ActivityPoint point : segment) {
-                atLeastOnePointExported |= exportTrackPoint(ser, point, source, segment);
+            atLeastOnePointExported |= exportTrackPoint(ser, point, lastHeartRatePoint);
+            if (HeartRateUtils.getInstance().isValidHeartRateValue(point.getHeartRate())) {
+                lastHeartRatePoint = point;
             }
+        }
+        if (inSegment) {
             ser.endTag(NS_GPX_URI, "trkseg");
         }
 
@@ -129,11 +147,7 @@ public class GPXExporter implements ActivityTrackExporter {
         ser.endTag(NS_GPX_URI, "trk");
     }
 
-    private String getSource(ActivityTrack track) {
-        return track.getDevice().getName();
-    }
-
-    private boolean exportTrackPoint(XmlSerializer ser, ActivityPoint point, String source, List<ActivityPoint> trackPoints) throws IOException {
+    private boolean exportTrackPoint(XmlSerializer ser, ActivityPoint point, @Nullable ActivityPoint lastHeartRatePoint) throws IOException {
         GPSCoordinate location = point.getLocation();
         if (location == null) {
             return false; // skip invalid points, that just contain hr data, for example
@@ -152,14 +166,14 @@ public class GPXExporter implements ActivityTrackExporter {
         }
         //ser.startTag(NS_GPX_URI, "src").text(source).endTag(NS_GPX_URI, "src");
 
-        exportTrackpointExtensions(ser, point, trackPoints);
+        exportTrackpointExtensions(ser, point, lastHeartRatePoint);
 
         ser.endTag(NS_GPX_URI, "trkpt");
 
         return true;
     }
 
-    private void exportTrackpointExtensions(XmlSerializer ser, ActivityPoint point, List<ActivityPoint> trackPoints) throws IOException {
+    private void exportTrackpointExtensions(XmlSerializer ser, ActivityPoint point, @Nullable ActivityPoint lastHeartRatePoint) throws IOException {
         if (!includeHeartRate) {
             return;
         }
@@ -170,15 +184,12 @@ public class GPXExporter implements ActivityTrackExporter {
                 return;
             }
 
-            ActivityPoint closestPointItem = findClosestSensibleActivityPoint(point.getTime(), trackPoints);
+            ActivityPoint closestPointItem = findClosestSensibleActivityPoint(point.getTime(), lastHeartRatePoint);
             if(closestPointItem == null) {
                 return;
             }
 
             hr = closestPointItem.getHeartRate();
-            if (!HeartRateUtils.getInstance().isValidHeartRateValue(hr)) {
-                return;
-            }
         }
 
         ser.startTag(NS_GPX_URI, "extensions");
@@ -189,26 +200,21 @@ public class GPXExporter implements ActivityTrackExporter {
         ser.endTag(NS_GPX_URI, "extensions");
     }
 
-    private @Nullable ActivityPoint findClosestSensibleActivityPoint(Date time, List<ActivityPoint> trackPoints) {
-        ActivityPoint closestPointItem = null;
-        HeartRateUtils heartRateUtilsInstance = HeartRateUtils.getInstance();
-
-        long lowestDifference = 60 * 2 * 1000; // minimum distance is 2min
-        for (ActivityPoint pointItem : trackPoints) {
-            int hrItem = pointItem.getHeartRate();
-            if (heartRateUtilsInstance.isValidHeartRateValue(hrItem)) {
-                Date timeItem = pointItem.getTime();
-                if (timeItem.after(time) || timeItem.equals(time)) {
-                    break; // we assume that the given trackPoints are sorted in time ascending order (oldest first)
-                }
-                long difference = time.getTime() - timeItem.getTime();
-                if (difference < lowestDifference) {
-                    lowestDifference = difference;
-                    closestPointItem = pointItem;
-                }
-            }
+    /**
+     * Returns the last point with a valid heart rate before the given time, if it is at most
+     * two minutes older. Since the points are sorted by time, this is the closest one before.
+     */
+    private @Nullable ActivityPoint findClosestSensibleActivityPoint(Date time, @Nullable ActivityPoint lastHeartRatePoint) {
+        if (lastHeartRatePoint == null) {
+            return null;
         }
-        return closestPointItem;
+        Date timeItem = lastHeartRatePoint.getTime();
+        if (timeItem.after(time) || timeItem.equals(time)) {
+            return null;
+        }
+        long lowestDifference = 60 * 2 * 1000; // minimum distance is 2min
+        long difference = time.getTime() - timeItem.getTime();
+        return difference < lowestDifference ? lastHeartRatePoint : null;
     }
 
     private String formatLocation(double value) {
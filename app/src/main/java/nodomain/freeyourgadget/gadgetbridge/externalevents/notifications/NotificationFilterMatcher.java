@@ -0,0 +1,291 @@
+package nodomain.freeyourgadget.gadgetbridge.externalevents.notifications;
+
+import static nodomain.freeyourgadget.gadgetbridge.activities.NotificationFilterActivity.NOTIFICATION_FILTER_MODE_BLACKLIST;
+import static nodomain.freeyourgadget.gadgetbridge.activities.NotificationFilterActivity.NOTIFICATION_FILTER_MODE_WHITELIST;
+import static nodomain.freeyourgadget.gadgetbridge.activities.NotificationFilterActivity.NOTIFICATION_FILTER_SUBMODE_ALL;
+
+import androidx.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import nodomain.freeyourgadget.gadgetbridge.GBApplication;
+import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
+import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
+import nodomain.freeyourgadget.gadgetbridge.entities.NotificationFilter;
+import nodomain.freeyourgadget.gadgetbridge.entities.NotificationFilterEntry;
+
+/**
+ * The notification content filter of a single app, compiled into an Aho-Corasick automaton over
+ * all of its words, so that a notification is checked in a single pass over its text.
+ * <p>
+ * The compiled filters of all apps are loaded from the database at once and kept in memory, until
+ * they are {@link #invalidate() invalidated} because the filters were edited.
+ */
+public class NotificationFilterMatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationFilterMatcher.class);
+
+    // the compiled filters by lowercase package name, null if they need to be (re)loaded
+    private static volatile Map<String, NotificationFilterMatcher> matchers;
+
+    private final int mode;
+    private final boolean allMode;
+    private final int numWords;
+    private final boolean hasEmptyWord;
+
+    // the automaton: sorted transition characters and target states per state, the failure
+    // links, and the indexes of the words ending in each state, including via failure links
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    private final int[] failure;
+    private final int[][] outputs;
+
+    public NotificationFilterMatcher(final int mode, final int subMode, final Collection<String> words) {
+        this.mode = mode;
+        this.allMode = subMode == NOTIFICATION_FILTER_SUBMODE_ALL;
+
+        final List<String> uniqueWords = new ArrayList<>(new LinkedHashSet<>(words));
+        this.hasEmptyWord = uniqueWords.remove("");
+        this.numWords = uniqueWords.size();
+
+        final List<Map<Character, Integer>> gotos = new ArrayList<>();
+        final List<List<Integer>> ends = new ArrayList<>();
+        gotos.add(new HashMap<>());
+        ends.add(new ArrayList<>());
+        for (int i = 0; i < uniqueWords.size(); i++) {
+            final String word = uniqueWords.get(i);
+            int state = 0;
+            for (int j = 0; j < word.length(); j++) {
+                final Integer next = gotos.get(state).get(word.charAt(j));
+                if (next != null) {
+                    state = next;
+                } else {
+                    gotos.add(new HashMap<>());
+                    ends.add(new ArrayList<>());
+                    gotos.get(state).put(word.charAt(j), gotos.size() - 1);
+                    state = gotos.size() - 1;
+                }
+            }
+            ends.get(state).add(i);
+        }
+
+        final int numStates = gotos.size();
+        failure = new int[numStates];
+        final Queue<Integer> queue = new ArrayDeque<>();
+        queue.addAll(gotos.get(0).values());
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            for (final Map.Entry<Character, Integer> e : gotos.get(state).entrySet()) {
+                final int target = e.getValue();
+                int fallback = failure[state];
+                while (fallback != 0 && !gotos.get(fallback).containsKey(e.getKey())) {
+                    fallback = failure[fallback];
+                }
+                final Integer fallbackTarget = gotos.get(fallback).get(e.getKey());
+                failure[target] = fallbackTarget != null && fallbackTarget != target ? fallbackTarget : 0;
+                // states are visited breadth-first, so the failure state is complete already
+                ends.get(target).addAll(ends.get(failure[target]));
+                queue.add(target);
+            }
+        }
+
+        transitionChars = new char[numStates][];
+        transitionTargets = new int[numStates][];
+        outputs = new int[numStates][];
+        for (int state = 0; state < numStates; state++) {
+            final TreeMap<Character, Integer> sorted = new TreeMap<>(gotos.get(state));
+            transitionChars[state] = new char[sorted.size()];
+            transitionTargets[state] = new int[sorted.size()];
+            int i = 0;
+            for (final Map.Entry<Character, Integer> e : sorted.entrySet()) {
+                transitionChars[state][i] = e.getKey();
+                transitionTargets[state][i] = e.getValue();
+                i++;
+            }
+            final List<Integer> stateEnds = ends.get(state);
+            outputs[state] = new int[stateEnds.size()];
+            for (int j = 0; j < stateEnds.size(); j++) {
+                outputs[state][j] = stateEnds.get(j);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a notification with the given text should be processed any further.
+     */
+    public boolean shouldContinue(final String body) {
+        switch (mode) {
+            case NOTIFICATION_FILTER_MODE_BLACKLIST:
+                if (allMode) {
+                    if (!containsAll(body)) {
+                        LOG.info("Not every word was found, blacklist has no effect, processing continues.");
+                        return true;
+                    }
+                    LOG.info("Every word was found, blacklist has effect, processing stops.");
+                    return false;
+                } else {
+                    final boolean containsAny = containsAny(body);
+                    if (!containsAny) {
+                        LOG.info("No matching word was found, blacklist has no effect, processing continues.");
+                    } else {
+                        LOG.info("At least one matching word was found, blacklist has effect, processing stops.");
+                    }
+                    return !containsAny;
+                }
+
+            case NOTIFICATION_FILTER_MODE_WHITELIST:
+                if (allMode) {
+                    if (!containsAll(body)) {
+                        LOG.info("Not every word was found, whitelist has no effect, processing stops.");
+                        return false;
+                    }
+                    LOG.info("Every word was found, whitelist has effect, processing continues.");
+                    return true;
+                } else {
+                    final boolean containsAny = containsAny(body);
+                    if (containsAny) {
+                        LOG.info("At least one matching word was found, whitelist has effect, processing continues.");
+                    } else {
+                        LOG.info("No matching word was found, whitelist has no effect, processing stops.");
+                    }
+                    return containsAny;
+                }
+
+            default:
+                return true;
+        }
+    }
+
+    boolean containsAny(final String body) {
+        if (body.isEmpty()) {
+            return false;
+        }
+        if (hasEmptyWord) {
+            return true;
+        }
+        return scan(body, null);
+    }
+
+    boolean containsAll(final String body) {
+        if (numWords == 0) {
+            return true;
+        }
+        return scan(body, new boolean[numWords]);
+    }
+
+    /**
+     * Runs the automaton over the body.
+     *
+     * @param found if null, stops at the first word found, otherwise marks the words found in it
+     *              and stops once all of them were found
+     * @return whether any word, or all words, were found
+     */
+    private boolean scan(final String body, @Nullable final boolean[] found) {
+        int numFound = 0;
+        int state = 0;
+        for (int i = 0; i < body.length(); i++) {
+            final char c = body.charAt(i);
+            int next = transition(state, c);
+            while (next < 0 && state != 0) {
+                state = failure[state];
+                next = transition(state, c);
+            }
+            state = next < 0 ? 0 : next;
+
+            for (final int word : outputs[state]) {
+                if (found == null) {
+                    return true;
+                }
+                if (!found[word]) {
+                    found[word] = true;
+                    if (++numFound == numWords) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private int transition(final int state, final char c) {
+        final int i = Arrays.binarySearch(transitionChars[state], c);
+        return i >= 0 ? transitionTargets[state][i] : -1;
+    }
+
+    /**
+     * Returns the compiled filter of the given app, or null if it has none. Loads all filters
+     * from the database on the first call after they were invalidated.
+     */
+    @Nullable
+    public static NotificationFilterMatcher forPackage(final String packageName) {
+        Map<String, NotificationFilterMatcher> current = matchers;
+        if (current == null) {
+            current = load();
+            if (current == null) {
+                return null;
+            }
+        }
+        return current.get(packageName.toLowerCase());
+    }
+
+    /**
+     * Drops the compiled filters, so that they are loaded again for the next notification. Must
+     * be called whenever the filters in the database change.
+     */
+    public static void invalidate() {
+        synchronized (NotificationFilterMatcher.class) {
+            matchers = null;
+        }
+    }
+
+    @Nullable
+    private static synchronized Map<String, NotificationFilterMatcher> load() {
+        if (matchers != null) {
+            return matchers;
+        }
+
+        final long start = System.currentTimeMillis();
+        final Map<String, NotificationFilterMatcher> loaded = new HashMap<>();
+        try (DBHandler db = GBApplication.acquireReadOnlyDB()) {
+            final DaoSession session = db.getDaoSession();
+
+            final Map<Long, List<String>> wordsPerFilter = new HashMap<>();
+            for (final NotificationFilterEntry entry : session.getNotificationFilterEntryDao().loadAll()) {
+                List<String> words = wordsPerFilter.get(entry.getNotificationFilterId());
+                if (words == null) {
+                    words = new ArrayList<>();
+                    wordsPerFilter.put(entry.getNotificationFilterId(), words);
+                }
+                words.add(entry.getNotificationFilterContent());
+            }
+
+            for (final NotificationFilter filter : session.getNotificationFilterDao().loadAll()) {
+                final List<String> words = wordsPerFilter.get(filter.getId());
+                loaded.put(filter.getAppIdentifier().toLowerCase(), new NotificationFilterMatcher(
+                        filter.getNotificationFilterMode(),
+                        filter.getNotificationFilterSubMode(),
+                        words != null ? words : Collections.emptyList()
+                ));
+            }
+        } catch (final Exception e) {
+            LOG.error("Could not load notification filters", e);
+            return null;
+        }
+
+        LOG.debug("Compiled {} notification filters in {} ms", loaded.size(), System.currentTimeMillis() - start);
+        matchers = loaded;
+        return loaded;
+    }
+}
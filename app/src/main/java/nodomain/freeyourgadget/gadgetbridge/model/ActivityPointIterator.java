@@ -0,0 +1,24 @@
+package nodomain.freeyourgadget.gadgetbridge.model;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Iterates over the points of an activity track, segment by segment, without requiring all of
+ * them to be in memory.
+ */
+public interface ActivityPointIterator extends Closeable {
+    /**
+     * @return the next point, or null if all points were read
+     */
+    @Nullable
+    ActivityPoint next() throws IOException;
+
+    /**
+     * @return whether the point last returned by {@link #next()} starts a new segment, which is
+     * also the case for the first point of the track
+     */
+    boolean isNewSegment();
+}
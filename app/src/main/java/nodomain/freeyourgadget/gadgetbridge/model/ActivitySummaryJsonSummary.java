@@ -19,6 +19,8 @@ package nodomain.freeyourgadget.gadgetbridge.model;
 
 import static nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryEntries.*;
 
+import androidx.annotation.Nullable;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -41,6 +43,7 @@ public class ActivitySummaryJsonSummary {
     private JSONObject summaryGroupedList;
     private ActivitySummaryParser summaryParser;
     private BaseActivitySummary baseActivitySummary;
+    private ActivitySummaryMetrics metrics;
 
     public ActivitySummaryJsonSummary(final ActivitySummaryParser summaryParser, BaseActivitySummary baseActivitySummary){
         this.summaryParser=summaryParser;
@@ -48,6 +51,12 @@ public class ActivitySummaryJsonSummary {
     }
 
     private JSONObject setSummaryData(BaseActivitySummary item){
+        final ActivitySummaryMetrics storedMetrics = ActivitySummaryMetrics.decode(item.getSummaryBinary(), summaryParser);
+        if (storedMetrics != null) {
+            // already includes the computed values below
+            return storedMetrics.toJson();
+        }
+
         String summary = getCorrectSummary(item);
         JSONObject jsonSummary = getJSONSummary(summary);
         if (jsonSummary != null) {
@@ -90,6 +99,45 @@ public class ActivitySummaryJsonSummary {
         return summaryData;
     }
 
+    /**
+     * Returns the typed summary values, decoded from the binary summary if it is up to date, or
+     * parsed from the summary data otherwise.
+     */
+    @Nullable
+    public ActivitySummaryMetrics getMetrics() {
+        if (metrics == null) {
+            metrics = ActivitySummaryMetrics.decode(baseActivitySummary.getSummaryBinary(), summaryParser);
+        }
+        if (metrics == null) {
+            final JSONObject data = getSummaryData();
+            if (data != null) {
+                metrics = ActivitySummaryMetrics.fromJson(data);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Parses the summary and stores the binary summary in the given entity, if it is missing or
+     * stale. Persisting the entity is up to the caller.
+     *
+     * @return whether the binary summary was updated
+     */
+    public static boolean updateSummaryBinary(final ActivitySummaryParser summaryParser, final BaseActivitySummary item) {
+        if (ActivitySummaryMetrics.decode(item.getSummaryBinary(), summaryParser) != null) {
+            return false;
+        }
+        // parsing the raw summary data replaces the json, which is not meant to be persisted
+        final String summaryData = item.getSummaryData();
+        final ActivitySummaryMetrics parsedMetrics = new ActivitySummaryJsonSummary(summaryParser, item).getMetrics();
+        item.setSummaryData(summaryData);
+        if (parsedMetrics == null) {
+            return false;
+        }
+        item.setSummaryBinary(parsedMetrics.encode(summaryParser));
+        return true;
+    }
+
     private String getCorrectSummary(BaseActivitySummary item){
         if (item.getRawSummaryData() != null) {
             try {
@@ -0,0 +1,216 @@
+package nodomain.freeyourgadget.gadgetbridge.model;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The summary values of an activity, typed, with a compact binary encoding that is stored along
+ * with the summary in the database, so that listing activities does not need to parse any json or
+ * raw summary data.
+ * <p>
+ * The encoding records its format version and the parser class and {@link ActivitySummaryParser#getVersion()}
+ * it was parsed with, summaries written with another format or by another parser version are
+ * considered stale.
+ */
+public class ActivitySummaryMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(ActivitySummaryMetrics.class);
+
+    private static final int FORMAT_VERSION = 3;
+
+    private static final int TYPE_NUMBER = 0;
+    private static final int TYPE_STRING = 1;
+
+    private final List<String> keys = new ArrayList<>();
+    private final List<String> units = new ArrayList<>();
+    private final List<String> groups = new ArrayList<>();
+    private final List<Object> values = new ArrayList<>();
+
+    private ActivitySummaryMetrics() {
+    }
+
+    /**
+     * Converts summary json as written by {@link ActivitySummaryData}.
+     *
+     * @return the metrics, or null if the json has values other than numbers and strings
+     */
+    @Nullable
+    public static ActivitySummaryMetrics fromJson(final JSONObject json) {
+        final ActivitySummaryMetrics metrics = new ActivitySummaryMetrics();
+        final Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            final JSONObject entry = json.optJSONObject(key);
+            if (entry == null) {
+                return null;
+            }
+            final Object value = entry.opt("value");
+            if (!(value instanceof Number) && !(value instanceof String)) {
+                return null;
+            }
+            metrics.keys.add(key);
+            metrics.units.add(entry.optString("unit", ""));
+            metrics.groups.add(entry.has("group") ? entry.optString("group") : null);
+            metrics.values.add(value instanceof Number ? (Object) ((Number) value).doubleValue() : value);
+        }
+        return metrics;
+    }
+
+    public JSONObject toJson() {
+        final JSONObject json = new JSONObject();
+        try {
+            for (int i = 0; i < keys.size(); i++) {
+                final JSONObject entry = new JSONObject();
+                entry.put("value", values.get(i));
+                entry.put("unit", units.get(i));
+                if (groups.get(i) != null) {
+                    entry.put("group", groups.get(i));
+                }
+                json.put(keys.get(i), entry);
+            }
+        } catch (final JSONException e) {
+            LOG.error("This should never happen", e);
+        }
+        return json;
+    }
+
+    public boolean has(final String key) {
+        return keys.contains(key);
+    }
+
+    public double getNumber(final String key, final double defaultValue) {
+        final int i = keys.indexOf(key);
+        if (i < 0 || !(values.get(i) instanceof Double)) {
+            return defaultValue;
+        }
+        return (Double) values.get(i);
+    }
+
+    /**
+     * Identifies the parser a summary was parsed with, an empty string if there is none.
+     */
+    public static String getParserKey(@Nullable final ActivitySummaryParser parser) {
+        if (parser == null) {
+            return "";
+        }
+        return parser.getClass().getName() + "/" + parser.getVersion();
+    }
+
+    /**
+     * Encodes the metrics, as parsed by the given parser. Keys, units and groups are written once
+     * to a string table and referenced by index, since most summaries repeat the same few units.
+     */
+    public byte[] encode(@Nullable final ActivitySummaryParser parser) {
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> stringIndexes = new HashMap<>();
+        final int[][] refs = new int[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            final Object value = values.get(i);
+            refs[i] = new int[]{
+                    intern(keys.get(i), strings, stringIndexes),
+                    intern(units.get(i), strings, stringIndexes),
+                    groups.get(i) != null ? intern(groups.get(i), strings, stringIndexes) : -1,
+                    value instanceof String ? intern((String) value, strings, stringIndexes) : -1,
+            };
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + keys.size() * 12);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(getParserKey(parser));
+            out.writeShort(strings.size());
+            for (final String string : strings) {
+                out.writeUTF(string);
+            }
+            out.writeShort(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                out.writeShort(refs[i][0]);
+                out.writeShort(refs[i][1]);
+                out.writeShort(refs[i][2] + 1); // 0 if there is no group
+                if (values.get(i) instanceof String) {
+                    out.writeByte(TYPE_STRING);
+                    out.writeShort(refs[i][3]);
+                } else {
+                    out.writeByte(TYPE_NUMBER);
+                    final double number = (Double) values.get(i);
+                    out.writeDouble(number);
+                }
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to encode activity summary", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the metrics, if they were parsed by the given parser in its current version.
+     *
+     * @return the metrics, or null if they were written with another format or parser version, or
+     * are corrupt
+     */
+    @Nullable
+    public static ActivitySummaryMetrics decode(@Nullable final byte[] encoded, @Nullable final ActivitySummaryParser parser) {
+        if (encoded == null || encoded.length == 0) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            if (in.readUnsignedByte() != FORMAT_VERSION) {
+                return null;
+            }
+            if (!getParserKey(parser).equals(in.readUTF())) {
+                return null;
+            }
+            final String[] strings = new String[in.readUnsignedShort()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+            final ActivitySummaryMetrics metrics = new ActivitySummaryMetrics();
+            final int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                metrics.keys.add(strings[in.readUnsignedShort()]);
+                metrics.units.add(strings[in.readUnsignedShort()]);
+                final int group = in.readUnsignedShort();
+                metrics.groups.add(group != 0 ? strings[group - 1] : null);
+                switch (in.readUnsignedByte()) {
+                    case TYPE_STRING:
+                        metrics.values.add(strings[in.readUnsignedShort()]);
+                        break;
+                    case TYPE_NUMBER:
+                        metrics.values.add(in.readDouble());
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            return metrics;
+        } catch (final IOException | ArrayIndexOutOfBoundsException e) {
+            LOG.warn("Failed to decode activity summary", e);
+            return null;
+        }
+    }
+
+    private static int intern(final String string, final List<String> strings, final Map<String, Integer> indexes) {
+        Integer index = indexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            indexes.put(string, index);
+        }
+        return index;
+    }
+}
@@ -20,4 +20,11 @@ import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
 
 public interface ActivitySummaryParser {
     BaseActivitySummary parseBinaryData(BaseActivitySummary summary);
+
+    /**
+     * The version of this parser. Stored binary summaries record the parser and version they were
+     * parsed with, so bumping it after a change that affects the parsed values re-parses the
+     * stored activities that still have their raw summary data.
+     */
+    int getVersion();
 }
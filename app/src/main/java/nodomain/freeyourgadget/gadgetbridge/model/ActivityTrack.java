@@ -16,6 +16,8 @@
     along with this program.  If not, see <https://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.model;
 
+import androidx.annotation.Nullable;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -77,6 +79,41 @@ public class ActivityTrack {
         return segments;
     }
 
+    /**
+     * Returns an iterator over the points of all non-empty segments.
+     */
+    public ActivityPointIterator iteratePoints() {
+        return new ActivityPointIterator() {
+            private int segmentIndex = 0;
+            private int pointIndex = 0;
+            private boolean newSegment;
+
+            @Nullable
+            @Override
+            public ActivityPoint next() {
+                while (segmentIndex < segments.size()) {
+                    final List<ActivityPoint> segment = segments.get(segmentIndex);
+                    if (pointIndex < segment.size()) {
+                        newSegment = pointIndex == 0;
+                        return segment.get(pointIndex++);
+                    }
+                    segmentIndex++;
+                    pointIndex = 0;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean isNewSegment() {
+                return newSegment;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
     public Date getBaseTime() {
         return baseTime;
     }
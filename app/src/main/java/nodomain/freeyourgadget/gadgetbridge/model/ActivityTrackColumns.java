@@ -0,0 +1,460 @@
+package nodomain.freeyourgadget.gadgetbridge.model;
+
+import androidx.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.fit.FitFile;
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.fit.RecordData;
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.fit.messages.FitRecord;
+import nodomain.freeyourgadget.gadgetbridge.util.gpx.GpxParseException;
+import nodomain.freeyourgadget.gadgetbridge.util.gpx.GpxParser;
+import nodomain.freeyourgadget.gadgetbridge.util.gpx.model.GpxTrackPoint;
+
+/**
+ * The points of an activity track, stored column by column: flags, time, latitude, longitude,
+ * altitude, heart rate and speed, each of them delta-encoded as variable length integers.
+ * <p>
+ * The columns are written next to the gpx or fit file when a track is imported, so that it does
+ * not need to be parsed from that file again. They are rewritten whenever the file changed since.
+ * Point descriptions are not kept.
+ * The header records the length of every column, so that a stored track can also be iterated
+ * point by point, see {@link #open(File)}.
+ */
+public final class ActivityTrackColumns {
+    private static final Logger LOG = LoggerFactory.getLogger(ActivityTrackColumns.class);
+
+    private static final int MAGIC = 0x47425443; // GBTC
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int FLAG_TIME = 1;
+    private static final int FLAG_LOCATION = 2;
+    private static final int FLAG_NEW_SEGMENT = 4;
+
+    private static final int COLUMN_FLAGS = 0;
+    private static final int COLUMN_TIME = 1;
+    private static final int COLUMN_LATITUDE = 2;
+    private static final int COLUMN_LONGITUDE = 3;
+    private static final int COLUMN_ALTITUDE = 4;
+    private static final int COLUMN_HEART_RATE = 5;
+    private static final int COLUMN_SPEED = 6;
+    private static final int COLUMN_COUNT = 7;
+
+    // coordinates are stored in micro degrees, altitude in decimeters, speed in cm/s
+    private static final double COORDINATE_SCALE = 1e6;
+    private static final double ALTITUDE_SCALE = 10;
+    private static final double SPEED_SCALE = 100;
+
+    private ActivityTrackColumns() {
+    }
+
+    public static void write(final OutputStream out, final List<List<ActivityPoint>> segments) throws IOException {
+        final ByteArrayOutputStream[] columnBytes = new ByteArrayOutputStream[COLUMN_COUNT];
+        final DataOutputStream[] columns = new DataOutputStream[COLUMN_COUNT];
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columnBytes[i] = new ByteArrayOutputStream();
+            columns[i] = new DataOutputStream(columnBytes[i]);
+        }
+
+        final long[] previous = new long[COLUMN_COUNT];
+        int count = 0;
+        for (final List<ActivityPoint> segment : segments) {
+            for (int i = 0; i < segment.size(); i++) {
+                final ActivityPoint point = segment.get(i);
+                int pointFlags = 0;
+                if (point.getTime() != null) {
+                    pointFlags |= FLAG_TIME;
+                }
+                if (point.getLocation() != null) {
+                    pointFlags |= FLAG_LOCATION;
+                }
+                if (i == 0 && count > 0) {
+                    pointFlags |= FLAG_NEW_SEGMENT;
+                }
+                columns[COLUMN_FLAGS].writeByte(pointFlags);
+
+                if (point.getTime() != null) {
+                    writeDelta(columns, previous, COLUMN_TIME, point.getTime().getTime());
+                }
+                final GPSCoordinate location = point.getLocation();
+                if (location != null) {
+                    writeDelta(columns, previous, COLUMN_LATITUDE, Math.round(location.getLatitude() * COORDINATE_SCALE));
+                    writeDelta(columns, previous, COLUMN_LONGITUDE, Math.round(location.getLongitude() * COORDINATE_SCALE));
+                    writeDelta(columns, previous, COLUMN_ALTITUDE, Math.round(location.getAltitude() * ALTITUDE_SCALE));
+                }
+                writeDelta(columns, previous, COLUMN_HEART_RATE, point.getHeartRate());
+                writeDelta(columns, previous, COLUMN_SPEED, Math.round(point.getSpeed() * SPEED_SCALE));
+                count++;
+            }
+        }
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(FORMAT_VERSION);
+        writeVarInt(data, count);
+        for (final ByteArrayOutputStream column : columnBytes) {
+            writeVarInt(data, column.size());
+        }
+        for (final ByteArrayOutputStream column : columnBytes) {
+            column.writeTo(data);
+        }
+        data.flush();
+    }
+
+    public static List<List<ActivityPoint>> read(final InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        final Header header = readHeader(data);
+        final int count = header.count;
+
+        final int[] flags = new int[count];
+        for (int i = 0; i < count; i++) {
+            flags[i] = data.readUnsignedByte();
+        }
+
+        final long[] times = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & FLAG_TIME) != 0) {
+                times[i] = previous = readDelta(data, previous);
+            }
+        }
+
+        final long[] latitudes = new long[count];
+        final long[] longitudes = new long[count];
+        final long[] altitudes = new long[count];
+        for (final long[] column : new long[][]{latitudes, longitudes, altitudes}) {
+            previous = 0;
+            for (int i = 0; i < count; i++) {
+                if ((flags[i] & FLAG_LOCATION) != 0) {
+                    column[i] = previous = readDelta(data, previous);
+                }
+            }
+        }
+
+        final List<List<ActivityPoint>> segments = new ArrayList<>();
+        List<ActivityPoint> segment = new ArrayList<>();
+        segments.add(segment);
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & FLAG_NEW_SEGMENT) != 0) {
+                segment = new ArrayList<>();
+                segments.add(segment);
+            }
+            final ActivityPoint point = new ActivityPoint();
+            if ((flags[i] & FLAG_TIME) != 0) {
+                point.setTime(new Date(times[i]));
+            }
+            if ((flags[i] & FLAG_LOCATION) != 0) {
+                point.setLocation(new GPSCoordinate(
+                        longitudes[i] / COORDINATE_SCALE,
+                        latitudes[i] / COORDINATE_SCALE,
+                        altitudes[i] / ALTITUDE_SCALE
+                ));
+            }
+            segment.add(point);
+        }
+
+        previous = 0;
+        for (final List<ActivityPoint> points : segments) {
+            for (final ActivityPoint point : points) {
+                point.setHeartRate((int) (previous = readDelta(data, previous)));
+            }
+        }
+        previous = 0;
+        for (final List<ActivityPoint> points : segments) {
+            for (final ActivityPoint point : points) {
+                point.setSpeed((float) ((previous = readDelta(data, previous)) / SPEED_SCALE));
+            }
+        }
+
+        return segments;
+    }
+
+    /**
+     * Opens an iterator over the columns written to the given file, reading all columns side by
+     * side, so that only a small buffer per column is held in memory.
+     */
+    public static ActivityPointIterator iterate(final File columnsFile) throws IOException {
+        final Header header;
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(columnsFile)))) {
+            header = readHeader(data);
+        }
+
+        final DataInputStream[] columns = new DataInputStream[COLUMN_COUNT];
+        try {
+            long offset = header.size;
+            for (int i = 0; i < COLUMN_COUNT; i++) {
+                final FileInputStream in = new FileInputStream(columnsFile);
+                columns[i] = new DataInputStream(new BufferedInputStream(in, 1024));
+                in.getChannel().position(offset);
+                offset += header.columnLengths[i];
+            }
+        } catch (final IOException e) {
+            closeAll(columns);
+            throw e;
+        }
+
+        return new ActivityPointIterator() {
+            private final long[] previous = new long[COLUMN_COUNT];
+            private int index = 0;
+            private boolean newSegment;
+
+            @Nullable
+            @Override
+            public ActivityPoint next() throws IOException {
+                if (index >= header.count) {
+                    return null;
+                }
+                final int flags = columns[COLUMN_FLAGS].readUnsignedByte();
+                newSegment = index == 0 || (flags & FLAG_NEW_SEGMENT) != 0;
+                index++;
+
+                final ActivityPoint point = new ActivityPoint();
+                if ((flags & FLAG_TIME) != 0) {
+                    point.setTime(new Date(readDelta(columns, previous, COLUMN_TIME)));
+                }
+                if ((flags & FLAG_LOCATION) != 0) {
+                    final long latitude = readDelta(columns, previous, COLUMN_LATITUDE);
+                    final long longitude = readDelta(columns, previous, COLUMN_LONGITUDE);
+                    final long altitude = readDelta(columns, previous, COLUMN_ALTITUDE);
+                    point.setLocation(new GPSCoordinate(
+                            longitude / COORDINATE_SCALE,
+                            latitude / COORDINATE_SCALE,
+                            altitude / ALTITUDE_SCALE
+                    ));
+                }
+                point.setHeartRate((int) readDelta(columns, previous, COLUMN_HEART_RATE));
+                point.setSpeed((float) (readDelta(columns, previous, COLUMN_SPEED) / SPEED_SCALE));
+                return point;
+            }
+
+            @Override
+            public boolean isNewSegment() {
+                return newSegment;
+            }
+
+            @Override
+            public void close() {
+                closeAll(columns);
+            }
+        };
+    }
+
+    /**
+     * Returns the stored columns of the given gpx or fit file, or null if they were not written
+     * yet, or the file changed since.
+     */
+    @Nullable
+    public static List<List<ActivityPoint>> load(final File trackFile) {
+        final File columnsFile = getColumnsFile(trackFile);
+        if (!isUpToDate(columnsFile, trackFile)) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(columnsFile)) {
+            return read(in);
+        } catch (final IOException e) {
+            LOG.warn("Failed to read track columns {}", columnsFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the stored columns of the given gpx or fit file, parsing the file and writing the
+     * columns if needed.
+     *
+     * @return the segments, or null if the file could not be parsed
+     */
+    @Nullable
+    public static List<List<ActivityPoint>> loadOrParse(final File trackFile) {
+        List<List<ActivityPoint>> segments = load(trackFile);
+        if (segments == null) {
+            segments = parseTrackFile(trackFile);
+            if (segments != null) {
+                save(trackFile, segments);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Writes the columns of the given gpx or fit file next to it.
+     */
+    public static void save(final File trackFile, final List<List<ActivityPoint>> segments) {
+        final File columnsFile = getColumnsFile(trackFile);
+        final File tmpFile = new File(columnsFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            write(out, segments);
+        } catch (final IOException e) {
+            LOG.warn("Failed to write track columns {}", columnsFile, e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(columnsFile)) {
+            LOG.warn("Failed to rename track columns {}", tmpFile);
+        }
+    }
+
+    @Nullable
+    private static List<List<ActivityPoint>> parseTrackFile(final File inputFile) {
+        final List<ActivityPoint> activityPoints = new ArrayList<>();
+        if (inputFile.getName().endsWith(".gpx")) {
+            try (FileInputStream inputStream = new FileInputStream(inputFile)) {
+                final GpxParser gpxParser = new GpxParser(inputStream);
+                for (final GpxTrackPoint point : gpxParser.getGpxFile().getPoints()) {
+                    final ActivityPoint activityPoint = new ActivityPoint(point.getTime());
+                    activityPoint.setLocation(point);
+                    activityPoints.add(activityPoint);
+                }
+            } catch (final IOException e) {
+                LOG.error("Failed to open {}", inputFile, e);
+                return null;
+            } catch (final GpxParseException e) {
+                LOG.error("Failed to parse gpx file", e);
+                return null;
+            }
+        } else if (inputFile.getName().endsWith(".fit")) {
+            try {
+                FitFile fitFile = FitFile.parseIncoming(inputFile);
+                for (final RecordData record : fitFile.getRecords()) {
+                    if (record instanceof FitRecord) {
+                        activityPoints.add(((FitRecord) record).toActivityPoint());
+                    }
+                }
+            } catch (final IOException e) {
+                LOG.error("Failed to open {}", inputFile, e);
+                return null;
+            } catch (final Exception e) {
+                LOG.error("Failed to parse fit file", e);
+                return null;
+            }
+        } else {
+            LOG.warn("Unknown file type {}", inputFile.getName());
+            return null;
+        }
+        return Collections.singletonList(activityPoints);
+    }
+
+    /**
+     * The columns are kept next to the track file, so that they are moved and deleted along with
+     * it, and not evicted like the cache.
+     */
+    static File getColumnsFile(final File trackFile) {
+        return new File(trackFile.getPath() + ".columns");
+    }
+
+    /**
+     * Whether the columns were written after the track file was last changed. Stale columns are
+     * deleted, they are rewritten once the track file is parsed again.
+     */
+    private static boolean isUpToDate(final File columnsFile, final File trackFile) {
+        if (!columnsFile.exists()) {
+            return false;
+        }
+        if (columnsFile.lastModified() < trackFile.lastModified()) {
+            LOG.debug("Deleting stale track columns {}", columnsFile);
+            //noinspection ResultOfMethodCallIgnored
+            columnsFile.delete();
+            return false;
+        }
+        return true;
+    }
+
+    private static class Header {
+        private int count;
+        private final long[] columnLengths = new long[COLUMN_COUNT];
+        private long size;
+    }
+
+    private static Header readHeader(final DataInputStream data) throws IOException {
+        if (data.readInt() != MAGIC || data.readUnsignedByte() != FORMAT_VERSION) {
+            throw new IOException("Not an activity track columns file");
+        }
+        final Header header = new Header();
+        header.count = (int) readVarLong(data);
+        header.size = 5 + getVarIntSize(header.count);
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            header.columnLengths[i] = readVarLong(data);
+            header.size += getVarIntSize(header.columnLengths[i]);
+        }
+        return header;
+    }
+
+    private static void closeAll(final DataInputStream[] columns) {
+        for (final DataInputStream column : columns) {
+            if (column == null) {
+                continue;
+            }
+            try {
+                column.close();
+            } catch (final IOException e) {
+                LOG.warn("Failed to close track column", e);
+            }
+        }
+    }
+
+    private static void writeDelta(final DataOutputStream[] columns, final long[] previous, final int column, final long value) throws IOException {
+        previous[column] = writeDelta(columns[column], value, previous[column]);
+    }
+
+    private static long readDelta(final DataInputStream[] columns, final long[] previous, final int column) throws IOException {
+        return previous[column] = readDelta(columns[column], previous[column]);
+    }
+
+    private static long writeDelta(final DataOutputStream data, final long value, final long previous) throws IOException {
+        final long delta = value - previous;
+        writeVarInt(data, (delta << 1) ^ (delta >> 63));
+        return value;
+    }
+
+    private static long readDelta(final DataInputStream data, final long previous) throws IOException {
+        final long zigZag = readVarLong(data);
+        return previous + ((zigZag >>> 1) ^ -(zigZag & 1));
+    }
+
+    private static int getVarIntSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    private static void writeVarInt(final DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static long readVarLong(final DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new EOFException("Malformed variable length integer");
+    }
+}
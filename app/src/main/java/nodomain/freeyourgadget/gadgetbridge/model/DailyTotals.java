@@ -27,10 +27,12 @@ import java.util.List;
 
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.activities.charts.ActivityAnalysis;
+import nodomain.freeyourgadget.gadgetbridge.database.ActivityRollups;
 import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
 import nodomain.freeyourgadget.gadgetbridge.devices.DeviceCoordinator;
 import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
 import nodomain.freeyourgadget.gadgetbridge.entities.AbstractActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.entities.ActivityDayRollup;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 
 
@@ -75,12 +77,21 @@ public class DailyTotals {
     }
 
     public long[] getDailyTotalsForDevice(GBDevice device, Calendar day, DBHandler handler) {
+        SampleProvider<? extends AbstractActivitySample> provider = getProvider(handler, device);
+        ActivityDayRollup rollup = ActivityRollups.getDayRollup(provider, day);
+        if (rollup != null) {
+            long sleep = rollup.getDeepSleepSeconds() / 60 + rollup.getLightSleepSeconds() / 60 + rollup.getRemSleepSeconds() / 60;
+            return new long[]{rollup.getSteps(), sleep};
+        }
+
         ActivityAnalysis analysis = new ActivityAnalysis();
         ActivityAmounts amountsSteps;
         ActivityAmounts amountsSleep;
 
-        amountsSteps = analysis.calculateActivityAmounts(getSamplesOfDay(handler, day, 0, device));
-        amountsSleep = analysis.calculateActivityAmounts(getSamplesOfDay(handler, day, -12, device));
+        int[] stepsRange = getTimestampRangeOfDay(day, 0);
+        int[] sleepRange = getTimestampRangeOfDay(day, ActivityRollups.SLEEP_OFFSET_HOURS);
+        amountsSteps = analysis.calculateActivityAmounts(provider, stepsRange[0], stepsRange[1]);
+        amountsSleep = analysis.calculateActivityAmounts(provider, sleepRange[0], sleepRange[1]);
 
         long[] sleep = getTotalsSleepForActivityAmounts(amountsSleep);
         long steps = getTotalsStepsForActivityAmounts(amountsSteps);
@@ -88,6 +99,70 @@ public class DailyTotals {
         return new long[]{steps, sleep[0] + sleep[1] + sleep[2]};
     }
 
+    /**
+     * Returns the activity amounts of several consecutive days of the device. Stored rollups are
+     * used where available, all other days are loaded from the samples in a single pass, instead
+     * of querying every day separately.
+     *
+     * @param firstDay the first day, the time of day is ignored
+     * @param days the number of days
+     * @param offsetHours the offset of each day from local midnight, 0 for the activity and
+     *                    {@link ActivityRollups#SLEEP_OFFSET_HOURS} for the sleep of the day
+     * @return the activity amounts, one per day
+     */
+    public ActivityAmounts[] getActivityAmountsForDays(DBHandler handler, GBDevice device, Calendar firstDay, int days, int offsetHours) {
+        SampleProvider<? extends AbstractActivitySample> provider = getProvider(handler, device);
+        ActivityAmounts[] result = new ActivityAmounts[days];
+
+        if (offsetHours == 0 || offsetHours == ActivityRollups.SLEEP_OFFSET_HOURS) {
+            ActivityDayRollup[] rollups = ActivityRollups.getStoredDayRollups(provider, firstDay, days);
+            if (rollups != null) {
+                for (int i = 0; i < days; i++) {
+                    if (rollups[i] != null) {
+                        result[i] = ActivityRollups.toActivityAmounts(rollups[i], offsetHours != 0);
+                    }
+                }
+            }
+        }
+
+        int firstMissing = -1;
+        int lastMissing = -1;
+        for (int i = 0; i < days; i++) {
+            if (result[i] == null) {
+                if (firstMissing < 0) {
+                    firstMissing = i;
+                }
+                lastMissing = i;
+            }
+        }
+        if (firstMissing >= 0) {
+            Calendar from = (Calendar) firstDay.clone();
+            from.add(Calendar.DATE, firstMissing);
+            ActivityAmounts[] loaded = new ActivityAnalysis().calculateDailyActivityAmounts(provider, from, lastMissing - firstMissing + 1, offsetHours);
+            for (int i = firstMissing; i <= lastMissing; i++) {
+                if (result[i] == null) {
+                    result[i] = loaded[i - firstMissing];
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the total steps of several consecutive days of the device.
+     *
+     * @see #getActivityAmountsForDays(DBHandler, GBDevice, Calendar, int, int)
+     */
+    public long[] getDailyStepsForDevice(DBHandler handler, GBDevice device, Calendar firstDay, int days) {
+        ActivityAmounts[] amounts = getActivityAmountsForDays(handler, device, firstDay, days, 0);
+        long[] steps = new long[days];
+        for (int i = 0; i < days; i++) {
+            steps[i] = getTotalsStepsForActivityAmounts(amounts[i]);
+        }
+        return steps;
+    }
+
     private long[] getTotalsSleepForActivityAmounts(ActivityAmounts activityAmounts) {
         long totalSecondsDeepSleep = 0;
         long totalSecondsLightSleep = 0;
@@ -118,20 +193,12 @@ public class DailyTotals {
     }
 
 
-    private List<? extends ActivitySample> getSamplesOfDay(DBHandler db, Calendar day, int offsetHours, GBDevice device) {
-        int startTs;
-        int endTs;
-
-        day = (Calendar) day.clone(); // do not modify the caller's argument
-        day.set(Calendar.HOUR_OF_DAY, 0);
-        day.set(Calendar.MINUTE, 0);
-        day.set(Calendar.SECOND, 0);
-        day.add(Calendar.HOUR, offsetHours);
-
-        startTs = (int) (day.getTimeInMillis() / 1000);
-        endTs = startTs + 24 * 60 * 60 - 1;
+    private int[] getTimestampRangeOfDay(Calendar day, int offsetHours) {
+        // the same local day as the rollups, so it is 23 or 25 hours long on DST changes
+        int startTs = ActivityRollups.getStartOfDay(day, offsetHours);
+        int endTs = ActivityRollups.getStartOfNextDay(day, offsetHours) - 1;
 
-        return getSamples(db, device, startTs, endTs);
+        return new int[]{startTs, endTs};
     }
 
 
@@ -0,0 +1,108 @@
+package nodomain.freeyourgadget.gadgetbridge.service;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.util.LatencyHistogram;
+
+/**
+ * Runs the commands for a single device in order, on a looper thread of its own, so that a device
+ * support that takes long to handle a command does not delay the commands for other devices.
+ */
+public class DeviceCommandExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceCommandExecutor.class);
+
+    // the current executor by device address
+    private static final Map<String, DeviceCommandExecutor> EXECUTORS = new ConcurrentHashMap<>();
+
+    private final String address;
+    private final String name;
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+
+    public DeviceCommandExecutor(final GBDevice device) {
+        this.address = device.getAddress();
+        this.name = device.getAliasOrName() + " (" + device.getAddress() + ")";
+        this.thread = new HandlerThread("Gadgetbridge commands " + device.getAddress());
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper());
+        EXECUTORS.put(address, this);
+    }
+
+    /**
+     * Returns the executor running the commands for the given device, or null if it has none,
+     * e.g. because it is not connected.
+     */
+    @Nullable
+    public static DeviceCommandExecutor forDevice(final GBDevice device) {
+        return EXECUTORS.get(device.getAddress());
+    }
+
+    public void execute(final Runnable command) {
+        final long enqueuedNanos = System.nanoTime();
+        pending.incrementAndGet();
+        final boolean posted = handler.post(() -> {
+            pending.decrementAndGet();
+            dispatchLatency.recordSince(enqueuedNanos);
+            final long startNanos = System.nanoTime();
+            try {
+                command.run();
+            } finally {
+                runTime.recordSince(startNanos);
+            }
+        });
+        if (!posted) {
+            pending.decrementAndGet();
+            LOG.warn("Dropping command for {}, executor was shut down", name);
+        }
+    }
+
+    /**
+     * Runs the command after the given delay, after the commands queued by then. Delayed commands
+     * are dropped when the executor is shut down before they are due, and are not counted as
+     * queued in the metrics.
+     */
+    public void executeDelayed(final Runnable command, final long delayMillis) {
+        if (!handler.postDelayed(command, delayMillis)) {
+            LOG.warn("Dropping delayed command for {}, executor was shut down", name);
+        }
+    }
+
+    /**
+     * Stops the executor after the commands queued so far.
+     */
+    public void shutdown() {
+        EXECUTORS.remove(address, this);
+        thread.quitSafely();
+    }
+
+    /**
+     * Returns the number of queued commands, the time they waited to be dispatched and the time
+     * they took to run, for each device.
+     */
+    public static Map<String, String> getMetrics() {
+        final Map<String, String> metrics = new TreeMap<>();
+        for (final DeviceCommandExecutor executor : EXECUTORS.values()) {
+            metrics.put(
+                    executor.name,
+                    "queued=" + executor.pending.get() + ", dispatch: " + executor.dispatchLatency + ", run: " + executor.runTime
+            );
+        }
+        return metrics;
+    }
+}
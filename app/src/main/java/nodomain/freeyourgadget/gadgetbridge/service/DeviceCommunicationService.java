@@ -59,6 +59,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.GBException;
@@ -118,6 +119,7 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
         private GBDevice device;
         private DeviceCoordinator coordinator;
         private DeviceSupport deviceSupport;
+        private DeviceCommandExecutor commandExecutor;
 
         public GBDevice getDevice() {
             return device;
@@ -142,6 +144,35 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
         public void setDeviceSupport(DeviceSupport deviceSupport) {
             this.deviceSupport = deviceSupport;
         }
+
+        /**
+         * Returns the executor running the commands for this device, in order.
+         */
+        public synchronized DeviceCommandExecutor getCommandExecutor() {
+            if (commandExecutor == null) {
+                commandExecutor = new DeviceCommandExecutor(device);
+            }
+            return commandExecutor;
+        }
+
+        /**
+         * Detaches the executor from this device, so that later commands get a new one.
+         *
+         * @return the executor, or null if there was none
+         */
+        @Nullable
+        private synchronized DeviceCommandExecutor takeCommandExecutor() {
+            final DeviceCommandExecutor executor = commandExecutor;
+            commandExecutor = null;
+            return executor;
+        }
+
+        private void shutdownCommandExecutor() {
+            final DeviceCommandExecutor executor = takeCommandExecutor();
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
     }
 
     private static class FeatureSet {
@@ -244,7 +275,8 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
     private static DeviceSupportFactory DEVICE_SUPPORT_FACTORY = null;
 
     private DeviceSupportFactory mFactory;
-    private final ArrayList<DeviceStruct> deviceStructs = new ArrayList<>(1);
+    // read from the device command executors, modified on the main thread only
+    private final List<DeviceStruct> deviceStructs = new CopyOnWriteArrayList<>();
     private final HashMap<String, ArrayList<Intent>> cachedNotifications = new HashMap<>();
 
     private PhoneCallReceiver mPhoneCallReceiver = null;
@@ -688,7 +720,7 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
     }
 
     @Override
-    public synchronized int onStartCommand(Intent intent, int flags, int startId) {
+    public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent == null) {
             LOG.info("no intent");
             return START_STICKY;
@@ -749,28 +781,53 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                     }
                 }
                 for (GBDevice device1 : targetedDevices) {
-                    try {
-                        handleAction(intent, action, device1);
-                    } catch (DeviceNotFoundException e) {
-                        e.printStackTrace();
-                    } catch (Exception e) {
-                        LOG.error("An exception was raised while handling the action {} for the device {}: ", action, device1, e);
-                    }
+                    dispatchAction(intent, action, device1);
                 }
                 break;
         }
         return START_STICKY;
     }
 
+    /**
+     * Hands the action over to the command executor of the device, so that it runs after the
+     * actions queued for the same device before, but independently of other devices.
+     */
+    private void dispatchAction(final Intent intent, final String action, final GBDevice device) {
+        final DeviceStruct struct = getDeviceStructOrNull(device);
+        final DeviceSupport deviceSupport = struct != null ? struct.getDeviceSupport() : null;
+        if (deviceSupport == null || ACTION_DISCONNECT.equals(action)) {
+            // disconnecting modifies the state of the service, so it is done right away. The
+            // device support is disposed after the commands queued for it, see disposeDeviceSupport
+            runAction(intent, action, device, deviceSupport);
+            return;
+        }
+
+        // the intent is shared by all devices, and must not be read by several threads at once
+        final Intent deviceIntent = (Intent) intent.clone();
+        // the command is run with the device support it was queued for, even if it is replaced
+        // in the meantime
+        struct.getCommandExecutor().execute(() -> runAction(deviceIntent, action, device, deviceSupport));
+    }
+
+    private void runAction(final Intent intent, final String action, final GBDevice device, @Nullable final DeviceSupport deviceSupport) {
+        try {
+            handleAction(intent, action, device, deviceSupport);
+        } catch (DeviceNotFoundException e) {
+            e.printStackTrace();
+        } catch (Exception e) {
+            LOG.error("An exception was raised while handling the action {} for the device {}: ", action, device, e);
+        }
+    }
+
     /**
      * @param text original text
      * @return 'text' or a new String without non supported chars like emoticons, etc.
      */
-    private String sanitizeNotifText(String text, GBDevice device) throws DeviceNotFoundException {
+    private String sanitizeNotifText(String text, GBDevice device, DeviceSupport deviceSupport) throws DeviceNotFoundException {
         if (text == null || text.length() == 0)
             return text;
 
-        text = getDeviceSupport(device).customStringFilter(text);
+        text = deviceSupport.customStringFilter(text);
 
         if (!getDeviceCoordinator(device).supportsUnicodeEmojis()) {
             return EmojiConverter.convertUnicodeEmojiToAscii(text, getApplicationContext());
@@ -791,7 +848,10 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
         throw new DeviceNotFoundException(device);
     }
 
-    private void handleAction(Intent intent, String action, GBDevice device) throws DeviceNotFoundException {
+    /**
+     * @param deviceSupport the device support to handle the action, or null for the current one
+     */
+    private void handleAction(Intent intent, String action, GBDevice device, @Nullable DeviceSupport deviceSupport) throws DeviceNotFoundException {
         if(ACTION_DISCONNECT.equals(intent.getAction())) {
             try {
                 removeDeviceSupport(device);
@@ -804,7 +864,9 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
             return;
         }
 
-        DeviceSupport deviceSupport = getDeviceSupport(device);
+        if (deviceSupport == null) {
+            deviceSupport = getDeviceSupport(device);
+        }
 
         Prefs devicePrefs = new Prefs(GBApplication.getDeviceSpecificSharedPrefs(device.getAddress()));
 
@@ -817,7 +879,7 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
             if (intentCopy.hasExtra(extra)) {
                 // Ensure the text is sanitized (eg. emoji converted to ascii) before applying the transliterators
                 // otherwise the emoji are removed before converting them
-                String sanitizedText = sanitizeNotifText(intentCopy.getStringExtra(extra), device);
+                String sanitizedText = sanitizeNotifText(intentCopy.getStringExtra(extra), device, deviceSupport);
                 if (transliterator != null) {
                     sanitizedText = transliterator.transliterate(sanitizedText);
                 }
@@ -1134,19 +1196,38 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
        DeviceStruct deviceStruct = getDeviceStruct(device);
        DeviceSupport cachedDeviceSupport = deviceStruct.getDeviceSupport();
        if (deviceSupport != cachedDeviceSupport && cachedDeviceSupport != null) {
-           cachedDeviceSupport.dispose();
+           disposeDeviceSupport(deviceStruct, cachedDeviceSupport);
        }
        deviceStruct.setDeviceSupport(deviceSupport);
+       if (deviceSupport != null) {
+           // available to the device support right away, see DeviceCommandExecutor#forDevice
+           deviceStruct.getCommandExecutor();
+       }
     }
 
     private void removeDeviceSupport(GBDevice device) throws DeviceNotFoundException {
         DeviceStruct struct = getDeviceStruct(device);
         if(struct.getDeviceSupport() != null){
-            struct.getDeviceSupport().dispose();
+            disposeDeviceSupport(struct, struct.getDeviceSupport());
         }
         struct.setDeviceSupport(null);
     }
 
+    /**
+     * Disposes the device support on the command executor of the device, after the commands
+     * queued for it so far, and stops the executor. Commands for a new device support get a new
+     * executor, so a device without a device support has no thread.
+     */
+    private void disposeDeviceSupport(DeviceStruct struct, DeviceSupport deviceSupport) {
+        final DeviceCommandExecutor executor = struct.takeCommandExecutor();
+        if (executor == null) {
+            deviceSupport.dispose();
+            return;
+        }
+        executor.execute(deviceSupport::dispose);
+        executor.shutdown();
+    }
+
     private DeviceStruct getDeviceStructOrNull(GBDevice device){
         DeviceStruct deviceStruct = null;
         try {
@@ -1506,12 +1587,8 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
     private void sendCachedNotifications(GBDevice device) {
         ArrayList<Intent> notifCache = cachedNotifications.get(device.getAddress());
         if (notifCache == null) return;
-        try {
-            while (notifCache.size() > 0) {
-                handleAction(notifCache.remove(0), ACTION_NOTIFICATION, device);
-            }
-        } catch (DeviceNotFoundException e) {
-            LOG.error("Error while sending cached notifications to "+device.getAliasOrName(), e);
+        while (notifCache.size() > 0) {
+            dispatchAction(notifCache.remove(0), ACTION_NOTIFICATION, device);
         }
     }
 
@@ -1541,6 +1618,9 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                 e.printStackTrace();
             }
         }
+        for (DeviceStruct struct : deviceStructs) {
+            struct.shutdownCommandExecutor();
+        }
         GB.removeNotification(GB.NOTIFICATION_ID, this); // need to do this because the updated notification won't be cancelled when service stops
 
         unregisterReceiver(bluetoothCommandReceiver);
@@ -162,6 +162,8 @@ public abstract class AbstractBTLEDeviceSupport extends AbstractDeviceSupport im
             // first, add a transaction that performs device initialization
             TransactionBuilder builder = createTransactionBuilder("Initialize device");
             builder.add(new CheckInitializedAction(gbDevice));
+            // high priority transactions queued after it must not run before the initialization
+            builder.setPriority(AbstractTransaction.Priority.HIGH);
             initializeDevice(builder).queue(getQueue());
         }
         return createTransactionBuilder(taskName);
@@ -317,7 +319,9 @@ public abstract class AbstractBTLEDeviceSupport extends AbstractDeviceSupport im
             logger.warn("Services discovered, but device state is already " + getDevice().getState() + " for device: " + getDevice() + ", so ignoring");
             return;
         }
-        initializeDevice(createTransactionBuilder("Initializing device")).queue(getQueue());
+        TransactionBuilder builder = createTransactionBuilder("Initializing device");
+        builder.setPriority(AbstractTransaction.Priority.HIGH);
+        initializeDevice(builder).queue(getQueue());
     }
 
     @Override
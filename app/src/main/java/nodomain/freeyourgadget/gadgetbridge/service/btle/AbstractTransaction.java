@@ -21,8 +21,26 @@ import java.util.Date;
 import java.util.Locale;
 
 public abstract class AbstractTransaction {
+    /**
+     * The queue runs all waiting transactions of a higher priority first. A running transaction
+     * is never interrupted.
+     */
+    public enum Priority {
+        /**
+         * Device initialization, and user-facing transactions such as notifications and
+         * incoming calls.
+         */
+        HIGH,
+        NORMAL,
+        /**
+         * Background work, such as fetching activity data.
+         */
+        LOW,
+    }
+
     private final String mName;
     private final long creationTimestamp = System.currentTimeMillis();
+    private Priority priority = Priority.NORMAL;
 
     public AbstractTransaction(String taskName) {
         this.mName = taskName;
@@ -32,6 +50,14 @@ public abstract class AbstractTransaction {
         return mName;
     }
 
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(final Priority priority) {
+        this.priority = priority;
+    }
+
     protected String getCreationTime() {
         return DateFormat.getTimeInstance(DateFormat.MEDIUM).format(new Date(creationTimestamp));
     }
@@ -32,6 +32,8 @@ import nodomain.freeyourgadget.gadgetbridge.util.DateTimeUtils;
  * has been posted before invoking the next action.
  */
 public abstract class BtLEAction {
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
     private final BluetoothGattCharacteristic characteristic;
     private final long creationTimestamp;
 
@@ -57,6 +59,14 @@ public abstract class BtLEAction {
      */
     public abstract boolean run(BluetoothGatt gatt);
 
+    /**
+     * Returns how long to wait for the result of this action, if it {@link #expectsResult()},
+     * before giving up and aborting the transaction.
+     */
+    public long getTimeoutMillis() {
+        return DEFAULT_TIMEOUT_MILLIS;
+    }
+
     /**
      * Returns the GATT characteristic being read/written/...
      *
@@ -38,13 +38,17 @@ import androidx.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.Logging;
@@ -52,6 +56,7 @@ import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice.State;
 import nodomain.freeyourgadget.gadgetbridge.service.DeviceSupport;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.actions.WriteAction;
+import nodomain.freeyourgadget.gadgetbridge.util.LatencyHistogram;
 
 /**
  * One queue/thread per connectable device.
@@ -59,6 +64,9 @@ import nodomain.freeyourgadget.gadgetbridge.service.btle.actions.WriteAction;
 public final class BtLEQueue {
     private static final Logger LOG = LoggerFactory.getLogger(BtLEQueue.class);
 
+    // shared by all queues, by action type and by time spent waiting in the queue per priority
+    private static final Map<String, LatencyHistogram> LATENCY_HISTOGRAMS = new ConcurrentHashMap<>();
+
     private final Object mGattMonitor = new Object();
     private final GBDevice mGbDevice;
     private final BluetoothAdapter mBluetoothAdapter;
@@ -66,7 +74,10 @@ public final class BtLEQueue {
     private BluetoothGattServer mBluetoothGattServer;
     private final Set<BluetoothGattService> mSupportedServerServices;
 
-    private final BlockingQueue<AbstractTransaction> mTransactions = new LinkedBlockingQueue<>();
+    private final BlockingQueue<QueuedTransaction> mTransactions = new PriorityBlockingQueue<>();
+    private final AtomicLong mAddSequence = new AtomicLong();
+    private final AtomicLong mInsertSequence = new AtomicLong();
+    private final Object mPauseMonitor = new Object();
     private volatile boolean mDisposed;
     private volatile boolean mCrashed;
     private volatile boolean mAbortTransaction;
@@ -75,6 +86,10 @@ public final class BtLEQueue {
 
     private final Context mContext;
     private CountDownLatch mWaitForActionResultLatch;
+    private final Object mWaitMonitor = new Object();
+    /// whether the last action timed out with its result still outstanding, guarded by mWaitMonitor
+    private boolean mResultTimedOut;
+    private BluetoothGattCharacteristic mTimedOutCharacteristic;
     private CountDownLatch mWaitForServerActionResultLatch;
     private CountDownLatch mConnectionLatch;
     private BluetoothGattCharacteristic mWaitCharacteristic;
@@ -93,7 +108,9 @@ public final class BtLEQueue {
 
             while (!mDisposed && !mCrashed) {
                 try {
-                    AbstractTransaction qTransaction = mTransactions.take();
+                    QueuedTransaction queued = mTransactions.take();
+                    AbstractTransaction qTransaction = queued.transaction;
+                    getLatencyHistogram("queue wait " + queued.priority).recordSince(queued.enqueuedNanos);
 
                     if (!isConnected()) {
                         LOG.debug("not connected, waiting for connection...");
@@ -123,16 +140,23 @@ public final class BtLEQueue {
                             if (LOG.isDebugEnabled()) {
                                 LOG.debug("About to run server action: " + action);
                             }
+                            final long startNanos = System.nanoTime();
+                            mWaitForServerActionResultLatch = new CountDownLatch(1);
                             if (action.run(mBluetoothGattServer)) {
                                 // check again, maybe due to some condition, action did not need to write, so we can't wait
                                 boolean waitForResult = action.expectsResult();
                                 if (waitForResult) {
-                                    mWaitForServerActionResultLatch.await();
+                                    final boolean gotResult = mWaitForServerActionResultLatch.await(action.getTimeoutMillis(), TimeUnit.MILLISECONDS);
                                     mWaitForServerActionResultLatch = null;
+                                    if (!gotResult) {
+                                        LOG.warn("Timed out waiting for the result of server action: " + action);
+                                        break;
+                                    }
                                     if (mAbortServerTransaction) {
                                         break;
                                     }
                                 }
+                                getLatencyHistogram(action.getClass().getSimpleName()).recordSince(startNanos);
                             } else {
                                 LOG.error("Action returned false: " + action);
                                 break; // abort the transaction
@@ -153,14 +177,8 @@ public final class BtLEQueue {
                                 LOG.info("Aborting running transaction");
                                 break;
                             }
-                            while ((action instanceof WriteAction) && mPauseTransaction && !mAbortTransaction) {
-                              LOG.info("Pausing WriteAction");
-                              try {
-                                  Thread.sleep(100);
-                              } catch (Exception e) {
-                                  LOG.info("Exception during pause: "+e.toString());
-                                  break;
-                              }
+                            if (action instanceof WriteAction) {
+                                waitWhilePaused();
                             }
                             mWaitCharacteristic = action.getCharacteristic();
                             mWaitForActionResultLatch = new CountDownLatch(1);
@@ -172,16 +190,30 @@ public final class BtLEQueue {
                                 // always be the last action in the transaction
                                 internalGattCallback.setTransactionGattCallback(((GattListenerAction) action).getGattCallback());
                             }
+                            final long startNanos = System.nanoTime();
                             if (action.run(mBluetoothGatt)) {
                                 // check again, maybe due to some condition, action did not need to write, so we can't wait
                                 boolean waitForResult = action.expectsResult();
                                 if (waitForResult) {
-                                    mWaitForActionResultLatch.await();
-                                    mWaitForActionResultLatch = null;
+                                    final boolean gotResult = mWaitForActionResultLatch.await(action.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+                                    synchronized (mWaitMonitor) {
+                                        if (!gotResult && mWaitForActionResultLatch.getCount() > 0) {
+                                            // the result may still arrive, while the next action is running
+                                            mResultTimedOut = true;
+                                            mTimedOutCharacteristic = action.getCharacteristic();
+                                        }
+                                        mWaitForActionResultLatch = null;
+                                    }
+                                    if (!gotResult) {
+                                        LOG.warn("Timed out waiting for the result of action: " + action);
+                                        getLatencyHistogram(action.getClass().getSimpleName() + " (timeout)").recordSince(startNanos);
+                                        break;
+                                    }
                                     if (mAbortTransaction) {
                                         break;
                                     }
                                 }
+                                getLatencyHistogram(action.getClass().getSimpleName()).recordSince(startNanos);
                             } else {
                                 LOG.error("Action returned false: " + action);
                                 break; // abort the transaction
@@ -215,6 +247,69 @@ public final class BtLEQueue {
         dispatchThread.start();
     }
 
+    /**
+     * Blocks while the transactions are paused, until they are resumed or aborted.
+     */
+    private void waitWhilePaused() throws InterruptedException {
+        synchronized (mPauseMonitor) {
+            while (mPauseTransaction && !mAbortTransaction) {
+                LOG.info("Pausing WriteAction");
+                mPauseMonitor.wait();
+            }
+        }
+    }
+
+    private void setPausedInternal(boolean paused) {
+        synchronized (mPauseMonitor) {
+            mPauseTransaction = paused;
+            mPauseMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Completes the running action on the result of a GATT operation. Android runs one GATT
+     * operation at a time, so after an action timed out, the next result for its characteristic
+     * is the late result of that action and must not complete the action running now.
+     */
+    private void onActionResult(final BluetoothGattCharacteristic characteristic) {
+        synchronized (mWaitMonitor) {
+            if (mResultTimedOut) {
+                mResultTimedOut = false;
+                final boolean sameCharacteristic = characteristic == null
+                        ? mTimedOutCharacteristic == null
+                        : mTimedOutCharacteristic != null && characteristic.getUuid().equals(mTimedOutCharacteristic.getUuid());
+                mTimedOutCharacteristic = null;
+                if (sameCharacteristic) {
+                    LOG.warn("Ignoring late result of a timed out action");
+                    return;
+                }
+            }
+            if (mWaitForActionResultLatch != null) {
+                mWaitForActionResultLatch.countDown();
+            }
+        }
+    }
+
+    private static LatencyHistogram getLatencyHistogram(final String name) {
+        LatencyHistogram histogram = LATENCY_HISTOGRAMS.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            final LatencyHistogram existing = LATENCY_HISTOGRAMS.putIfAbsent(name, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the latency histograms of all queues, by action type, and of the time transactions
+     * spent waiting in the queue, by priority.
+     */
+    public static Map<String, LatencyHistogram> getLatencyHistograms() {
+        return new TreeMap<>(LATENCY_HISTOGRAMS);
+    }
+
     public void setAutoReconnect(boolean enable) {
         mAutoReconnect = enable;
     }
@@ -248,7 +343,7 @@ public final class BtLEQueue {
      * @return <code>true</code> whether the connection attempt was successfully triggered and <code>false</code> if that failed or if there is already a connection
      */
     public boolean connect() {
-        mPauseTransaction = false;
+        setPausedInternal(false);
         if (isConnected()) {
             LOG.warn("Ingoring connect() because already connected.");
             return false;
@@ -314,7 +409,7 @@ public final class BtLEQueue {
                 gatt.close();
                 setDeviceConnectionState(State.NOT_CONNECTED);
             }
-            mPauseTransaction = false;
+            setPausedInternal(false);
             BluetoothGattServer gattServer = mBluetoothGattServer;
             if (gattServer != null) {
                 mBluetoothGattServer = null;
@@ -328,9 +423,13 @@ public final class BtLEQueue {
         LOG.debug("handleDisconnected: " + status);
         internalGattCallback.reset();
         mTransactions.clear();
-        mPauseTransaction = false;
         mAbortTransaction = true;
         mAbortServerTransaction = true;
+        setPausedInternal(false);
+        synchronized (mWaitMonitor) {
+            mResultTimedOut = false;
+            mTimedOutCharacteristic = null;
+        }
         if (mWaitForActionResultLatch != null) {
             mWaitForActionResultLatch.countDown();
         }
@@ -368,7 +467,7 @@ public final class BtLEQueue {
 
             LOG.info("Enabling automatic ble reconnect...");
             boolean result = mBluetoothGatt.connect();
-            mPauseTransaction = false;
+            setPausedInternal(false);
             if (result) {
                 setDeviceConnectionState(State.WAITING_FOR_RECONNECT);
             }
@@ -378,7 +477,7 @@ public final class BtLEQueue {
     }
 
     public void setPaused(boolean paused) {
-      mPauseTransaction = paused;
+        setPausedInternal(paused);
     }
 
     public void dispose() {
@@ -404,7 +503,7 @@ public final class BtLEQueue {
     public void add(Transaction transaction) {
         LOG.debug("about to add: " + transaction);
         if (!transaction.isEmpty()) {
-            mTransactions.add(transaction);
+            mTransactions.add(new QueuedTransaction(transaction, transaction.getPriority(), mAddSequence.incrementAndGet()));
         }
     }
 
@@ -416,6 +515,9 @@ public final class BtLEQueue {
         if (mWaitForActionResultLatch != null) {
             mWaitForActionResultLatch.countDown();
         }
+        synchronized (mPauseMonitor) {
+            mPauseMonitor.notifyAll();
+        }
     }
 
     /**
@@ -426,12 +528,12 @@ public final class BtLEQueue {
     public void add(ServerTransaction transaction) {
         LOG.debug("about to add: " + transaction);
         if(!transaction.isEmpty()) {
-            mTransactions.add(transaction);
+            mTransactions.add(new QueuedTransaction(transaction, transaction.getPriority(), mAddSequence.incrementAndGet()));
         }
     }
 
     /**
-     * Adds a transaction to the beginning of the queue.
+     * Adds a transaction to the beginning of the queue, regardless of its priority.
      * Note that actions of the *currently executing* transaction
      * will still be executed before the given transaction.
      *
@@ -440,12 +542,7 @@ public final class BtLEQueue {
     public void insert(Transaction transaction) {
         LOG.debug("about to insert: " + transaction);
         if (!transaction.isEmpty()) {
-            List<AbstractTransaction> tail = new ArrayList<>(mTransactions.size() + 2);
-            //mTransactions.drainTo(tail);
-            tail.addAll(mTransactions);
-            mTransactions.clear();
-            mTransactions.add(transaction);
-            mTransactions.addAll(tail);
+            mTransactions.add(new QueuedTransaction(transaction, AbstractTransaction.Priority.HIGH, mInsertSequence.decrementAndGet()));
         }
     }
 
@@ -485,6 +582,31 @@ public final class BtLEQueue {
         return true;
     }
 
+    /**
+     * Orders the waiting transactions by priority, and in the order they were added within the
+     * same priority.
+     */
+    static final class QueuedTransaction implements Comparable<QueuedTransaction> {
+        private final AbstractTransaction transaction;
+        private final AbstractTransaction.Priority priority;
+        private final long sequence;
+        private final long enqueuedNanos = System.nanoTime();
+
+        QueuedTransaction(final AbstractTransaction transaction, final AbstractTransaction.Priority priority, final long sequence) {
+            this.transaction = transaction;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final QueuedTransaction other) {
+            if (priority != other.priority) {
+                return priority.compareTo(other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
     // Implements callback methods for GATT events that the app cares about.  For example,
     // connection change and services discovered.
     private final class InternalGattCallback extends BluetoothGattCallback {
@@ -600,9 +722,7 @@ public final class BtLEQueue {
                 getCallbackToUse().onMtuChanged(gatt, mtu, status);
             }
 
-            if (mWaitForActionResultLatch != null) {
-                mWaitForActionResultLatch.countDown();
-            }
+            onActionResult(null);
         }
 
 
@@ -701,9 +821,7 @@ public final class BtLEQueue {
                 mAbortTransaction = true;
             }
             if (characteristic != null && BtLEQueue.this.mWaitCharacteristic != null && characteristic.getUuid().equals(BtLEQueue.this.mWaitCharacteristic.getUuid())) {
-                if (mWaitForActionResultLatch != null) {
-                    mWaitForActionResultLatch.countDown();
-                }
+                onActionResult(characteristic);
             } else {
                 if (BtLEQueue.this.mWaitCharacteristic != null) {
                     LOG.error("checkWaitingCharacteristic: mismatched characteristic received: " + ((characteristic != null && characteristic.getUuid() != null) ? characteristic.getUuid().toString() : "(null)"));
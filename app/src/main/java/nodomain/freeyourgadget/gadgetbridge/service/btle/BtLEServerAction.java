@@ -64,6 +64,13 @@ public abstract class BtLEServerAction {
      */
     public abstract boolean run(BluetoothGattServer server);
 
+    /**
+     * Returns how long to wait for the result of this action, if it {@link #expectsResult()},
+     * before giving up and aborting the transaction.
+     */
+    public long getTimeoutMillis() {
+        return BtLEAction.DEFAULT_TIMEOUT_MILLIS;
+    }
 
     protected String getCreationTime() {
         return DateTimeUtils.formatDateTime(new Date(creationTimestamp));
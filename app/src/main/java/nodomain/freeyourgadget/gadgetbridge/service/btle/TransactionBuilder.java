@@ -139,6 +139,15 @@ public class TransactionBuilder {
         return mTransaction.getGattCallback();
     }
 
+    /**
+     * Sets the priority of the transaction in the queue, {@link AbstractTransaction.Priority#NORMAL}
+     * by default.
+     */
+    public TransactionBuilder setPriority(final AbstractTransaction.Priority priority) {
+        mTransaction.setPriority(priority);
+        return this;
+    }
+
     /**
      * To be used as the final step to execute the transaction by the given queue.
      *
@@ -15,11 +15,9 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.RandomAccessFile;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Objects;
@@ -40,7 +38,9 @@ import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityPoint;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryEntries;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryJsonSummary;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrack;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrackColumns;
 import nodomain.freeyourgadget.gadgetbridge.model.GPSCoordinate;
 import nodomain.freeyourgadget.gadgetbridge.util.FileUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.GB;
@@ -79,13 +79,18 @@ class BangleJSActivityTrack {
             signalFetchingEnded(device, context);
             return null;
         } else {
-            JSONObject requestTrackObj = BangleJSActivityTrack.compileTrackRequest(tracksList.getString(0), 1==tracksList.length());
+            JSONObject requestTrackObj = BangleJSActivityTrack.compileTrackRequest(tracksList.getString(0), 1==tracksList.length(), device);
             tracksList.remove(0);
             return requestTrackObj;
         }
     }
 
     private static int lastPacketCount = -1;
+    /// The recorder log being fetched
+    private static BangleJSRecorderLog recorderLog;
+    /// Confirmed progress of a recorder log fetch, to continue it if it's interrupted
+    private static final String PREF_RECORDER_LOG_LINES = "recorderLogLinesBangleJS_";
+    private static final String PREF_RECORDER_LOG_BYTES = "recorderLogBytesBangleJS_";
     static JSONObject handleActTrk(JSONObject json, GBDevice device, Context context) throws JSONException {
         stopAndRestartTimeout(device, context);
 
@@ -110,30 +115,46 @@ class BangleJSActivityTrack {
         //GB.toast(context, "actTrk says hi!", Toast.LENGTH_LONG, GB.INFO);
         String log = json.getString("log");
         LOG.debug(log);
-        String filename = "recorder.log" + log + ".csv";
+        String filename = getRecorderLogFilename(log);
         File dir;
         try {
-            dir = new File(FileUtils.getExternalFilesDir() + "/" + FileUtils.makeValidFileName(device.getName()));
-            if (!dir.isDirectory()) {
-                if (!dir.mkdir()) {
-                    throw new IOException("Cannot create device specific directory for " + device.getName());
-                }
-            }
+            dir = getRecorderLogDir(device);
         } catch (IOException e) {
             LOG.error("Failed at getting external files directory with error: " + e);
             resetPacketCount();
             return null;
         }
 
+        if (recorderLog == null || !recorderLog.getId().equals(log)) {
+            // not requested by us, so there is nothing to resume from
+            recorderLog = new BangleJSRecorderLog(log);
+        }
+        if (currPacketCount == 0 && json.optInt("line", 0) != recorderLog.getLineCount()) {
+            if (json.optInt("line", 0) != 0) {
+                LOG.error("Bangle.js continued recorder log " + log + " at line " + json.optInt("line") + " instead of " + recorderLog.getLineCount() + " - aborting.");
+                clearRecorderLogProgress(log, device);
+                recorderLog = null;
+                signalFetchingEnded(device, context);
+                return stopObj;
+            }
+            // Older Bangle.js apps don't know how to continue a log and send it from the start.
+            LOG.info("Bangle.js sends recorder log " + log + " from the start");
+            recorderLog = new BangleJSRecorderLog(log);
+            writeToRecorderCSV("erase", dir, filename);
+        }
+
         if (!json.has("lines")) { // if no lines were sent with this json object, it signifies that the whole recorder log has been transmitted.
+            writeToRecorderCSV(recorderLog.finish(), dir, filename);
             setLatestFetchedRecorderLog(log, device);
             parseFetchedRecorderCSV(dir, filename, log, device, context); // I tried refactoring to parse all fetched logs in one go at the end instead. But that only gave me more troubles. This seems like a more stable approach at least in the Bangle.js case.
+            clearRecorderLogProgress(log, device);
+            recorderLog = null;
             if (tracksList.length()==0) {
                 signalFetchingEnded(device, context);
                 LOG.debug("packetCount reset1: " + lastPacketCount);
                 returnObj = null;
             } else {
-                JSONObject requestTrackObj = BangleJSActivityTrack.compileTrackRequest(tracksList.getString(0), 1==tracksList.length());
+                JSONObject requestTrackObj = BangleJSActivityTrack.compileTrackRequest(tracksList.getString(0), 1==tracksList.length(), device);
                 tracksList.remove(0);
                 resetPacketCount();
                 LOG.debug("packetCount reset2: " + lastPacketCount);
@@ -144,7 +165,14 @@ class BangleJSActivityTrack {
             String lines = json.getString("lines");
             LOG.debug(lines);
 
-            writeToRecorderCSV(lines, dir, filename);
+            if (lines.equals("erase")) {
+                recorderLog = new BangleJSRecorderLog(log);
+                writeToRecorderCSV(lines, dir, filename);
+            } else {
+                // Only complete lines are stored, so the file always ends where the next fetch can continue.
+                writeToRecorderCSV(recorderLog.addLines(lines), dir, filename);
+            }
+            setRecorderLogProgress(log, recorderLog.getLineCount(), new File(dir, filename).length(), device);
 
             lastPacketCount += 1;
             LOG.debug("packetCount continue: " + lastPacketCount);
@@ -160,55 +188,13 @@ class BangleJSActivityTrack {
         File inputFile = new File(dir, filename);
         try { // FIXME: There is maybe code inside this try-statement that should be outside of it.
 
-            // Read from the previously stored log into a string.
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-            StringBuilder storedLogBuilder = new StringBuilder(reader.readLine() + "\n");
-            String line;
-            while ((line = reader.readLine()) != null) {
-                storedLogBuilder.append(line).append("\n");
-            }
-            reader.close();
-            String storedLog = String.valueOf(storedLogBuilder);
-            storedLog = storedLog.replace(",",", "); // So all rows (internal arrays) in storedLogArray2 get the same number of entries.
-            LOG.debug("Contents of log read from GB storage:\n" + storedLog);
-
-            // Turn the string log into a 2d array in two steps.
-            String[] storedLogArray = storedLog.split("\n") ;
-            String[][] storedLogArray2 = new String[storedLogArray.length][1];
-
-            for (int i = 0; i < storedLogArray.length; i++) {
-                storedLogArray2[i] = storedLogArray[i].split(",");
-                for (int j = 0; j < storedLogArray2[i].length;j++) {
-                    storedLogArray2[i][j] = storedLogArray2[i][j].trim(); // Remove the extra spaces we introduced above for getting the same number of entries on all rows.
-                }
-            }
-
-            LOG.debug("Contents of storedLogArray2:\n" + Arrays.deepToString(storedLogArray2));
-
-            // Turn the 2d array into an object for easier access later on.
-            JSONObject storedLogObject = new JSONObject();
-            JSONArray valueArray = new JSONArray();
-            for (int i = 0; i < storedLogArray2[0].length; i++){
-                for (int j = 1; j < storedLogArray2.length; j++) {
-                    valueArray.put(storedLogArray2[j][i]);
-                }
-                storedLogObject.put(storedLogArray2[0][i], valueArray);
-                valueArray = new JSONArray();
-            }
-
-            // Clean out heartrate==0...
-            if (storedLogObject.has("Heartrate")) {
-                JSONArray heartrateArray = storedLogObject.getJSONArray("Heartrate");
-                for (int i = 0; i < heartrateArray.length(); i++){
-                    if (Objects.equals(heartrateArray.getString(i), "0") ||
-                            Objects.equals(heartrateArray.getString(i), "0.0")) {
-                        heartrateArray.put(i,"");
-                    }
-                }
-                //storedLogObject.remove("Heartrate");
-                storedLogObject.put("Heartrate", heartrateArray);
-
+            // The rows were parsed while they were received. If we were restarted since, parse the stored log.
+            if (recorderLog == null || !recorderLog.getId().equals(log)) {
+                recorderLog = BangleJSRecorderLog.fromFile(log, inputFile);
+                recorderLog.finish();
             }
+            JSONObject storedLogObject = recorderLog.toJSONObject();
+            JSONArray valueArray;
 
             LOG.debug("storedLogObject:\n" + storedLogObject);
 
@@ -384,8 +370,9 @@ class BangleJSActivityTrack {
             //LOG.debug("check here 7");
             BaseActivitySummary summary = null;
 
-            Date startTime = new Date(parseLong(storedLogArray2[1][0].split("\\.\\d")[0])*1000L);
-            Date endTime = new Date(parseLong(storedLogArray2[storedLogArray2.length-1][0].split("\\.\\d")[0])*1000L);
+            JSONArray timeArray = storedLogObject.getJSONArray("Time");
+            Date startTime = new Date(parseLong(timeArray.getString(0).split("\\.\\d")[0])*1000L);
+            Date endTime = new Date(parseLong(timeArray.getString(timeArray.length()-1).split("\\.\\d")[0])*1000L);
             summary = new BaseActivitySummary();
             summary.setName(log);
             summary.setStartTime(startTime);
@@ -605,6 +592,7 @@ class BangleJSActivityTrack {
             if (hasGPXReading /*|| hasHRMReading*/) {
                 try {
                     exporter.performExport(track, targetFile);
+                    ActivityTrackColumns.save(targetFile, track.getSegments());
 
                     try (DBHandler dbHandler = GBApplication.acquireDB()) {
                         summary.setGpxTrack(targetFile.getAbsolutePath());
@@ -625,6 +613,7 @@ class BangleJSActivityTrack {
                 User user = DBHelper.getUser(session);
                 summary.setDevice(deviceDB);
                 summary.setUser(user);
+                ActivitySummaryJsonSummary.updateSummaryBinary(device.getDeviceCoordinator().getActivitySummaryParser(device), summary);
                 session.getBaseActivitySummaryDao().insertOrReplace(summary);
             } catch (Exception ex) {
                 GB.toast(context, "Error saving activity summary", Toast.LENGTH_LONG, GB.ERROR, ex);
@@ -645,18 +634,82 @@ class BangleJSActivityTrack {
         lastPacketCount = -1;
     }
 
-    private static JSONObject compileTrackRequest(String id, Boolean isLastId) {
+    private static JSONObject compileTrackRequest(String id, Boolean isLastId, GBDevice device) {
+        recorderLog = resumeRecorderLog(id, device);
         JSONObject o = new JSONObject();
         try {
             o.put("t", "fetchRec");
             o.put("id", id);
             o.put("last", String.valueOf(isLastId));
+            if (recorderLog.getLineCount() > 0) {
+                // Only ask for the lines we don't have yet. Bangle.js apps that don't support this send the whole log.
+                o.put("line", recorderLog.getLineCount());
+            }
         } catch (JSONException e) {
             LOG.error("JSONException: " + e.getLocalizedMessage());
         }
         return o;
     }
 
+    /// The part of the recorder log fetched before the last fetch was interrupted, or an empty log
+    private static BangleJSRecorderLog resumeRecorderLog(String log, GBDevice device) {
+        SharedPreferences prefs = GBApplication.getDeviceSpecificSharedPrefs(device.getAddress());
+        int lines = prefs.getInt(PREF_RECORDER_LOG_LINES + log, 0);
+        long bytes = prefs.getLong(PREF_RECORDER_LOG_BYTES + log, 0);
+        if (lines == 0) {
+            return new BangleJSRecorderLog(log);
+        }
+
+        try {
+            File file = new File(getRecorderLogDir(device), getRecorderLogFilename(log));
+            if (file.length() < bytes) {
+                throw new IOException("Stored recorder log is shorter than expected: " + file.length() + " < " + bytes);
+            }
+            // drop anything written after the progress was stored
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(bytes);
+            }
+            BangleJSRecorderLog recorderLog = BangleJSRecorderLog.fromFile(log, file);
+            if (recorderLog.getLineCount() != lines) {
+                throw new IOException("Stored recorder log has " + recorderLog.getLineCount() + " lines instead of " + lines);
+            }
+            LOG.info("Continuing fetch of recorder log " + log + " at line " + lines);
+            return recorderLog;
+        } catch (IOException e) {
+            LOG.warn("Can not continue fetch of recorder log " + log + ", fetching it from the start", e);
+            clearRecorderLogProgress(log, device);
+            return new BangleJSRecorderLog(log);
+        }
+    }
+
+    private static void setRecorderLogProgress(String log, int lines, long bytes, GBDevice device) {
+        SharedPreferences.Editor editor = GBApplication.getDeviceSpecificSharedPrefs(device.getAddress()).edit();
+        editor.putInt(PREF_RECORDER_LOG_LINES + log, lines);
+        editor.putLong(PREF_RECORDER_LOG_BYTES + log, bytes);
+        editor.apply();
+    }
+
+    private static void clearRecorderLogProgress(String log, GBDevice device) {
+        SharedPreferences.Editor editor = GBApplication.getDeviceSpecificSharedPrefs(device.getAddress()).edit();
+        editor.remove(PREF_RECORDER_LOG_LINES + log);
+        editor.remove(PREF_RECORDER_LOG_BYTES + log);
+        editor.apply();
+    }
+
+    private static String getRecorderLogFilename(String log) {
+        return "recorder.log" + log + ".csv";
+    }
+
+    private static File getRecorderLogDir(GBDevice device) throws IOException {
+        File dir = new File(FileUtils.getExternalFilesDir() + "/" + FileUtils.makeValidFileName(device.getName()));
+        if (!dir.isDirectory()) {
+            if (!dir.mkdir()) {
+                throw new IOException("Cannot create device specific directory for " + device.getName());
+            }
+        }
+        return dir;
+    }
+
     private static void signalFetchingStarted(GBDevice device, Context context) {
         GB.updateTransferNotification(context.getString(R.string.activity_detail_start_label) + " : " + context.getString(R.string.busy_task_fetch_sports_details),"", true, 0, context);
         device.setBusyTask(context.getString(R.string.busy_task_fetch_sports_details));
@@ -81,6 +81,7 @@ import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
@@ -140,6 +141,7 @@ import nodomain.freeyourgadget.gadgetbridge.model.NotificationSpec;
 import nodomain.freeyourgadget.gadgetbridge.model.NotificationType;
 import nodomain.freeyourgadget.gadgetbridge.model.RecordedDataTypes;
 import nodomain.freeyourgadget.gadgetbridge.model.WeatherSpec;
+import nodomain.freeyourgadget.gadgetbridge.service.DeviceCommandExecutor;
 import nodomain.freeyourgadget.gadgetbridge.service.SleepAsAndroidSender;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.AbstractBTLEDeviceSupport;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.BLETypeConversions;
@@ -162,9 +164,11 @@ public class BangleJSDeviceSupport extends AbstractBTLEDeviceSupport {
     int bangleCommandSeq = 0; // to attempt to stop duplicate packets when sending Local Intents
 
     /// Current line of data received from Bangle.js
-    private String receivedLine = "";
+    private final StringBuilder receivedLine = new StringBuilder();
     /// All characters received from Bangle.js for debug purposes (limited to MAX_RECEIVE_HISTORY_CHARS). Can be dumped with 'Fetch Device Debug Logs' from Debug menu
-    private String receiveHistory = "";
+    private final StringBuilder receiveHistory = new StringBuilder();
+    /// Data waiting to be sent to Bangle.js, so that messages sent in quick succession share writes
+    private final BangleJSJsonWriter uartTxBuffer = new BangleJSJsonWriter();
     private boolean realtimeHRM = false;
     private boolean realtimeStep = false;
     /// How often should activity data be sent - in seconds
@@ -184,6 +188,8 @@ public class BangleJSDeviceSupport extends AbstractBTLEDeviceSupport {
 
     /// Maximum amount of characters to store in receiveHistory
     public static final int MAX_RECEIVE_HISTORY_CHARS = 100000;
+    /// How long to wait for more JSON messages before sending the pending ones, in milliseconds
+    private static final long UART_TX_COALESCE_DELAY = 30;
     /// Used to avoid spamming logs with ACTION_DEVICE_CHANGED messages
     static String lastStateString;
 
@@ -206,6 +212,7 @@ public class BangleJSDeviceSupport extends AbstractBTLEDeviceSupport {
     @Override
     public void dispose() {
         super.dispose();
+        stopUartTx();
         stopGlobalUartReceiver();
         stopLocationUpdate();
         stopRequestQueue();
@@ -218,6 +225,12 @@ public class BangleJSDeviceSupport extends AbstractBTLEDeviceSupport {
     }
 
 
+    private void stopUartTx() {
+        synchronized (uartTxBuffer) {
+            uartTxBuffer.reset();
+        }
+    }
+
     private void stopLocationUpdate() {
         if (!gpsUpdateSetup)
             return;
@@ -240,9 +253,23 @@ public class BangleJSDeviceSupport extends AbstractBTLEDeviceSupport {
     }
 
     private void addReceiveHistory(String s) {
-        receiveHistory += s;
-        if (receiveHistory.length() > MAX_RECEIVE_HISTORY_CHARS)
-            receiveHistory = receiveHistory.substring(receiveHistory.length() - MAX_RECEIVE_HISTORY_CHARS);
+        synchronized (receiveHistory) {
+            receiveHistory.append(s);
+            if (receiveHistory.length() > MAX_RECEIVE_HISTORY_CHARS)
+                receiveHistory.delete(0, receiveHistory.length() - MAX_RECEIVE_HISTORY_CHARS);
+        }
+    }
+
+    /// Add data being sent, one character per byte as in uartTxBuffer, without copying it into a String first
+    private void addSentHistory(byte[] bytes, int start, int end) {
+        synchronized (receiveHistory) {
+            receiveHistory.append("\n================================================\nSENDING ");
+            for (int i = start; i < end; i++)
+                receiveHistory.append((char) (bytes[i] & 0xFF));
+            receiveHistory.append("\n================================================\n");
+            if (receiveHistory.length() > MAX_RECEIVE_HISTORY_CHARS)
+                receiveHistory.delete(0, receiveHistory.length() - MAX_RECEIVE_HISTORY_CHARS);
+        }
     }
 
     private void registerLocalIntents() {
@@ -377,117 +404,74 @@ public class BangleJSDeviceSupport extends AbstractBTLEDeviceSupport {
         return builder;
     }
 
-    /// Write a string of data, and chunk it up
+    /// Write a string of data, and chunk it up. Any JSON messages still waiting to be sent go first.
     private void uartTx(TransactionBuilder builder, String str) {
-        byte[] bytes = str.getBytes(StandardCharsets.ISO_8859_1);
         LOG.info("UART TX: " + str);
         addReceiveHistory("\n================================================\nSENDING "+str+"\n================================================\n");
-        // FIXME: somehow this is still giving us UTF8 data when we put images in strings. Maybe JSON.stringify is converting to UTF-8?
-        for (int i=0;i<bytes.length;i+=mtuSize) {
-            int l = bytes.length-i;
-            if (l>mtuSize) l=mtuSize;
-            byte[] packet = new byte[l];
-            System.arraycopy(bytes, i, packet, 0, l);
-            builder.write(txCharacteristic, packet);
-        }
-    }
-
-    /// Converts an object to a JSON string. see jsonToString
-    private String jsonToStringInternal(Object v) {
-        if (v instanceof String) {
-            /* Convert a string, escaping chars we can't send over out UART connection */
-            String s = (String)v;
-            StringBuilder json = new StringBuilder("\"");
-            boolean hasUnicode = false;
-            //String rawString = "";
-            for (int i=0;i<s.length();i++) {
-                int ch = (int)s.charAt(i); // unicode, so 0..65535 (usually)
-                int nextCh = (int)(i+1<s.length() ? s.charAt(i+1) : 0); // 0..65535
-                //rawString = rawString+ch+",";
-                if (ch>255) hasUnicode = true;
-                if (ch<8) {
-                    // if the next character is a digit, it'd be interpreted
-                    // as a 2 digit octal character, so we can't use `\0` to escape it
-                    if (nextCh>='0' && nextCh<='7') json.append("\\x0").append(ch);
-                    else json.append("\\").append(ch);
-                } else if (ch==8) json.append("\\b");
-                else if (ch==9) json.append("\\t");
-                else if (ch==10) json.append("\\n");
-                else if (ch==11) json.append("\\v");
-                else if (ch==12) json.append("\\f");
-                else if (ch==34) json.append("\\\""); // quote
-                else if (ch==92) json.append("\\\\"); // slash
-                else if (ch<32 || ch==127 || ch==173 ||
-                         ((ch>=0xC2) && (ch<=0xF4))) // unicode start char range
-                    json.append("\\x").append(Integer.toHexString((ch & 255) | 256).substring(1));
-                else if (ch>255)
-                    json.append("\\u").append(Integer.toHexString((ch & 65535) | 65536).substring(1));
-                else json.append(s.charAt(i));
-            }
-            // if it was less characters to send base64, do that!
-            if (!hasUnicode && (json.length() > 5+(s.length()*4/3))) {
-                byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
-                return "atob(\""+Base64.encodeToString(bytes, Base64.DEFAULT).replaceAll("\n","")+"\")";
-            }
-            // for debugging...
-            //addReceiveHistory("\n---------------------\n"+rawString+"\n---------------------\n");
-            return json.append("\"").toString();
-        } else if (v instanceof JSONArray) {
-            JSONArray a = (JSONArray)v;
-            StringBuilder json = new StringBuilder("[");
-            for (int i=0;i<a.length();i++) {
-                if (i>0) json.append(",");
-                Object o = null;
-                try {
-                    o = a.get(i);
-                } catch (JSONException e) {
-                    LOG.warn("jsonToString array error: " + e.getLocalizedMessage());
-                }
-                json.append(jsonToStringInternal(o));
+        synchronized (uartTxBuffer) {
+            // FIXME: somehow this is still giving us UTF8 data when we put images in strings. Maybe JSON.stringify is converting to UTF-8?
+            uartTxBuffer.write(str);
+            writeUartTxBuffer(builder);
+        }
+    }
+
+    /// Write all pending data in MTU sized packets, packets can span several messages
+    private void writeUartTxBuffer(TransactionBuilder builder) {
+        synchronized (uartTxBuffer) {
+            final byte[] bytes = uartTxBuffer.array();
+            final int length = uartTxBuffer.length();
+            for (int i=0;i<length;i+=mtuSize) {
+                builder.write(txCharacteristic, Arrays.copyOfRange(bytes, i, Math.min(length, i+mtuSize)));
             }
-            return json.append("]").toString();
-        } else if (v instanceof JSONObject) {
-            JSONObject obj = (JSONObject)v;
-            StringBuilder json = new StringBuilder("{");
-            Iterator<String> iter = obj.keys();
-            while (iter.hasNext()) {
-                String key = iter.next();
-                Object o = null;
-                try {
-                    o = obj.get(key);
-                } catch (JSONException e) {
-                    LOG.warn("jsonToString object error: " + e.getLocalizedMessage());
-                }
-                json.append("\"").append(key).append("\":").append(jsonToStringInternal(o));
-                if (iter.hasNext()) json.append(",");
+            uartTxBuffer.reset();
+        }
+    }
+
+    /// Send the JSON messages collected by uartTxJSON. A flush that finds them sent already does nothing.
+    private void flushUartTx() {
+        try {
+            TransactionBuilder builder = performInitialized("uartTx");
+            synchronized (uartTxBuffer) {
+                if (uartTxBuffer.length() == 0) return;
+                writeUartTxBuffer(builder);
             }
-            return json.append("}").toString();
-        } else if (v==null) {
-            // else int/double/null
-            return "null";
+            builder.queue(getQueue());
+        } catch (IOException e) {
+            // drop the messages, otherwise the next ones would wait for a flush that is never scheduled
+            stopUartTx();
+            GB.toast(getContext(), "Error in uartTx: " + e.getLocalizedMessage(), Toast.LENGTH_LONG, GB.ERROR);
         }
-        return v.toString();
     }
 
-    /// Convert a JSON object to a JSON String (NOT 100% JSON compliant)
+    /// Convert a JSON object to a JSON String (NOT 100% JSON compliant), see BangleJSJsonWriter
     public String jsonToString(JSONObject jsonObj) {
-        /* jsonObj.toString() works but breaks char codes>128 (encodes as UTF8?) and also uses
-        \u0000 when just \0 would do (and so on).
-
-        So we do it manually, which can be more compact anyway.
-        This is JSON-ish, so not exactly as per JSON1 spec but good enough for Espruino.
-        */
-        return jsonToStringInternal(jsonObj);
+        BangleJSJsonWriter writer = new BangleJSJsonWriter();
+        writer.writeJson(jsonObj);
+        return writer.toString();
     }
 
-    /// Write a JSON object of data
+    /// Write a JSON object of data. Messages sent within UART_TX_COALESCE_DELAY are sent together.
     private void uartTxJSON(String taskName, JSONObject json) {
-        try {
-            TransactionBuilder builder = performInitialized(taskName);
-            uartTx(builder, "\u0010GB("+jsonToString(json)+")\n");
-            builder.queue(getQueue());
-        } catch (IOException e) {
-            GB.toast(getContext(), "Error in "+taskName+": " + e.getLocalizedMessage(), Toast.LENGTH_LONG, GB.ERROR);
+        synchronized (uartTxBuffer) {
+            final int start = uartTxBuffer.length();
+            uartTxBuffer.write("\u0010GB(");
+            uartTxBuffer.writeJson(json);
+            uartTxBuffer.write(")\n");
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("UART TX ({}): {}", taskName, new String(uartTxBuffer.array(), start, uartTxBuffer.length() - start, StandardCharsets.ISO_8859_1));
+            }
+            addSentHistory(uartTxBuffer.array(), start, uartTxBuffer.length());
+            if (start != 0) {
+                // a flush is scheduled already
+                return;
+            }
+        }
+        // sent in order with the other commands for this device
+        final DeviceCommandExecutor executor = DeviceCommandExecutor.forDevice(getDevice());
+        if (executor != null) {
+            executor.executeDelayed(this::flushUartTx, UART_TX_COALESCE_DELAY);
+        } else {
+            flushUartTx();
         }
     }
 
@@ -1215,13 +1199,16 @@ public class BangleJSDeviceSupport extends AbstractBTLEDeviceSupport {
             // logging
             addReceiveHistory(packetStr);
             // split into input lines
-            receivedLine += packetStr;
-            while (receivedLine.contains("\n")) {
-                int p = receivedLine.indexOf("\n");
-                String line = receivedLine.substring(0,(p>0) ? (p-1) : 0);
-                receivedLine = receivedLine.substring(p+1);
+            receivedLine.append(packetStr);
+            int lineStart = 0;
+            int p;
+            while ((p = receivedLine.indexOf("\n", lineStart)) >= 0) {
+                // drop the '\r' before the '\n'
+                String line = receivedLine.substring(lineStart, (p > lineStart) ? (p-1) : lineStart);
+                lineStart = p+1;
                 handleUartRxLine(line);
             }
+            receivedLine.delete(0, lineStart);
             // Send an intent with new data
             Intent intent = new Intent(BangleJSDeviceSupport.BANGLEJS_COMMAND_RX);
             intent.putExtra("DATA", packetStr);
@@ -1642,9 +1629,11 @@ public class BangleJSDeviceSupport extends AbstractBTLEDeviceSupport {
             LOG.warn("Writing log to "+outputFile.toString());
             try {
                 BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-                writer.write(receiveHistory);
+                synchronized (receiveHistory) {
+                    writer.append(receiveHistory);
+                    receiveHistory.setLength(0);
+                }
                 writer.close();
-                receiveHistory = "";
                 GB.toast(getContext(), "Log written to "+filename, Toast.LENGTH_LONG, GB.INFO);
             } catch (IOException e) {
                 LOG.warn("Could not write to file", e);
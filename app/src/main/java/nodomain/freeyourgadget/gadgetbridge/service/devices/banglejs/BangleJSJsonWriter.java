@@ -0,0 +1,171 @@
+package nodomain.freeyourgadget.gadgetbridge.service.devices.banglejs;
+
+import android.util.Base64;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Writes data for the Bangle.js UART into a reusable byte buffer, one byte per character as the
+ * UART expects. JSON is written in the compact, JSON-ish form understood by Espruino (NOT 100%
+ * JSON compliant): org.json breaks char codes > 128 (encodes as UTF-8?) and uses \u0000 when
+ * just \0 would do, and so on.
+ */
+public class BangleJSJsonWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(BangleJSJsonWriter.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    /// Buffers beyond this size are dropped on reset, so that a single big message (eg. images) is not kept around
+    private static final int MAX_KEPT_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+
+    /// Drops everything written so far
+    public void reset() {
+        length = 0;
+        if (buffer.length > MAX_KEPT_BUFFER_SIZE) {
+            buffer = new byte[INITIAL_BUFFER_SIZE];
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /// The underlying buffer, valid up to length() and until the next write or reset
+    public byte[] array() {
+        return buffer;
+    }
+
+    /// Writes a string as is, replacing characters that do not fit in a byte with '?'
+    public void write(final String s) {
+        ensureCapacity(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            buffer[length++] = (byte) (ch > 255 ? '?' : ch);
+        }
+    }
+
+    /// Writes a JSONObject, JSONArray, String or other value as JSON
+    public void writeJson(final Object v) {
+        if (v instanceof String) {
+            writeString((String) v);
+        } else if (v instanceof JSONArray) {
+            final JSONArray a = (JSONArray) v;
+            writeByte('[');
+            for (int i = 0; i < a.length(); i++) {
+                if (i > 0) writeByte(',');
+                Object o = null;
+                try {
+                    o = a.get(i);
+                } catch (JSONException e) {
+                    LOG.warn("jsonToString array error: " + e.getLocalizedMessage());
+                }
+                writeJson(o);
+            }
+            writeByte(']');
+        } else if (v instanceof JSONObject) {
+            final JSONObject obj = (JSONObject) v;
+            writeByte('{');
+            final Iterator<String> iter = obj.keys();
+            while (iter.hasNext()) {
+                final String key = iter.next();
+                Object o = null;
+                try {
+                    o = obj.get(key);
+                } catch (JSONException e) {
+                    LOG.warn("jsonToString object error: " + e.getLocalizedMessage());
+                }
+                writeByte('"');
+                write(key);
+                writeByte('"');
+                writeByte(':');
+                writeJson(o);
+                if (iter.hasNext()) writeByte(',');
+            }
+            writeByte('}');
+        } else if (v == null) {
+            write("null");
+        } else {
+            // int/double/boolean
+            write(v.toString());
+        }
+    }
+
+    /// Convert a string, escaping chars we can't send over our UART connection
+    private void writeString(final String s) {
+        final int start = length;
+        boolean hasUnicode = false;
+        writeByte('"');
+        for (int i = 0; i < s.length(); i++) {
+            final int ch = s.charAt(i); // unicode, so 0..65535 (usually)
+            final int nextCh = i + 1 < s.length() ? s.charAt(i + 1) : 0; // 0..65535
+            if (ch > 255) hasUnicode = true;
+            if (ch < 8) {
+                // if the next character is a digit, it'd be interpreted
+                // as a 2 digit octal character, so we can't use `\0` to escape it
+                if (nextCh >= '0' && nextCh <= '7') write("\\x0");
+                else writeByte('\\');
+                writeByte('0' + ch);
+            } else if (ch == 8) write("\\b");
+            else if (ch == 9) write("\\t");
+            else if (ch == 10) write("\\n");
+            else if (ch == 11) write("\\v");
+            else if (ch == 12) write("\\f");
+            else if (ch == 34) write("\\\""); // quote
+            else if (ch == 92) write("\\\\"); // slash
+            else if (ch < 32 || ch == 127 || ch == 173 ||
+                    ((ch >= 0xC2) && (ch <= 0xF4))) { // unicode start char range
+                write("\\x");
+                writeHex(ch, 2);
+            } else if (ch > 255) {
+                write("\\u");
+                writeHex(ch, 4);
+            } else writeByte(ch);
+        }
+        // if it was less characters to send base64, do that!
+        if (!hasUnicode && (length - start > 5 + (s.length() * 4 / 3))) {
+            length = start;
+            write("atob(\"");
+            final byte[] base64 = Base64.encode(s.getBytes(StandardCharsets.ISO_8859_1), Base64.NO_WRAP);
+            ensureCapacity(base64.length);
+            System.arraycopy(base64, 0, buffer, length, base64.length);
+            length += base64.length;
+            write("\")");
+            return;
+        }
+        writeByte('"');
+    }
+
+    private void writeHex(final int value, final int digits) {
+        ensureCapacity(digits);
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            buffer[length++] = HEX_DIGITS[(value >> shift) & 0xF];
+        }
+    }
+
+    private void writeByte(final int b) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void ensureCapacity(final int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,117 @@
+package nodomain.freeyourgadget.gadgetbridge.service.devices.banglejs;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Bangle.js recorder log (CSV) being fetched, parsed row by row as the lines arrive. The first
+ * line holds the column names, every following line is one reading.
+ */
+class BangleJSRecorderLog {
+    private final String id;
+    private final List<String> columns = new ArrayList<>();
+    private final List<JSONArray> values = new ArrayList<>();
+    /// Start of a line whose end was not received yet
+    private final StringBuilder pendingLine = new StringBuilder();
+    /// Complete lines received, including the header
+    private int lineCount;
+
+    BangleJSRecorderLog(String id) {
+        this.id = id;
+    }
+
+    /// Reads the complete lines of a previously fetched part of the log
+    static BangleJSRecorderLog fromFile(String id, File file) throws IOException {
+        BangleJSRecorderLog recorderLog = new BangleJSRecorderLog(id);
+        try (Reader reader = new FileReader(file)) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                recorderLog.addLines(new String(buffer, 0, read));
+            }
+        }
+        return recorderLog;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Parses the complete lines in the received text. A line that is not complete yet is kept
+     * until the rest of it is received.
+     *
+     * @return the complete lines, to be appended to the stored CSV file
+     */
+    String addLines(String lines) {
+        int lineStart = 0;
+        int p;
+        pendingLine.append(lines);
+        while ((p = pendingLine.indexOf("\n", lineStart)) >= 0) {
+            addLine(pendingLine.substring(lineStart, p));
+            lineStart = p + 1;
+        }
+        String completeLines = pendingLine.substring(0, lineStart);
+        pendingLine.delete(0, lineStart);
+        return completeLines;
+    }
+
+    /**
+     * Parses the rest of the log, once it has been received completely.
+     *
+     * @return the last line if it had no line break, to be appended to the stored CSV file
+     */
+    String finish() {
+        String lastLine = pendingLine.toString();
+        if (!lastLine.isEmpty()) {
+            addLine(lastLine);
+            pendingLine.setLength(0);
+        }
+        return lastLine;
+    }
+
+    private void addLine(String line) {
+        lineCount++;
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        // -1 to keep trailing empty entries, so all rows get the same number of entries
+        String[] entries = line.split(",", -1);
+        if (columns.isEmpty()) {
+            for (String entry : entries) {
+                columns.add(entry.trim());
+                values.add(new JSONArray());
+            }
+            return;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            String value = i < entries.length ? entries[i].trim() : "";
+            // Clean out heartrate==0...
+            if ("Heartrate".equals(columns.get(i)) && ("0".equals(value) || "0.0".equals(value))) {
+                value = "";
+            }
+            values.get(i).put(value);
+        }
+    }
+
+    /// The readings so far, as an object with an array of values (strings) per column
+    JSONObject toJSONObject() throws JSONException {
+        JSONObject storedLogObject = new JSONObject();
+        for (int i = 0; i < columns.size(); i++) {
+            storedLogObject.put(columns.get(i), values.get(i));
+        }
+        return storedLogObject;
+    }
+}
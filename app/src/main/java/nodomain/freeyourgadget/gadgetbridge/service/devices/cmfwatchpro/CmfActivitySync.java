@@ -63,7 +63,9 @@ import nodomain.freeyourgadget.gadgetbridge.export.GPXExporter;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityPoint;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryJsonSummary;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrack;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrackColumns;
 import nodomain.freeyourgadget.gadgetbridge.model.GPSCoordinate;
 import nodomain.freeyourgadget.gadgetbridge.util.DateTimeUtils;
 import nodomain.freeyourgadget.gadgetbridge.util.FileUtils;
@@ -423,6 +425,7 @@ public class CmfActivitySync {
 
                 summary.setDevice(device);
                 summary.setUser(user);
+                ActivitySummaryJsonSummary.updateSummaryBinary(summaryParser, summary);
 
                 LOG.debug("Persisting workout summary for {}", summary.getStartTime());
 
@@ -558,6 +561,7 @@ public class CmfActivitySync {
             LOG.error("Failed to write gpx", e);
             return null;
         }
+        ActivityTrackColumns.save(gpxTargetFile, activityTrack.getSegments());
 
         return gpxTargetFile;
     }
@@ -38,6 +38,20 @@ public final class ChecksumCalculator {
         return computeCrc(0, data, offset, length);
     }
 
+    /**
+     * Computes the CRC of the given range of the buffer, using absolute reads, so that neither the
+     * position of the buffer is changed nor its contents are copied.
+     */
+    public static int computeCrc(int initialCrc, ByteBuffer byteBuffer, int offset, int length) {
+        int crc = initialCrc;
+        for (int i = offset; i < offset + length; ++i) {
+            int b = byteBuffer.get(i);
+            crc = (((crc >> 4) & 4095) ^ CONSTANTS[crc & 15]) ^ CONSTANTS[b & 15];
+            crc = (((crc >> 4) & 4095) ^ CONSTANTS[crc & 15]) ^ CONSTANTS[(b >> 4) & 15];
+        }
+        return crc;
+    }
+
     public static int computeCrc(int initialCrc, byte[] data, int offset, int length) {
         int crc = initialCrc;
         for (int i = offset; i < offset + length; ++i) {
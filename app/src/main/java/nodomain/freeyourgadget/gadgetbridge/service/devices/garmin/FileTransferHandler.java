@@ -5,7 +5,6 @@ import androidx.annotation.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -26,7 +25,6 @@ import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.stat
 import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.status.DownloadRequestStatusMessage;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.status.FileTransferDataStatusMessage;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.status.UploadRequestStatusMessage;
-import nodomain.freeyourgadget.gadgetbridge.util.FileUtils;
 
 public class FileTransferHandler implements MessageHandler {
     private static final Logger LOG = LoggerFactory.getLogger(FileTransferHandler.class);
@@ -60,9 +58,9 @@ public class FileTransferHandler implements MessageHandler {
 
     public GFDIMessage handle(GFDIMessage message) {
         if (message instanceof DownloadRequestStatusMessage)
-            download.processDownloadRequestStatusMessage((DownloadRequestStatusMessage) message);
+            return download.processDownloadRequestStatusMessage((DownloadRequestStatusMessage) message);
         else if (message instanceof FileTransferDataMessage)
-            download.processDownloadChunkedMessage((FileTransferDataMessage) message);
+            return download.processDownloadChunkedMessage((FileTransferDataMessage) message);
         else if (message instanceof CreateFileStatusMessage)
             return upload.setCreateFileStatusMessage((CreateFileStatusMessage) message);
         else if (message instanceof UploadRequestStatusMessage)
@@ -73,8 +71,28 @@ public class FileTransferHandler implements MessageHandler {
         return null;
     }
 
+    /**
+     * Starts the download of a file, or continues it if an earlier download of it was interrupted.
+     *
+     * @return the request to send, or null if the file can not be downloaded
+     */
     public DownloadRequestMessage downloadDirectoryEntry(DirectoryEntry directoryEntry) {
-        download.setCurrentlyDownloading(new FileFragment(directoryEntry));
+        final FileFragment fileFragment = new FileFragment(directoryEntry);
+        if (!FileType.FILETYPE.DIRECTORY.equals(directoryEntry.filetype)) {
+            try {
+                fileFragment.openDownloadFile(new File(deviceSupport.getWritableExportDirectory(), directoryEntry.getFileName()));
+            } catch (final IOException e) {
+                LOG.error("Failed to open file for download of {}", directoryEntry, e);
+                fileFragment.closeDownloadFile();
+                return null;
+            }
+        }
+        download.setCurrentlyDownloading(fileFragment);
+
+        if (fileFragment.getDataOffset() > 0) {
+            LOG.info("Continuing download of {} at offset {}", directoryEntry.getFileName(), fileFragment.getDataOffset());
+            return new DownloadRequestMessage(directoryEntry.getFileIndex(), 0, DownloadRequestMessage.REQUEST_TYPE.CONTINUE, fileFragment.getRunningCrc(), fileFragment.getDataOffset());
+        }
         return new DownloadRequestMessage(directoryEntry.getFileIndex(), 0, DownloadRequestMessage.REQUEST_TYPE.NEW, 0, 0);
     }
 
@@ -82,6 +100,17 @@ public class FileTransferHandler implements MessageHandler {
         download.setCurrentlyDownloading(new FileFragment(new DirectoryEntry(0, FileType.FILETYPE.DIRECTORY, 0, 0, 0, 0, null)));
         return new DownloadRequestMessage(0, 0, DownloadRequestMessage.REQUEST_TYPE.NEW, 0, 0);
     }
+
+    /**
+     * Stops a running download. The data downloaded so far is kept, so that the next download of
+     * the file continues from there.
+     */
+    public void dispose() {
+        if (isDownloading()) {
+            LOG.info("Interrupting download of {}", download.getCurrentlyDownloading().directoryEntry);
+            download.abort();
+        }
+    }
 //    public DownloadRequestMessage downloadSettings() {
 //        download.setCurrentlyDownloading(new FileFragment(new DirectoryEntry(0, FileType.FILETYPE.SETTINGS, 0, 0, 0, 0, null)));
 //        return new DownloadRequestMessage(0, 0, DownloadRequestMessage.REQUEST_TYPE.NEW, 0, 0);
@@ -101,22 +130,42 @@ public class FileTransferHandler implements MessageHandler {
         }
 
         public void setCurrentlyDownloading(FileFragment currentlyDownloading) {
+            if (this.currentlyDownloading != null && this.currentlyDownloading != currentlyDownloading)
+                this.currentlyDownloading.closeDownloadFile();
             this.currentlyDownloading = currentlyDownloading;
         }
 
-        private void processDownloadChunkedMessage(FileTransferDataMessage fileTransferDataMessage) {
+        /**
+         * @return the request to download the file from scratch, if the data kept from an
+         * interrupted download turned out not to match, null otherwise
+         */
+        private DownloadRequestMessage processDownloadChunkedMessage(FileTransferDataMessage fileTransferDataMessage) {
             if (!isDownloading())
                 throw new IllegalStateException("Received file transfer of unknown file");
 
-            currentlyDownloading.append(fileTransferDataMessage);
-            if (!currentlyDownloading.dataHolder.hasRemaining())
+            if (currentlyDownloading.isFirstChunkAfterResume(fileTransferDataMessage) && !currentlyDownloading.hasValidCrc(fileTransferDataMessage)) {
+                // the CRC of each chunk covers all data before it, so the data kept from the
+                // interrupted download is not what the watch has: stop the transfer and start over
+                LOG.warn("Data kept from the interrupted download of {} does not match, starting over", currentlyDownloading.directoryEntry);
+                fileTransferDataMessage.setStatusMessage(new FileTransferDataStatusMessage(GFDIMessage.GarminMessage.FILE_TRANSFER_DATA, GFDIMessage.Status.ACK, FileTransferDataStatusMessage.TransferStatus.ABORT, fileTransferDataMessage.getDataOffset()));
+                return restartDownload();
+            }
+
+            try {
+                currentlyDownloading.append(fileTransferDataMessage);
+            } catch (final IOException e) {
+                LOG.error("Failed to write downloaded data of {}", currentlyDownloading.directoryEntry, e);
+                abort();
+                return null;
+            }
+            if (currentlyDownloading.isComplete())
                 processCompleteDownload();
+            return null;
         }
 
         private void processCompleteDownload() {
-            currentlyDownloading.dataHolder.flip();
-
             if (FileType.FILETYPE.DIRECTORY.equals(currentlyDownloading.directoryEntry.filetype)) { //is a directory
+                currentlyDownloading.dataHolder.flip();
                 parseDirectoryEntries();
             } else {
                 saveFileToExternalStorage();
@@ -125,22 +174,55 @@ public class FileTransferHandler implements MessageHandler {
             currentlyDownloading = null;
         }
 
-        public void processDownloadRequestStatusMessage(DownloadRequestStatusMessage downloadRequestStatusMessage) {
+        public DownloadRequestMessage processDownloadRequestStatusMessage(DownloadRequestStatusMessage downloadRequestStatusMessage) {
             if (null == currentlyDownloading)
                 throw new IllegalStateException("Received file transfer of unknown file");
-            if (downloadRequestStatusMessage.canProceed())
+            if (downloadRequestStatusMessage.canProceed()) {
+                // the watch announces the size of the whole file, also when continuing a download
+                if (currentlyDownloading.getDataOffset() > downloadRequestStatusMessage.getMaxFileSize()) {
+                    LOG.warn("Data kept from the interrupted download of {} is longer than the file, starting over", currentlyDownloading.directoryEntry);
+                    return restartDownload();
+                }
                 currentlyDownloading.setSize(downloadRequestStatusMessage);
-            else
-                currentlyDownloading = null;
+                if (currentlyDownloading.isComplete()) // everything was downloaded before
+                    processCompleteDownload();
+                return null;
+            }
+
+            if (currentlyDownloading.getDataOffset() > 0) {
+                // this includes a CRC_INCORRECT status, if the CRC of the kept data does not match
+                LOG.warn("Unable to continue download of {}, starting over", currentlyDownloading.directoryEntry);
+                return restartDownload();
+            }
+            abort();
+            return null;
+        }
+
+        /**
+         * Drops the data kept from an interrupted download.
+         *
+         * @return the request to download the file from scratch, or null if that failed
+         */
+        private DownloadRequestMessage restartDownload() {
+            try {
+                currentlyDownloading.restartDownload();
+                return new DownloadRequestMessage(currentlyDownloading.directoryEntry.getFileIndex(), 0, DownloadRequestMessage.REQUEST_TYPE.NEW, 0, 0);
+            } catch (final IOException e) {
+                LOG.error("Failed to discard partial download of {}", currentlyDownloading.directoryEntry, e);
+            }
+            abort();
+            return null;
+        }
+
+        private void abort() {
+            currentlyDownloading.closeDownloadFile();
+            currentlyDownloading = null;
         }
 
         private void saveFileToExternalStorage() {
-            File dir;
             File outputFile;
             try {
-                dir = deviceSupport.getWritableExportDirectory();
-                outputFile = new File(dir, currentlyDownloading.getFileName());
-                FileUtils.copyStreamToFile(new ByteArrayInputStream(currentlyDownloading.dataHolder.array()), outputFile);
+                outputFile = currentlyDownloading.downloadFile.complete();
                 outputFile.setLastModified(currentlyDownloading.directoryEntry.fileDate.getTime());
             } catch (final IOException e) {
                 LOG.error("Failed to save file", e);
@@ -250,6 +332,9 @@ public class FileTransferHandler implements MessageHandler {
         private final int maxBlockSize = 500;
         private int dataSize;
         private ByteBuffer dataHolder;
+        private PartialDownloadFile downloadFile;
+        /// Where the download continues, 0 unless data of an interrupted download was kept
+        private int resumeOffset;
         private int runningCrc;
 
         FileFragment(DirectoryEntry directoryEntry) {
@@ -274,24 +359,73 @@ public class FileTransferHandler implements MessageHandler {
             return directoryEntry.getFileName();
         }
 
+        /**
+         * Downloads to the given file instead of memory, continuing an earlier download of it.
+         */
+        private void openDownloadFile(File targetFile) throws IOException {
+            this.downloadFile = new PartialDownloadFile(targetFile);
+            this.downloadFile.open();
+            this.resumeOffset = downloadFile.getOffset();
+            this.setRunningCrc(downloadFile.getResumeCrc());
+        }
+
+        private void restartDownload() throws IOException {
+            this.downloadFile.truncate();
+            this.resumeOffset = 0;
+            this.setRunningCrc(0);
+            this.setDataSize(0); // announced again by the watch
+        }
+
+        private boolean isFirstChunkAfterResume(FileTransferDataMessage fileTransferDataMessage) {
+            return resumeOffset > 0 && fileTransferDataMessage.getDataOffset() == resumeOffset && getDataOffset() == resumeOffset;
+        }
+
+        private boolean hasValidCrc(FileTransferDataMessage fileTransferDataMessage) {
+            final byte[] data = fileTransferDataMessage.getMessage();
+            return fileTransferDataMessage.getCrc() == ChecksumCalculator.computeCrc(getRunningCrc(), data, 0, data.length);
+        }
+
+        private void closeDownloadFile() {
+            if (downloadFile == null)
+                return;
+            try {
+                downloadFile.close();
+            } catch (final IOException e) {
+                LOG.warn("Failed to close download file of {}", directoryEntry, e);
+            }
+        }
+
         private void setSize(DownloadRequestStatusMessage downloadRequestStatusMessage) {
             if (0 != getDataSize())
                 throw new IllegalStateException("Data size already set");
 
             this.setDataSize(downloadRequestStatusMessage.getMaxFileSize());
-            this.dataHolder = ByteBuffer.allocate(getDataSize());
+            if (downloadFile == null)
+                this.dataHolder = ByteBuffer.allocate(getDataSize());
         }
 
-        private void append(FileTransferDataMessage fileTransferDataMessage) {
-            if (fileTransferDataMessage.getDataOffset() != dataHolder.position())
+        private void append(FileTransferDataMessage fileTransferDataMessage) throws IOException {
+            if (fileTransferDataMessage.getDataOffset() != getDataOffset())
                 throw new IllegalStateException("Received message that was already received");
 
-            final int dataCrc = ChecksumCalculator.computeCrc(getRunningCrc(), fileTransferDataMessage.getMessage(), 0, fileTransferDataMessage.getMessage().length);
-            if (fileTransferDataMessage.getCrc() != dataCrc)
+            if (!hasValidCrc(fileTransferDataMessage))
                 throw new IllegalStateException("Received message with invalid CRC");
-            setRunningCrc(dataCrc);
+            setRunningCrc(fileTransferDataMessage.getCrc());
+
+            if (downloadFile != null)
+                this.downloadFile.append(fileTransferDataMessage.getMessage());
+            else
+                this.dataHolder.put(fileTransferDataMessage.getMessage());
+        }
+
+        private int getDataOffset() {
+            if (downloadFile != null)
+                return downloadFile.getOffset();
+            return dataHolder != null ? dataHolder.position() : 0;
+        }
 
-            this.dataHolder.put(fileTransferDataMessage.getMessage());
+        private boolean isComplete() {
+            return getDataOffset() >= getDataSize();
         }
 
         private FileTransferDataMessage take() {
@@ -100,6 +100,7 @@ public class GarminSupport extends AbstractBTLEDeviceSupport implements ICommuni
     private ICommunicator communicator;
     private MusicStateSpec musicStateSpec;
     private Timer musicStateTimer;
+    private FitAsyncProcessor fitAsyncProcessor;
     private boolean mFirstConnect = false;
     private boolean isBusyFetching;
 
@@ -122,6 +123,11 @@ public class GarminSupport extends AbstractBTLEDeviceSupport implements ICommuni
         LOG.info("Garmin dispose()");
         GBLocationService.stop(getContext(), getDevice());
         stopMusicTimer();
+        fileTransferHandler.dispose();
+        if (fitAsyncProcessor != null) {
+            fitAsyncProcessor.cancel();
+            fitAsyncProcessor = null;
+        }
         super.dispose();
     }
 
@@ -507,6 +513,9 @@ public class GarminSupport extends AbstractBTLEDeviceSupport implements ICommuni
                 }
 
                 final DownloadRequestMessage downloadRequestMessage = fileTransferHandler.downloadDirectoryEntry(directoryEntry);
+                if (downloadRequestMessage == null) {
+                    continue;
+                }
                 LOG.debug("Will download file: {}", directoryEntry.getFileName());
                 sendOutgoingMessage("download file " + directoryEntry.getFileIndex(), downloadRequestMessage);
                 return;
@@ -528,7 +537,7 @@ public class GarminSupport extends AbstractBTLEDeviceSupport implements ICommuni
 
             // Keep the device marked as busy while we process the files asynchronously
 
-            final FitAsyncProcessor fitAsyncProcessor = new FitAsyncProcessor(getContext(), getDevice());
+            fitAsyncProcessor = new FitAsyncProcessor(getContext(), getDevice());
             final List<File> filesToProcessClone = new ArrayList<>(filesToProcess);
             filesToProcess.clear();
             final long[] lastNotificationUpdateTs = new long[]{System.currentTimeMillis()};
@@ -845,7 +854,7 @@ public class GarminSupport extends AbstractBTLEDeviceSupport implements ICommuni
         }
 
         final long[] lastNotificationUpdateTs = new long[]{System.currentTimeMillis()};
-        final FitAsyncProcessor fitAsyncProcessor = new FitAsyncProcessor(getContext(), getDevice());
+        fitAsyncProcessor = new FitAsyncProcessor(getContext(), getDevice());
         fitAsyncProcessor.process(Arrays.asList(fitFiles), new FitAsyncProcessor.Callback() {
             @Override
             public void onProgress(final int i) {
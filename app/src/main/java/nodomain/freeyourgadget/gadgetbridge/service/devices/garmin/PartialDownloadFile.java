@@ -0,0 +1,142 @@
+package nodomain.freeyourgadget.gadgetbridge.service.devices.garmin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file being downloaded from the watch. The chunks are written to a temporary file next to the
+ * target file as they arrive, and the temporary file is renamed to the target once the download
+ * is complete. If the download is interrupted, the temporary file is kept, so that the next
+ * download of the same file can continue where this one stopped.
+ */
+public class PartialDownloadFile implements Closeable {
+    public static final String SUFFIX = ".part";
+
+    private static final int CRC_BUFFER_SIZE = 64 * 1024;
+
+    private final File targetFile;
+    private final File partFile;
+    private FileChannel channel;
+    private int offset;
+    private int resumeCrc;
+
+    public PartialDownloadFile(final File targetFile) {
+        this.targetFile = targetFile;
+        this.partFile = new File(targetFile.getParentFile(), targetFile.getName() + SUFFIX);
+    }
+
+    /**
+     * Opens the temporary file, keeping the data of a previous, interrupted download. The running
+     * CRC of that data is recomputed, as the watch needs it to continue the download.
+     */
+    public void open() throws IOException {
+        if (channel != null) {
+            throw new IllegalStateException("File is already open");
+        }
+        channel = new RandomAccessFile(partFile, "rw").getChannel();
+        offset = (int) channel.size();
+        resumeCrc = 0;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(CRC_BUFFER_SIZE);
+        channel.position(0);
+        while (channel.read(buffer) > 0) {
+            buffer.flip();
+            resumeCrc = ChecksumCalculator.computeCrc(resumeCrc, buffer.array(), 0, buffer.limit());
+            buffer.clear();
+        }
+        channel.position(offset);
+    }
+
+    /**
+     * Drops the data downloaded so far, to start the download from scratch.
+     */
+    public void truncate() throws IOException {
+        ensureOpen();
+        channel.truncate(0);
+        channel.position(0);
+        offset = 0;
+        resumeCrc = 0;
+    }
+
+    public void append(final byte[] data) throws IOException {
+        ensureOpen();
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        offset += data.length;
+    }
+
+    /**
+     * Flushes the downloaded data to disk and renames the temporary file to the target file.
+     *
+     * @return the target file
+     */
+    public File complete() throws IOException {
+        ensureOpen();
+        channel.force(true);
+        closeChannel();
+        if (targetFile.exists() && !targetFile.delete()) {
+            throw new IOException("Failed to replace " + targetFile);
+        }
+        if (!partFile.renameTo(targetFile)) {
+            throw new IOException("Failed to rename " + partFile + " to " + targetFile);
+        }
+        return targetFile;
+    }
+
+    /**
+     * Closes the temporary file, keeping it to continue the download later. An empty one is
+     * deleted, as there is nothing to continue.
+     */
+    @Override
+    public void close() throws IOException {
+        closeChannel();
+        if (offset == 0 && partFile.exists() && !partFile.delete()) {
+            throw new IOException("Failed to delete " + partFile);
+        }
+    }
+
+    /**
+     * Closes and deletes the temporary file, dropping the data downloaded so far.
+     */
+    public void discard() throws IOException {
+        closeChannel();
+        offset = 0;
+        resumeCrc = 0;
+        if (partFile.exists() && !partFile.delete()) {
+            throw new IOException("Failed to delete " + partFile);
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the CRC of the data kept from a previous download, as computed by {@link #open()}.
+     */
+    public int getResumeCrc() {
+        return resumeCrc;
+    }
+
+    private void ensureOpen() {
+        if (channel == null) {
+            throw new IllegalStateException("File is not open");
+        }
+    }
+}
@@ -1,16 +1,58 @@
 package nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.communicator;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.nio.ByteBuffer;
 
+/**
+ * COBS framing as used by Garmin, which relies on a leading and a trailing 0 byte around each
+ * message (the former is not part of default implementations).
+ * <p>
+ * Received bytes are collected in a buffer that grows as needed, and messages are decoded in place
+ * within it. Encoding uses a scratch buffer per thread, so that neither direction allocates per
+ * message beyond the returned message itself.
+ */
 public class CobsCoDec {
+    private static final Logger LOG = LoggerFactory.getLogger(CobsCoDec.class);
+
     private static final long BUFFER_TIMEOUT = 1500L; // turn this value up while debugging
-    private final ByteBuffer byteBuffer = ByteBuffer.allocate(10_000);
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    /**
+     * Received data without a message delimiter beyond this size is dropped, to not grow forever.
+     */
+    private static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+    /**
+     * Encode scratch buffers beyond this size are not kept after use.
+     */
+    private static final int MAX_POOLED_ENCODE_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> ENCODE_BUFFER = new ThreadLocal<>();
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    /**
+     * Start of the message being received, or of unread data before the first delimiter.
+     */
+    private int start;
+    /**
+     * End of the received data.
+     */
+    private int end;
+    /**
+     * The received data before this index contains no delimiter, other than ones already handled.
+     */
+    private int scanned;
+    /**
+     * Whether a leading 0 byte was seen, i.e. the data at {@link #start} is the start of a message.
+     */
+    private boolean inMessage;
     private long lastUpdate;
-    private byte[] cobsDecodedMessage;
 
     /**
-     * Accumulates received bytes in a local buffer, clearing it after a timeout, and attempts to
-     * parse it.
+     * Accumulates received bytes in a local buffer, clearing it after a timeout. The complete
+     * messages can then be taken out using {@link #retrieveMessage()}.
+     * <p>
+     * Slices returned by {@link #retrieveMessageSlice()} are invalid after this call.
      *
      * @param bytes
      */
@@ -21,108 +63,178 @@ public class CobsCoDec {
         }
         lastUpdate = now;
 
-        byteBuffer.put(bytes);
-        decode();
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, end, bytes.length);
+        end += bytes.length;
     }
 
     private void reset() {
-        cobsDecodedMessage = null;
-        byteBuffer.clear();
+        start = 0;
+        end = 0;
+        scanned = 0;
+        inMessage = false;
     }
 
+    private void ensureCapacity(final int length) {
+        if (end + length <= buffer.length) {
+            return;
+        }
+
+        if (end - start + length > MAX_BUFFER_SIZE) {
+            LOG.warn("Dropping {} bytes of received data without a complete message", end - start);
+            reset();
+        }
+
+        // move the unconsumed data to the front, growing the buffer if that is not enough
+        final int remaining = end - start;
+        byte[] target = buffer;
+        if (remaining + length > buffer.length) {
+            int newSize = buffer.length;
+            while (newSize < remaining + length) {
+                newSize *= 2;
+            }
+            target = new byte[newSize];
+        }
+        System.arraycopy(buffer, start, target, 0, remaining);
+        buffer = target;
+        scanned -= start;
+        end = remaining;
+        start = 0;
+    }
+
+    /**
+     * Takes the next complete message out of the received data.
+     *
+     * @return a copy of the decoded message, or null if no complete message was received
+     */
     public byte[] retrieveMessage() {
-        final byte[] resultPacket = cobsDecodedMessage;
-        cobsDecodedMessage = null;
+        final ByteBuffer slice = retrieveMessageSlice();
+        if (slice == null) {
+            return null;
+        }
+        final byte[] resultPacket = new byte[slice.remaining()];
+        slice.get(resultPacket);
         return resultPacket;
     }
 
     /**
-     * COBS decoding algorithm variant, which relies on a leading and a trailing 0 byte (the former
-     * is not part of default implementations).
-     * This function removes the complete message from the internal buffer, if it could be decoded.
+     * Takes the next complete message out of the received data, without copying it. The returned
+     * buffer is only valid until the next call to {@link #receivedBytes(byte[])}.
+     *
+     * @return the decoded message, or null if no complete message was received
      */
-    private void decode() {
-        if (cobsDecodedMessage != null) {
-            // packet is waiting, unable to parse more
-            return;
-        }
-        if (byteBuffer.position() < 4) {
-            // minimal payload length including the padding
-            return;
-        }
-        if (0 != byteBuffer.get(byteBuffer.position() - 1))
-            return; //no 0x00 at the end, hence no full packet
-        byteBuffer.position(byteBuffer.position() - 1); //don't process the trailing 0
-        byteBuffer.flip();
-        if (0 != byteBuffer.get())
-            return; //no 0x00 at the start
-        ByteBuffer decodedBytesBuffer = ByteBuffer.allocate(byteBuffer.limit()); //leading and trailing 0x00 bytes
-        while (byteBuffer.hasRemaining()) {
-            byte code = byteBuffer.get();
-            if (code == 0) {
-                break;
+    public ByteBuffer retrieveMessageSlice() {
+        while (true) {
+            int delimiter = -1;
+            for (int i = scanned; i < end; i++) {
+                if (buffer[i] == 0) {
+                    delimiter = i;
+                    break;
+                }
             }
-            int codeValue = code & 0xFF;
-            int payloadSize = codeValue - 1;
-            for (int i = 0; i < payloadSize; i++) {
-                decodedBytesBuffer.put(byteBuffer.get());
+            if (delimiter < 0) {
+                scanned = end;
+                return null;
             }
-            if (codeValue != 0xFF && byteBuffer.hasRemaining()) {
-                decodedBytesBuffer.put((byte) 0); // Append a zero byte after the payload
+
+            final int messageStart = start;
+            final boolean wasInMessage = inMessage;
+            start = delimiter + 1;
+            scanned = start;
+            // the delimiter ending a message can also start the next one
+            inMessage = true;
+
+            if (!wasInMessage || delimiter == messageStart) {
+                // data before the first leading 0 byte, or no data between two 0 bytes
+                continue;
             }
+
+            final int length = decode(messageStart, delimiter);
+            if (length < 0) {
+                LOG.warn("Dropping invalid COBS data of {} bytes", delimiter - messageStart);
+                continue;
+            }
+            return ByteBuffer.wrap(buffer, messageStart, length).slice();
         }
+    }
 
-        decodedBytesBuffer.flip();
-        cobsDecodedMessage = new byte[decodedBytesBuffer.remaining()];
-        decodedBytesBuffer.get(cobsDecodedMessage);
-        byteBuffer.compact();
+    /**
+     * Decodes the COBS encoded bytes between from and to (exclusive, without the 0 bytes around
+     * them) in place, which works because decoding never makes the data longer.
+     *
+     * @return the length of the decoded data starting at from, or -1 if the data is invalid
+     */
+    private int decode(final int from, final int to) {
+        int read = from;
+        int write = from;
+        while (read < to) {
+            final int codeValue = buffer[read++] & 0xFF;
+            final int payloadSize = codeValue - 1;
+            if (read + payloadSize > to) {
+                return -1;
+            }
+            System.arraycopy(buffer, read, buffer, write, payloadSize);
+            read += payloadSize;
+            write += payloadSize;
+            if (codeValue != 0xFF && read < to) {
+                buffer[write++] = 0; // Append a zero byte after the payload
+            }
+        }
+        return write - from;
     }
 
-    // this implementation of COBS relies on a leading and a trailing 0 byte (the former is not part of default implementations)
     public byte[] encode(byte[] data) {
-        ByteBuffer encodedBytesBuffer = ByteBuffer.allocate((data.length * 2) + 1); // Maximum expansion
+        final ByteBuffer encoded = encodeToBuffer(data);
+        final byte[] encodedBytes = new byte[encoded.remaining()];
+        encoded.get(encodedBytes);
+        return encodedBytes;
+    }
 
-        encodedBytesBuffer.put((byte) 0);// Garmin initial padding
-        ByteBuffer buffer = ByteBuffer.wrap(data);
+    /**
+     * Encodes the data into a scratch buffer of the current thread, without allocating. The
+     * returned buffer is only valid until the next encoding on the same thread.
+     */
+    public ByteBuffer encodeToBuffer(byte[] data) {
+        final int maxLength = data.length + data.length / 0xFE + 3; // leading and trailing 0, final code
+        byte[] encoded = ENCODE_BUFFER.get();
+        if (encoded == null || encoded.length < maxLength) {
+            encoded = new byte[Math.max(maxLength, INITIAL_BUFFER_SIZE)];
+            if (encoded.length <= MAX_POOLED_ENCODE_BUFFER_SIZE) {
+                ENCODE_BUFFER.set(encoded);
+            }
+        }
 
-        while (buffer.position() < buffer.limit()) {
-            int startPos = buffer.position();
-            int zeroIndex = buffer.position();
+        int write = 0;
+        encoded[write++] = 0; // Garmin initial padding
 
-            while (buffer.hasRemaining() && buffer.get() != 0) {
+        int read = 0;
+        while (true) {
+            int blockStart = read;
+            int zeroIndex = read;
+            while (zeroIndex < data.length && data[zeroIndex] != 0) {
                 zeroIndex++;
             }
 
-            int payloadSize = zeroIndex - startPos;
-
+            int payloadSize = zeroIndex - blockStart;
             while (payloadSize >= 0xFE) {
-                encodedBytesBuffer.put((byte) 0xFF); // Maximum payload size indicator
-                encodedBytesBuffer.put(data, startPos, 0xFE);
+                encoded[write++] = (byte) 0xFF; // Maximum payload size indicator
+                System.arraycopy(data, blockStart, encoded, write, 0xFE);
+                write += 0xFE;
                 payloadSize -= 0xFE;
-                startPos += 0xFE;
+                blockStart += 0xFE;
             }
 
-            encodedBytesBuffer.put((byte) (payloadSize + 1));
-            encodedBytesBuffer.put(data, startPos, payloadSize);
+            encoded[write++] = (byte) (payloadSize + 1);
+            System.arraycopy(data, blockStart, encoded, write, payloadSize);
+            write += payloadSize;
 
-            if (buffer.hasRemaining()) {
-                zeroIndex++; // Include the zero byte in the next block
-            }
-
-            if (!buffer.hasRemaining() && payloadSize == 0) {
+            if (zeroIndex >= data.length) {
                 break;
             }
-
-            buffer.position(zeroIndex);
+            read = zeroIndex + 1; // the zero byte is implied by the next block
         }
 
-        encodedBytesBuffer.put((byte) 0); // Append a zero byte to indicate end of encoding
-        encodedBytesBuffer.flip();
-
-        byte[] encodedBytes = new byte[encodedBytesBuffer.remaining()];
-        encodedBytesBuffer.get(encodedBytes);
-
-        return encodedBytes;
+        encoded[write++] = 0; // Append a zero byte to indicate end of encoding
+        return ByteBuffer.wrap(encoded, 0, write);
     }
-
 }
@@ -3,13 +3,11 @@ package nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.communicator
 import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCharacteristic;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Arrays;
 import java.util.UUID;
 
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
@@ -76,20 +74,15 @@ public class CommunicatorV2 implements ICommunicator {
             LOG.error("CANNOT SENT GFDI MESSAGE, HANDLE NOT YET SET. MESSAGE {}", message);
             return;
         }
-        final byte[] payload = cobsCoDec.encode(message);
+        final ByteBuffer payload = cobsCoDec.encodeToBuffer(message);
 //        LOG.debug("SENDING MESSAGE: {} - COBS ENCODED: {}", GB.hexdump(message), GB.hexdump(payload));
         final TransactionBuilder builder = new TransactionBuilder(taskName);
-        int remainingBytes = payload.length;
-        if (remainingBytes > maxWriteSize - 1) {
-            int position = 0;
-            while (remainingBytes > 0) {
-                final byte[] fragment = Arrays.copyOfRange(payload, position, position + Math.min(remainingBytes, maxWriteSize - 1));
-                builder.write(characteristicSend, ArrayUtils.addAll(new byte[]{(byte) gfdiHandle}, fragment));
-                position += fragment.length;
-                remainingBytes -= fragment.length;
-            }
-        } else {
-            builder.write(characteristicSend, ArrayUtils.addAll(new byte[]{(byte) gfdiHandle}, payload));
+        while (payload.hasRemaining()) {
+            // every write starts with the handle, followed by the next fragment of the payload
+            final byte[] fragment = new byte[1 + Math.min(payload.remaining(), maxWriteSize - 1)];
+            fragment[0] = (byte) gfdiHandle;
+            payload.get(fragment, 1, fragment.length - 1);
+            builder.write(characteristicSend, fragment);
         }
         builder.queue(this.mSupport.getQueue());
     }
@@ -152,7 +145,10 @@ public class CommunicatorV2 implements ICommunicator {
             message.get(partial);
             this.cobsCoDec.receivedBytes(partial);
 
-            this.mSupport.onMessage(this.cobsCoDec.retrieveMessage());
+            byte[] decoded;
+            while ((decoded = this.cobsCoDec.retrieveMessage()) != null) {
+                this.mSupport.onMessage(decoded);
+            }
 
             return true;
         }
@@ -7,17 +7,40 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
 
+/**
+ * Imports fit files in the background. The files are decoded in parallel by a small pool of
+ * workers, while the decoded samples are written to the database by a single writer, in the
+ * order of the files, so the result is the same as importing them one after the other.
+ */
 public class FitAsyncProcessor {
     private static final Logger LOG = LoggerFactory.getLogger(FitAsyncProcessor.class);
 
+    private static final int MAX_WORKERS = 4;
+    // write batches buffered per file, which bounds the memory used by workers ahead of the writer
+    private static final int MAX_PENDING_WRITES = 4;
+
+    private static final Runnable END_OF_FILE = () -> {
+    };
+
     private final Context context;
     private final GBDevice gbDevice;
     private final Handler handler;
 
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private ExecutorService workers;
+
     public FitAsyncProcessor(final Context context, final GBDevice gbDevice) {
         this.context = context;
         this.gbDevice = gbDevice;
@@ -27,32 +50,112 @@ public class FitAsyncProcessor {
     /**
      * Process a list of files asynchronously. Callback is executed on the UI thread.
      */
-    public void process(final List<File> files, final Callback callback) {
-        LOG.debug("Starting processor for {} files", files.size());
+    public synchronized void process(final List<File> files, final Callback callback) {
+        final int numWorkers = Math.max(1, Math.min(
+                Math.min(files.size(), MAX_WORKERS),
+                Runtime.getRuntime().availableProcessors() - 1
+        ));
+
+        LOG.debug("Starting processor for {} files with {} workers", files.size(), numWorkers);
+
+        // The workers take the files in order, so the first file not completely written yet
+        // always has a worker, and the writer can not be stuck behind a file that was not started
+        workers = Executors.newFixedThreadPool(numWorkers);
+        final List<BlockingQueue<Runnable>> writeQueues = new ArrayList<>(files.size());
+        for (final File file : files) {
+            final BlockingQueue<Runnable> writeQueue = new LinkedBlockingQueue<>(MAX_PENDING_WRITES);
+            writeQueues.add(writeQueue);
+            workers.execute(() -> decode(file, writeQueue));
+        }
+        workers.shutdown();
 
         new Thread(() -> {
             try {
-                int i = 0;
-                for (final File file : files) {
-                    i++;
-                    LOG.debug("Parsing {}", file);
-
-                    final int finalI = i;
-                    FitAsyncProcessor.this.handler.post(() -> callback.onProgress(finalI));
-
-                    try {
-                        final FitImporter fitImporter = new FitImporter(context, gbDevice);
-                        fitImporter.importFile(file);
-                    } catch (final Exception ex) {
-                        LOG.error("Exception while importing {}", file, ex);
-                    }
-                }
+                write(writeQueues, callback);
             } catch (final Exception e) {
                 LOG.error("Failed to parse from storage", e);
             }
 
             FitAsyncProcessor.this.handler.post(callback::onFinish);
-        }).start();
+        }, "FitAsyncProcessor").start();
+    }
+
+    /**
+     * Stops the import. Batches of samples that were already written are kept, and the remaining
+     * files are skipped. {@link Callback#onFinish()} is still called.
+     */
+    public synchronized void cancel() {
+        if (cancelled.getAndSet(true)) {
+            return;
+        }
+        LOG.info("Cancelling fit file processing");
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    private void decode(final File file, final BlockingQueue<Runnable> writeQueue) {
+        if (cancelled.get()) {
+            return;
+        }
+
+        LOG.debug("Parsing {}", file);
+
+        boolean decodingCancelled = false;
+        try {
+            final FitImporter fitImporter = new FitImporter(context, gbDevice, write -> enqueue(writeQueue, write));
+            fitImporter.importFile(file);
+        } catch (final CancellationException e) {
+            LOG.debug("Parsing of {} was cancelled", file);
+            decodingCancelled = true;
+        } catch (final Exception ex) {
+            LOG.error("Exception while importing {}", file, ex);
+        } finally {
+            // also after an error such as running out of memory, or the writer waits forever
+            if (!decodingCancelled) {
+                try {
+                    enqueue(writeQueue, END_OF_FILE);
+                } catch (final CancellationException e) {
+                    LOG.debug("Parsing of {} was cancelled", file);
+                }
+            }
+        }
+    }
+
+    private void enqueue(final BlockingQueue<Runnable> writeQueue, final Runnable write) {
+        try {
+            writeQueue.put(write);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    private void write(final List<BlockingQueue<Runnable>> writeQueues, final Callback callback) throws InterruptedException {
+        for (int i = 0; i < writeQueues.size(); i++) {
+            final BlockingQueue<Runnable> writeQueue = writeQueues.get(i);
+            while (true) {
+                if (cancelled.get()) {
+                    LOG.info("Cancelled after {} of {} files", i, writeQueues.size());
+                    return;
+                }
+                // poll, since cancelled workers do not signal the end of their file
+                final Runnable write = writeQueue.poll(250, TimeUnit.MILLISECONDS);
+                if (write == END_OF_FILE) {
+                    break;
+                }
+                if (write != null) {
+                    write.run();
+                }
+            }
+
+            final int filesDone = i + 1;
+            FitAsyncProcessor.this.handler.post(() -> callback.onProgress(filesDone));
+        }
     }
 
     public interface Callback {
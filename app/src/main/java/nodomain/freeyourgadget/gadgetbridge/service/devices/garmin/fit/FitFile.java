@@ -5,12 +5,13 @@ import androidx.annotation.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -39,32 +40,45 @@ public class FitFile {
         this.canGenerateOutput = true;
     }
 
-    private static byte[] readFileToByteArray(File file) throws IOException {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream(); InputStream inputStream = new FileInputStream(file)) {
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, length);
-            }
-            return outputStream.toByteArray();
-        }
-    }
-
     public static FitFile parseIncoming(File file) throws IOException {
-        return parseIncoming(readFileToByteArray(file));
+        final List<RecordData> dataRecords = new ArrayList<>();
+        final Header header = parseIncoming(file, dataRecords::add);
+        return new FitFile(header, dataRecords);
     }
 
-    //TODO: process file in chunks??
     public static FitFile parseIncoming(byte[] fileContents) {
+        final List<RecordData> dataRecords = new ArrayList<>();
+        final Header header = parseIncoming(ByteBuffer.wrap(fileContents), dataRecords::add);
+        return new FitFile(header, dataRecords);
+    }
+
+    /**
+     * Parses the given file, passing each record to the callback as soon as it is decoded,
+     * instead of building the whole list of records first. The file is memory-mapped, not copied.
+     * The CRC of the file is checked before any record is passed to the callback.
+     */
+    public static Header parseIncoming(File file, RecordCallback callback) throws IOException {
+        try (FileInputStream inputStream = new FileInputStream(file); FileChannel channel = inputStream.getChannel()) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parseIncoming(buffer, callback);
+        }
+    }
 
+    private static Header parseIncoming(final ByteBuffer fileContents, final RecordCallback callback) {
         final GarminByteBufferReader garminByteBufferReader = new GarminByteBufferReader(fileContents);
         garminByteBufferReader.setByteOrder(ByteOrder.LITTLE_ENDIAN);
 
         final Header header = Header.parseIncomingHeader(garminByteBufferReader);
 
+        final int fileCrc = Short.toUnsignedInt(fileContents.getShort(header.getHeaderSize() + header.getDataSize()));
+        if (fileCrc != ChecksumCalculator.computeCrc(0, fileContents, header.getHeaderSize(), fileContents.limit() - header.getHeaderSize() - 2)) {
+            throw new IllegalArgumentException("Wrong CRC for FIT file");
+        }
+
         // needed because the headers can be redefined in the file. The last header for a local message number wins
         Map<Integer, RecordDefinition> recordDefinitionMap = new HashMap<>();
-        List<RecordData> dataRecords = new ArrayList<>();
+        // only the field descriptions are kept, for the developer fields of later definitions
+        List<RecordData> fieldDescriptionRecords = new ArrayList<>();
         Long referenceTimestamp = null;
 
         while (garminByteBufferReader.getPosition() < header.getHeaderSize() + header.getDataSize()) {
@@ -86,9 +100,8 @@ public class FitFile {
                 final RecordDefinition recordDefinition = RecordDefinition.parseIncoming(garminByteBufferReader, recordHeader);
                 if (recordDefinition != null) {
                     if (recordHeader.isDeveloperData())
-                        for (RecordData rd : dataRecords) {
-                            if (GlobalFITMessage.FIELD_DESCRIPTION.equals(rd.getGlobalFITMessage()))
-                                recordDefinition.populateDevFields(rd);
+                        for (RecordData rd : fieldDescriptionRecords) {
+                            recordDefinition.populateDevFields(rd);
                         }
                     recordDefinitionMap.put(recordHeader.getLocalMessageType(), recordDefinition);
                 }
@@ -96,19 +109,16 @@ public class FitFile {
                 final RecordDefinition referenceRecordDefinition = recordDefinitionMap.get(recordHeader.getLocalMessageType());
                 if (referenceRecordDefinition != null) {
                     final RecordData runningData = FitRecordDataFactory.create(referenceRecordDefinition, recordHeader);
-                    dataRecords.add(runningData);
                     Long newTimestamp = runningData.parseDataMessage(garminByteBufferReader, referenceTimestamp);
                     if (newTimestamp != null)
                         referenceTimestamp = newTimestamp;
+                    if (GlobalFITMessage.FIELD_DESCRIPTION.equals(runningData.getGlobalFITMessage()))
+                        fieldDescriptionRecords.add(runningData);
+                    callback.onRecord(runningData);
                 }
             }
         }
-        garminByteBufferReader.setByteOrder(ByteOrder.LITTLE_ENDIAN);
-        int fileCrc = garminByteBufferReader.readShort();
-        if (fileCrc != ChecksumCalculator.computeCrc(fileContents, header.getHeaderSize(), fileContents.length - header.getHeaderSize() - 2)) {
-            throw new IllegalArgumentException("Wrong CRC for FIT file");
-        }
-        return new FitFile(header, dataRecords);
+        return header;
     }
 
     public List<RecordData> getRecordsByGlobalMessage(GlobalFITMessage globalFITMessage) {
@@ -153,6 +163,10 @@ public class FitFile {
         return dataRecords.toString();
     }
 
+    public interface RecordCallback {
+        void onRecord(RecordData record);
+    }
+
     public static class Header {
         public static final int MAGIC = 0x5449462E;
 
@@ -18,6 +18,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -26,6 +27,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
 
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
@@ -49,6 +51,8 @@ import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityPoint;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryData;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryJsonSummary;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrackColumns;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.GarminTimeUtils;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.fit.enums.GarminSport;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.fit.fieldDefinitions.FieldDefinitionSleepStage;
@@ -67,8 +71,11 @@ import nodomain.freeyourgadget.gadgetbridge.util.GB;
 public class FitImporter {
     private static final Logger LOG = LoggerFactory.getLogger(FitImporter.class);
 
+    private static final int PERSIST_BATCH_SIZE = 1000;
+
     private final Context context;
     private final GBDevice gbDevice;
+    private final Executor writer;
 
     private final SortedMap<Integer, List<FitMonitoring>> activitySamplesPerTimestamp = new TreeMap<>();
     private final List<GarminStressSample> stressSamples = new ArrayList<>();
@@ -82,115 +89,34 @@ public class FitImporter {
     private FitSession session = null;
     private FitSport sport = null;
 
+    // state of the monitoring samples, kept between the batches of a file
+    // Garmin reports the cumulative steps per activity, but not always, so we need to keep
+    // track of the number of steps for each activity, and set the sum of all on the sample
+    private final Map<Integer, Long> stepsPerActivity = new HashMap<>();
+    private int prevActivityKind = ActivityKind.TYPE_UNKNOWN;
+    private int prevTs = -1;
+
     public FitImporter(final Context context, final GBDevice gbDevice) {
+        this(context, gbDevice, Runnable::run);
+    }
+
+    /**
+     * @param writer executes the database writes of the decoded samples. They are submitted in
+     *               order, and the samples passed to them are not touched by the importer anymore,
+     *               so the file can be decoded on a different thread than the one writing to the
+     *               database.
+     */
+    public FitImporter(final Context context, final GBDevice gbDevice, final Executor writer) {
         this.context = context;
         this.gbDevice = gbDevice;
+        this.writer = writer;
     }
 
     public void importFile(final File file) throws IOException {
         reset();
 
-        final FitFile fitFile = FitFile.parseIncoming(file);
-
-        for (final RecordData record : fitFile.getRecords()) {
-            final Long ts = record.getComputedTimestamp();
-
-            if (record instanceof FitFileId) {
-                final FitFileId newFileId = (FitFileId) record;
-                LOG.debug("File ID: {}", newFileId);
-                if (fileId != null) {
-                    // Should not happen
-                    LOG.warn("Already had a file ID: {}", fileId);
-                }
-                fileId = newFileId;
-            } else if (record instanceof FitStressLevel) {
-                final Integer stress = ((FitStressLevel) record).getStressLevelValue();
-                if (stress == null || stress < 0) {
-                    continue;
-                }
-                LOG.trace("Stress at {}: {}", ts, stress);
-                final GarminStressSample sample = new GarminStressSample();
-                sample.setTimestamp(ts * 1000L);
-                sample.setStress(stress);
-                stressSamples.add(sample);
-            } else if (record instanceof FitSleepStage) {
-                final FieldDefinitionSleepStage.SleepStage stage = ((FitSleepStage) record).getSleepStage();
-                if (stage == null) {
-                    continue;
-                }
-                LOG.trace("Sleep stage at {}: {}", ts, record);
-                final GarminSleepStageSample sample = new GarminSleepStageSample();
-                sample.setTimestamp(ts * 1000L);
-                sample.setStage(stage.getId());
-                sleepStageSamples.add(sample);
-            } else if (record instanceof FitMonitoring) {
-                LOG.trace("Monitoring at {}: {}", ts, record);
-                if (!activitySamplesPerTimestamp.containsKey(ts.intValue())) {
-                    activitySamplesPerTimestamp.put(ts.intValue(), new ArrayList<>());
-                }
-                Objects.requireNonNull(activitySamplesPerTimestamp.get(ts.intValue())).add((FitMonitoring) record);
-            } else if (record instanceof FitSpo2) {
-                final Integer spo2 = ((FitSpo2) record).getReadingSpo2();
-                if (spo2 == null || spo2 <= 0) {
-                    continue;
-                }
-                LOG.trace("SpO2 at {}: {}", ts, spo2);
-                final GarminSpo2Sample sample = new GarminSpo2Sample();
-                sample.setTimestamp(ts * 1000L);
-                sample.setSpo2(spo2);
-                spo2samples.add(sample);
-            } else if (record instanceof FitEvent) {
-                final FitEvent event = (FitEvent) record;
-                if (event.getEvent() == null) {
-                    LOG.warn("Event in {} is null", event);
-                    continue;
-                }
-
-                LOG.trace("Event at {}: {}", ts, event);
-
-                final GarminEventSample sample = new GarminEventSample();
-                sample.setTimestamp(ts * 1000L);
-                sample.setEvent(event.getEvent());
-                if (event.getEventType() != null) {
-                    sample.setEventType(event.getEventType());
-                }
-                if (event.getData() != null) {
-                    sample.setData(event.getData());
-                }
-                events.add(sample);
-            } else if (record instanceof FitRecord) {
-                activityPoints.add(((FitRecord) record).toActivityPoint());
-            } else if (record instanceof FitSession) {
-                LOG.debug("Session: {}", record);
-                if (session != null) {
-                    LOG.warn("Got multiple sessions - NOT SUPPORTED: {}", record);
-                } else {
-                    // We only support 1 session
-                    session = (FitSession) record;
-                }
-            } else if (record instanceof FitSport) {
-                LOG.debug("Sport: {}", record);
-                if (sport != null) {
-                    LOG.warn("Got multiple sports - NOT SUPPORTED: {}", record);
-                } else {
-                    // We only support 1 sport
-                    sport = (FitSport) record;
-                }
-            } else if (record instanceof FitTimeInZone) {
-                LOG.trace("Time in zone: {}", record);
-                timesInZone.add((FitTimeInZone) record);
-            } else {
-                LOG.trace("Unknown record: {}", record);
-
-                if (!unknownRecords.containsKey(record.getGlobalFITMessage().getNumber())) {
-                    unknownRecords.put(record.getGlobalFITMessage().getNumber(), 0);
-                }
-                unknownRecords.put(
-                        record.getGlobalFITMessage().getNumber(),
-                        Objects.requireNonNull(unknownRecords.get(record.getGlobalFITMessage().getNumber())) + 1
-                );
-            }
-        }
+        // the samples are persisted in batches while the file is being decoded
+        FitFile.parseIncoming(file, this::handleRecord);
 
         if (fileId == null) {
             LOG.error("Got no file ID");
@@ -206,7 +132,7 @@ public class FitImporter {
                 persistWorkout(file);
                 break;
             case monitor:
-                persistActivitySamples();
+                persistActivitySamples(true);
                 persistSpo2Samples();
                 persistStressSamples();
                 break;
@@ -223,6 +149,140 @@ public class FitImporter {
         }
     }
 
+    private void handleRecord(final RecordData record) {
+        final Long ts = record.getComputedTimestamp();
+
+        if (record instanceof FitFileId) {
+            final FitFileId newFileId = (FitFileId) record;
+            LOG.debug("File ID: {}", newFileId);
+            if (fileId != null) {
+                // Should not happen
+                LOG.warn("Already had a file ID: {}", fileId);
+            }
+            fileId = newFileId;
+        } else if (record instanceof FitStressLevel) {
+            final Integer stress = ((FitStressLevel) record).getStressLevelValue();
+            if (stress == null || stress < 0) {
+                return;
+            }
+            LOG.trace("Stress at {}: {}", ts, stress);
+            final GarminStressSample sample = new GarminStressSample();
+            sample.setTimestamp(ts * 1000L);
+            sample.setStress(stress);
+            stressSamples.add(sample);
+        } else if (record instanceof FitSleepStage) {
+            final FieldDefinitionSleepStage.SleepStage stage = ((FitSleepStage) record).getSleepStage();
+            if (stage == null) {
+                return;
+            }
+            LOG.trace("Sleep stage at {}: {}", ts, record);
+            final GarminSleepStageSample sample = new GarminSleepStageSample();
+            sample.setTimestamp(ts * 1000L);
+            sample.setStage(stage.getId());
+            sleepStageSamples.add(sample);
+        } else if (record instanceof FitMonitoring) {
+            LOG.trace("Monitoring at {}: {}", ts, record);
+            if (!activitySamplesPerTimestamp.containsKey(ts.intValue())) {
+                activitySamplesPerTimestamp.put(ts.intValue(), new ArrayList<>());
+            }
+            Objects.requireNonNull(activitySamplesPerTimestamp.get(ts.intValue())).add((FitMonitoring) record);
+        } else if (record instanceof FitSpo2) {
+            final Integer spo2 = ((FitSpo2) record).getReadingSpo2();
+            if (spo2 == null || spo2 <= 0) {
+                return;
+            }
+            LOG.trace("SpO2 at {}: {}", ts, spo2);
+            final GarminSpo2Sample sample = new GarminSpo2Sample();
+            sample.setTimestamp(ts * 1000L);
+            sample.setSpo2(spo2);
+            spo2samples.add(sample);
+        } else if (record instanceof FitEvent) {
+            final FitEvent event = (FitEvent) record;
+            if (event.getEvent() == null) {
+                LOG.warn("Event in {} is null", event);
+                return;
+            }
+
+            LOG.trace("Event at {}: {}", ts, event);
+
+            final GarminEventSample sample = new GarminEventSample();
+            sample.setTimestamp(ts * 1000L);
+            sample.setEvent(event.getEvent());
+            if (event.getEventType() != null) {
+                sample.setEventType(event.getEventType());
+            }
+            if (event.getData() != null) {
+                sample.setData(event.getData());
+            }
+            events.add(sample);
+        } else if (record instanceof FitRecord) {
+            activityPoints.add(((FitRecord) record).toActivityPoint());
+        } else if (record instanceof FitSession) {
+            LOG.debug("Session: {}", record);
+            if (session != null) {
+                LOG.warn("Got multiple sessions - NOT SUPPORTED: {}", record);
+            } else {
+                // We only support 1 session
+                session = (FitSession) record;
+            }
+        } else if (record instanceof FitSport) {
+            LOG.debug("Sport: {}", record);
+            if (sport != null) {
+                LOG.warn("Got multiple sports - NOT SUPPORTED: {}", record);
+            } else {
+                // We only support 1 sport
+                sport = (FitSport) record;
+            }
+        } else if (record instanceof FitTimeInZone) {
+            LOG.trace("Time in zone: {}", record);
+            timesInZone.add((FitTimeInZone) record);
+        } else {
+            LOG.trace("Unknown record: {}", record);
+
+            if (!unknownRecords.containsKey(record.getGlobalFITMessage().getNumber())) {
+                unknownRecords.put(record.getGlobalFITMessage().getNumber(), 0);
+            }
+            unknownRecords.put(
+                    record.getGlobalFITMessage().getNumber(),
+                    Objects.requireNonNull(unknownRecords.get(record.getGlobalFITMessage().getNumber())) + 1
+            );
+        }
+
+        persistIfLarge();
+    }
+
+    /**
+     * Persists the samples decoded so far, if there are many of them already, so that they do not
+     * need to be kept in memory until the end of large files.
+     */
+    private void persistIfLarge() {
+        if (fileId == null || fileId.getType() == null) {
+            return;
+        }
+
+        switch (fileId.getType()) {
+            case monitor:
+                if (activitySamplesPerTimestamp.size() > PERSIST_BATCH_SIZE) {
+                    persistActivitySamples(false);
+                }
+                if (spo2samples.size() > PERSIST_BATCH_SIZE) {
+                    persistSpo2Samples();
+                }
+                if (stressSamples.size() > PERSIST_BATCH_SIZE) {
+                    persistStressSamples();
+                }
+                break;
+            case sleep:
+                if (events.size() > PERSIST_BATCH_SIZE) {
+                    persistEvents();
+                }
+                if (sleepStageSamples.size() > PERSIST_BATCH_SIZE) {
+                    persistSleepStageSamples();
+                }
+                break;
+        }
+    }
+
     private void persistWorkout(final File file) {
         if (session == null) {
             LOG.error("Got workout from {}, but no session", fileId);
@@ -284,22 +344,28 @@ public class FitImporter {
         //}
 
         summary.setSummaryData(summaryData.toString());
+        ActivitySummaryJsonSummary.updateSummaryBinary(gbDevice.getDeviceCoordinator().getActivitySummaryParser(gbDevice), summary);
         if (file != null) {
             summary.setRawDetailsPath(file.getAbsolutePath());
+            if (!activityPoints.isEmpty()) {
+                ActivityTrackColumns.save(file, Collections.singletonList(activityPoints));
+            }
         }
 
-        try (DBHandler dbHandler = GBApplication.acquireDB()) {
-            final DaoSession session = dbHandler.getDaoSession();
-            final Device device = DBHelper.getDevice(gbDevice, session);
-            final User user = DBHelper.getUser(session);
+        writer.execute(() -> {
+            try (DBHandler dbHandler = GBApplication.acquireDB()) {
+                final DaoSession session = dbHandler.getDaoSession();
+                final Device device = DBHelper.getDevice(gbDevice, session);
+                final User user = DBHelper.getUser(session);
 
-            summary.setDevice(device);
-            summary.setUser(user);
+                summary.setDevice(device);
+                summary.setUser(user);
 
-            session.getBaseActivitySummaryDao().insertOrReplace(summary);
-        } catch (final Exception e) {
-            GB.toast(context, "Error saving workout", Toast.LENGTH_LONG, GB.ERROR, e);
-        }
+                session.getBaseActivitySummaryDao().insertOrReplace(summary);
+            } catch (final Exception e) {
+                GB.toast(context, "Error saving workout", Toast.LENGTH_LONG, GB.ERROR, e);
+            }
+        });
     }
 
     private int getActivityKind(final Integer sport, final Integer subsport) {
@@ -366,24 +432,33 @@ public class FitImporter {
         fileId = null;
         session = null;
         sport = null;
+        stepsPerActivity.clear();
+        prevActivityKind = ActivityKind.TYPE_UNKNOWN;
+        prevTs = -1;
     }
 
-    private void persistActivitySamples() {
+    /**
+     * Persists the monitoring samples decoded so far.
+     *
+     * @param complete whether the file was decoded completely. If not, the samples of the latest
+     *                 timestamp are kept back, since more records may follow for it.
+     */
+    private void persistActivitySamples(final boolean complete) {
         if (activitySamplesPerTimestamp.isEmpty()) {
             return;
         }
 
-        final List<GarminActivitySample> activitySamples = new ArrayList<>(activitySamplesPerTimestamp.size());
-
-        // Garmin reports the cumulative steps per activity, but not always, so we need to keep
-        // track of the number of steps for each activity, and set the sum of all on the sample
-        final Map<Integer, Long> stepsPerActivity = new HashMap<>();
+        final SortedMap<Integer, List<FitMonitoring>> recordsToPersist = complete
+                ? activitySamplesPerTimestamp
+                : activitySamplesPerTimestamp.headMap(activitySamplesPerTimestamp.lastKey());
+        if (recordsToPersist.isEmpty()) {
+            return;
+        }
+        final List<GarminActivitySample> activitySamples = new ArrayList<>(recordsToPersist.size());
 
         final int THRESHOLD_NOT_WORN = 10 * 60; // 10 min gap between samples = not-worn
-        int prevActivityKind = ActivityKind.TYPE_UNKNOWN;
-        int prevTs = -1;
 
-        for (final int ts : activitySamplesPerTimestamp.keySet()) {
+        for (final int ts : recordsToPersist.keySet()) {
             if (prevTs > 0 && ts - prevTs > 60) {
                 // Fill gaps between samples
                 for (int i = prevTs; i < ts; i += 60) {
@@ -396,7 +471,7 @@ public class FitImporter {
                 }
             }
 
-            final List<FitMonitoring> records = activitySamplesPerTimestamp.get(ts);
+            final List<FitMonitoring> records = recordsToPersist.get(ts);
 
             final GarminActivitySample sample = new GarminActivitySample();
             sample.setTimestamp(ts);
@@ -438,26 +513,29 @@ public class FitImporter {
             prevActivityKind = sample.getRawKind();
             prevTs = ts;
         }
+        recordsToPersist.clear();
 
         LOG.debug("Will persist {} activity samples", activitySamples.size());
 
-        try (DBHandler handler = GBApplication.acquireDB()) {
-            final DaoSession session = handler.getDaoSession();
+        writer.execute(() -> {
+            try (DBHandler handler = GBApplication.acquireDB()) {
+                final DaoSession session = handler.getDaoSession();
 
-            final Device device = DBHelper.getDevice(gbDevice, session);
-            final User user = DBHelper.getUser(session);
+                final Device device = DBHelper.getDevice(gbDevice, session);
+                final User user = DBHelper.getUser(session);
 
-            final GarminActivitySampleProvider sampleProvider = new GarminActivitySampleProvider(gbDevice, session);
+                final GarminActivitySampleProvider sampleProvider = new GarminActivitySampleProvider(gbDevice, session);
 
-            for (final GarminActivitySample sample : activitySamples) {
-                sample.setDevice(device);
-                sample.setUser(user);
-            }
+                for (final GarminActivitySample sample : activitySamples) {
+                    sample.setDevice(device);
+                    sample.setUser(user);
+                }
 
-            sampleProvider.addGBActivitySamples(activitySamples.toArray(new GarminActivitySample[0]));
-        } catch (final Exception e) {
-            GB.toast(context, "Error saving activity samples", Toast.LENGTH_LONG, GB.ERROR, e);
-        }
+                sampleProvider.addGBActivitySamples(activitySamples.toArray(new GarminActivitySample[0]));
+            } catch (final Exception e) {
+                GB.toast(context, "Error saving activity samples", Toast.LENGTH_LONG, GB.ERROR, e);
+            }
+        });
     }
 
     private void persistEvents() {
@@ -467,23 +545,28 @@ public class FitImporter {
 
         LOG.debug("Will persist {} event samples", events.size());
 
-        try (DBHandler handler = GBApplication.acquireDB()) {
-            final DaoSession session = handler.getDaoSession();
+        final List<GarminEventSample> samples = new ArrayList<>(events);
+        events.clear();
 
-            final Device device = DBHelper.getDevice(gbDevice, session);
-            final User user = DBHelper.getUser(session);
+        writer.execute(() -> {
+            try (DBHandler handler = GBApplication.acquireDB()) {
+                final DaoSession session = handler.getDaoSession();
 
-            final GarminEventSampleProvider sampleProvider = new GarminEventSampleProvider(gbDevice, session);
+                final Device device = DBHelper.getDevice(gbDevice, session);
+                final User user = DBHelper.getUser(session);
 
-            for (final GarminEventSample sample : events) {
-                sample.setDevice(device);
-                sample.setUser(user);
-            }
+                final GarminEventSampleProvider sampleProvider = new GarminEventSampleProvider(gbDevice, session);
 
-            sampleProvider.addSamples(events);
-        } catch (final Exception e) {
-            GB.toast(context, "Error saving event samples", Toast.LENGTH_LONG, GB.ERROR, e);
-        }
+                for (final GarminEventSample sample : samples) {
+                    sample.setDevice(device);
+                    sample.setUser(user);
+                }
+
+                sampleProvider.addSamples(samples);
+            } catch (final Exception e) {
+                GB.toast(context, "Error saving event samples", Toast.LENGTH_LONG, GB.ERROR, e);
+            }
+        });
     }
 
     private void persistSleepStageSamples() {
@@ -493,23 +576,28 @@ public class FitImporter {
 
         LOG.debug("Will persist {} sleep stage samples", sleepStageSamples.size());
 
-        try (DBHandler handler = GBApplication.acquireDB()) {
-            final DaoSession session = handler.getDaoSession();
+        final List<GarminSleepStageSample> samples = new ArrayList<>(sleepStageSamples);
+        sleepStageSamples.clear();
+
+        writer.execute(() -> {
+            try (DBHandler handler = GBApplication.acquireDB()) {
+                final DaoSession session = handler.getDaoSession();
 
-            final Device device = DBHelper.getDevice(gbDevice, session);
-            final User user = DBHelper.getUser(session);
+                final Device device = DBHelper.getDevice(gbDevice, session);
+                final User user = DBHelper.getUser(session);
 
-            final GarminSleepStageSampleProvider sampleProvider = new GarminSleepStageSampleProvider(gbDevice, session);
+                final GarminSleepStageSampleProvider sampleProvider = new GarminSleepStageSampleProvider(gbDevice, session);
 
-            for (final GarminSleepStageSample sample : sleepStageSamples) {
-                sample.setDevice(device);
-                sample.setUser(user);
-            }
+                for (final GarminSleepStageSample sample : samples) {
+                    sample.setDevice(device);
+                    sample.setUser(user);
+                }
 
-            sampleProvider.addSamples(sleepStageSamples);
-        } catch (final Exception e) {
-            GB.toast(context, "Error saving sleep stage samples", Toast.LENGTH_LONG, GB.ERROR, e);
-        }
+                sampleProvider.addSamples(samples);
+            } catch (final Exception e) {
+                GB.toast(context, "Error saving sleep stage samples", Toast.LENGTH_LONG, GB.ERROR, e);
+            }
+        });
     }
 
     private void persistSpo2Samples() {
@@ -517,25 +605,30 @@ public class FitImporter {
             return;
         }
 
-        LOG.debug("Will persist {} spo2 samples", stressSamples.size());
+        LOG.debug("Will persist {} spo2 samples", spo2samples.size());
 
-        try (DBHandler handler = GBApplication.acquireDB()) {
-            final DaoSession session = handler.getDaoSession();
+        final List<GarminSpo2Sample> samples = new ArrayList<>(spo2samples);
+        spo2samples.clear();
 
-            final Device device = DBHelper.getDevice(gbDevice, session);
-            final User user = DBHelper.getUser(session);
+        writer.execute(() -> {
+            try (DBHandler handler = GBApplication.acquireDB()) {
+                final DaoSession session = handler.getDaoSession();
 
-            final GarminSpo2SampleProvider sampleProvider = new GarminSpo2SampleProvider(gbDevice, session);
+                final Device device = DBHelper.getDevice(gbDevice, session);
+                final User user = DBHelper.getUser(session);
 
-            for (final GarminSpo2Sample sample : spo2samples) {
-                sample.setDevice(device);
-                sample.setUser(user);
-            }
+                final GarminSpo2SampleProvider sampleProvider = new GarminSpo2SampleProvider(gbDevice, session);
 
-            sampleProvider.addSamples(spo2samples);
-        } catch (final Exception e) {
-            GB.toast(context, "Error saving spo2 samples", Toast.LENGTH_LONG, GB.ERROR, e);
-        }
+                for (final GarminSpo2Sample sample : samples) {
+                    sample.setDevice(device);
+                    sample.setUser(user);
+                }
+
+                sampleProvider.addSamples(samples);
+            } catch (final Exception e) {
+                GB.toast(context, "Error saving spo2 samples", Toast.LENGTH_LONG, GB.ERROR, e);
+            }
+        });
     }
 
     private void persistStressSamples() {
@@ -545,22 +638,27 @@ public class FitImporter {
 
         LOG.debug("Will persist {} stress samples", stressSamples.size());
 
-        try (DBHandler handler = GBApplication.acquireDB()) {
-            final DaoSession session = handler.getDaoSession();
+        final List<GarminStressSample> samples = new ArrayList<>(stressSamples);
+        stressSamples.clear();
 
-            final Device device = DBHelper.getDevice(gbDevice, session);
-            final User user = DBHelper.getUser(session);
+        writer.execute(() -> {
+            try (DBHandler handler = GBApplication.acquireDB()) {
+                final DaoSession session = handler.getDaoSession();
 
-            final GarminStressSampleProvider sampleProvider = new GarminStressSampleProvider(gbDevice, session);
+                final Device device = DBHelper.getDevice(gbDevice, session);
+                final User user = DBHelper.getUser(session);
 
-            for (final GarminStressSample sample : stressSamples) {
-                sample.setDevice(device);
-                sample.setUser(user);
-            }
+                final GarminStressSampleProvider sampleProvider = new GarminStressSampleProvider(gbDevice, session);
 
-            sampleProvider.addSamples(stressSamples);
-        } catch (final Exception e) {
-            GB.toast(context, "Error saving stress samples", Toast.LENGTH_LONG, GB.ERROR, e);
-        }
+                for (final GarminStressSample sample : samples) {
+                    sample.setDevice(device);
+                    sample.setUser(user);
+                }
+
+                sampleProvider.addSamples(samples);
+            } catch (final Exception e) {
+                GB.toast(context, "Error saving stress samples", Toast.LENGTH_LONG, GB.ERROR, e);
+            }
+        });
     }
 }
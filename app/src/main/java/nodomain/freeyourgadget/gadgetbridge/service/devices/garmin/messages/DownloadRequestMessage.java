@@ -23,6 +23,14 @@ public class DownloadRequestMessage extends GFDIMessage {
         this(GarminMessage.DOWNLOAD_REQUEST, fileIndex, dataSize, requestType, crcSeed, dataSize, dataOffset);
     }
 
+    public REQUEST_TYPE getRequestType() {
+        return requestType;
+    }
+
+    public int getDataOffset() {
+        return dataOffset;
+    }
+
     @Override
     protected boolean generateOutgoing() {
         final MessageWriter writer = new MessageWriter(response);
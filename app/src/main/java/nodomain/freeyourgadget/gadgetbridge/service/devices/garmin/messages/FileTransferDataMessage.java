@@ -45,6 +45,10 @@ public class FileTransferDataMessage extends GFDIMessage {
         return dataOffset;
     }
 
+    public void setStatusMessage(FileTransferDataStatusMessage fileTransferDataStatusMessage) {
+        this.statusMessage = fileTransferDataStatusMessage;
+    }
+
     @Override
     protected boolean generateOutgoing() {
         final MessageWriter writer = new MessageWriter(response);
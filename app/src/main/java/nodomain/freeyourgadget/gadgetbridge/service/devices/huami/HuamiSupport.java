@@ -161,6 +161,7 @@ import nodomain.freeyourgadget.gadgetbridge.model.Weather;
 import nodomain.freeyourgadget.gadgetbridge.model.WeatherSpec;
 import nodomain.freeyourgadget.gadgetbridge.model.WorldClock;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.AbstractBTLEDeviceSupport;
+import nodomain.freeyourgadget.gadgetbridge.service.btle.AbstractTransaction;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.BLETypeConversions;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.BtLEAction;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.GattCharacteristic;
@@ -849,6 +850,7 @@ public abstract class HuamiSupport extends AbstractBTLEDeviceSupport implements
     protected void performPreferredNotification(String task, String notificationOrigin, SimpleNotification simpleNotification, int alertLevel, BtLEAction extraAction) {
         try {
             TransactionBuilder builder = performInitialized(task);
+            builder.setPriority(AbstractTransaction.Priority.HIGH);
             Prefs prefs = GBApplication.getPrefs();
             short vibrateTimes = getPreferredVibrateCount(notificationOrigin, prefs);
             VibrationProfile profile = getPreferredVibrateProfile(notificationOrigin, prefs, vibrateTimes);
@@ -933,6 +935,7 @@ public abstract class HuamiSupport extends AbstractBTLEDeviceSupport implements
 
         try {
             TransactionBuilder builder = performInitialized("new notification");
+            builder.setPriority(AbstractTransaction.Priority.HIGH);
 
             byte customIconId = HuamiIcon.mapToIconId(notificationSpec.type);
             AlertCategory alertCategory = AlertCategory.CustomHuami;
@@ -1287,6 +1290,7 @@ public abstract class HuamiSupport extends AbstractBTLEDeviceSupport implements
             buf.put(new byte[]{0, 0, 0, 2});
             try {
                 TransactionBuilder builder = performInitialized("incoming call");
+                builder.setPriority(AbstractTransaction.Priority.HIGH);
                 writeToChunked(builder, 0, buf.array());
                 builder.queue(getQueue());
             } catch (IOException e) {
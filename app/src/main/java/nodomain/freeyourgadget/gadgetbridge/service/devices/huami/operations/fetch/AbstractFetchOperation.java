@@ -35,19 +35,20 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.UUID;
+import java.util.zip.CRC32;
 
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.Logging;
 import nodomain.freeyourgadget.gadgetbridge.R;
 import nodomain.freeyourgadget.gadgetbridge.devices.huami.HuamiCoordinator;
 import nodomain.freeyourgadget.gadgetbridge.devices.huami.HuamiService;
+import nodomain.freeyourgadget.gadgetbridge.service.btle.AbstractTransaction;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.BLETypeConversions;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.TransactionBuilder;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.actions.SetDeviceBusyAction;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.huami.AbstractHuamiOperation;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.huami.HuamiSupport;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.huami.zeppos.ZeppOsSupport;
-import nodomain.freeyourgadget.gadgetbridge.util.CheckSums;
 import nodomain.freeyourgadget.gadgetbridge.util.GB;
 
 /**
@@ -65,6 +66,8 @@ public abstract class AbstractFetchOperation extends AbstractHuamiOperation {
     protected byte lastPacketCounter;
     protected int expectedDataLength = 0;
     protected final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    // updated as the packets arrive, since the buffer may not hold the whole transfer
+    private final CRC32 crc = new CRC32();
 
     protected boolean operationValid = true; // to mark operation failed midway (eg. out of sync)
 
@@ -89,8 +92,11 @@ public abstract class AbstractFetchOperation extends AbstractHuamiOperation {
     protected void startFetching() throws IOException {
         expectedDataLength = 0;
         lastPacketCounter = -1;
+        crc.reset();
 
         final TransactionBuilder builder = performInitialized(getName());
+        // let notifications and settings changes go first
+        builder.setPriority(AbstractTransaction.Priority.LOW);
         if (fetchCount == 0) {
             builder.add(new SetDeviceBusyAction(getDevice(), taskDescription(), getContext()));
         }
@@ -168,7 +174,7 @@ public abstract class AbstractFetchOperation extends AbstractHuamiOperation {
      * @return whether the checksum was valid
      */
     protected boolean validChecksum(int crc32) {
-        return crc32 == CheckSums.getCRC32(buffer.toByteArray());
+        return crc32 == (int) crc.getValue();
     }
 
     protected abstract boolean processBufferedData();
@@ -185,6 +191,7 @@ public abstract class AbstractFetchOperation extends AbstractHuamiOperation {
         if ((byte) (lastPacketCounter + 1) == value[0]) {
             // TODO we should handle skipped or repeated bytes more gracefully
             lastPacketCounter++;
+            crc.update(value, 1, value.length - 1); // skip the counter
             bufferActivityData(value);
         } else {
             GB.toast("Error " + getName() + ", invalid package counter: " + value[0] + ", last was: " + lastPacketCounter, Toast.LENGTH_LONG, GB.ERROR);
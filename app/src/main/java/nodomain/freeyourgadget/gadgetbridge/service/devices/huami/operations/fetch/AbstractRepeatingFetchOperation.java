@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Locale;
@@ -39,8 +40,14 @@ import nodomain.freeyourgadget.gadgetbridge.util.FileUtils;
 public abstract class AbstractRepeatingFetchOperation extends AbstractFetchOperation {
     private static final Logger LOG = LoggerFactory.getLogger(AbstractRepeatingFetchOperation.class);
 
+    // in streaming mode, complete samples are persisted once this many are buffered
+    private static final int STREAMING_COMMIT_SAMPLES = 240;
+
     protected final HuamiFetchDataType dataType;
 
+    // timestamp of the first sample not persisted yet in streaming mode, null before the first commit
+    private GregorianCalendar streamTimestamp;
+
     public AbstractRepeatingFetchOperation(final HuamiSupport support, final HuamiFetchDataType dataType) {
         super(support);
         this.dataType = dataType;
@@ -64,21 +71,68 @@ public abstract class AbstractRepeatingFetchOperation extends AbstractFetchOpera
      */
     protected abstract boolean handleActivityData(GregorianCalendar timestamp, byte[] bytes);
 
+    /**
+     * The size of a sample, if the data consists of fixed-size samples one minute apart. Such data
+     * is decoded and persisted in chunks while the transfer is still running, and the last sync
+     * timestamp is saved after each chunk, so that an interrupted fetch resumes from there.
+     *
+     * @return the sample size in bytes, or 0 to process all data at the end of the transfer
+     */
+    protected int getStreamingSampleSize() {
+        return 0;
+    }
+
+    @Override
+    protected void bufferActivityData(final byte[] value) {
+        super.bufferActivityData(value);
+
+        final int sampleSize = getStreamingSampleSize();
+        if (sampleSize <= 0 || !operationValid || buffer.size() < sampleSize * STREAMING_COMMIT_SAMPLES) {
+            return;
+        }
+
+        final byte[] bytes = buffer.toByteArray();
+        final int commitLength = bytes.length - bytes.length % sampleSize;
+        final GregorianCalendar timestamp = (GregorianCalendar) getStreamTimestamp().clone();
+        if (!handleActivityData(timestamp, Arrays.copyOf(bytes, commitLength))) {
+            LOG.warn("{} failed to persist streamed samples, aborting", getName());
+            operationValid = false;
+            return;
+        }
+
+        timestamp.add(Calendar.MINUTE, 1);
+        saveLastSyncTimestamp(timestamp);
+        streamTimestamp = timestamp;
+
+        buffer.reset();
+        buffer.write(bytes, commitLength, bytes.length - commitLength);
+    }
+
+    private GregorianCalendar getStreamTimestamp() {
+        return streamTimestamp != null ? streamTimestamp : (GregorianCalendar) this.startTimestamp;
+    }
+
     @Override
     protected boolean processBufferedData() {
         LOG.info("{} has finished round {}, got {} bytes in buffer", getName(), fetchCount, buffer.size());
 
-        if (buffer.size() == 0) {
+        if (buffer.size() == 0 && streamTimestamp == null) {
             return true;
         }
 
         final byte[] bytes = buffer.toByteArray();
-        final GregorianCalendar timestamp = (GregorianCalendar) this.startTimestamp.clone();
+        final GregorianCalendar timestamp = (GregorianCalendar) getStreamTimestamp().clone();
+        streamTimestamp = null;
+
+        if (bytes.length == 0) {
+            // everything was persisted while streaming
+            timestamp.add(Calendar.MINUTE, -1);
+        }
 
         // Uncomment to dump the bytes to external storage for debugging
         //dumpBytesToExternalStorage(bytes, timestamp);
 
-        final boolean handleSuccess = handleActivityData(timestamp, bytes);
+        final boolean handleSuccess = bytes.length == 0 || handleActivityData(timestamp, bytes);
 
         if (!handleSuccess) {
             return false;
@@ -23,12 +23,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.R;
@@ -64,6 +64,11 @@ public class FetchActivityOperation extends AbstractRepeatingFetchOperation {
         return getContext().getString(R.string.busy_task_fetch_activity_data);
     }
 
+    @Override
+    protected int getStreamingSampleSize() {
+        return sampleSize;
+    }
+
     @Override
     protected boolean handleActivityData(final GregorianCalendar timestamp, final byte[] bytes) {
         if (bytes.length % sampleSize != 0) {
@@ -71,52 +76,66 @@ public class FetchActivityOperation extends AbstractRepeatingFetchOperation {
             return false;
         }
 
-        final List<MiBandActivitySample> samples = new ArrayList<>(60 * 24); // 1day per default
-
-        for (int i = 0; i < bytes.length; i += sampleSize) {
-            final MiBandActivitySample sample;
-
-            switch (sampleSize) {
-                case 4:
-                    sample = createSample(bytes, i);
-                    break;
-                case 8:
-                    sample = createExtendedSample(bytes, i);
-                    break;
-                default:
-                    throw new IllegalStateException("Unsupported sample size " + sampleSize);
+        // decode straight into columns, there are thousands of samples when syncing a backlog
+        final int count = bytes.length / sampleSize;
+        final int[] timestamps = new int[count];
+        final int[] rawKinds = new int[count];
+        final int[] rawIntensities = new int[count];
+        final int[] steps = new int[count];
+        final int[] heartRates = new int[count];
+        if (sampleSize != 4 && sampleSize != 8) {
+            throw new IllegalStateException("Unsupported sample size " + sampleSize);
+        }
+        // the extended samples of newer devices have 4 more bytes
+        final boolean extended = sampleSize == 8;
+        final int[] unknown1 = extended ? new int[count] : null;
+        final int[] sleep = extended ? new int[count] : null;
+        final int[] deepSleep = extended ? new int[count] : null;
+        final int[] remSleep = extended ? new int[count] : null;
+
+        for (int i = 0, offset = 0; i < count; i++, offset += sampleSize) {
+            rawKinds[i] = bytes[offset] & 0xff;
+            rawIntensities[i] = bytes[offset + 1] & 0xff;
+            steps[i] = bytes[offset + 2] & 0xff;
+            heartRates[i] = bytes[offset + 3] & 0xff;
+            if (extended) {
+                unknown1[i] = bytes[offset + 4] & 0xff;
+                sleep[i] = bytes[offset + 5] & 0xff;
+                deepSleep[i] = bytes[offset + 6] & 0xff;
+                remSleep[i] = bytes[offset + 7] & 0xff;
             }
+        }
 
-            samples.add(sample);
+        final Map<String, int[]> extraColumns = new HashMap<>();
+        if (extended) {
+            extraColumns.put("unknown1", unknown1);
+            extraColumns.put("sleep", sleep);
+            extraColumns.put("deepSleep", deepSleep);
+            extraColumns.put("remSleep", remSleep);
         }
 
-        if (samples.isEmpty()) {
+        if (count == 0) {
             LOG.info("No samples to save");
             return true;
         }
 
-        LOG.info("Saving {} samples", samples.size());
+        LOG.info("Saving {} samples", count);
 
         // save all the samples that we got
         try (DBHandler handler = GBApplication.acquireDB()) {
             DaoSession session = handler.getDaoSession();
 
             DeviceCoordinator coordinator = getDevice().getDeviceCoordinator();
-            SampleProvider sampleProvider = coordinator.getSampleProvider(getDevice(), session);
+            SampleProvider<?> sampleProvider = coordinator.getSampleProvider(getDevice(), session);
             Device device = DBHelper.getDevice(getDevice(), session);
             User user = DBHelper.getUser(session);
 
-            for (MiBandActivitySample sample : samples) {
-                sample.setDevice(device);
-                sample.setUser(user);
-                sample.setTimestamp((int) (timestamp.getTimeInMillis() / 1000));
-                sample.setProvider(sampleProvider);
-
-                //LOG.debug(sampleToString(sample));
-
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = (int) (timestamp.getTimeInMillis() / 1000);
                 timestamp.add(Calendar.MINUTE, 1);
             }
-            sampleProvider.addGBActivitySamples(samples.toArray(new MiBandActivitySample[0]));
+            sampleProvider.addGBActivitySamples(user.getId(), device.getId(), timestamps, rawKinds, rawIntensities,
+                    steps, heartRates, extraColumns);
 
             timestamp.add(Calendar.MINUTE, -1);
 
@@ -136,30 +155,6 @@ public class FetchActivityOperation extends AbstractRepeatingFetchOperation {
         return true;
     }
 
-    private MiBandActivitySample createSample(byte[] value, int i) {
-        MiBandActivitySample sample = new MiBandActivitySample();
-        sample.setRawKind(value[i] & 0xff);
-        sample.setRawIntensity(value[i + 1] & 0xff);
-        sample.setSteps(value[i + 2] & 0xff);
-        sample.setHeartRate(value[i + 3] & 0xff);
-
-        return sample;
-    }
-
-    private MiBandActivitySample createExtendedSample(byte[] value, int i) {
-        final HuamiExtendedActivitySample huamiExtendedActivitySample = new HuamiExtendedActivitySample();
-        huamiExtendedActivitySample.setRawKind(value[i] & 0xff);
-        huamiExtendedActivitySample.setRawIntensity(value[i + 1] & 0xff);
-        huamiExtendedActivitySample.setSteps(value[i + 2] & 0xff);
-        huamiExtendedActivitySample.setHeartRate(value[i + 3] & 0xff);
-        huamiExtendedActivitySample.setUnknown1(value[i + 4] & 0xff);
-        huamiExtendedActivitySample.setSleep(value[i + 5] & 0xff);
-        huamiExtendedActivitySample.setDeepSleep(value[i + 6] & 0xff);
-        huamiExtendedActivitySample.setRemSleep(value[i + 7] & 0xff);
-
-        return huamiExtendedActivitySample;
-    }
-
     private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.ROOT);
 
     public static String sampleToString(final MiBandActivitySample sample) {
@@ -38,6 +38,7 @@ import nodomain.freeyourgadget.gadgetbridge.export.ActivityTrackExporter;
 import nodomain.freeyourgadget.gadgetbridge.export.GPXExporter;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrack;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrackColumns;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.BLETypeConversions;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.TransactionBuilder;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.huami.AbstractHuamiActivityDetailsParser;
@@ -134,6 +135,9 @@ public class FetchSportsDetailsOperation extends AbstractFetchOperation {
             } catch (final ActivityTrackExporter.GPXTrackEmptyException ex) {
                 exportGpxSuccess = false;
             }
+            if (exportGpxSuccess) {
+                ActivityTrackColumns.save(targetFile, track.getSegments());
+            }
 
             try (DBHandler dbHandler = GBApplication.acquireDB()) {
                 if (exportGpxSuccess) {
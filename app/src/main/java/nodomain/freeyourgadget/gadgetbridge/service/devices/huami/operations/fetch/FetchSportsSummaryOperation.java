@@ -34,6 +34,7 @@ import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
 import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
 import nodomain.freeyourgadget.gadgetbridge.entities.Device;
 import nodomain.freeyourgadget.gadgetbridge.entities.User;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryJsonSummary;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryParser;
 import nodomain.freeyourgadget.gadgetbridge.service.btle.TransactionBuilder;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.huami.AbstractHuamiActivityDetailsParser;
@@ -99,6 +100,7 @@ public class FetchSportsSummaryOperation extends AbstractFetchOperation {
             summary.setDevice(device);
             summary.setUser(user);
             summary.setRawSummaryData(buffer.toByteArray());
+            ActivitySummaryJsonSummary.updateSummaryBinary(summaryParser, summary);
             session.getBaseActivitySummaryDao().insertOrReplace(summary);
         } catch (final Exception ex) {
             GB.toast(getContext(), "Error saving activity summary", Toast.LENGTH_LONG, GB.ERROR, ex);
@@ -1258,6 +1258,12 @@ public class HuaweiSupportProvider {
     }
 
     private void handleSyncFinished() {
+        try (DBHandler db = GBApplication.acquireDB()) {
+            new HuaweiSampleProvider(gbDevice, db.getDaoSession()).updateMergedSamples();
+        } catch (Exception e) {
+            LOG.error("Failed to update merged activity samples", e);
+        }
+
         if (gbDevice.isBusy()) {
             gbDevice.unsetBusyTask();
             gbDevice.sendDeviceUpdateIntent(context);
@@ -1567,8 +1573,10 @@ public class HuaweiSupportProvider {
 
         try (DBHandler db = GBApplication.acquireDB()) {
             HuaweiWorkoutDataSampleDao dao = db.getDaoSession().getHuaweiWorkoutDataSampleDao();
+            int timestampFrom = Integer.MAX_VALUE;
 
             for (Workout.WorkoutData.Response.Data data : dataList) {
+                timestampFrom = Math.min(timestampFrom, data.timestamp);
                 byte[] unknown;
                 if (data.unknownData == null)
                     unknown = null;
@@ -1600,6 +1608,9 @@ public class HuaweiSupportProvider {
                 );
                 dao.insertOrReplace(dataSample);
             }
+
+            // The workout heart rate is part of the merged activity samples
+            HuaweiSampleProvider.invalidateMergedSamples(gbDevice.getAddress(), timestampFrom);
         } catch (Exception e) {
             LOG.error("Failed to add workout data to database", e);
         }
@@ -26,15 +26,18 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.greenrobot.dao.query.CloseableListIterator;
 import de.greenrobot.dao.query.QueryBuilder;
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.R;
 import nodomain.freeyourgadget.gadgetbridge.database.DBHandler;
+import nodomain.freeyourgadget.gadgetbridge.devices.huawei.HuaweiSampleProvider;
 import nodomain.freeyourgadget.gadgetbridge.devices.huawei.packets.Workout;
 import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
 import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummaryDao;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
 import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiWorkoutDataSample;
 import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiWorkoutDataSampleDao;
 import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiWorkoutPaceSample;
@@ -78,6 +81,7 @@ public class HuaweiWorkoutGbParser {
             QueryBuilder<HuaweiWorkoutDataSample> qb = dbHandler.getDaoSession().getHuaweiWorkoutDataSampleDao().queryBuilder().where(
                     HuaweiWorkoutDataSampleDao.Properties.DataErrorHex.notEq("")
             );
+            Map<Long, Integer> workoutTimestamps = new HashMap<>();
             for (HuaweiWorkoutDataSample sample : qb.build().listLazy()) {
                 byte[] data = GB.hexStringToByteArray(new String(sample.getDataErrorHex()));
                 Workout.WorkoutData.Response response = new Workout.WorkoutData.Response(data);
@@ -114,8 +118,20 @@ public class HuaweiWorkoutGbParser {
                     );
 
                     dbHandler.getDaoSession().getHuaweiWorkoutDataSampleDao().insertOrReplace(dataSample);
+
+                    Integer timestampFrom = workoutTimestamps.get(sample.getWorkoutId());
+                    if (timestampFrom == null || timestampFrom > responseData.timestamp)
+                        workoutTimestamps.put(sample.getWorkoutId(), responseData.timestamp);
                 }
             }
+
+            // The re-parsed heart rate is part of the merged activity samples
+            for (Map.Entry<Long, Integer> entry : workoutTimestamps.entrySet()) {
+                HuaweiWorkoutSummarySample summary = dbHandler.getDaoSession().getHuaweiWorkoutSummarySampleDao().load(entry.getKey());
+                Device device = summary != null ? dbHandler.getDaoSession().getDeviceDao().load(summary.getDeviceId()) : null;
+                if (device != null)
+                    HuaweiSampleProvider.invalidateMergedSamples(device.getIdentifier(), entry.getValue());
+            }
         } catch (Exception e) {
             GB.toast("Exception parsing unknown workout data", Toast.LENGTH_SHORT, GB.ERROR, e);
             LOG.error("Exception parsing unknown workout data", e);
@@ -40,6 +40,7 @@ import nodomain.freeyourgadget.gadgetbridge.export.GPXExporter;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityPoint;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrack;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrackColumns;
 import nodomain.freeyourgadget.gadgetbridge.model.GPSCoordinate;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.xiaomi.XiaomiSupport;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.xiaomi.activity.XiaomiActivityFileId;
@@ -126,6 +127,7 @@ public class WorkoutGpsParser extends XiaomiActivityParser {
             }
 
             if (exportGpxSuccess) {
+                ActivityTrackColumns.save(gpxTargetFile, activityTrack.getSegments());
                 summary.setGpxTrack(gpxTargetFile.getAbsolutePath());
             }
             if (rawBytesPath != null) {
@@ -82,6 +82,7 @@ import nodomain.freeyourgadget.gadgetbridge.entities.DaoSession;
 import nodomain.freeyourgadget.gadgetbridge.entities.Device;
 import nodomain.freeyourgadget.gadgetbridge.entities.User;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryJsonSummary;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivitySummaryParser;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.xiaomi.XiaomiSupport;
 import nodomain.freeyourgadget.gadgetbridge.service.devices.xiaomi.activity.XiaomiActivityFileId;
@@ -91,6 +92,11 @@ import nodomain.freeyourgadget.gadgetbridge.util.GB;
 public class WorkoutSummaryParser extends XiaomiActivityParser implements ActivitySummaryParser {
     private static final Logger LOG = LoggerFactory.getLogger(WorkoutSummaryParser.class);
 
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
     @Override
     public boolean parse(final XiaomiSupport support, final XiaomiActivityFileId fileId, final byte[] bytes) {
         BaseActivitySummary summary = new BaseActivitySummary();
@@ -126,6 +132,8 @@ public class WorkoutSummaryParser extends XiaomiActivityParser implements Activi
             existingSummary.setActivityKind(summary.getActivityKind());
             existingSummary.setRawSummaryData(summary.getRawSummaryData());
             existingSummary.setSummaryData(null);  // remove json before saving to database
+            existingSummary.setSummaryBinary(null);
+            ActivitySummaryJsonSummary.updateSummaryBinary(this, existingSummary);
 
             session.getBaseActivitySummaryDao().insertOrReplace(existingSummary);
         } catch (final Exception e) {
@@ -52,7 +52,7 @@ public class DashboardUtils {
     public static int getStepsTotal(DashboardFragment.DashboardData dashboardData) {
         List<GBDevice> devices = GBApplication.app().getDeviceManager().getDevices();
         int totalSteps = 0;
-        try (DBHandler dbHandler = GBApplication.acquireDB()) {
+        try (DBHandler dbHandler = GBApplication.acquireReadOnlyDB()) {
             for (GBDevice dev : devices) {
                 if ((dashboardData.showAllDevices || dashboardData.showDeviceList.contains(dev.getAddress())) && dev.getDeviceCoordinator().supportsActivityTracking()) {
                     totalSteps += getSteps(dev, dbHandler, dashboardData.timeTo);
@@ -80,94 +80,16 @@ public class DashboardUtils {
         return ds.getDailyTotalsForDevice(device, day, db)[1];
     }
 
-    public static long getSleepMinutesTotal(DashboardFragment.DashboardData dashboardData) {
-        List<GBDevice> devices = GBApplication.app().getDeviceManager().getDevices();
-        long totalSleepMinutes = 0;
-        try (DBHandler dbHandler = GBApplication.acquireDB()) {
-            for (GBDevice dev : devices) {
-                if ((dashboardData.showAllDevices || dashboardData.showDeviceList.contains(dev.getAddress())) && dev.getDeviceCoordinator().supportsActivityTracking()) {
-                    totalSleepMinutes += getSleep(dev, dbHandler, dashboardData.timeTo);
-                }
-            }
-        } catch (Exception e) {
-            LOG.warn("Could not calculate total amount of sleep: ", e);
-        }
-        return totalSleepMinutes;
-    }
-
-    public static float getSleepMinutesGoalFactor(DashboardFragment.DashboardData dashboardData) {
-        ActivityUser activityUser = new ActivityUser();
-        int sleepMinutesGoal = activityUser.getSleepDurationGoal() * 60;
-        float goalFactor = (float) getSleepMinutesTotal(dashboardData) / sleepMinutesGoal;
-        if (goalFactor > 1) goalFactor = 1;
-
-        return goalFactor;
-    }
-
-    public static float getDistanceTotal(DashboardFragment.DashboardData dashboardData) {
-        List<GBDevice> devices = GBApplication.app().getDeviceManager().getDevices();
-        long totalSteps = 0;
-        try (DBHandler dbHandler = GBApplication.acquireDB()) {
-            for (GBDevice dev : devices) {
-                if ((dashboardData.showAllDevices || dashboardData.showDeviceList.contains(dev.getAddress())) && dev.getDeviceCoordinator().supportsActivityTracking()) {
-                    totalSteps += getSteps(dev, dbHandler, dashboardData.timeTo);
-                }
-            }
-        } catch (Exception e) {
-            LOG.warn("Could not calculate total distance: ", e);
-        }
-        ActivityUser activityUser = new ActivityUser();
-        int stepLength = activityUser.getStepLengthCm();
-        return totalSteps * stepLength * 0.01f;
-    }
-
-    public static float getDistanceGoalFactor(DashboardFragment.DashboardData dashboardData) {
-        ActivityUser activityUser = new ActivityUser();
-        int distanceGoal = activityUser.getDistanceGoalMeters();
-        float goalFactor = getDistanceTotal(dashboardData) / distanceGoal;
-        if (goalFactor > 1) goalFactor = 1;
-
-        return goalFactor;
-    }
-
-    public static long getActiveMinutesTotal(DashboardFragment.DashboardData dashboardData) {
-        List<GBDevice> devices = GBApplication.app().getDeviceManager().getDevices();
-        long totalActiveMinutes = 0;
-        try (DBHandler dbHandler = GBApplication.acquireDB()) {
-            for (GBDevice dev : devices) {
-                if ((dashboardData.showAllDevices || dashboardData.showDeviceList.contains(dev.getAddress())) && dev.getDeviceCoordinator().supportsActivityTracking()) {
-                    totalActiveMinutes += getActiveMinutes(dev, dbHandler, dashboardData);
-                }
-            }
-        } catch (Exception e) {
-            LOG.warn("Could not calculate total amount of activity: ", e);
-        }
-        return totalActiveMinutes;
-    }
-
-    public static float getActiveMinutesGoalFactor(DashboardFragment.DashboardData dashboardData) {
-        ActivityUser activityUser = new ActivityUser();
-        int activeTimeGoal = activityUser.getActiveTimeGoalMinutes();
-        float goalFactor = (float) getActiveMinutesTotal(dashboardData) / activeTimeGoal;
-        if (goalFactor > 1) goalFactor = 1;
-
-        return goalFactor;
-    }
-
     public static long getActiveMinutes(GBDevice gbDevice, DBHandler db, DashboardFragment.DashboardData dashboardData) {
-        ActivitySession stepSessionsSummary = new ActivitySession();
-        List<ActivitySession> stepSessions;
-        List<? extends ActivitySample> activitySamples = getAllSamples(db, gbDevice, dashboardData);
         StepAnalysis stepAnalysis = new StepAnalysis();
+        List<ActivitySession> stepSessions = stepAnalysis.calculateStepSessions(getProvider(db, gbDevice), dashboardData.timeFrom, dashboardData.timeTo);
+        return getActiveMinutes(stepSessions);
+    }
 
-        boolean isEmptySummary = false;
-        if (activitySamples != null) {
-            stepSessions = stepAnalysis.calculateStepSessions(activitySamples);
-            if (stepSessions.toArray().length == 0) {
-                isEmptySummary = true;
-            }
-            stepSessionsSummary = stepAnalysis.calculateSummary(stepSessions, isEmptySummary);
-        }
+    public static long getActiveMinutes(List<ActivitySession> stepSessions) {
+        StepAnalysis stepAnalysis = new StepAnalysis();
+        boolean isEmptySummary = stepSessions.isEmpty();
+        ActivitySession stepSessionsSummary = stepAnalysis.calculateSummary(stepSessions, isEmptySummary);
         long duration = stepSessionsSummary.getEndTime().getTime() - stepSessionsSummary.getStartTime().getTime();
         return duration / 1000 / 60;
     }
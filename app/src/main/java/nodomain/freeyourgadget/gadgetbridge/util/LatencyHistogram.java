@@ -0,0 +1,85 @@
+package nodomain.freeyourgadget.gadgetbridge.util;
+
+import java.util.Locale;
+
+/**
+ * A histogram of durations, in exponentially growing buckets, cheap enough to be updated on every
+ * bluetooth action or database access.
+ */
+public class LatencyHistogram {
+    // upper bounds of the buckets, the last bucket holds everything above
+    private static final long[] BUCKET_BOUNDS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private final long[] counts = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+    private long total;
+    private long sumMillis;
+    private long maxMillis;
+
+    public synchronized void record(final long millis) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        total++;
+        sumMillis += millis;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()}.
+     */
+    public void recordSince(final long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000000L);
+    }
+
+    public synchronized long getCount() {
+        return total;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile, or the maximum if it is
+     * in the last bucket.
+     */
+    public synchronized long getPercentileMillis(final double percentile) {
+        final long rank = (long) Math.ceil(total * percentile / 100d);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_MILLIS[i], maxMillis);
+            }
+        }
+        return maxMillis;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        total = 0;
+        sumMillis = 0;
+        maxMillis = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (total == 0) {
+            return "n=0";
+        }
+        return String.format(
+                Locale.ROOT,
+                "n=%d avg=%dms p50<=%dms p95<=%dms p99<=%dms max=%dms",
+                total,
+                sumMillis / total,
+                getPercentileMillis(50),
+                getPercentileMillis(95),
+                getPercentileMillis(99),
+                maxMillis
+        );
+    }
+}
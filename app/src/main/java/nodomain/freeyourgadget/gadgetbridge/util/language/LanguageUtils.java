@@ -29,6 +29,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import nodomain.freeyourgadget.gadgetbridge.GBApplication;
 import nodomain.freeyourgadget.gadgetbridge.devices.DeviceCoordinator;
@@ -92,6 +93,12 @@ public class LanguageUtils {
         put("armenian", new ArmenianTransliterator());
     }};
 
+    /**
+     * The combined transliterators of the configured languages, by languages preference and
+     * whether ascii flattening is appended, so each combination is only compiled once.
+     */
+    private static final Map<String, Transliterator> COMBINED_TRANSLITERATORS = new ConcurrentHashMap<>();
+
     /**
      * Get a {@link Transliterator} for a specific language.
      *
@@ -123,8 +130,26 @@ public class LanguageUtils {
             return null;
         }
 
+        // For now, assume that if the device does not support unicode emoji, it also doesn't
+        // support utf, so flatten to ASCII. This allows for devices that support unicode
+        // characters to still use transliterators for languages not supported by the device,
+        // and still get emoji
+        // TODO: Maybe this should be configurable, or at least separate from the emoji setting
+        final boolean flattenToAscii = !coordinator.supportsUnicodeEmojis();
+        final String key = transliterateLanguagesPref + (flattenToAscii ? "|ascii" : "");
+
+        Transliterator transliterator = COMBINED_TRANSLITERATORS.get(key);
+        if (transliterator == null) {
+            transliterator = createTransliterator(transliterateLanguagesPref, flattenToAscii);
+            COMBINED_TRANSLITERATORS.put(key, transliterator);
+        }
+
+        return transliterator;
+    }
+
+    private static Transliterator createTransliterator(final String transliterateLanguagesPref, final boolean flattenToAscii) {
         final List<String> languages = Arrays.asList(transliterateLanguagesPref.split(","));
-        final List<Transliterator> transliterators = new ArrayList<>(languages.size());
+        final List<Transliterator> transliterators = new ArrayList<>(languages.size() + 1);
 
         for (String language : languages) {
             if (!TRANSLITERATORS_MAP.containsKey(language)) {
@@ -135,12 +160,7 @@ public class LanguageUtils {
             transliterators.add(TRANSLITERATORS_MAP.get(language));
         }
 
-        if (!coordinator.supportsUnicodeEmojis()) {
-            // For now, assume that if the device does not support unicode emoji, it also doesn't
-            // support utf, so flatten to ASCII. This allows for devices that support unicode
-            // characters to still use transliterators for languages not supported by the device,
-            // and still get emoji
-            // TODO: Maybe this should be configurable, or at least separate from the emoji setting
+        if (flattenToAscii) {
             transliterators.add(new FlattenToAsciiTransliterator());
         }
 
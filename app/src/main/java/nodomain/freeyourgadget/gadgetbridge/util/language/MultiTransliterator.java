@@ -16,15 +16,39 @@
     along with this program.  If not, see <https://www.gnu.org/licenses/>. */
 package nodomain.freeyourgadget.gadgetbridge.util.language;
 
-import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class MultiTransliterator implements Transliterator {
     private final List<Transliterator> transliterators;
 
     public MultiTransliterator(final List<Transliterator> transliterators) {
-        this.transliterators = transliterators;
+        this.transliterators = combine(transliterators);
+    }
+
+    /**
+     * Combines each run of consecutive {@link SimpleTransliterator}s into a single table, so that
+     * they are applied in one pass instead of one pass per language.
+     */
+    private static List<Transliterator> combine(final List<Transliterator> transliterators) {
+        final List<Transliterator> combined = new ArrayList<>(transliterators.size());
+        TransliterationTable table = null;
+        for (final Transliterator transliterator : transliterators) {
+            if (transliterator instanceof SimpleTransliterator) {
+                final TransliterationTable next = ((SimpleTransliterator) transliterator).getTable();
+                table = table == null ? next : table.andThen(next);
+            } else {
+                if (table != null) {
+                    combined.add(table);
+                    table = null;
+                }
+                combined.add(transliterator);
+            }
+        }
+        if (table != null) {
+            combined.add(table);
+        }
+        return combined;
     }
 
     @Override
@@ -23,6 +23,7 @@ import java.util.Map;
 public class SimpleTransliterator implements Transliterator {
     private final Map<Character, String> transliterateMap;
     private final boolean convertToLowercase;
+    private volatile TransliterationTable table;
 
     public SimpleTransliterator(final Map<Character, String> transliterateMap, final boolean convertToLowercase) {
         this.transliterateMap = transliterateMap;
@@ -35,20 +36,59 @@ public class SimpleTransliterator implements Transliterator {
 
     @Override
     public String transliterate(String txt) {
+        return getTable().transliterate(txt);
+    }
+
+    /**
+     * Compiles the map into a {@link TransliterationTable} on first use. Only the keys of the map
+     * and, when converting to lowercase, chars with a different lowercase form can be replaced,
+     * so those are the only chars that need to be looked up.
+     */
+    TransliterationTable getTable() {
+        TransliterationTable result = table;
+        if (result == null) {
+            synchronized (this) {
+                result = table;
+                if (result == null) {
+                    result = new TransliterationTable();
+                    for (final Character key : transliterateMap.keySet()) {
+                        putIfReplaced(result, key);
+                    }
+                    if (convertToLowercase) {
+                        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+                            if (Character.toLowerCase((char) c) != c) {
+                                putIfReplaced(result, (char) c);
+                            }
+                        }
+                    }
+                    table = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Transliterates char by char, without the compiled table. This is the reference the table
+     * has to match.
+     */
+    String transliterateCharByChar(final String txt) {
         if (txt == null || txt.isEmpty()) {
             return txt;
         }
 
         final StringBuilder messageBuilder = new StringBuilder();
-
-        // Simple, char-by-char transliteration.
-        final char[] chars = txt.toCharArray();
-        for (char c : chars) {
-            messageBuilder.append(transliterate(c));
+        for (int i = 0; i < txt.length(); i++) {
+            messageBuilder.append(transliterate(txt.charAt(i)));
         }
-        final String message = messageBuilder.toString();
+        return messageBuilder.toString();
+    }
 
-        return message;
+    private void putIfReplaced(final TransliterationTable target, final char c) {
+        final String replacement = transliterate(c);
+        if (replacement.length() != 1 || replacement.charAt(0) != c) {
+            target.put(c, replacement);
+        }
     }
 
     private String transliterate(final char c) {
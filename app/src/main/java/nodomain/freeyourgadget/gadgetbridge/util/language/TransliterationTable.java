@@ -0,0 +1,108 @@
+package nodomain.freeyourgadget.gadgetbridge.util.language;
+
+import androidx.annotation.Nullable;
+
+/**
+ * A char-indexed replacement table, split into pages of 256 chars that are only allocated when
+ * they contain a replacement. Transliterates a string in a single pass, and returns the input
+ * itself if none of its chars need to be replaced.
+ * <p>
+ * Tables of consecutive {@link SimpleTransliterator}s can be combined with {@link #andThen}, which
+ * gives the same result as applying them one after the other, since each of them replaces every
+ * char independently of its neighbours.
+ */
+final class TransliterationTable implements Transliterator {
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * Builders larger than this are not kept for the next call, so a single huge message does not
+     * stay in memory.
+     */
+    private static final int MAX_BUILDER_CAPACITY = 4096;
+
+    private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private final String[][] pages = new String[PAGE_SIZE][];
+
+    void put(final char c, final String replacement) {
+        String[] page = pages[c >>> PAGE_BITS];
+        if (page == null) {
+            page = new String[PAGE_SIZE];
+            pages[c >>> PAGE_BITS] = page;
+        }
+        page[c & PAGE_MASK] = replacement;
+    }
+
+    /**
+     * @return the replacement for the char, or null if it is kept as is
+     */
+    @Nullable
+    String get(final char c) {
+        final String[] page = pages[c >>> PAGE_BITS];
+        return page != null ? page[c & PAGE_MASK] : null;
+    }
+
+    /**
+     * Combines this table with the next one into a new table, which replaces each char by the
+     * result of transliterating its replacement in this table with the next one.
+     */
+    TransliterationTable andThen(final TransliterationTable next) {
+        final TransliterationTable combined = new TransliterationTable();
+        for (int p = 0; p < PAGE_SIZE; p++) {
+            if (pages[p] == null && next.pages[p] == null) {
+                continue;
+            }
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                final char c = (char) (p << PAGE_BITS | i);
+                final String first = get(c);
+                final String replacement = first != null ? next.transliterate(first) : next.get(c);
+                if (replacement != null && !(replacement.length() == 1 && replacement.charAt(0) == c)) {
+                    combined.put(c, replacement);
+                }
+            }
+        }
+        return combined;
+    }
+
+    @Override
+    public String transliterate(final String txt) {
+        if (txt == null || txt.isEmpty()) {
+            return txt;
+        }
+
+        final int length = txt.length();
+        int i = 0;
+        while (i < length && get(txt.charAt(i)) == null) {
+            i++;
+        }
+        if (i == length) {
+            return txt;
+        }
+
+        final StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        builder.append(txt, 0, i);
+        for (; i < length; i++) {
+            final char c = txt.charAt(i);
+            final String replacement = get(c);
+            if (replacement != null) {
+                builder.append(replacement);
+            } else {
+                builder.append(c);
+            }
+        }
+
+        final String result = builder.toString();
+        if (builder.capacity() > MAX_BUILDER_CAPACITY) {
+            BUILDER.remove();
+        }
+        return result;
+    }
+}
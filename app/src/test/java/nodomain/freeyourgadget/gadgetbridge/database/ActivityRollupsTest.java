@@ -0,0 +1,281 @@
+package nodomain.freeyourgadget.gadgetbridge.database;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import nodomain.freeyourgadget.gadgetbridge.GBApplication;
+import nodomain.freeyourgadget.gadgetbridge.activities.charts.ActivityAnalysis;
+import nodomain.freeyourgadget.gadgetbridge.devices.huami.HuamiConst;
+import nodomain.freeyourgadget.gadgetbridge.devices.miband.AbstractMiBandSampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.miband.MiBand2SampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.miband.MiBandSampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.entities.ActivityDayRollup;
+import nodomain.freeyourgadget.gadgetbridge.entities.ActivityHourRollup;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.entities.MiBandActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.entities.User;
+import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityAmount;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityAmounts;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityUser;
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ActivityRollupsTest extends TestBase {
+    private GBDevice dummyGBDevice;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        dummyGBDevice = createDummyGDevice("00:00:00:00:20");
+    }
+
+    private MiBandActivitySample createSample(AbstractMiBandSampleProvider provider, int rawKind, int timestamp, int steps, int heartRate, User user, Device device) {
+        MiBandActivitySample sample = provider.createActivitySample();
+        sample.setProvider(provider);
+        sample.setRawKind(rawKind);
+        sample.setTimestamp(timestamp);
+        sample.setRawIntensity(10);
+        sample.setSteps(steps);
+        sample.setHeartRate(heartRate);
+        sample.setUserId(user.getId());
+        sample.setDeviceId(device.getId());
+        return sample;
+    }
+
+    @Test
+    public void testDayRollupMatchesAnalysis() {
+        MiBandSampleProvider provider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        Calendar day = Calendar.getInstance();
+        day.set(2024, Calendar.MARCH, 10, 0, 0, 0);
+        int midnight = (int) (day.getTimeInMillis() / 1000);
+
+        MiBandActivitySample[] samples = new MiBandActivitySample[6 * 60];
+        for (int i = 0; i < samples.length; i++) {
+            int rawKind = i < 120 ? MiBandSampleProvider.TYPE_DEEP_SLEEP : (i < 240 ? MiBandSampleProvider.TYPE_LIGHT_SLEEP : MiBandSampleProvider.TYPE_ACTIVITY);
+            samples[i] = createSample(provider, rawKind, midnight + i * 60, i >= 240 ? 10 : 0, 60 + (i % 20), user, device);
+        }
+        provider.addGBActivitySamples(samples);
+
+        ActivityDayRollup rollup = ActivityRollups.getDayRollup(provider, day);
+        assertNotNull(rollup);
+
+        ActivityAmounts amounts = new ActivityAnalysis().calculateActivityAmounts(provider, midnight, midnight + 24 * 60 * 60 - 1);
+        long steps = 0;
+        for (ActivityAmount amount : amounts.getAmounts()) {
+            steps += amount.getTotalSteps();
+            if (amount.getActivityKind() == ActivityKind.TYPE_ACTIVITY) {
+                assertEquals(amount.getTotalSeconds(), rollup.getActiveSeconds());
+            }
+        }
+        assertEquals(steps, rollup.getSteps());
+        assertEquals(120 * 10, rollup.getSteps());
+        assertEquals(60, rollup.getHeartRateMin());
+        assertEquals(79, rollup.getHeartRateMax());
+        assertEquals(ActivityRollups.getDistanceMeters(120 * 10, new ActivityUser()), rollup.getDistance());
+
+        List<ActivityHourRollup> hours = ActivityRollups.getHourRollups(provider, day);
+        assertEquals(24, hours.size());
+        int hourSteps = 0;
+        for (ActivityHourRollup hour : hours) {
+            hourSteps += hour.getSteps();
+        }
+        assertEquals(rollup.getSteps(), hourSteps);
+
+        // writing more samples must invalidate the rollup
+        provider.addGBActivitySample(createSample(provider, MiBandSampleProvider.TYPE_ACTIVITY, midnight + 7 * 60 * 60, 100, 90, user, device));
+        rollup = ActivityRollups.getDayRollup(provider, day);
+        assertNotNull(rollup);
+        assertEquals(120 * 10 + 100, rollup.getSteps());
+        assertEquals(90, rollup.getHeartRateMax());
+
+        // as well as samples written without the sample provider
+        daoSession.getMiBandActivitySampleDao().insertOrReplace(createSample(provider, MiBandSampleProvider.TYPE_ACTIVITY, midnight + 8 * 60 * 60, 50, 70, user, device));
+        rollup = ActivityRollups.getDayRollup(provider, day);
+        assertNotNull(rollup);
+        assertEquals(120 * 10 + 150, rollup.getSteps());
+
+        // and deleted samples
+        daoSession.getMiBandActivitySampleDao().deleteAll();
+        rollup = ActivityRollups.getDayRollup(provider, day);
+        assertNotNull(rollup);
+        assertEquals(0, rollup.getSteps());
+    }
+
+    @Test
+    public void testHourRollupsOnDstChange() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+        try {
+            MiBandSampleProvider provider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+            User user = DBHelper.getUser(daoSession);
+            Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+            // the clocks are set forward by an hour on that day
+            Calendar day = Calendar.getInstance();
+            day.clear();
+            day.set(2024, Calendar.MARCH, 31);
+            Calendar nextDay = (Calendar) day.clone();
+            nextDay.add(Calendar.DATE, 1);
+            int midnight = (int) (day.getTimeInMillis() / 1000);
+            int nextMidnight = (int) (nextDay.getTimeInMillis() / 1000);
+            assertEquals(23 * 60 * 60, nextMidnight - midnight);
+
+            // a step every 30 minutes until the end of the next day
+            MiBandActivitySample[] samples = new MiBandActivitySample[(23 + 24) * 2];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = createSample(provider, MiBandSampleProvider.TYPE_ACTIVITY, midnight + i * 30 * 60, 1, 70, user, device);
+            }
+            provider.addGBActivitySamples(samples);
+
+            List<ActivityHourRollup> hours = ActivityRollups.getHourRollups(provider, day);
+            assertEquals(23, hours.size());
+            List<ActivityHourRollup> nextHours = ActivityRollups.getHourRollups(provider, nextDay);
+            assertEquals(24, nextHours.size());
+
+            // now both days are stored, and the last hour of the first day must not collide
+            // with the first hour of the next one
+            hours = ActivityRollups.getHourRollups(provider, day);
+            assertEquals(23, hours.size());
+            for (int i = 0; i < hours.size(); i++) {
+                assertEquals(midnight + i * 60 * 60, hours.get(i).getTimestamp());
+                assertEquals(2, hours.get(i).getSteps());
+            }
+            nextHours = ActivityRollups.getHourRollups(provider, nextDay);
+            assertEquals(24, nextHours.size());
+            assertEquals(nextMidnight, nextHours.get(0).getTimestamp());
+            assertEquals(2, nextHours.get(0).getSteps());
+            assertEquals(23 * 2, ActivityRollups.getDayRollup(provider, day).getSteps());
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void testDailyAmountsMatchPerDayAnalysis() {
+        MiBandSampleProvider provider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        Calendar firstDay = Calendar.getInstance();
+        firstDay.set(2024, Calendar.APRIL, 1, 0, 0, 0);
+        int midnight = (int) (firstDay.getTimeInMillis() / 1000);
+
+        // one sample every 10 minutes over 3 days, sleeping at night
+        MiBandActivitySample[] samples = new MiBandActivitySample[3 * 24 * 6];
+        for (int i = 0; i < samples.length; i++) {
+            int hour = (i / 6) % 24;
+            int rawKind = hour < 7 ? MiBandSampleProvider.TYPE_LIGHT_SLEEP : MiBandSampleProvider.TYPE_ACTIVITY;
+            samples[i] = createSample(provider, rawKind, midnight + i * 600, hour < 7 ? 0 : i % 50, 70, user, device);
+        }
+        provider.addGBActivitySamples(samples);
+
+        ActivityAnalysis analysis = new ActivityAnalysis();
+        for (int offsetHours : new int[]{0, ActivityRollups.SLEEP_OFFSET_HOURS}) {
+            ActivityAmounts[] daily = analysis.calculateDailyActivityAmounts(provider, firstDay, 3, offsetHours);
+            assertEquals(3, daily.length);
+            for (int i = 0; i < 3; i++) {
+                int dayStart = midnight + i * 24 * 60 * 60 + offsetHours * 60 * 60;
+                ActivityAmounts expected = analysis.calculateActivityAmounts(provider, dayStart, dayStart + 24 * 60 * 60 - 1);
+                assertEquals(expected.getAmounts().size(), daily[i].getAmounts().size());
+                for (int j = 0; j < expected.getAmounts().size(); j++) {
+                    assertEquals(expected.getAmounts().get(j).getActivityKind(), daily[i].getAmounts().get(j).getActivityKind());
+                    assertEquals(expected.getAmounts().get(j).getTotalSeconds(), daily[i].getAmounts().get(j).getTotalSeconds());
+                    assertEquals(expected.getAmounts().get(j).getTotalSteps(), daily[i].getAmounts().get(j).getTotalSteps());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDailyAmountsMatchRollupsOnDstChange() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+        try {
+            MiBandSampleProvider provider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+            User user = DBHelper.getUser(daoSession);
+            Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+            // the clocks are set back by an hour on that day
+            Calendar day = Calendar.getInstance();
+            day.clear();
+            day.set(2024, Calendar.OCTOBER, 27);
+            int midnight = (int) (day.getTimeInMillis() / 1000);
+
+            // a step every 30 minutes from the day before until the day after
+            MiBandActivitySample[] samples = new MiBandActivitySample[3 * 24 * 2];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = createSample(provider, MiBandSampleProvider.TYPE_ACTIVITY, midnight - 24 * 60 * 60 + i * 30 * 60, 1, 70, user, device);
+            }
+            provider.addGBActivitySamples(samples);
+
+            // both paths count the 25 hours of the day, and only those
+            ActivityAmounts[] daily = new ActivityAnalysis().calculateDailyActivityAmounts(provider, day, 1, 0);
+            long steps = 0;
+            for (ActivityAmount amount : daily[0].getAmounts()) {
+                steps += amount.getTotalSteps();
+            }
+            assertEquals(25 * 2, steps);
+            assertEquals(25 * 2, ActivityRollups.getDayRollup(provider, day).getSteps());
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void testRollupsOfPostProcessedSamples() {
+        MiBand2SampleProvider provider = new MiBand2SampleProvider(dummyGBDevice, daoSession);
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        Calendar day = Calendar.getInstance();
+        day.set(2024, Calendar.MAY, 5, 0, 0, 0);
+        int midnight = (int) (day.getTimeInMillis() / 1000);
+
+        // light sleep, continued by samples without a kind of their own
+        MiBandActivitySample[] samples = new MiBandActivitySample[60];
+        for (int i = 0; i < samples.length; i++) {
+            int rawKind = i == 0 ? HuamiConst.TYPE_LIGHT_SLEEP : HuamiConst.TYPE_NO_CHANGE;
+            samples[i] = createSample(provider, rawKind, midnight + i * 60, 0, 60, user, device);
+        }
+        provider.addGBActivitySamples(samples);
+
+        ActivityDayRollup rollup = ActivityRollups.getDayRollup(provider, day);
+        assertNotNull(rollup);
+        assertEquals(59 * 60, rollup.getLightSleepSeconds());
+        assertEquals(0, rollup.getActiveSeconds());
+    }
+
+    @Test
+    public void testStepLengthChangeRecomputesDistance() {
+        MiBandSampleProvider provider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        Calendar day = Calendar.getInstance();
+        day.set(2024, Calendar.MAY, 5, 0, 0, 0);
+        int midnight = (int) (day.getTimeInMillis() / 1000);
+        provider.addGBActivitySamples(new MiBandActivitySample[]{
+                createSample(provider, MiBandSampleProvider.TYPE_ACTIVITY, midnight + 60, 1000, 70, user, device),
+                createSample(provider, MiBandSampleProvider.TYPE_ACTIVITY, midnight + 120, 1000, 70, user, device),
+        });
+
+        GBApplication.getPrefs().getPreferences().edit().putString(ActivityUser.PREF_USER_STEP_LENGTH_CM, "50").commit();
+        assertEquals(1000, ActivityRollups.getDayRollup(provider, day).getDistance());
+        assertEquals(1000, ActivityRollups.getStoredDayRollups(provider, day, 1)[0].getDistance());
+
+        GBApplication.getPrefs().getPreferences().edit().putString(ActivityUser.PREF_USER_STEP_LENGTH_CM, "80").commit();
+        assertNull(ActivityRollups.getStoredDayRollups(provider, day, 1)[0]);
+        assertEquals(1600, ActivityRollups.getDayRollup(provider, day).getDistance());
+    }
+}
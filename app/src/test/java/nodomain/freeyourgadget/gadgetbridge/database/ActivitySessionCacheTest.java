@@ -0,0 +1,115 @@
+package nodomain.freeyourgadget.gadgetbridge.database;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import nodomain.freeyourgadget.gadgetbridge.GBApplication;
+import nodomain.freeyourgadget.gadgetbridge.devices.miband.MiBandSampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.xiaomi.XiaomiSampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.entities.MiBandActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.entities.User;
+import nodomain.freeyourgadget.gadgetbridge.entities.XiaomiSleepStageSample;
+import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ActivitySessionCacheTest extends TestBase {
+    private static final byte[] DATA = {1, 2, 3};
+
+    private GBDevice dummyGBDevice;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        dummyGBDevice = createDummyGDevice("00:00:00:00:30");
+    }
+
+    @Test
+    public void testStoresPastDaysOnly() throws Exception {
+        MiBandSampleProvider provider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        Calendar day = Calendar.getInstance();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        int today = (int) (day.getTimeInMillis() / 1000);
+        int yesterday = today - 24 * 60 * 60;
+
+        ActivitySessionCache.put(provider, ActivitySessionCache.TYPE_SLEEP, yesterday, today - 1, 1, DATA, GBApplication.getDbWriteGeneration());
+        assertArrayEquals(DATA, ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_SLEEP, yesterday, today - 1, 1));
+        assertNull(ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_SLEEP, yesterday, today - 1, 2));
+
+        // the current day is not over yet
+        ActivitySessionCache.put(provider, ActivitySessionCache.TYPE_SLEEP, yesterday, today + 60, 1, DATA, GBApplication.getDbWriteGeneration());
+        assertNull(ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_SLEEP, yesterday, today + 60, 1));
+        assertEquals(1, daoSession.getCachedActivitySessionsDao().count());
+
+        // nor are sessions calculated before the database was written
+        long generation = GBApplication.getDbWriteGeneration();
+        dbHandler.close();
+        dbHandler = GBApplication.acquireDB();
+        ActivitySessionCache.put(provider, ActivitySessionCache.TYPE_STEPS, yesterday, today - 1, 1, DATA, generation);
+        assertNull(ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_STEPS, yesterday, today - 1, 1));
+    }
+
+    @Test
+    public void testWritingSamplesDropsSessions() {
+        MiBandSampleProvider provider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        Calendar day = Calendar.getInstance();
+        day.set(2024, Calendar.MAY, 5, 0, 0, 0);
+        int from = (int) (day.getTimeInMillis() / 1000);
+        int to = from + 24 * 60 * 60 - 1;
+
+        ActivitySessionCache.put(provider, ActivitySessionCache.TYPE_SLEEP, from, to, 1, DATA, GBApplication.getDbWriteGeneration());
+        ActivitySessionCache.put(provider, ActivitySessionCache.TYPE_SLEEP, to + 1, to + 24 * 60 * 60, 1, DATA, GBApplication.getDbWriteGeneration());
+
+        MiBandActivitySample sample = provider.createActivitySample();
+        sample.setTimestamp(from + 60 * 60);
+        sample.setRawKind(MiBandSampleProvider.TYPE_LIGHT_SLEEP);
+        sample.setUserId(user.getId());
+        sample.setDeviceId(device.getId());
+        provider.addGBActivitySample(sample);
+
+        assertNull(ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_SLEEP, from, to, 1));
+        assertArrayEquals(DATA, ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_SLEEP, to + 1, to + 24 * 60 * 60, 1));
+    }
+
+    @Test
+    public void testWritingOverlaysDropsLaterSessions() {
+        // the samples are post-processed, so the sessions depend on the sleep stages as well
+        XiaomiSampleProvider provider = new XiaomiSampleProvider(dummyGBDevice, daoSession);
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        Calendar day = Calendar.getInstance();
+        day.set(2024, Calendar.MAY, 5, 0, 0, 0);
+        int from = (int) (day.getTimeInMillis() / 1000);
+        int dayLength = 24 * 60 * 60;
+
+        for (int i = 0; i < 3; i++) {
+            ActivitySessionCache.put(provider, ActivitySessionCache.TYPE_SLEEP, from + i * dayLength, from + (i + 1) * dayLength - 1, 1, DATA, GBApplication.getDbWriteGeneration());
+        }
+        assertEquals(3, daoSession.getCachedActivitySessionsDao().count());
+
+        XiaomiSleepStageSample stage = new XiaomiSleepStageSample();
+        stage.setTimestamp((from + 2 * dayLength + 12 * 60 * 60) * 1000L);
+        stage.setStage(2);
+        stage.setUserId(user.getId());
+        stage.setDeviceId(device.getId());
+        daoSession.getXiaomiSleepStageSampleDao().insert(stage);
+
+        // a sleep stage may apply to the samples before it, so the previous day is dropped as well
+        assertArrayEquals(DATA, ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_SLEEP, from, from + dayLength - 1, 1));
+        assertNull(ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_SLEEP, from + dayLength, from + 2 * dayLength - 1, 1));
+        assertNull(ActivitySessionCache.get(provider, ActivitySessionCache.TYPE_SLEEP, from + 2 * dayLength, from + 3 * dayLength - 1, 1));
+    }
+}
@@ -0,0 +1,83 @@
+package nodomain.freeyourgadget.gadgetbridge.database;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.devices.miband.MiBandSampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.entities.MiBandActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.entities.User;
+import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the bulk insert of samples stores the same rows as inserting the sample entities.
+ * The throughput of both is compared by the BulkInsertBenchmark of the benchmark module.
+ */
+public class BulkInsertTest extends TestBase {
+    private static final int SAMPLES = 100;
+    private static final int START = 1700000000;
+
+    @Test
+    public void testBulkInsertMatchesEntityInsert() {
+        final User user = DBHelper.getUser(daoSession);
+        final GBDevice entityGBDevice = createDummyGDevice("00:00:00:00:30");
+        final GBDevice bulkGBDevice = createDummyGDevice("00:00:00:00:31");
+        final Device entityDevice = DBHelper.getDevice(entityGBDevice, daoSession);
+        final Device bulkDevice = DBHelper.getDevice(bulkGBDevice, daoSession);
+        final MiBandSampleProvider entityProvider = new MiBandSampleProvider(entityGBDevice, daoSession);
+        final MiBandSampleProvider bulkProvider = new MiBandSampleProvider(bulkGBDevice, daoSession);
+        assertTrue(bulkProvider.canBulkInsert());
+
+        final int[] timestamps = new int[SAMPLES];
+        final int[] rawKinds = new int[SAMPLES];
+        final int[] rawIntensities = new int[SAMPLES];
+        final int[] steps = new int[SAMPLES];
+        final int[] heartRates = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            timestamps[i] = START + i * 60;
+            rawKinds[i] = i % 3 == 0 ? MiBandSampleProvider.TYPE_LIGHT_SLEEP : MiBandSampleProvider.TYPE_ACTIVITY;
+            rawIntensities[i] = i % 100;
+            steps[i] = i % 120;
+            heartRates[i] = 50 + i % 90;
+        }
+
+        final MiBandActivitySample[] samples = new MiBandActivitySample[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            final MiBandActivitySample sample = new MiBandActivitySample();
+            sample.setDevice(entityDevice);
+            sample.setUser(user);
+            sample.setTimestamp(timestamps[i]);
+            sample.setRawKind(rawKinds[i]);
+            sample.setRawIntensity(rawIntensities[i]);
+            sample.setSteps(steps[i]);
+            sample.setHeartRate(heartRates[i]);
+            samples[i] = sample;
+        }
+        daoSession.getMiBandActivitySampleDao().insertOrReplaceInTx(samples);
+
+        // an existing row is replaced
+        bulkProvider.addGBActivitySamples(user.getId(), bulkDevice.getId(), new int[]{timestamps[0]}, new int[]{0},
+                new int[]{0}, new int[]{0}, new int[]{0}, null);
+        bulkProvider.addGBActivitySamples(user.getId(), bulkDevice.getId(), timestamps, rawKinds, rawIntensities,
+                steps, heartRates, null);
+
+        final List<MiBandActivitySample> expected = entityProvider.getAllActivitySamples(START, START + SAMPLES * 60);
+        final List<MiBandActivitySample> actual = bulkProvider.getAllActivitySamples(START, START + SAMPLES * 60);
+        assertEquals(SAMPLES, expected.size());
+        assertEquals(SAMPLES, actual.size());
+        for (int i = 0; i < SAMPLES; i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getRawKind(), actual.get(i).getRawKind());
+            assertEquals(expected.get(i).getRawIntensity(), actual.get(i).getRawIntensity());
+            assertEquals(expected.get(i).getSteps(), actual.get(i).getSteps());
+            assertEquals(expected.get(i).getHeartRate(), actual.get(i).getHeartRate());
+            assertEquals(user.getId().longValue(), actual.get(i).getUserId());
+            assertEquals(bulkDevice.getId().longValue(), actual.get(i).getDeviceId());
+        }
+    }
+}
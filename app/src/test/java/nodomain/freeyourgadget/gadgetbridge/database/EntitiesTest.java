@@ -202,4 +202,28 @@ public class EntitiesTest extends TestBase {
 
         assertEquals("2.0", DBHelper.getDeviceAttributes(deviceNew).getFirmwareVersion1());
     }
+
+    @Test
+    public void testFindDeviceCache() {
+        GBDevice dummyGBDevice = createDummyGDevice("00:00:00:00:03");
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+        assertNotNull(device);
+
+        long[] statsBefore = DBHelper.getDeviceCacheStats();
+        assertEquals(device.getId(), DBHelper.findDevice(dummyGBDevice, daoSession).getId());
+        assertEquals(device.getId(), DBHelper.findDevice(dummyGBDevice, daoSession).getId());
+        long[] statsAfter = DBHelper.getDeviceCacheStats();
+        assertEquals(statsBefore[0] + 2, statsAfter[0]);
+        assertEquals(statsBefore[1], statsAfter[1]);
+
+        // the cached id must not outlive a change of the address
+        DBHelper.updateDeviceMacAddress(daoSession, "00:00:00:00:03", "00:00:00:00:04");
+        assertNull(DBHelper.findDevice(dummyGBDevice, daoSession));
+        assertEquals(device.getId(), DBHelper.findDevice(createDummyGDevice("00:00:00:00:04"), daoSession).getId());
+
+        // nor its deletion
+        daoSession.getDeviceDao().delete(device);
+        DBHelper.invalidateDeviceCache(daoSession, "00:00:00:00:04");
+        assertNull(DBHelper.findDevice(createDummyGDevice("00:00:00:00:04"), daoSession));
+    }
 }
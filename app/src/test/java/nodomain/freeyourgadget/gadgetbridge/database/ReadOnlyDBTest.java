@@ -0,0 +1,161 @@
+package nodomain.freeyourgadget.gadgetbridge.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import nodomain.freeyourgadget.gadgetbridge.GBApplication;
+import nodomain.freeyourgadget.gadgetbridge.ReadOnlyLockHandler;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.entities.User;
+import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReadOnlyDBTest extends TestBase {
+    @Test
+    public void testWriterGetsItsOwnHandler() throws Exception {
+        // the test thread holds the write lock, see TestBase
+        try (DBHandler db = GBApplication.acquireReadOnlyDB()) {
+            assertSame(dbHandler, db);
+        }
+    }
+
+    @Test
+    public void testReadersDoNotWaitForWriter() throws Exception {
+        final User user = new User();
+        user.setName("Reader");
+        daoSession.getUserDao().insert(user);
+
+        final int readerCount = 3;
+        final CountDownLatch allAcquired = new CountDownLatch(readerCount);
+        final CountDownLatch done = new CountDownLatch(readerCount);
+        final List<Throwable> errors = new ArrayList<>();
+        final List<DBHandler> handlers = new ArrayList<>();
+
+        for (int i = 0; i < readerCount; i++) {
+            new Thread(() -> {
+                try (DBHandler db = GBApplication.acquireReadOnlyDB()) {
+                    synchronized (handlers) {
+                        handlers.add(db);
+                    }
+                    // keep all readers open at the same time
+                    allAcquired.countDown();
+                    allAcquired.await(10, TimeUnit.SECONDS);
+                    assertEquals(1, db.getDaoSession().getUserDao().loadAll().size());
+                } catch (final Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        assertEquals(errors.toString(), 0, errors.size());
+        assertEquals(readerCount, handlers.size());
+        for (final DBHandler handler : handlers) {
+            assertTrue(handler instanceof ReadOnlyLockHandler);
+            assertNotSame(dbHandler, handler);
+        }
+        assertNotSame(handlers.get(0), handlers.get(1));
+    }
+
+    @Test
+    public void testReaderRunsWhileWriterHoldsLock() throws Exception {
+        final User user = new User();
+        user.setName("Committed");
+        daoSession.getUserDao().insert(user);
+
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch readDone = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final Thread writer = new Thread(() -> {
+            try (DBHandler db = GBApplication.acquireDB()) {
+                db.getDatabase().beginTransaction();
+                try {
+                    final User uncommitted = new User();
+                    uncommitted.setName("Uncommitted");
+                    db.getDaoSession().getUserDao().insert(uncommitted);
+                    writing.countDown();
+                    // keep holding the write lock and the transaction while the test thread reads
+                    assertTrue(readDone.await(20, TimeUnit.SECONDS));
+                } finally {
+                    db.getDatabase().endTransaction();
+                }
+            } catch (final Throwable e) {
+                error.set(e);
+                writing.countDown();
+            }
+        });
+
+        // let the other thread take the write lock
+        dbHandler.close();
+        try {
+            writer.start();
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            assertNull(error.get());
+
+            try (DBHandler db = GBApplication.acquireReadOnlyDB()) {
+                assertTrue(db instanceof ReadOnlyLockHandler);
+                final List<User> users = db.getDaoSession().getUserDao().loadAll();
+                assertEquals(1, users.size());
+                assertEquals("Committed", users.get(0).getName());
+            } finally {
+                readDone.countDown();
+            }
+            writer.join(10000);
+            assertNull(error.get());
+        } finally {
+            dbHandler = GBApplication.acquireDB();
+        }
+    }
+
+    @Test
+    public void testReaderStoresNewDeviceThroughWriter() throws Exception {
+        final GBDevice gbDevice = createDummyGDevice("00:00:00:00:50");
+
+        dbHandler.close();
+        try (DBHandler db = GBApplication.acquireReadOnlyDB()) {
+            assertTrue(GBApplication.isReadOnlySession(db.getDaoSession()));
+            final Device device = DBHelper.getDevice(gbDevice, db.getDaoSession());
+            assertNotNull(device);
+            assertNotNull(device.getId());
+        } finally {
+            dbHandler = GBApplication.acquireDB();
+        }
+        assertNotNull(DBHelper.findDevice(gbDevice, daoSession));
+    }
+
+    @Test
+    public void testNestedReadersShareHandler() throws Exception {
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final Thread thread = new Thread(() -> {
+            try (DBHandler outer = GBApplication.acquireReadOnlyDB()) {
+                try (DBHandler inner = GBApplication.acquireReadOnlyDB()) {
+                    assertSame(outer, inner);
+                }
+                // still usable after the nested one was released
+                outer.getDaoSession().getUserDao().loadAll();
+            } catch (final Throwable e) {
+                error.set(e);
+            }
+        });
+        thread.start();
+        thread.join(10000);
+
+        assertNull(error.get());
+    }
+}
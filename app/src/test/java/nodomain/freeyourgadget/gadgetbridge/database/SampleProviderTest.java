@@ -2,19 +2,25 @@ package nodomain.freeyourgadget.gadgetbridge.database;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import nodomain.freeyourgadget.gadgetbridge.activities.charts.ActivityAnalysis;
 import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.devices.huami.HuamiConst;
+import nodomain.freeyourgadget.gadgetbridge.devices.miband.MiBand2SampleProvider;
 import nodomain.freeyourgadget.gadgetbridge.devices.miband.MiBandSampleProvider;
 import nodomain.freeyourgadget.gadgetbridge.entities.AbstractActivitySample;
 import nodomain.freeyourgadget.gadgetbridge.entities.Device;
 import nodomain.freeyourgadget.gadgetbridge.entities.MiBandActivitySample;
 import nodomain.freeyourgadget.gadgetbridge.entities.User;
 import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityAmounts;
 import nodomain.freeyourgadget.gadgetbridge.model.ActivityKind;
 import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -170,4 +176,79 @@ public class SampleProviderTest extends TestBase {
         sleepSamples = sampleProvider.getSleepSamples(1500, 2500);
         assertEquals(1, sleepSamples.size());
     }
+
+    @Test
+    public void testVisitSamples() {
+        MiBandSampleProvider sampleProvider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        MiBandActivitySample s1 = createSample(sampleProvider, MiBandSampleProvider.TYPE_ACTIVITY, 100, 10, 70, 1000, user, device);
+        MiBandActivitySample s2 = createSample(sampleProvider, MiBandSampleProvider.TYPE_ACTIVITY, 200, 20, 80, 1030, user, device);
+        MiBandActivitySample s3 = createSample(sampleProvider, MiBandSampleProvider.TYPE_DEEP_SLEEP, 1200, 10, 62, 4030, user, device);
+        MiBandActivitySample s4 = createSample(sampleProvider, MiBandSampleProvider.TYPE_LIGHT_SLEEP, 2000, 10, 60, 4030, user, device);
+        sampleProvider.addGBActivitySamples(new MiBandActivitySample[] { s4, s2, s3, s1 });
+
+        final List<MiBandActivitySample> allSamples = sampleProvider.getAllActivitySamples(0, 1300);
+        final List<int[]> visited = new ArrayList<>();
+        sampleProvider.visitAllActivitySamples(0, 1300, (timestamp, rawKind, kind, intensity, steps, heartRate) -> {
+            visited.add(new int[]{timestamp, rawKind, kind, steps, heartRate});
+        });
+
+        assertEquals(3, visited.size());
+        for (int i = 0; i < allSamples.size(); i++) {
+            final MiBandActivitySample sample = allSamples.get(i);
+            assertEquals(sample.getTimestamp(), visited.get(i)[0]);
+            assertEquals(sample.getRawKind(), visited.get(i)[1]);
+            assertEquals(sample.getKind(), visited.get(i)[2]);
+            assertEquals(sample.getSteps(), visited.get(i)[3]);
+            assertEquals(sample.getHeartRate(), visited.get(i)[4]);
+        }
+
+        final ActivityAnalysis analysis = new ActivityAnalysis();
+        final ActivityAmounts fromList = analysis.calculateActivityAmounts(allSamples);
+        final ActivityAmounts fromVisitor = analysis.calculateActivityAmounts(sampleProvider, 0, 1300);
+        assertEquals(fromList.getAmounts().size(), fromVisitor.getAmounts().size());
+        for (int i = 0; i < fromList.getAmounts().size(); i++) {
+            assertEquals(fromList.getAmounts().get(i).getActivityKind(), fromVisitor.getAmounts().get(i).getActivityKind());
+            assertEquals(fromList.getAmounts().get(i).getTotalSeconds(), fromVisitor.getAmounts().get(i).getTotalSeconds());
+            assertEquals(fromList.getAmounts().get(i).getTotalSteps(), fromVisitor.getAmounts().get(i).getTotalSteps());
+        }
+    }
+
+    @Test
+    public void testVisitPostProcessedSamples() {
+        // the samples are post-processed, so they are visited one window at a time
+        MiBand2SampleProvider sampleProvider = new MiBand2SampleProvider(dummyGBDevice, daoSession);
+        assertFalse(sampleProvider.canVisitRawColumns());
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        final int day = 24 * 60 * 60;
+        final List<MiBandActivitySample> samples = new ArrayList<>();
+        for (int ts = 0; ts < 3 * day; ts += 3600) {
+            // the samples right after each window start inherit their kind from the previous window
+            final int rawKind = ts % day == 0 ? HuamiConst.TYPE_NO_CHANGE : (ts / 3600) % 2 == 0 ? HuamiConst.TYPE_ACTIVITY : HuamiConst.TYPE_LIGHT_SLEEP;
+            samples.add(createSample(sampleProvider, rawKind, ts, 10, 60 + ts % 7, ts % 100, user, device));
+        }
+        sampleProvider.addGBActivitySamples(samples.toArray(new MiBandActivitySample[0]));
+
+        final List<MiBandActivitySample> allSamples = sampleProvider.getAllActivitySamples(0, 3 * day);
+        final List<int[]> visited = new ArrayList<>();
+        sampleProvider.visitAllActivitySamples(0, 3 * day, (timestamp, rawKind, kind, intensity, steps, heartRate) -> {
+            visited.add(new int[]{timestamp, rawKind, kind, steps, heartRate});
+        });
+
+        assertEquals(samples.size(), allSamples.size());
+        assertEquals(allSamples.size(), visited.size());
+        for (int i = 0; i < allSamples.size(); i++) {
+            final MiBandActivitySample sample = allSamples.get(i);
+            assertEquals(sample.getTimestamp(), visited.get(i)[0]);
+            assertEquals(sample.getRawKind(), visited.get(i)[1]);
+            assertEquals(sample.getKind(), visited.get(i)[2]);
+            assertEquals(sample.getSteps(), visited.get(i)[3]);
+            assertEquals(sample.getHeartRate(), visited.get(i)[4]);
+        }
+        assertEquals(HuamiConst.TYPE_LIGHT_SLEEP, visited.get(24)[1]);
+    }
 }
@@ -0,0 +1,190 @@
+package nodomain.freeyourgadget.gadgetbridge.devices.huawei;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.database.DBHelper;
+import nodomain.freeyourgadget.gadgetbridge.devices.huawei.packets.FitnessData;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.entities.HuaweiActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.entities.User;
+import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestHuaweiSampleProvider extends TestBase {
+    private static final int START = 1700000000;
+    private static final int LIGHT_SLEEP = 0x06;
+    private static final int DEEP_SLEEP = 0x07;
+
+    @Test
+    public void testMergedSamplesAreRebuiltOnInsert() {
+        final GBDevice gbDevice = createDummyGDevice("00:00:00:00:40");
+        final Device device = DBHelper.getDevice(gbDevice, daoSession);
+        final User user = DBHelper.getUser(daoSession);
+        final HuaweiSampleProvider provider = new HuaweiSampleProvider(gbDevice, daoSession);
+
+        provider.addGBActivitySample(createSample(device, user, START, 60, FitnessData.MessageData.stepId, ActivitySample.NOT_MEASURED, 10));
+        provider.addGBActivitySample(createSample(device, user, START + 60, 60, FitnessData.MessageData.stepId, ActivitySample.NOT_MEASURED, 20));
+
+        List<HuaweiActivitySample> samples = provider.getAllActivitySamples(START - 3600, START + 7200);
+        assertSorted(samples);
+        assertEquals(30, getSteps(samples));
+
+        // A sleep block after a gap, inserted after the merged samples were built
+        provider.addGBActivitySample(createSample(device, user, START + 3600, 600, FitnessData.MessageData.sleepId, LIGHT_SLEEP, ActivitySample.NOT_MEASURED));
+
+        samples = provider.getAllActivitySamples(START - 3600, START + 7200);
+        assertSorted(samples);
+        assertEquals(30, getSteps(samples));
+
+        final HuaweiActivitySample preSample = findSample(samples, START + 3599);
+        assertNotNull(preSample);
+        assertEquals(0, preSample.getRawIntensity());
+        assertEquals(LIGHT_SLEEP, findSample(samples, START + 3600).getRawKind());
+        // the end marker is backdated by one, followed by a sample with intensity zero
+        assertEquals(LIGHT_SLEEP, findSample(samples, START + 4199).getRawKind());
+        assertEquals(0, findSample(samples, START + 4200).getRawIntensity());
+    }
+
+    @Test
+    public void testGapSamplesAcrossMergeWindows() {
+        final GBDevice gbDevice = createDummyGDevice("00:00:00:00:41");
+        final Device device = DBHelper.getDevice(gbDevice, daoSession);
+        final User user = DBHelper.getUser(daoSession);
+        final HuaweiSampleProvider provider = new HuaweiSampleProvider(gbDevice, daoSession);
+
+        // sleep blocks of alternating kinds, more than a merge window apart, so the gap samples
+        // are stored per window
+        final int[] blockStarts = {START, START + 3600, START + 8 * 24 * 3600, START + 8 * 24 * 3600 + 7200};
+        for (int i = 0; i < blockStarts.length; i++) {
+            provider.addGBActivitySample(createSample(device, user, blockStarts[i], 600, FitnessData.MessageData.sleepId, getBlockKind(i), ActivitySample.NOT_MEASURED));
+        }
+
+        List<HuaweiActivitySample> samples = provider.getAllActivitySamples(START - 3600, START + 9 * 24 * 3600);
+        assertSorted(samples);
+        assertGapSamples(samples, blockStarts);
+
+        // a complete rebuild stores the same gap samples again, without duplicates
+        HuaweiSampleProvider.invalidateMergedSamples(gbDevice.getAddress(), 0);
+        final List<HuaweiActivitySample> rebuilt = provider.getAllActivitySamples(START - 3600, START + 9 * 24 * 3600);
+        assertSorted(rebuilt);
+        assertEquals(samples.size(), rebuilt.size());
+        assertGapSamples(rebuilt, blockStarts);
+    }
+
+    @Test
+    public void testEarliestDirtyTimestampIsKept() {
+        final GBDevice gbDevice = createDummyGDevice("00:00:00:00:42");
+        final Device device = DBHelper.getDevice(gbDevice, daoSession);
+        final User user = DBHelper.getUser(daoSession);
+        final HuaweiSampleProvider provider = new HuaweiSampleProvider(gbDevice, daoSession);
+
+        provider.addGBActivitySample(createSample(device, user, START, 60, FitnessData.MessageData.stepId, ActivitySample.NOT_MEASURED, 10));
+        provider.addGBActivitySample(createSample(device, user, START + 10 * 24 * 3600, 60, FitnessData.MessageData.stepId, ActivitySample.NOT_MEASURED, 20));
+        assertEquals(30, getSteps(provider.getAllActivitySamples(START - 3600, START + 11 * 24 * 3600)));
+        assertFalse(provider.isMergedSamplesOutdated());
+
+        // written without invalidating, as if by another code path that invalidates separately
+        daoSession.getHuaweiActivitySampleDao().insertOrReplace(createSample(device, user, START + 3600, 60, FitnessData.MessageData.stepId, ActivitySample.NOT_MEASURED, 5));
+        HuaweiSampleProvider.invalidateMergedSamples(gbDevice.getAddress(), START + 3600);
+        // a later timestamp must not move the rebuild past the earlier one
+        HuaweiSampleProvider.invalidateMergedSamples(gbDevice.getAddress(), START + 10 * 24 * 3600);
+        assertTrue(provider.isMergedSamplesOutdated());
+
+        assertEquals(35, getSteps(provider.getAllActivitySamples(START - 3600, START + 11 * 24 * 3600)));
+        assertFalse(provider.isMergedSamplesOutdated());
+    }
+
+    @Test
+    public void testSamplesInsertedDuringRebuildKeepMergedSamplesOutdated() {
+        final GBDevice gbDevice = createDummyGDevice("00:00:00:00:43");
+        final Device device = DBHelper.getDevice(gbDevice, daoSession);
+        final User user = DBHelper.getUser(daoSession);
+        final HuaweiSampleProvider provider = new HuaweiSampleProvider(gbDevice, daoSession) {
+            private boolean inserted = false;
+
+            @Override
+            List<HuaweiActivitySample> getRawOrderedActivitySamples(int timestampFrom, int timestampTo) {
+                if (!inserted) {
+                    // a sync inserting samples while the merged samples are rebuilt
+                    inserted = true;
+                    addGBActivitySample(createSample(device, user, START + 3600, 60, FitnessData.MessageData.stepId, ActivitySample.NOT_MEASURED, 5));
+                }
+                return super.getRawOrderedActivitySamples(timestampFrom, timestampTo);
+            }
+        };
+
+        provider.addGBActivitySample(createSample(device, user, START, 60, FitnessData.MessageData.stepId, ActivitySample.NOT_MEASURED, 10));
+        provider.updateMergedSamples();
+        assertTrue(provider.isMergedSamplesOutdated());
+
+        provider.updateMergedSamples();
+        assertFalse(provider.isMergedSamplesOutdated());
+        assertEquals(15, getSteps(provider.getAllActivitySamples(START - 3600, START + 7200)));
+    }
+
+    private static HuaweiActivitySample createSample(Device device, User user, int timestamp, int duration, byte source, int rawKind, int steps) {
+        return new HuaweiActivitySample(
+                timestamp,
+                device.getId(),
+                user.getId(),
+                timestamp + duration,
+                source,
+                rawKind,
+                1,
+                steps,
+                ActivitySample.NOT_MEASURED,
+                ActivitySample.NOT_MEASURED,
+                ActivitySample.NOT_MEASURED,
+                ActivitySample.NOT_MEASURED
+        );
+    }
+
+    private static void assertSorted(List<HuaweiActivitySample> samples) {
+        for (int i = 1; i < samples.size(); i++) {
+            assertTrue(samples.get(i - 1).getTimestamp() < samples.get(i).getTimestamp());
+        }
+    }
+
+    private static int getSteps(List<HuaweiActivitySample> samples) {
+        int steps = 0;
+        for (HuaweiActivitySample sample : samples) {
+            if (sample.getSteps() > 0)
+                steps += sample.getSteps();
+        }
+        return steps;
+    }
+
+    private static int getBlockKind(int block) {
+        return block % 2 == 0 ? LIGHT_SLEEP : DEEP_SLEEP;
+    }
+
+    /**
+     * Checks the samples with intensity zero between the sleep blocks of ten minutes and after
+     * the last one.
+     */
+    private static void assertGapSamples(List<HuaweiActivitySample> samples, int[] blockStarts) {
+        for (int i = 0; i < blockStarts.length; i++) {
+            if (i > 0)
+                assertEquals(0, findSample(samples, blockStarts[i] - 1).getRawIntensity());
+            assertEquals(getBlockKind(i), findSample(samples, blockStarts[i]).getRawKind());
+            assertEquals(getBlockKind(i), findSample(samples, blockStarts[i] + 599).getRawKind());
+            assertEquals(0, findSample(samples, blockStarts[i] + 600).getRawIntensity());
+        }
+    }
+
+    private static HuaweiActivitySample findSample(List<HuaweiActivitySample> samples, int timestamp) {
+        for (HuaweiActivitySample sample : samples) {
+            if (sample.getTimestamp() == timestamp)
+                return sample;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+package nodomain.freeyourgadget.gadgetbridge.export;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ActivityTracksZipExporterTest extends TestBase {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOriginalFilesAreZipped() throws Exception {
+        final byte[] fit = new byte[]{0x0e, 0x10, 0x43, 0x08, 0x2e, 0x46, 0x49, 0x54};
+        final byte[] gpx = "<gpx/>".getBytes(StandardCharsets.UTF_8);
+        final File otherDir = folder.newFolder("other");
+
+        final Map<String, byte[]> entries = export(
+                summary(write(folder.getRoot(), "ACTIVITY_1.fit", fit)),
+                summary(write(folder.getRoot(), "track.gpx", gpx)),
+                summary(write(otherDir, "ACTIVITY_1.fit", gpx)),
+                summary(new File(folder.getRoot(), "missing.fit")),
+                new BaseActivitySummary()
+        );
+
+        assertEquals(Arrays.asList("ACTIVITY_1.fit", "track.gpx", "ACTIVITY_1_2.fit"), Arrays.asList(entries.keySet().toArray()));
+        assertArrayEquals(fit, entries.get("ACTIVITY_1.fit"));
+        assertArrayEquals(gpx, entries.get("track.gpx"));
+        assertArrayEquals(gpx, entries.get("ACTIVITY_1_2.fit"));
+    }
+
+    private Map<String, byte[]> export(final BaseActivitySummary... summaries) throws Exception {
+        final File zipFile = folder.newFile("export.zip");
+        assertEquals(3, new ActivityTracksZipExporter().performExport(Arrays.asList(summaries), zipFile));
+
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new FileInputStream(zipFile))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[1024];
+                int read;
+                while ((read = zip.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                entries.put(entry.getName(), out.toByteArray());
+            }
+        }
+        return entries;
+    }
+
+    private static File write(final File dir, final String name, final byte[] contents) throws Exception {
+        final File file = new File(dir, name);
+        Files.write(file.toPath(), contents);
+        return file;
+    }
+
+    private static BaseActivitySummary summary(final File trackFile) {
+        final BaseActivitySummary summary = new BaseActivitySummary();
+        summary.setGpxTrack(trackFile.getAbsolutePath());
+        return summary;
+    }
+}
@@ -108,4 +108,19 @@ public class NotificationListenerTest extends TestBase {
         filter.setNotificationFilterMode(NotificationFilterActivity.NOTIFICATION_FILTER_MODE_NONE);
         assertTrue(mNotificationListener.shouldContinueAfterFilter(body, wordList, filter));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldContinueAfterFilter_TestOverlappingWords() {
+        List<String> overlappingWords = Arrays.asList("he", "she", "his", "hers");
+        NotificationFilter filter = new NotificationFilter();
+        filter.setNotificationFilterMode(NotificationFilterActivity.NOTIFICATION_FILTER_MODE_WHITELIST);
+        filter.setNotificationFilterSubMode(NotificationFilterActivity.NOTIFICATION_FILTER_SUBMODE_ALL);
+        assertFalse(mNotificationListener.shouldContinueAfterFilter("ushers", overlappingWords, filter));
+        assertTrue(mNotificationListener.shouldContinueAfterFilter("ushers and this", overlappingWords, filter));
+
+        filter.setNotificationFilterSubMode(NotificationFilterActivity.NOTIFICATION_FILTER_SUBMODE_ANY);
+        assertTrue(mNotificationListener.shouldContinueAfterFilter("ushers", overlappingWords, filter));
+        assertTrue(mNotificationListener.shouldContinueAfterFilter("this", overlappingWords, filter));
+        assertFalse(mNotificationListener.shouldContinueAfterFilter("hi s", overlappingWords, filter));
+    }
+}
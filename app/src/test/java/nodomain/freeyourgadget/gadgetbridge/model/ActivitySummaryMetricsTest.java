@@ -0,0 +1,90 @@
+package nodomain.freeyourgadget.gadgetbridge.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import nodomain.freeyourgadget.gadgetbridge.devices.test.activity.TestActivitySummaryParser;
+import nodomain.freeyourgadget.gadgetbridge.entities.BaseActivitySummary;
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+public class ActivitySummaryMetricsTest extends TestBase {
+    @Test
+    public void testParserVersionChangeReparses() {
+        final BaseActivitySummary summary = createSummary();
+
+        assertTrue(ActivitySummaryJsonSummary.updateSummaryBinary(new DistanceParser(1, 1), summary));
+        assertFalse(ActivitySummaryJsonSummary.updateSummaryBinary(new DistanceParser(1, 1), summary));
+        assertEquals(1000, ActivitySummaryMetrics.decode(summary.getSummaryBinary(), new DistanceParser(1, 1)).getNumber("distanceMeters", 0), 0.001);
+
+        // a fixed parser makes the stored summary stale, even before it is updated
+        final DistanceParser fixedParser = new DistanceParser(2, 2);
+        assertNull(ActivitySummaryMetrics.decode(summary.getSummaryBinary(), fixedParser));
+        assertEquals(2000, new ActivitySummaryJsonSummary(fixedParser, summary).getMetrics().getNumber("distanceMeters", 0), 0.001);
+
+        assertTrue(ActivitySummaryJsonSummary.updateSummaryBinary(fixedParser, summary));
+        final ActivitySummaryMetrics metrics = ActivitySummaryMetrics.decode(summary.getSummaryBinary(), fixedParser);
+        assertNotNull(metrics);
+        assertEquals(2000, metrics.getNumber("distanceMeters", 0), 0.001);
+    }
+
+    @Test
+    public void testOtherParserIsStale() {
+        final BaseActivitySummary summary = createSummary();
+        assertTrue(ActivitySummaryJsonSummary.updateSummaryBinary(new DistanceParser(1, 1), summary));
+
+        assertNull(ActivitySummaryMetrics.decode(summary.getSummaryBinary(), new TestActivitySummaryParser()));
+        assertNull(ActivitySummaryMetrics.decode(summary.getSummaryBinary(), null));
+    }
+
+    @Test
+    public void testWithoutParser() {
+        final BaseActivitySummary summary = createSummary();
+        summary.setRawSummaryData(null);
+        summary.setSummaryData("{\"distanceMeters\":{\"value\":500,\"unit\":\"meters\"}}");
+
+        assertTrue(ActivitySummaryJsonSummary.updateSummaryBinary(null, summary));
+        assertFalse(ActivitySummaryJsonSummary.updateSummaryBinary(null, summary));
+        assertEquals(500, ActivitySummaryMetrics.decode(summary.getSummaryBinary(), null).getNumber("distanceMeters", 0), 0.001);
+    }
+
+    private static BaseActivitySummary createSummary() {
+        final BaseActivitySummary summary = new BaseActivitySummary();
+        summary.setStartTime(new Date(1700000000000L));
+        summary.setEndTime(new Date(1700003600000L));
+        summary.setRawSummaryData(new byte[]{10});
+        return summary;
+    }
+
+    /**
+     * Reads the distance in hundreds of meters from the raw summary data, scaled by a factor that
+     * stands in for a parser fix.
+     */
+    private static class DistanceParser implements ActivitySummaryParser {
+        private final int version;
+        private final int factor;
+
+        private DistanceParser(final int version, final int factor) {
+            this.version = version;
+            this.factor = factor;
+        }
+
+        @Override
+        public BaseActivitySummary parseBinaryData(final BaseActivitySummary summary) {
+            final int distance = summary.getRawSummaryData()[0] * 100 * factor;
+            summary.setSummaryData("{\"distanceMeters\":{\"value\":" + distance + ",\"unit\":\"meters\"}}");
+            return summary;
+        }
+
+        @Override
+        public int getVersion() {
+            return version;
+        }
+    }
+}
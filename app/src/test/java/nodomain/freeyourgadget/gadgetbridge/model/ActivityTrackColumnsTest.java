@@ -0,0 +1,142 @@
+package nodomain.freeyourgadget.gadgetbridge.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+public class ActivityTrackColumnsTest extends TestBase {
+    @Test
+    public void testRoundTrip() throws Exception {
+        final List<ActivityPoint> first = new ArrayList<>();
+        final long start = 1700000000000L;
+        for (int i = 0; i < 600; i++) {
+            final ActivityPoint point = new ActivityPoint(new Date(start + i * 1000L));
+            point.setLocation(new GPSCoordinate(13.404954 + i * 0.00001, 52.520008 - i * 0.000007, 34.5 + (i % 10) * 0.1));
+            point.setHeartRate(120 + i % 7);
+            point.setSpeed(2.5f + (i % 3) * 0.25f);
+            first.add(point);
+        }
+        final List<ActivityPoint> second = new ArrayList<>();
+        // a pause without location, then a point without time
+        second.add(new ActivityPoint(new Date(start + 900000L)));
+        final ActivityPoint noTime = new ActivityPoint();
+        noTime.setLocation(new GPSCoordinate(13.5, 52.6));
+        second.add(noTime);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ActivityTrackColumns.write(out, Arrays.asList(first, second));
+        // far less than the 40 bytes per point of a naive encoding
+        assertTrue(out.size() < first.size() * 12);
+
+        final List<List<ActivityPoint>> read = ActivityTrackColumns.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, read.size());
+        assertEquals(first.size(), read.get(0).size());
+        for (int i = 0; i < first.size(); i++) {
+            final ActivityPoint expected = first.get(i);
+            final ActivityPoint actual = read.get(0).get(i);
+            assertEquals(expected.getTime(), actual.getTime());
+            assertEquals(expected.getLocation().getLatitude(), actual.getLocation().getLatitude(), 1e-6);
+            assertEquals(expected.getLocation().getLongitude(), actual.getLocation().getLongitude(), 1e-6);
+            assertEquals(expected.getLocation().getAltitude(), actual.getLocation().getAltitude(), 0.05);
+            assertEquals(expected.getHeartRate(), actual.getHeartRate());
+            assertEquals(expected.getSpeed(), actual.getSpeed(), 0.005);
+        }
+
+        assertNull(read.get(1).get(0).getLocation());
+        assertEquals(-1, read.get(1).get(0).getSpeed(), 0);
+        assertNull(read.get(1).get(1).getTime());
+        assertEquals(GPSCoordinate.UNKNOWN_ALTITUDE, read.get(1).get(1).getLocation().getAltitude(), 0);
+    }
+
+    @Test
+    public void testIterate() throws Exception {
+        final List<ActivityPoint> first = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final ActivityPoint point = new ActivityPoint(new Date(1700000000000L + i * 1000L));
+            if (i % 10 != 0) {
+                point.setLocation(new GPSCoordinate(13.4 + i * 0.0001, 52.5 - i * 0.0001, 30 + i));
+            }
+            point.setHeartRate(100 + i % 20);
+            first.add(point);
+        }
+        final List<ActivityPoint> second = new ArrayList<>(first.subList(50, 60));
+
+        final File file = File.createTempFile("columns", ".bin");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                ActivityTrackColumns.write(out, Arrays.asList(first, second));
+            }
+
+            final List<List<ActivityPoint>> expected = ActivityTrackColumns.read(new FileInputStream(file));
+            try (ActivityPointIterator points = ActivityTrackColumns.iterate(file)) {
+                for (int s = 0; s < expected.size(); s++) {
+                    for (int i = 0; i < expected.get(s).size(); i++) {
+                        final ActivityPoint expectedPoint = expected.get(s).get(i);
+                        final ActivityPoint actual = points.next();
+                        assertNotNull(actual);
+                        assertEquals(i == 0, points.isNewSegment());
+                        assertEquals(expectedPoint.getTime(), actual.getTime());
+                        assertEquals(expectedPoint.getLocation(), actual.getLocation());
+                        assertEquals(expectedPoint.getHeartRate(), actual.getHeartRate());
+                        assertEquals(expectedPoint.getSpeed(), actual.getSpeed(), 0);
+                    }
+                }
+                assertNull(points.next());
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testStoredNextToTrack() throws Exception {
+        final List<ActivityPoint> points = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final ActivityPoint point = new ActivityPoint(new Date(1700000000000L + i * 1000L));
+            point.setLocation(new GPSCoordinate(13.4 + i * 0.0001, 52.5 - i * 0.0001, 30 + i));
+            points.add(point);
+        }
+
+        final File trackFile = File.createTempFile("track", ".gpx");
+        final File columnsFile = ActivityTrackColumns.getColumnsFile(trackFile);
+        try {
+            assertTrue(trackFile.setLastModified(1700000000000L));
+            assertNull(ActivityTrackColumns.load(trackFile));
+
+            ActivityTrackColumns.save(trackFile, Collections.singletonList(points));
+            assertEquals(trackFile.getParentFile(), columnsFile.getParentFile());
+            final List<List<ActivityPoint>> loaded = ActivityTrackColumns.load(trackFile);
+            assertNotNull(loaded);
+            assertEquals(points.size(), loaded.get(0).size());
+
+            // the track file changed after the columns were written
+            assertTrue(trackFile.setLastModified(columnsFile.lastModified() + 60000L));
+            assertNull(ActivityTrackColumns.load(trackFile));
+            assertFalse(columnsFile.exists());
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            columnsFile.delete();
+            //noinspection ResultOfMethodCallIgnored
+            trackFile.delete();
+        }
+    }
+}
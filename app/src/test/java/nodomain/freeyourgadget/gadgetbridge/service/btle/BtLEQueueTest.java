@@ -2,8 +2,13 @@ package nodomain.freeyourgadget.gadgetbridge.service.btle;
 
 import org.junit.Test;
 
+import java.util.concurrent.PriorityBlockingQueue;
+
 import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
 
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
 public class BtLEQueueTest extends TestBase {
 
     @Override
@@ -20,4 +25,63 @@ public class BtLEQueueTest extends TestBase {
     public void testIsConnected() throws Exception {
         // TODO
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testQueuedTransactionOrder() {
+        final PriorityBlockingQueue<BtLEQueue.QueuedTransaction> queue = new PriorityBlockingQueue<>();
+        final BtLEQueue.QueuedTransaction low = queued(AbstractTransaction.Priority.LOW, 1);
+        final BtLEQueue.QueuedTransaction normal = queued(AbstractTransaction.Priority.NORMAL, 2);
+        final BtLEQueue.QueuedTransaction high = queued(AbstractTransaction.Priority.HIGH, 3);
+        queue.add(low);
+        queue.add(normal);
+        queue.add(high);
+
+        assertSame(high, queue.poll());
+        assertSame(normal, queue.poll());
+        assertSame(low, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testQueuedTransactionFifoWithinPriority() {
+        final PriorityBlockingQueue<BtLEQueue.QueuedTransaction> queue = new PriorityBlockingQueue<>();
+        final BtLEQueue.QueuedTransaction[] added = new BtLEQueue.QueuedTransaction[20];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = queued(AbstractTransaction.Priority.NORMAL, i + 1);
+        }
+        // the heap does not keep the insertion order by itself
+        for (int i = added.length - 1; i >= 0; i--) {
+            queue.add(added[i]);
+        }
+
+        for (final BtLEQueue.QueuedTransaction transaction : added) {
+            assertSame(transaction, queue.poll());
+        }
+    }
+
+    @Test
+    public void testInsertedTransactionsJumpAhead() {
+        // as added by BtLEQueue#add and BtLEQueue#insert
+        final PriorityBlockingQueue<BtLEQueue.QueuedTransaction> queue = new PriorityBlockingQueue<>();
+        final BtLEQueue.QueuedTransaction addedHigh = queued(AbstractTransaction.Priority.HIGH, 1);
+        final BtLEQueue.QueuedTransaction addedNormal = queued(AbstractTransaction.Priority.NORMAL, 2);
+        final BtLEQueue.QueuedTransaction firstInserted = queued(AbstractTransaction.Priority.HIGH, -1);
+        final BtLEQueue.QueuedTransaction secondInserted = queued(AbstractTransaction.Priority.HIGH, -2);
+        queue.add(addedHigh);
+        queue.add(addedNormal);
+        queue.add(firstInserted);
+        queue.add(secondInserted);
+
+        // each insert goes to the beginning of the queue
+        assertSame(secondInserted, queue.poll());
+        assertSame(firstInserted, queue.poll());
+        assertSame(addedHigh, queue.poll());
+        assertSame(addedNormal, queue.poll());
+    }
+
+    private static BtLEQueue.QueuedTransaction queued(final AbstractTransaction.Priority priority, final long sequence) {
+        final Transaction transaction = new Transaction("test " + sequence);
+        transaction.setPriority(priority);
+        return new BtLEQueue.QueuedTransaction(transaction, priority, sequence);
+    }
+}
@@ -0,0 +1,77 @@
+package nodomain.freeyourgadget.gadgetbridge.service.devices.banglejs;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BangleJSJsonWriterTest extends TestBase {
+    private final BangleJSJsonWriter writer = new BangleJSJsonWriter();
+
+    private String toJson(final Object v) {
+        writer.reset();
+        writer.writeJson(v);
+        return writer.toString();
+    }
+
+    @Test
+    public void testObject() throws Exception {
+        final JSONObject o = new JSONObject();
+        o.put("t", "notify");
+        o.put("id", 1234);
+        o.put("n", JSONObject.NULL);
+        final JSONArray a = new JSONArray();
+        a.put(true);
+        a.put(1.5);
+        o.put("a", a);
+
+        assertEquals("{\"t\":\"notify\",\"id\":1234,\"n\":null,\"a\":[true,1.5]}", toJson(o));
+    }
+
+    @Test
+    public void testEscapes() {
+        assertEquals("\"a\\\"b\\\\c\\nd\\te\"", toJson("a\"b\\c\nd\te"));
+        // \0 followed by a digit would be read as an octal escape
+        assertEquals("\"\\0a\\x011\"", toJson("\u0000a\u00011"));
+        assertEquals("\"\\x7f\\xad\\xc3abcdefghijklmnopqrst\"", toJson("\u007f\u00ad\u00c3abcdefghijklmnopqrst"));
+        assertEquals("\"\\u1234\\xe9\"", toJson("\u1234\u00e9"));
+    }
+
+    @Test
+    public void testBase64WhenShorter() {
+        // every character needs a 4 character escape, so base64 is shorter
+        assertEquals("atob(\"w8PDw8PD\")", toJson("\u00c3\u00c3\u00c3\u00c3\u00c3\u00c3"));
+        // not with unicode characters, which can't be sent as single bytes
+        assertEquals("\"\\xc3\\xc3\\xc3\\xc3\\xc3\\xc3\\u1234\"", toJson("\u00c3\u00c3\u00c3\u00c3\u00c3\u00c3\u1234"));
+    }
+
+    @Test
+    public void testAppendsToPendingData() {
+        writer.reset();
+        writer.write("\u0010GB(");
+        writer.writeJson("a");
+        writer.write(")\n");
+        writer.write("\u0010GB(");
+        writer.writeJson("b");
+        writer.write(")\n");
+
+        final byte[] expected = "\u0010GB(\"a\")\n\u0010GB(\"b\")\n".getBytes(StandardCharsets.ISO_8859_1);
+        assertArrayEquals(expected, Arrays.copyOf(writer.array(), writer.length()));
+    }
+
+    @Test
+    public void testGrowsBuffer() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        assertEquals("\"" + sb + "\"", toJson(sb.toString()));
+    }
+}
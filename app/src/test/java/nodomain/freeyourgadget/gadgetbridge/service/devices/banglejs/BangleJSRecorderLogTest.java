@@ -0,0 +1,69 @@
+package nodomain.freeyourgadget.gadgetbridge.service.devices.banglejs;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BangleJSRecorderLogTest extends TestBase {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String CSV = "Time,Heartrate,Steps\n" +
+            "1700000000,0,12\n" +
+            "1700000010,95.0,\n" +
+            "1700000020,101,7\n";
+
+    @Test
+    public void testRowsSplitAcrossChunks() throws Exception {
+        final BangleJSRecorderLog recorderLog = new BangleJSRecorderLog("20240101a");
+        final StringBuilder stored = new StringBuilder();
+        // chunks ending in the middle of a line
+        for (int i = 0; i < CSV.length(); i += 7) {
+            stored.append(recorderLog.addLines(CSV.substring(i, Math.min(CSV.length(), i + 7))));
+            // only complete lines are returned for storing
+            assertTrue(stored.length() == 0 || stored.charAt(stored.length() - 1) == '\n');
+        }
+        stored.append(recorderLog.finish());
+
+        assertEquals(CSV, stored.toString());
+        assertEquals(4, recorderLog.getLineCount());
+        final JSONObject o = recorderLog.toJSONObject();
+        assertEquals("[\"1700000000\",\"1700000010\",\"1700000020\"]", o.getJSONArray("Time").toString());
+        // heartrate 0 means no reading
+        assertEquals("[\"\",\"95.0\",\"101\"]", o.getJSONArray("Heartrate").toString());
+        assertEquals("[\"12\",\"\",\"7\"]", o.getJSONArray("Steps").toString());
+    }
+
+    @Test
+    public void testLastLineWithoutLineBreak() throws Exception {
+        final BangleJSRecorderLog recorderLog = new BangleJSRecorderLog("20240101a");
+        assertEquals("Time,Steps\n", recorderLog.addLines("Time,Steps\n1700000000,3"));
+        assertEquals(1, recorderLog.getLineCount());
+        assertEquals("1700000000,3", recorderLog.finish());
+        assertEquals(2, recorderLog.getLineCount());
+        assertEquals("[\"3\"]", recorderLog.toJSONObject().getJSONArray("Steps").toString());
+    }
+
+    @Test
+    public void testContinueFromFile() throws Exception {
+        final File file = folder.newFile("recorder.log20240101a.csv");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("Time,Heartrate,Steps\n1700000000,0,12\n");
+        }
+
+        final BangleJSRecorderLog recorderLog = BangleJSRecorderLog.fromFile("20240101a", file);
+        assertEquals(2, recorderLog.getLineCount());
+        recorderLog.addLines("1700000010,95.0,\n1700000020,101,7\n");
+        assertEquals(4, recorderLog.getLineCount());
+        assertEquals("[\"12\",\"\",\"7\"]", recorderLog.toJSONObject().getJSONArray("Steps").toString());
+    }
+}
@@ -0,0 +1,115 @@
+package nodomain.freeyourgadget.gadgetbridge.service.devices.garmin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.deviceevents.FileDownloadedDeviceEvent;
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.DownloadRequestMessage;
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.FileTransferDataMessage;
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.GFDIMessage;
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.status.DownloadRequestStatusMessage;
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.messages.status.FileTransferDataStatusMessage;
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FileTransferHandlerTest extends TestBase {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] contents = new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08};
+
+    @Test
+    public void testResume() throws Exception {
+        final FileTransferHandler.DirectoryEntry entry = createEntry();
+        keepPartialDownload(entry, Arrays.copyOf(contents, 5));
+        final GarminSupport support = createSupport();
+        final FileTransferHandler handler = new FileTransferHandler(support);
+
+        final DownloadRequestMessage request = handler.downloadDirectoryEntry(entry);
+        assertNotNull(request);
+        assertEquals(DownloadRequestMessage.REQUEST_TYPE.CONTINUE, request.getRequestType());
+        assertEquals(5, request.getDataOffset());
+
+        assertNull(handler.handle(downloadStatus()));
+        final FileTransferDataMessage chunk = chunk(5);
+        assertNull(handler.handle(chunk));
+        assertEquals(FileTransferDataStatusMessage.TransferStatus.OK.ordinal(), chunk.getAckBytestream()[7]);
+
+        assertFalse(handler.isDownloading());
+        assertArrayEquals(contents, Files.readAllBytes(new File(folder.getRoot(), entry.getFileName()).toPath()));
+        verify(support).evaluateGBDeviceEvent(any(FileDownloadedDeviceEvent.class));
+    }
+
+    @Test
+    public void testResumeWithStaleDataRestarts() throws Exception {
+        final FileTransferHandler.DirectoryEntry entry = createEntry();
+        keepPartialDownload(entry, new byte[]{0x09, 0x09, 0x09, 0x09, 0x09});
+        final GarminSupport support = createSupport();
+        final FileTransferHandler handler = new FileTransferHandler(support);
+
+        handler.downloadDirectoryEntry(entry);
+        assertNull(handler.handle(downloadStatus()));
+
+        // the CRC of the first chunk does not match the kept data
+        final FileTransferDataMessage staleChunk = chunk(5);
+        final GFDIMessage restart = handler.handle(staleChunk);
+        assertEquals(FileTransferDataStatusMessage.TransferStatus.ABORT.ordinal(), staleChunk.getAckBytestream()[7]);
+        assertTrue(restart instanceof DownloadRequestMessage);
+        assertEquals(DownloadRequestMessage.REQUEST_TYPE.NEW, ((DownloadRequestMessage) restart).getRequestType());
+        assertEquals(0, ((DownloadRequestMessage) restart).getDataOffset());
+        assertTrue(handler.isDownloading());
+
+        // the watch starts over
+        assertNull(handler.handle(downloadStatus()));
+        assertNull(handler.handle(chunk(0)));
+
+        assertFalse(handler.isDownloading());
+        assertArrayEquals(contents, Files.readAllBytes(new File(folder.getRoot(), entry.getFileName()).toPath()));
+        verify(support).evaluateGBDeviceEvent(any(FileDownloadedDeviceEvent.class));
+    }
+
+    private GarminSupport createSupport() throws Exception {
+        final GarminSupport support = Mockito.mock(GarminSupport.class);
+        when(support.getWritableExportDirectory()).thenReturn(folder.getRoot());
+        return support;
+    }
+
+    private static FileTransferHandler.DirectoryEntry createEntry() {
+        return new FileTransferHandler.DirectoryEntry(5, FileType.FILETYPE.ACTIVITY, 1, 0, 0, 8, new Date(1700000000000L));
+    }
+
+    private void keepPartialDownload(final FileTransferHandler.DirectoryEntry entry, final byte[] data) throws Exception {
+        final PartialDownloadFile file = new PartialDownloadFile(new File(folder.getRoot(), entry.getFileName()));
+        file.open();
+        file.append(data);
+        file.close();
+    }
+
+    private DownloadRequestStatusMessage downloadStatus() {
+        return new DownloadRequestStatusMessage(GFDIMessage.GarminMessage.DOWNLOAD_REQUEST, GFDIMessage.Status.ACK, DownloadRequestStatusMessage.DownloadStatus.OK, contents.length);
+    }
+
+    /**
+     * The chunk of the file from the given offset to its end, as sent by the watch.
+     */
+    private FileTransferDataMessage chunk(final int offset) {
+        final int crc = ChecksumCalculator.computeCrc(contents, 0, contents.length);
+        return new FileTransferDataMessage(Arrays.copyOfRange(contents, offset, contents.length), offset, crc, false);
+    }
+}
@@ -3,6 +3,9 @@ package nodomain.freeyourgadget.gadgetbridge.service.devices.garmin;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
@@ -372,4 +375,22 @@ public class GarminSupportTest extends TestBase {
         FitFile fitFile = FitFile.parseIncoming(fileContents);
         Assert.assertEquals(expectedOutput, fitFile.toString());
     }
+
+    @Test
+    public void TestFitFileStreamingMatchesInMemory() throws IOException {
+        byte[] fileContents = GB.hexStringToByteArray("0e206806a20000002e464954bed040000100000401028400010002028403048c00000f042329000006a540000100cf0201100d030102000101020305080d1522375990e97962db0040000100ce05000102010102020102031107080a0700000001646f7567686e7574735f6561726e656400646f7567686e7574730060000100140403010204010205048606028401000100008c580000c738b98001008f5a00032c808e400200905c0005a9388a1003d39e");
+
+        File file = File.createTempFile("developer-data", ".fit");
+        try {
+            try (FileOutputStream outputStream = new FileOutputStream(file)) {
+                outputStream.write(fileContents);
+            }
+
+            List<RecordData> streamedRecords = new ArrayList<>();
+            FitFile.parseIncoming(file, streamedRecords::add);
+            Assert.assertEquals(FitFile.parseIncoming(fileContents).toString(), streamedRecords.toString());
+        } finally {
+            file.delete();
+        }
+    }
 }
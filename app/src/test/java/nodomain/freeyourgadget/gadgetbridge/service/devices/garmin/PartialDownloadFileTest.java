@@ -0,0 +1,101 @@
+package nodomain.freeyourgadget.gadgetbridge.service.devices.garmin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PartialDownloadFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] first = new byte[]{0x01, 0x02, 0x03, 0x04, 0x05};
+    private final byte[] second = new byte[]{0x06, 0x07, 0x08};
+
+    @Test
+    public void testCompleteRenamesToTarget() throws Exception {
+        final File target = new File(folder.getRoot(), "ACTIVITY_1.fit");
+        final PartialDownloadFile file = new PartialDownloadFile(target);
+        file.open();
+        assertEquals(0, file.getOffset());
+        file.append(first);
+        file.append(second);
+        assertFalse(target.exists());
+
+        assertEquals(target, file.complete());
+        assertTrue(target.exists());
+        assertFalse(new File(folder.getRoot(), "ACTIVITY_1.fit" + PartialDownloadFile.SUFFIX).exists());
+        assertArrayEquals(new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08}, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        final File target = new File(folder.getRoot(), "MONITOR_2.fit");
+        final PartialDownloadFile interrupted = new PartialDownloadFile(target);
+        interrupted.open();
+        interrupted.append(first);
+        interrupted.close();
+        assertFalse(target.exists());
+
+        final PartialDownloadFile resumed = new PartialDownloadFile(target);
+        resumed.open();
+        assertEquals(first.length, resumed.getOffset());
+        assertEquals(ChecksumCalculator.computeCrc(first, 0, first.length), resumed.getResumeCrc());
+        resumed.append(second);
+        resumed.complete();
+
+        assertArrayEquals(new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08}, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        final File target = new File(folder.getRoot(), "SLEEP_3.fit");
+        final PartialDownloadFile interrupted = new PartialDownloadFile(target);
+        interrupted.open();
+        interrupted.append(first);
+        interrupted.close();
+
+        final PartialDownloadFile restarted = new PartialDownloadFile(target);
+        restarted.open();
+        restarted.truncate();
+        assertEquals(0, restarted.getOffset());
+        assertEquals(0, restarted.getResumeCrc());
+        restarted.append(second);
+        restarted.complete();
+
+        assertArrayEquals(second, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void testEmptyFileNotKept() throws Exception {
+        final File target = new File(folder.getRoot(), "HRV_STATUS_4.fit");
+        final File part = new File(folder.getRoot(), "HRV_STATUS_4.fit" + PartialDownloadFile.SUFFIX);
+        final PartialDownloadFile refused = new PartialDownloadFile(target);
+        refused.open();
+        assertTrue(part.exists());
+        refused.close();
+        assertFalse(part.exists());
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        final File target = new File(folder.getRoot(), "METRICS_5.fit");
+        final PartialDownloadFile interrupted = new PartialDownloadFile(target);
+        interrupted.open();
+        interrupted.append(first);
+        interrupted.discard();
+        assertFalse(new File(folder.getRoot(), "METRICS_5.fit" + PartialDownloadFile.SUFFIX).exists());
+
+        final PartialDownloadFile restarted = new PartialDownloadFile(target);
+        restarted.open();
+        assertEquals(0, restarted.getOffset());
+        restarted.close();
+    }
+}
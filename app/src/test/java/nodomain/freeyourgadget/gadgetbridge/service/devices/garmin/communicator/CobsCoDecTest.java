@@ -3,6 +3,12 @@ package nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.communicator
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 import nodomain.freeyourgadget.gadgetbridge.util.GB;
 
 public class CobsCoDecTest {
@@ -91,6 +97,7 @@ public class CobsCoDecTest {
         final byte[] test_string_8 = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 0, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43, 44, 45, 46, 47, 48, 49, 50, 51, 52, 53, 54, 55, 56, 57, 58, 59, 60, 61, 62, 63, 64, 65, 66, 67, 68, 69, 70, 71, 72, 73, 74, 75, 76, 77, 78, 79, 80, 81, 82, 83, 84, 85, 86, 87, 88, 89, 90, 91, 92, 93, 94, 95, 96, 97, 98, 99, 100, 101, 102, 103, 104, 105, 106, 107, 108, 109, 110, 111, 112, 113, 114, 115, 116, 117, 118, 119, 120, 121, 122, 123, 124, 125, 126, 127, -128, -127, -126, -125, -124, -123, -122, -121, -120, -119, -118, -117, -116, -115, -114, -113, -112, -111, -110, -109, -108, -107, -106, -105, -104, -103, -102, -101, -100, -99, -98, -97, -96, -95, -94, -93, -92, -91, -90, -89, -88, -87, -86, -85, -84, -83, -82, -81, -80, -79, -78, -77, -76, -75, -74, -73, -72, -71, -70, -69, -68, -67, -66, -65, -64, -63, -62, -61, -60, -59, -58, -57, -56, -55, -54, -53, -52, -51, -50, -49, -48, -47, -46, -45, -44, -43, -42, -41, -40, -39, -38, -37, -36, -35, -34, -33, -32, -31, -30, -29, -28, -27, -26, -25, -24, -23, -22, -21, -20, -19, -18, -17, -16, -15, -14, -13, -12, -11, -10, -9, -8, -7, -6, -5, -4, -3, -2, -1, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43, 44, 45, 46, 47, 48, 49, 50, 51, 52, 53, 54, 55, 56, 57, 58, 59, 60, 61, 62, 63, 64, 65, 66, 67, 68, 69, 70, 71, 72, 73, 74, 75, 76, 77, 78, 79, 80, 81, 82, 83, 84, 85, 86, 87, 88, 89, 90, 91, 92, 93, 94, 95, 96, 97, 98, 99, 100, 101, 102, 103, 104, 105, 106, 107, 108, 109, 110, 111, 112, 113, 114, 115, 116, 117, 118, 119, 120, 121, 122, 123, 124, 125, 126, 127, -128, -127, -126, -125, -124, -123, -122, -121, -120, -119, -118, -117, -116, -115, -114, -113, -112, -111, -110, -109, -108, -107, -106, -105, -104, -103, -102, -101, -100, -99, -98, -97, -96, -95, -94, -93, -92, -91, -90, -89, -88, -87, -86, -85, -84, -83, -82, -81, -80, -79, -78, -77, -76, -75, -74, -73, -72, -71, -70, -69, -68, -67, -66, -65, -64, -63, -62, -61, -60, -59, -58, -57, -56, -55, -54, -53, -52, -51, -50, -49, -48, -47, -46, -45, -44, -43, -42, -41, -40, -39, -38, -37, -36, -35, -34, -33, -32, -31, -30, -29, -28, -27, -26, -25, -24, -23, -22, -21, -20, -19, -18, -17, -16, -15, -14, -13, -12, -11, -10, -9, -8, -7, -6, 0, -5, -4, -3, -2, -1};
         final byte[] test_string_long_nonzero = GB.hexStringToByteArray("49535a73394d73483159456f515352443069546e466c4b32394d3479336f396a6936543263544954794e576b456f4e365769704734444a6b4c6439657a6256386b30676f4e544e587954326e596e617567334f546449376c535471506e724e4444326664774d7a3142725653596c4838794b524b50327a5a3438704961545457384b483571744a6c726948704552364b7a466c54315776337a373954524942467442784c3062486f6c386b786a48377750726f5277766546757a596876533731726e6972344e644f70475a6c6a4c65753371554545396a4f556974703655774b426b34575970754e4f484b6349364f425468334c753532324b66abababab000B");
         final byte[][] allTests = new byte[][]{
+                test_string_0,
                 test_string_1,
                 test_string_2,
                 test_string_3,
@@ -110,4 +117,125 @@ public class CobsCoDecTest {
             Assert.assertArrayEquals(payload, decodedData);
         }
     }
+
+    @Test
+    public void testTrailingZeros() {
+        final byte[][] allTests = new byte[][]{
+                new byte[]{0},
+                new byte[]{0x2b, 0, 0},
+                new byte[]{0x2b, 0x13, 0x00, 0x00},
+        };
+
+        for (byte[] payload : allTests) {
+            cobsCoDec.receivedBytes(cobsCoDec.encode(payload));
+            Assert.assertArrayEquals(payload, cobsCoDec.retrieveMessage());
+        }
+    }
+
+    @Test
+    public void testMultipleMessagesInOneChunk() {
+        final byte[] first = GB.hexStringToByteArray("2C00A0139600310F684C1BCA840508020B");
+        final byte[] second = GB.hexStringToByteArray("022b058813a013029623ffffffffffffa71fffff");
+        final byte[] encodedFirst = cobsCoDec.encode(first);
+        final byte[] encodedSecond = cobsCoDec.encode(second);
+        final byte[] both = Arrays.copyOf(encodedFirst, encodedFirst.length + encodedSecond.length);
+        System.arraycopy(encodedSecond, 0, both, encodedFirst.length, encodedSecond.length);
+
+        cobsCoDec.receivedBytes(both);
+        Assert.assertArrayEquals(first, cobsCoDec.retrieveMessage());
+        Assert.assertArrayEquals(second, cobsCoDec.retrieveMessage());
+        Assert.assertNull(cobsCoDec.retrieveMessage());
+    }
+
+    @Test
+    public void testMessageLargerThanInitialBuffer() {
+        final byte[] payload = new byte[50_000];
+        new Random(42).nextBytes(payload);
+
+        final byte[] encoded = cobsCoDec.encode(payload);
+        for (int i = 0; i < encoded.length; i += 244) {
+            cobsCoDec.receivedBytes(Arrays.copyOfRange(encoded, i, Math.min(encoded.length, i + 244)));
+        }
+        Assert.assertArrayEquals(payload, cobsCoDec.retrieveMessage());
+    }
+
+    @Test
+    public void testDataBeforeLeadingZeroIsIgnored() {
+        final byte[] payload = GB.hexStringToByteArray("2C00A0139600310F684C1BCA840508020B");
+        cobsCoDec.receivedBytes(GB.hexStringToByteArray("0304B8"));
+        cobsCoDec.receivedBytes(cobsCoDec.encode(payload));
+        Assert.assertArrayEquals(payload, cobsCoDec.retrieveMessage());
+        Assert.assertNull(cobsCoDec.retrieveMessage());
+    }
+
+    @Test
+    public void testInvalidMessageIsDropped() {
+        final byte[] payload = GB.hexStringToByteArray("2C00A0139600310F684C1BCA840508020B");
+        // the code byte announces more data than the message holds
+        cobsCoDec.receivedBytes(GB.hexStringToByteArray("0010AABB00"));
+        cobsCoDec.receivedBytes(cobsCoDec.encode(payload));
+        Assert.assertArrayEquals(payload, cobsCoDec.retrieveMessage());
+    }
+
+    @Test
+    public void testSliceMatchesMessage() {
+        final byte[] payload = GB.hexStringToByteArray("2C00A0139600310F684C1BCA840508020B");
+        final ByteBuffer encoded = cobsCoDec.encodeToBuffer(payload);
+        final byte[] encodedBytes = new byte[encoded.remaining()];
+        encoded.get(encodedBytes);
+        cobsCoDec.receivedBytes(encodedBytes);
+
+        final ByteBuffer slice = cobsCoDec.retrieveMessageSlice();
+        Assert.assertEquals(ByteBuffer.wrap(payload), slice);
+    }
+
+    @Test
+    public void testRoundTripFuzz() {
+        final Random random = new Random(1234);
+        for (int i = 0; i < 2000; i++) {
+            final List<byte[]> payloads = new ArrayList<>();
+            final int messageCount = 1 + random.nextInt(3);
+            int encodedLength = 0;
+            final List<byte[]> encoded = new ArrayList<>();
+            for (int j = 0; j < messageCount; j++) {
+                final byte[] payload = new byte[1 + random.nextInt(i % 10 == 0 ? 3000 : 600)];
+                // vary the density of zero bytes, including long runs without any
+                final int zeroChance = random.nextInt(4) * 50;
+                for (int k = 0; k < payload.length; k++) {
+                    if (zeroChance == 0) {
+                        payload[k] = (byte) random.nextInt(256);
+                    } else {
+                        payload[k] = random.nextInt(zeroChance) == 0 ? 0 : (byte) (1 + random.nextInt(255));
+                    }
+                }
+                payloads.add(payload);
+                final byte[] encodedPayload = cobsCoDec.encode(payload);
+                encoded.add(encodedPayload);
+                encodedLength += encodedPayload.length;
+            }
+
+            final ByteBuffer stream = ByteBuffer.allocate(encodedLength);
+            for (final byte[] encodedPayload : encoded) {
+                stream.put(encodedPayload);
+            }
+            stream.flip();
+
+            // deliver the stream in chunks of random size, as the BLE notifications would
+            final List<byte[]> decoded = new ArrayList<>();
+            while (stream.hasRemaining()) {
+                final byte[] chunk = new byte[Math.min(stream.remaining(), 1 + random.nextInt(244))];
+                stream.get(chunk);
+                cobsCoDec.receivedBytes(chunk);
+                byte[] message;
+                while ((message = cobsCoDec.retrieveMessage()) != null) {
+                    decoded.add(message);
+                }
+            }
+
+            Assert.assertEquals(payloads.size(), decoded.size());
+            for (int j = 0; j < payloads.size(); j++) {
+                Assert.assertArrayEquals(payloads.get(j), decoded.get(j));
+            }
+        }
+    }
 }
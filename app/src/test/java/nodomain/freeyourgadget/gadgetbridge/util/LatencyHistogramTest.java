@@ -0,0 +1,63 @@
+package nodomain.freeyourgadget.gadgetbridge.util;
+
+import org.junit.Test;
+
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest extends TestBase {
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(40);
+        }
+        histogram.record(700);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(700, histogram.getMaxMillis());
+        // upper bounds of the buckets
+        assertEquals(5, histogram.getPercentileMillis(50));
+        assertEquals(5, histogram.getPercentileMillis(90));
+        assertEquals(50, histogram.getPercentileMillis(95));
+        assertEquals(50, histogram.getPercentileMillis(99));
+        // capped by the maximum
+        assertEquals(700, histogram.getPercentileMillis(100));
+    }
+
+    @Test
+    public void testPercentileCappedByMaximum() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(12);
+        histogram.record(14);
+
+        // the bucket goes up to 25ms
+        assertEquals(14, histogram.getPercentileMillis(50));
+        assertEquals(14, histogram.getPercentileMillis(99));
+    }
+
+    @Test
+    public void testLastBucket() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1);
+        histogram.record(45000);
+
+        assertEquals(1, histogram.getPercentileMillis(50));
+        assertEquals(45000, histogram.getPercentileMillis(99));
+    }
+
+    @Test
+    public void testReset() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMillis(99));
+        assertEquals("n=0", histogram.toString());
+    }
+}
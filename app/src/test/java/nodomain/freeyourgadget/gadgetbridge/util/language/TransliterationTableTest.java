@@ -0,0 +1,99 @@
+package nodomain.freeyourgadget.gadgetbridge.util.language;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+import nodomain.freeyourgadget.gadgetbridge.util.language.impl.FlattenToAsciiTransliterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that the compiled transliteration tables, alone and merged across languages, give the
+ * same output as transliterating char by char with each language one after the other.
+ */
+public class TransliterationTableTest extends TestBase {
+    private static final List<String> LANGUAGES = Arrays.asList(
+            "extended_ascii", "scandinavian", "german", "russian", "hebrew", "greek", "ukranian",
+            "arabic", "persian", "lithuanian", "polish", "estonian", "icelandic", "czech", "turkish",
+            "bengali", "korean", "georgian", "croatian", "common_symbols", "french", "latvian",
+            "hungarian", "serbian", "armenian"
+    );
+
+    private static final String[] CORPUS = {
+            "New message from Alice",
+            "Jürgen Müller: Treffen wir uns um 18 Uhr an der Straße?",
+            "Žluťoučký kůň úpěl ďábelské ódy",
+            "Привет! Как дела? Увидимся завтра",
+            "Привіт, як справи? Їдемо в Київ",
+            "Καλημέρα, τι κάνεις;",
+            "François: Ça va? On se voit à l'hôtel",
+            "Zażółć gęślą jaźń — spotkanie o 12:00",
+            "Öğleden sonra görüşürüz, İstanbul'da",
+            "Sigur Rós – Hoppípolla",
+            "שלום, מה שלומך?",
+            "مرحبا، كيف حالك؟",
+            "안녕하세요, 내일 만나요",
+            "Novak Đoković — «Finale» “Wimbledon”",
+            "Ђорђе: Где си?",
+    };
+
+    @Test
+    public void testTableMatchesCharByChar() {
+        final String allChars = allChars();
+        for (final String language : LANGUAGES) {
+            final Transliterator transliterator = LanguageUtils.getTransliterator(language);
+            if (!(transliterator instanceof SimpleTransliterator)) {
+                continue;
+            }
+            final SimpleTransliterator simple = (SimpleTransliterator) transliterator;
+            assertEquals("Transliteration differs for " + language, simple.transliterateCharByChar(allChars), simple.transliterate(allChars));
+            for (final String message : CORPUS) {
+                assertEquals("Transliteration differs for " + language + ": " + message, simple.transliterateCharByChar(message), simple.transliterate(message));
+            }
+        }
+    }
+
+    @Test
+    public void testCombinedMatchesSequential() {
+        final List<Transliterator> transliterators = new ArrayList<>();
+        for (final String language : LANGUAGES) {
+            transliterators.add(LanguageUtils.getTransliterator(language));
+        }
+        transliterators.add(new FlattenToAsciiTransliterator());
+
+        final Transliterator combined = new MultiTransliterator(transliterators);
+
+        for (final String message : CORPUS) {
+            assertEquals("Transliteration differs for " + message, transliterateSequentially(transliterators, message), combined.transliterate(message));
+        }
+        final String allChars = allChars();
+        assertEquals(transliterateSequentially(transliterators, allChars), combined.transliterate(allChars));
+
+        // nothing to replace
+        assertSame(CORPUS[0], combined.transliterate(CORPUS[0]));
+    }
+
+    private static String allChars() {
+        final StringBuilder sb = new StringBuilder(Character.MAX_VALUE + 1);
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static String transliterateSequentially(final List<Transliterator> transliterators, String txt) {
+        for (final Transliterator transliterator : transliterators) {
+            if (transliterator instanceof SimpleTransliterator) {
+                txt = ((SimpleTransliterator) transliterator).transliterateCharByChar(txt);
+            } else {
+                txt = transliterator.transliterate(txt);
+            }
+        }
+        return txt;
+    }
+}
@@ -0,0 +1,33 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.activities.charts.ActivityAnalysis;
+import nodomain.freeyourgadget.gadgetbridge.activities.charts.SleepAnalysis;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityAmounts;
+
+@State(Scope.Benchmark)
+public class ActivityAnalysisBenchmark {
+    private List<FixtureSample> samples;
+
+    @Setup
+    public void setUp() throws IOException {
+        samples = Fixtures.readSamples("benchmark-activity-samples.csv");
+    }
+
+    @Benchmark
+    public ActivityAmounts calculateActivityAmounts() {
+        return new ActivityAnalysis().calculateActivityAmounts(samples);
+    }
+
+    @Benchmark
+    public List<SleepAnalysis.SleepSession> calculateSleepSessions() {
+        return new SleepAnalysis().calculateSleepSessions(samples);
+    }
+}
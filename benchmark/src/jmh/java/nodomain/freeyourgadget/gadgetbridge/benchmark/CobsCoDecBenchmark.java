@@ -0,0 +1,73 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.communicator.CobsCoDec;
+
+@State(Scope.Benchmark)
+public class CobsCoDecBenchmark {
+    /**
+     * Size of the BLE notifications the encoded stream is split into.
+     */
+    private static final int CHUNK_SIZE = 244;
+
+    @Param({"64", "4096"})
+    public int messageSize;
+
+    private final CobsCoDec cobsCoDec = new CobsCoDec();
+    private byte[][] messages;
+    private List<byte[]> chunks;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(1);
+        messages = new byte[32][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new byte[messageSize];
+            for (int j = 0; j < messageSize; j++) {
+                // GFDI messages have plenty of zero bytes in their small integer fields
+                messages[i][j] = random.nextInt(8) == 0 ? 0 : (byte) random.nextInt(256);
+            }
+        }
+
+        final ByteBuffer stream = ByteBuffer.allocate(messages.length * (messageSize * 2 + 3));
+        for (final byte[] message : messages) {
+            stream.put(cobsCoDec.encode(message));
+        }
+        stream.flip();
+        chunks = new ArrayList<>();
+        while (stream.hasRemaining()) {
+            final byte[] chunk = new byte[Math.min(CHUNK_SIZE, stream.remaining())];
+            stream.get(chunk);
+            chunks.add(chunk);
+        }
+    }
+
+    @Benchmark
+    public void encode(final Blackhole blackhole) {
+        for (final byte[] message : messages) {
+            blackhole.consume(cobsCoDec.encodeToBuffer(message));
+        }
+    }
+
+    @Benchmark
+    public void decode(final Blackhole blackhole) {
+        for (final byte[] chunk : chunks) {
+            cobsCoDec.receivedBytes(chunk);
+            ByteBuffer message;
+            while ((message = cobsCoDec.retrieveMessageSlice()) != null) {
+                blackhole.consume(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+import nodomain.freeyourgadget.gadgetbridge.service.devices.garmin.fit.FitFile;
+
+@State(Scope.Benchmark)
+public class FitFileBenchmark {
+    private byte[] activity;
+
+    @Setup
+    public void setUp() throws IOException {
+        activity = Fixtures.readBytes("benchmark-activity.fit");
+    }
+
+    @Benchmark
+    public FitFile parseActivity() {
+        return FitFile.parseIncoming(activity);
+    }
+}
@@ -0,0 +1,68 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import nodomain.freeyourgadget.gadgetbridge.devices.SampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivitySample;
+
+/**
+ * A plain activity sample as read from a CSV fixture, already normalized.
+ */
+public class FixtureSample implements ActivitySample {
+    private final int timestamp;
+    private final int kind;
+    private final int intensity;
+    private final int steps;
+    private int heartRate;
+
+    public FixtureSample(final int timestamp, final int kind, final int intensity, final int steps, final int heartRate) {
+        this.timestamp = timestamp;
+        this.kind = kind;
+        this.intensity = intensity;
+        this.steps = steps;
+        this.heartRate = heartRate;
+    }
+
+    @Override
+    public SampleProvider getProvider() {
+        return null;
+    }
+
+    @Override
+    public int getRawKind() {
+        return kind;
+    }
+
+    @Override
+    public int getKind() {
+        return kind;
+    }
+
+    @Override
+    public int getRawIntensity() {
+        return intensity;
+    }
+
+    @Override
+    public float getIntensity() {
+        return intensity / 255f;
+    }
+
+    @Override
+    public int getSteps() {
+        return steps;
+    }
+
+    @Override
+    public int getHeartRate() {
+        return heartRate;
+    }
+
+    @Override
+    public void setHeartRate(final int value) {
+        heartRate = value;
+    }
+
+    @Override
+    public int getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,97 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.util.FileUtils;
+import nodomain.freeyourgadget.gadgetbridge.util.GB;
+
+/**
+ * Loads the benchmark fixtures from the test resources of the app.
+ */
+public final class Fixtures {
+    private static final long MAX_FIXTURE_SIZE = 16 * 1024 * 1024;
+
+    private Fixtures() {
+    }
+
+    public static InputStream open(final String name) throws IOException {
+        final InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Fixture not found: " + name);
+        }
+        return in;
+    }
+
+    public static byte[] readBytes(final String name) throws IOException {
+        try (InputStream in = open(name)) {
+            return FileUtils.readAll(in, MAX_FIXTURE_SIZE);
+        }
+    }
+
+    /**
+     * Returns the non-empty lines of a text fixture, skipping comment lines starting with #.
+     */
+    public static List<String> readLines(final String name) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(name), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    public static List<byte[]> readHexLines(final String name) throws IOException {
+        final List<byte[]> packets = new ArrayList<>();
+        for (final String line : readLines(name)) {
+            packets.add(GB.hexStringToByteArray(line.trim()));
+        }
+        return packets;
+    }
+
+    /**
+     * Reads a fixture of whitespace separated byte values such as "0x4f", as dumped by the
+     * activity details fetch of the Huami devices.
+     */
+    public static byte[] readByteTokens(final String name) throws IOException {
+        final List<String> lines = readLines(name);
+        final StringBuilder joined = new StringBuilder();
+        for (final String line : lines) {
+            joined.append(line).append(' ');
+        }
+        final String[] tokens = joined.toString().trim().split("\\s+");
+        final byte[] bytes = new byte[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            bytes[i] = (byte) Integer.decode(tokens[i]).intValue();
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads the activity samples of a CSV fixture with the columns timestamp, kind, intensity,
+     * steps and heart rate.
+     */
+    public static List<FixtureSample> readSamples(final String name) throws IOException {
+        final List<FixtureSample> samples = new ArrayList<>();
+        for (final String line : readLines(name)) {
+            final String[] columns = line.split(",");
+            samples.add(new FixtureSample(
+                    Integer.parseInt(columns[0]),
+                    Integer.parseInt(columns[1]),
+                    Integer.parseInt(columns[2]),
+                    Integer.parseInt(columns[3]),
+                    Integer.parseInt(columns[4])
+            ));
+        }
+        return samples;
+    }
+}
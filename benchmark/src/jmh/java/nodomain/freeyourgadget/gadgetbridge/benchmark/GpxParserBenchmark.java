@@ -0,0 +1,28 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import nodomain.freeyourgadget.gadgetbridge.util.gpx.GpxParseException;
+import nodomain.freeyourgadget.gadgetbridge.util.gpx.GpxParser;
+import nodomain.freeyourgadget.gadgetbridge.util.gpx.model.GpxFile;
+
+@State(Scope.Benchmark)
+public class GpxParserBenchmark {
+    private byte[] track;
+
+    @Setup
+    public void setUp() throws IOException {
+        track = Fixtures.readBytes("benchmark-track.gpx");
+    }
+
+    @Benchmark
+    public GpxFile parseTrack() throws GpxParseException {
+        return new GpxParser(new ByteArrayInputStream(track)).getGpxFile();
+    }
+}
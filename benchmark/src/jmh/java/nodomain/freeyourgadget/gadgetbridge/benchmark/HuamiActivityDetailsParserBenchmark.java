@@ -0,0 +1,43 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Date;
+
+import nodomain.freeyourgadget.gadgetbridge.GBException;
+import nodomain.freeyourgadget.gadgetbridge.devices.amazfitbip.BipActivitySummary;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.entities.User;
+import nodomain.freeyourgadget.gadgetbridge.model.ActivityTrack;
+import nodomain.freeyourgadget.gadgetbridge.service.devices.huami.HuamiActivityDetailsParser;
+
+@State(Scope.Benchmark)
+public class HuamiActivityDetailsParserBenchmark {
+    private BipActivitySummary summary;
+    private byte[] details;
+
+    @Setup
+    public void setUp() throws IOException {
+        details = Fixtures.readByteTokens("ActivityDetailsDump1.txt");
+
+        summary = new BipActivitySummary();
+        summary.setBaseLongitude(1);
+        summary.setBaseLatitude(1);
+        summary.setBaseAltitude(1);
+        summary.setStartTime(new Date(1484920800000L));
+        summary.setName("benchmark");
+        summary.setUser(new User(0L));
+        summary.setDevice(new Device(0L));
+    }
+
+    @Benchmark
+    public ActivityTrack parseDetails() throws GBException {
+        final HuamiActivityDetailsParser parser = new HuamiActivityDetailsParser(summary);
+        parser.setSkipCounterByte(true);
+        return parser.parse(details);
+    }
+}
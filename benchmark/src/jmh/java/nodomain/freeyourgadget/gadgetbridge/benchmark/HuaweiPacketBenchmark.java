@@ -0,0 +1,61 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.devices.huawei.HuaweiPacket;
+
+@State(Scope.Benchmark)
+public class HuaweiPacketBenchmark {
+    private final HuaweiPacket.ParamsProvider paramsProvider = new HuaweiPacket.ParamsProvider() {
+        @Override
+        public byte getDeviceSupportType() {
+            return 0;
+        }
+
+        @Override
+        public byte[] getSecretKey() {
+            return new byte[16];
+        }
+
+        @Override
+        public byte[] getIv() {
+            return new byte[16];
+        }
+
+        @Override
+        public boolean areTransactionsCrypted() {
+            return false;
+        }
+
+        @Override
+        public int getMtu() {
+            return 0;
+        }
+
+        @Override
+        public int getSliceSize() {
+            return 0xF4;
+        }
+    };
+
+    private List<byte[]> packets;
+
+    @Setup
+    public void setUp() throws IOException {
+        packets = Fixtures.readHexLines("benchmark-huawei-packets.txt");
+    }
+
+    @Benchmark
+    public void parsePackets(final Blackhole blackhole) throws HuaweiPacket.ParseException {
+        for (final byte[] packet : packets) {
+            blackhole.consume(new HuaweiPacket(paramsProvider).parse(packet));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.util.protobuf.ProtobufUtils;
+
+@State(Scope.Benchmark)
+public class ProtobufUtilsBenchmark {
+    private int[] values;
+
+    @Setup
+    public void setUp() throws IOException {
+        // the fields of the activity samples cover everything from single byte to five byte varints
+        final List<FixtureSample> samples = Fixtures.readSamples("benchmark-activity-samples.csv");
+        values = new int[samples.size() * 3];
+        int i = 0;
+        for (final FixtureSample sample : samples) {
+            values[i++] = sample.getTimestamp();
+            values[i++] = sample.getSteps();
+            values[i++] = sample.getHeartRate();
+        }
+    }
+
+    @Benchmark
+    public void encodeVarints(final Blackhole blackhole) {
+        for (final int value : values) {
+            blackhole.consume(ProtobufUtils.encode_varint(value));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nodomain.freeyourgadget.gadgetbridge.util.language.LanguageUtils;
+import nodomain.freeyourgadget.gadgetbridge.util.language.MultiTransliterator;
+import nodomain.freeyourgadget.gadgetbridge.util.language.Transliterator;
+import nodomain.freeyourgadget.gadgetbridge.util.language.impl.FlattenToAsciiTransliterator;
+
+@State(Scope.Benchmark)
+public class TransliterationBenchmark {
+    private static final String[] LANGUAGES = {
+            "common_symbols", "german", "french", "russian", "ukranian", "greek", "hebrew", "arabic", "polish", "czech"
+    };
+
+    private List<String> notifications;
+    private Transliterator transliterator;
+
+    @Setup
+    public void setUp() throws IOException {
+        notifications = Fixtures.readLines("benchmark-notifications.txt");
+
+        final List<Transliterator> transliterators = new ArrayList<>(LANGUAGES.length + 1);
+        for (final String language : LANGUAGES) {
+            transliterators.add(LanguageUtils.getTransliterator(language));
+        }
+        transliterators.add(new FlattenToAsciiTransliterator());
+        transliterator = new MultiTransliterator(transliterators);
+    }
+
+    @Benchmark
+    public void transliterateNotifications(final Blackhole blackhole) {
+        for (final String notification : notifications) {
+            blackhole.consume(transliterator.transliterate(notification));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package nodomain.freeyourgadget.gadgetbridge.benchmark;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nodomain.freeyourgadget.gadgetbridge.database.DBHelper;
+import nodomain.freeyourgadget.gadgetbridge.devices.miband.MiBandSampleProvider;
+import nodomain.freeyourgadget.gadgetbridge.entities.Device;
+import nodomain.freeyourgadget.gadgetbridge.entities.MiBandActivitySample;
+import nodomain.freeyourgadget.gadgetbridge.entities.User;
+import nodomain.freeyourgadget.gadgetbridge.impl.GBDevice;
+import nodomain.freeyourgadget.gadgetbridge.test.TestBase;
+
+/**
+ * Compares the entity based and the bulk insert of a 30 day backlog of per-minute samples, as
+ * fetched from a Huami device. This needs the database, so unlike the JMH benchmarks it runs on
+ * Robolectric, and only logs the throughput of both paths. That both store the same rows is
+ * checked by the BulkInsertTest of the app.
+ */
+public class BulkInsertBenchmark extends TestBase {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkInsertBenchmark.class);
+
+    private static final int SAMPLES = 30 * 24 * 60;
+    private static final int START = 1700000000;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 5;
+
+    private final int[] timestamps = new int[SAMPLES];
+    private final int[] rawKinds = new int[SAMPLES];
+    private final int[] rawIntensities = new int[SAMPLES];
+    private final int[] steps = new int[SAMPLES];
+    private final int[] heartRates = new int[SAMPLES];
+
+    @Test
+    public void benchmarkInsert() {
+        for (int i = 0; i < SAMPLES; i++) {
+            timestamps[i] = START + i * 60;
+            rawKinds[i] = i % 3 == 0 ? MiBandSampleProvider.TYPE_LIGHT_SLEEP : MiBandSampleProvider.TYPE_ACTIVITY;
+            rawIntensities[i] = i % 100;
+            steps[i] = i % 120;
+            heartRates[i] = 50 + i % 90;
+        }
+
+        final User user = DBHelper.getUser(daoSession);
+        final GBDevice gbDevice = createDummyGDevice("00:00:00:00:30");
+        final Device device = DBHelper.getDevice(gbDevice, daoSession);
+        final MiBandSampleProvider provider = new MiBandSampleProvider(gbDevice, daoSession);
+
+        long entityNanos = 0;
+        long bulkNanos = 0;
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + ITERATIONS; iteration++) {
+            daoSession.getMiBandActivitySampleDao().deleteAll();
+            long start = System.nanoTime();
+            insertEntities(provider, user, device);
+            final long entityIterationNanos = System.nanoTime() - start;
+
+            daoSession.getMiBandActivitySampleDao().deleteAll();
+            start = System.nanoTime();
+            provider.addGBActivitySamples(user.getId(), device.getId(), timestamps, rawKinds, rawIntensities,
+                    steps, heartRates, null);
+            final long bulkIterationNanos = System.nanoTime() - start;
+
+            if (iteration >= WARMUP_ITERATIONS) {
+                entityNanos += entityIterationNanos;
+                bulkNanos += bulkIterationNanos;
+            }
+        }
+
+        LOG.info("Inserted {} samples {} times: entities {} rows/s, bulk {} rows/s", SAMPLES, ITERATIONS,
+                rowsPerSecond(entityNanos), rowsPerSecond(bulkNanos));
+    }
+
+    private void insertEntities(final MiBandSampleProvider provider, final User user, final Device device) {
+        final MiBandActivitySample[] samples = new MiBandActivitySample[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            final MiBandActivitySample sample = new MiBandActivitySample();
+            sample.setDevice(device);
+            sample.setUser(user);
+            sample.setTimestamp(timestamps[i]);
+            sample.setRawKind(rawKinds[i]);
+            sample.setRawIntensity(rawIntensities[i]);
+            sample.setSteps(steps[i]);
+            sample.setHeartRate(heartRates[i]);
+            samples[i] = sample;
+        }
+        provider.addGBActivitySamples(samples);
+    }
+
+    private static long rowsPerSecond(final long nanos) {
+        return (long) SAMPLES * ITERATIONS * 1000000000L / Math.max(1, nanos);
+    }
+}